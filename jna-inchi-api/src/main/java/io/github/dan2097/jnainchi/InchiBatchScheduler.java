@@ -0,0 +1,437 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Converts batches of molecules of very different sizes on a {@link ForkJoinPool}.
+ * <p>
+ * The cost of each molecule is estimated from its atom, bond, stereo and ring counts. Molecules whose cost reaches
+ * the large item threshold become tasks of their own, while the remaining molecules are packed into chunks of roughly
+ * equal total cost to reduce the per task overhead. Tasks are forked largest first, so idle workers steal the most
+ * expensive remaining work and a single big molecule does not end up being processed last.
+ * <p>
+ * Optionally, exact duplicates are converted only once. A parallel pre-pass computes a digest of every input
+ * (of the structure of an {@link InchiInput}, or of a molfile without its header lines) and only the first input
+ * with each digest is converted, its output being shared by the duplicates.
+ * <p>
+ * A failure of one molecule does not abort the batch: exceptions are reported as an output with {@link InchiStatus#ERROR}.
+ */
+public class InchiBatchScheduler {
+
+  static final long DEFAULT_LARGE_ITEM_COST = 20_000;
+  static final long DEFAULT_CHUNK_COST = 5_000;
+  private static final int DIGEST_TASK_SIZE = 64;
+  private static final int STEREO_WEIGHT = 4;
+
+  private final InchiEngine engine;
+  private final InchiOptions options;
+  private final ForkJoinPool pool;
+  private final long largeItemCost;
+  private final long chunkCost;
+  private final int maxDistinctInputs;
+
+  private final LongAdder inputCount = new LongAdder();
+  private final LongAdder convertedCount = new LongAdder();
+
+  private InchiBatchScheduler(InchiBatchSchedulerBuilder builder) {
+    this.engine = builder.engine != null ? builder.engine : InchiEngines.getEngine();
+    this.options = builder.options;
+    this.pool = builder.pool != null ? builder.pool : ForkJoinPool.commonPool();
+    this.largeItemCost = builder.largeItemCost;
+    this.chunkCost = builder.chunkCost;
+    this.maxDistinctInputs = builder.maxDistinctInputs;
+  }
+
+  public static InchiBatchSchedulerBuilder builder() {
+    return new InchiBatchSchedulerBuilder();
+  }
+
+  public static class InchiBatchSchedulerBuilder {
+    private InchiEngine engine;
+    private InchiOptions options = InchiOptions.DEFAULT_OPTIONS;
+    private ForkJoinPool pool;
+    private long largeItemCost = DEFAULT_LARGE_ITEM_COST;
+    private long chunkCost = DEFAULT_CHUNK_COST;
+    private int maxDistinctInputs = 0;
+
+    private InchiBatchSchedulerBuilder() {
+    }
+
+    /**
+     * @param engine engine used for the conversion, by default {@link InchiEngines#getEngine()}
+     * @return this builder
+     */
+    public InchiBatchSchedulerBuilder withEngine(InchiEngine engine) {
+      this.engine = engine;
+      return this;
+    }
+
+    public InchiBatchSchedulerBuilder withOptions(InchiOptions options) {
+      if (options == null) {
+        throw new IllegalArgumentException("options must not be null");
+      }
+      this.options = options;
+      return this;
+    }
+
+    /**
+     * @param pool pool that runs the conversions, by default {@link ForkJoinPool#commonPool()}
+     * @return this builder
+     */
+    public InchiBatchSchedulerBuilder withPool(ForkJoinPool pool) {
+      this.pool = pool;
+      return this;
+    }
+
+    /**
+     * @param largeItemCost estimated cost at or above which a molecule is converted as a task of its own
+     * @return this builder
+     */
+    public InchiBatchSchedulerBuilder withLargeItemCost(long largeItemCost) {
+      if (largeItemCost < 1) {
+        throw new IllegalArgumentException("largeItemCost must be at least 1");
+      }
+      this.largeItemCost = largeItemCost;
+      return this;
+    }
+
+    /**
+     * @param chunkCost total estimated cost of the small molecules that are converted together as one task
+     * @return this builder
+     */
+    public InchiBatchSchedulerBuilder withChunkCost(long chunkCost) {
+      if (chunkCost < 1) {
+        throw new IllegalArgumentException("chunkCost must be at least 1");
+      }
+      this.chunkCost = chunkCost;
+      return this;
+    }
+
+    /**
+     * Converts duplicate inputs only once.
+     * <p>
+     * Only the map of distinct digests is bounded: it holds at most <code>maxDistinctInputs</code> digests per batch,
+     * and later distinct inputs are converted without being deduplicated. The pre-pass also keeps a digest and an
+     * index for every input of the batch until the batch is converted, so, like the inputs and outputs themselves,
+     * its memory grows with the batch size. Very large inputs should be split into several batches.
+     * @param maxDistinctInputs maximum number of digests remembered per batch, 0 (the default) disables deduplication
+     * @return this builder
+     */
+    public InchiBatchSchedulerBuilder withDeduplication(int maxDistinctInputs) {
+      if (maxDistinctInputs < 0) {
+        throw new IllegalArgumentException("maxDistinctInputs must not be negative");
+      }
+      this.maxDistinctInputs = maxDistinctInputs;
+      return this;
+    }
+
+    public InchiBatchScheduler build() {
+      return new InchiBatchScheduler(this);
+    }
+  }
+
+  /**
+   * Converts the molecules to InChIs
+   * @param inputs
+   * @return outputs, in the same order as the inputs
+   */
+  public List<InchiOutput> toInchi(List<InchiInput> inputs) {
+    return convert(inputs, input -> InchiDigests.digest(input, options), InchiBatchScheduler::estimateCost,
+        input -> engine.toInchi(input, options));
+  }
+
+  /**
+   * Converts the molfiles to InChIs
+   * @param molTexts
+   * @return outputs, in the same order as the inputs
+   */
+  public List<InchiOutput> molToInchi(List<String> molTexts) {
+    return convert(molTexts, molText -> InchiDigests.digest(InchiDigests.normaliseMolfile(molText), options),
+        InchiBatchScheduler::estimateMolfileCost, molText -> engine.molToInchi(molText, options));
+  }
+
+  /**
+   * Number of inputs received, including duplicates
+   * @return input count
+   */
+  public long getInputCount() {
+    return inputCount.sum();
+  }
+
+  /**
+   * Number of inputs that were converted, i.e. excluding duplicates
+   * @return converted count
+   */
+  public long getConvertedCount() {
+    return convertedCount.sum();
+  }
+
+  /**
+   * Ratio of inputs received to inputs converted, over all batches
+   * @return ratio, 1 if no duplicates were found or no input has been received
+   */
+  public double getDeduplicationRatio() {
+    long converted = convertedCount.sum();
+    return converted == 0 ? 1 : (double) inputCount.sum() / converted;
+  }
+
+  /**
+   * Estimated relative cost of generating the InChI of a molecule
+   * @param inchiInput
+   * @return cost, at least 1
+   */
+  public static long estimateCost(InchiInput inchiInput) {
+    return estimateCost(inchiInput.getAtoms().size(), inchiInput.getBonds().size(), inchiInput.getStereos().size());
+  }
+
+  /**
+   * Estimated relative cost of generating the InChI of a molfile, from the counts line of a V2000 molfile
+   * or the COUNTS line of a V3000 molfile. Molfiles without a recognisable counts line get a cost of 1.
+   * @param molText
+   * @return cost, at least 1
+   */
+  public static long estimateMolfileCost(String molText) {
+    if (molText == null) {
+      return 1;
+    }
+    int v3000Counts = molText.indexOf("M  V30 COUNTS ");
+    if (v3000Counts >= 0) {
+      int lineEnd = molText.indexOf('\n', v3000Counts);
+      String[] fields = molText.substring(v3000Counts + 14, lineEnd >= 0 ? lineEnd : molText.length()).trim().split("\\s+");
+      if (fields.length >= 2) {
+        return estimateCost(parseCount(fields[0], 0, fields[0].length()), parseCount(fields[1], 0, fields[1].length()), 0);
+      }
+      return 1;
+    }
+    //the counts line is the fourth line
+    int lineStart = 0;
+    for (int i = 0; i < 3; i++) {
+      lineStart = molText.indexOf('\n', lineStart) + 1;
+      if (lineStart == 0) {
+        return 1;
+      }
+    }
+    if (lineStart + 6 > molText.length()) {
+      return 1;
+    }
+    return estimateCost(parseCount(molText, lineStart, lineStart + 3), parseCount(molText, lineStart + 3, lineStart + 6), 0);
+  }
+
+  /**
+   * Canonicalization dominates for large molecules and grows faster than linearly with size,
+   * especially for ring systems, so the size is weighted by the logarithm of the ring count.
+   */
+  static long estimateCost(int atoms, int bonds, int stereos) {
+    long size = atoms + bonds + (long) STEREO_WEIGHT * stereos;
+    int rings = Math.max(0, bonds - atoms + 1);
+    long ringFactor = 1 + (32 - Integer.numberOfLeadingZeros(rings));
+    return Math.max(1, size * ringFactor);
+  }
+
+  private static int parseCount(CharSequence text, int start, int end) {
+    int count = 0;
+    for (int i = start; i < end; i++) {
+      char ch = text.charAt(i);
+      if (ch >= '0' && ch <= '9') {
+        count = count * 10 + (ch - '0');
+      }
+      else if (ch != ' ') {
+        return 0;
+      }
+    }
+    return count;
+  }
+
+  private <T> List<InchiOutput> convert(List<T> items, Function<T, String> digester, ToLongFunction<T> costEstimator,
+      Function<T, InchiOutput> converter) {
+    List<T> distinctItems = items;
+    int[] distinctIndex = null;
+    if (maxDistinctInputs > 0 && !items.isEmpty()) {
+      String[] digests = new String[items.size()];
+      pool.invoke(new DigestTask<>(items, digester, digests, 0, digests.length));
+      Map<String, Integer> digestToIndex = new HashMap<>();
+      distinctItems = new ArrayList<>();
+      distinctIndex = new int[items.size()];
+      for (int i = 0; i < digests.length; i++) {
+        Integer index = digestToIndex.get(digests[i]);
+        if (index == null) {
+          index = distinctItems.size();
+          distinctItems.add(items.get(i));
+          if (digestToIndex.size() < maxDistinctInputs) {
+            digestToIndex.put(digests[i], index);
+          }
+        }
+        distinctIndex[i] = index;
+      }
+    }
+    long[] costs = new long[distinctItems.size()];
+    for (int i = 0; i < costs.length; i++) {
+      costs[i] = costEstimator.applyAsLong(distinctItems.get(i));
+    }
+    List<InchiOutput> outputs = run(distinctItems, costs, converter);
+    inputCount.add(items.size());
+    convertedCount.add(distinctItems.size());
+    if (distinctIndex == null) {
+      return outputs;
+    }
+    InchiOutput[] allOutputs = new InchiOutput[items.size()];
+    for (int i = 0; i < allOutputs.length; i++) {
+      allOutputs[i] = outputs.get(distinctIndex[i]);
+    }
+    return Arrays.asList(allOutputs);
+  }
+
+  private <T> List<InchiOutput> run(List<T> items, long[] costs, Function<T, InchiOutput> converter) {
+    InchiOutput[] outputs = new InchiOutput[items.size()];
+    Integer[] order = new Integer[items.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparingLong((Integer i) -> costs[i]).reversed());
+
+    List<ConvertTask<T>> tasks = new ArrayList<>();
+    int chunkStart = 0;
+    long chunkTotal = 0;
+    for (int i = 0; i < order.length; i++) {
+      long cost = costs[order[i]];
+      if (cost >= largeItemCost) {
+        tasks.add(new ConvertTask<>(items, order, i, i + 1, outputs, converter));
+        chunkStart = i + 1;
+        continue;
+      }
+      chunkTotal += cost;
+      if (chunkTotal >= chunkCost) {
+        tasks.add(new ConvertTask<>(items, order, chunkStart, i + 1, outputs, converter));
+        chunkStart = i + 1;
+        chunkTotal = 0;
+      }
+    }
+    if (chunkStart < order.length) {
+      tasks.add(new ConvertTask<>(items, order, chunkStart, order.length, outputs, converter));
+    }
+    if (!tasks.isEmpty()) {
+      RecursiveAction root = new RecursiveAction() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+          //Idle workers steal the oldest forked task, so fork the largest first and run the very largest here.
+          //ForkJoinTask.invokeAll forks in reverse order, which would leave the big tasks to this thread.
+          for (int i = 1; i < tasks.size(); i++) {
+            tasks.get(i).fork();
+          }
+          tasks.get(0).invoke();
+          for (int i = tasks.size() - 1; i > 0; i--) {
+            tasks.get(i).join();
+          }
+        }
+      };
+      if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool) {
+        root.invoke();
+      }
+      else {
+        pool.invoke(root);
+      }
+    }
+    return Arrays.asList(outputs);
+  }
+
+  private static class ConvertTask<T> extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<T> items;
+    private final Integer[] order;
+    private final int start;
+    private final int end;
+    private final InchiOutput[] outputs;
+    private final Function<T, InchiOutput> converter;
+
+    private ConvertTask(List<T> items, Integer[] order, int start, int end, InchiOutput[] outputs, Function<T, InchiOutput> converter) {
+      this.items = items;
+      this.order = order;
+      this.start = start;
+      this.end = end;
+      this.outputs = outputs;
+      this.converter = converter;
+    }
+
+    @Override
+    protected void compute() {
+      for (int i = start; i < end; i++) {
+        int index = order[i];
+        InchiOutput output;
+        try {
+          output = converter.apply(items.get(index));
+        }
+        catch (RuntimeException e) {
+          output = new InchiOutput(null, null, String.valueOf(e.getMessage()), null, InchiStatus.ERROR);
+        }
+        outputs[index] = output;
+      }
+    }
+  }
+
+  private static class DigestTask<T> extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<T> items;
+    private final Function<T, String> digester;
+    private final String[] digests;
+    private final int start;
+    private final int end;
+
+    private DigestTask(List<T> items, Function<T, String> digester, String[] digests, int start, int end) {
+      this.items = items;
+      this.digester = digester;
+      this.digests = digests;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start <= DIGEST_TASK_SIZE) {
+        for (int i = start; i < end; i++) {
+          try {
+            digests[i] = digester.apply(items.get(i));
+          }
+          catch (RuntimeException e) {
+            //never equal to a digest, so the input is converted on its own and the failure reported as its output
+            digests[i] = "!" + i;
+          }
+        }
+        return;
+      }
+      int middle = (start + end) >>> 1;
+      invokeAll(new DigestTask<>(items, digester, digests, start, middle), new DigestTask<>(items, digester, digests, middle, end));
+    }
+  }
+}
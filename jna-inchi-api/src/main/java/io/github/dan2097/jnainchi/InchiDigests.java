@@ -0,0 +1,162 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SHA-256 digests that identify an input to InChI generation, used to recognise inputs that have been seen before
+ */
+class InchiDigests {
+
+  private static final int MOLFILE_HEADER_LINES = 3;
+  private static final int DIMENSION_CODE_START = 20;
+  private static final int DIMENSION_CODE_END = 22;
+
+  private InchiDigests() {
+  }
+
+  /**
+   * Digest of the molecule's atoms, bonds and stereochemistry, and the options
+   */
+  static String digest(InchiInput inchiInput, InchiOptions options) {
+    MessageDigest md = newDigest();
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    List<InchiAtom> atoms = inchiInput.getAtoms();
+    Map<InchiAtom, Integer> atomToIndex = new IdentityHashMap<>();
+    buffer.put((byte) 'A').putInt(atoms.size());
+    for (int i = 0; i < atoms.size(); i++) {
+      InchiAtom atom = atoms.get(i);
+      atomToIndex.putIfAbsent(atom, i);
+      update(md, buffer);
+      md.update(atom.getElName().getBytes(StandardCharsets.UTF_8));
+      buffer.put((byte) 0).putDouble(atom.getX()).putDouble(atom.getY()).putDouble(atom.getZ())
+          .putInt(atom.getImplicitHydrogen()).putInt(atom.getImplicitProtium())
+          .putInt(atom.getImplicitDeuterium()).putInt(atom.getImplicitTritium())
+          .putInt(atom.getIsotopicMass()).putInt(atom.getCharge()).put((byte) atom.getRadical().ordinal());
+    }
+    List<InchiBond> bonds = inchiInput.getBonds();
+    buffer.put((byte) 'B').putInt(bonds.size());
+    for (InchiBond bond : bonds) {
+      update(md, buffer);
+      buffer.putInt(indexOf(atomToIndex, bond.getStart())).putInt(indexOf(atomToIndex, bond.getEnd()))
+          .put((byte) bond.getType().ordinal()).put((byte) bond.getStereo().ordinal());
+    }
+    List<InchiStereo> stereos = inchiInput.getStereos();
+    buffer.put((byte) 'S').putInt(stereos.size());
+    for (InchiStereo stereo : stereos) {
+      update(md, buffer);
+      buffer.putInt(indexOf(atomToIndex, stereo.getCentralAtom()));
+      for (InchiAtom atom : stereo.getAtoms()) {
+        buffer.putInt(indexOf(atomToIndex, atom));
+      }
+      buffer.put((byte) stereo.getType().ordinal()).put((byte) stereo.getParity().ordinal());
+    }
+    update(md, buffer);
+    return finish(md, options);
+  }
+
+  /**
+   * Digest of the molfile and the options
+   */
+  static String digest(String molText, InchiOptions options) {
+    MessageDigest md = newDigest();
+    md.update((byte) 'M');
+    md.update(molText.getBytes(StandardCharsets.UTF_8));
+    return finish(md, options);
+  }
+
+  private static int indexOf(Map<InchiAtom, Integer> atomToIndex, InchiAtom atom) {
+    if (atom == null) {
+      return -1;
+    }
+    if (atom == InchiStereo.STEREO_IMPLICIT_H) {
+      return -2;
+    }
+    Integer index = atomToIndex.get(atom);
+    return index != null ? index : -3;
+  }
+
+  private static void update(MessageDigest md, ByteBuffer buffer) {
+    buffer.flip();
+    md.update(buffer);
+    buffer.clear();
+  }
+
+  private static String finish(MessageDigest md, InchiOptions options) {
+    md.update((byte) 0);
+    //not InchiOptions.toString(), which is platform dependent
+    md.update((options.getFlags() + "/" + options.getTimeoutMilliSeconds()).getBytes(StandardCharsets.UTF_8));
+    byte[] hash = md.digest();
+    StringBuilder sb = new StringBuilder(hash.length * 2);
+    for (byte b : hash) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+      sb.append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+  /**
+   * Removes the parts of a molfile that do not affect its InChI: the name, program and comment header lines
+   * (other than the dimension code), anything after <code>M  END</code>, trailing whitespace and the line ending style.
+   * @param molText
+   * @return normalised molfile
+   */
+  static String normaliseMolfile(String molText) {
+    StringBuilder sb = new StringBuilder(molText.length());
+    int lineNumber = 0;
+    int lineStart = 0;
+    while (lineStart < molText.length()) {
+      int lineEnd = molText.indexOf('\n', lineStart);
+      int next = lineEnd >= 0 ? lineEnd + 1 : molText.length();
+      if (lineEnd < 0) {
+        lineEnd = molText.length();
+      }
+      while (lineEnd > lineStart && Character.isWhitespace(molText.charAt(lineEnd - 1))) {
+        lineEnd--;
+      }
+      if (lineNumber == 1) {
+        sb.append(molText, Math.min(lineStart + DIMENSION_CODE_START, lineEnd), Math.min(lineStart + DIMENSION_CODE_END, lineEnd));
+      }
+      else if (lineNumber >= MOLFILE_HEADER_LINES) {
+        sb.append(molText, lineStart, lineEnd);
+      }
+      sb.append('\n');
+      if (lineNumber >= MOLFILE_HEADER_LINES && molText.startsWith("M  END", lineStart)) {
+        break;
+      }
+      lineNumber++;
+      lineStart = next;
+    }
+    return sb.toString();
+  }
+}
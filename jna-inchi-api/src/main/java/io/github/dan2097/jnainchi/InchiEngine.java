@@ -0,0 +1,53 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+/**
+ * Service provider interface for InChI backends.
+ * <p>
+ * Implementations are discovered using {@link java.util.ServiceLoader} (register the implementation in
+ * <code>META-INF/services/io.github.dan2097.jnainchi.InchiEngine</code>) and are selected by {@link InchiEngines}.
+ * Implementations must have a public no-argument constructor and be safe to call from multiple threads.
+ */
+public interface InchiEngine {
+
+  /**
+   * Short unique name of this backend, used to select it with the {@value InchiEngines#ENGINE_PROPERTY} system property
+   * @return name e.g. "jna"
+   */
+  String getName();
+
+  /**
+   * Whether this backend can be used in the current environment e.g. its native code could be loaded
+   * @return true if usable
+   */
+  boolean isAvailable();
+
+  InchiOutput toInchi(InchiInput inchiInput, InchiOptions options);
+
+  InchiOutput molToInchi(String molText, InchiOptions options);
+
+  InchiOutput inchiToInchi(String inchi, InchiOptions options);
+
+  InchiKeyOutput inchiToInchiKey(String inchi);
+
+  InchiInputFromInchiOutput getInchiInputFromInchi(String inchi, InchiOptions options);
+
+  InchiCheckStatus checkInchi(String inchi, boolean strict);
+
+}
@@ -0,0 +1,214 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Discovers {@link InchiEngine} implementations on the classpath and selects the one to use.
+ * <p>
+ * If the system property {@value #ENGINE_PROPERTY} is set, the engine with that name is used.
+ * Otherwise, if more than one engine is available, a short micro-benchmark is run on first use and the fastest engine is chosen.
+ */
+public class InchiEngines {
+
+  /**
+   * System property used to select an engine by name e.g. -Djnainchi.engine=jna
+   */
+  public static final String ENGINE_PROPERTY = "jnainchi.engine";
+
+  private static final int BENCHMARK_WARMUP_ITERATIONS = 20;
+  private static final int BENCHMARK_ITERATIONS = 50;
+
+  private static volatile InchiEngine defaultEngine;
+
+  private InchiEngines() {
+  }
+
+  /**
+   * Returns the engine selected using the {@value #ENGINE_PROPERTY} system property, or if not set, the fastest available engine.
+   * The result is computed once and then cached
+   * @return the selected engine
+   * @throws IllegalStateException if no engine is available
+   * @throws IllegalArgumentException if the system property names an engine that does not exist or is not available
+   */
+  public static InchiEngine getEngine() {
+    InchiEngine engine = defaultEngine;
+    if (engine == null) {
+      synchronized (InchiEngines.class) {
+        engine = defaultEngine;
+        if (engine == null) {
+          engine = selectEngine();
+          defaultEngine = engine;
+        }
+      }
+    }
+    return engine;
+  }
+
+  /**
+   * Returns the available engine with the given name
+   * @param name engine name e.g. "jna"
+   * @return the engine
+   * @throws IllegalArgumentException if no available engine has this name
+   */
+  public static InchiEngine getEngine(String name) {
+    for (InchiEngine engine : getAvailableEngines()) {
+      if (engine.getName().equalsIgnoreCase(name)) {
+        return engine;
+      }
+    }
+    throw new IllegalArgumentException("No available InChI engine named: " + name);
+  }
+
+  /**
+   * Returns all engines discovered by {@link ServiceLoader} for which {@link InchiEngine#isAvailable()} is true
+   * @return unmodifiable list of engines, in discovery order
+   */
+  public static List<InchiEngine> getAvailableEngines() {
+    List<InchiEngine> engines = new ArrayList<>();
+    for (InchiEngine engine : loadEngines()) {
+      try {
+        if (engine.isAvailable()) {
+          engines.add(engine);
+        }
+      }
+      catch (Throwable e) {
+        //e.g. native library failed to load, treat as unavailable
+      }
+    }
+    return Collections.unmodifiableList(engines);
+  }
+
+  /**
+   * Forgets the cached engine selection, so that the next call to {@link #getEngine()} selects again
+   */
+  public static void reset() {
+    defaultEngine = null;
+  }
+
+  private static List<InchiEngine> loadEngines() {
+    List<InchiEngine> engines = new ArrayList<>();
+    ServiceLoader<InchiEngine> loader = ServiceLoader.load(InchiEngine.class, InchiEngines.class.getClassLoader());
+    Iterator<InchiEngine> it = loader.iterator();
+    while (true) {
+      try {
+        if (!it.hasNext()) {
+          break;
+        }
+        engines.add(it.next());
+      }
+      catch (ServiceConfigurationError e) {
+        //a broken provider should not prevent the others from being used, the iterator moves on to the next one
+      }
+    }
+    return engines;
+  }
+
+  private static InchiEngine selectEngine() {
+    String requested = System.getProperty(ENGINE_PROPERTY);
+    if (requested != null && !requested.trim().isEmpty()) {
+      return getEngine(requested.trim());
+    }
+    List<InchiEngine> engines = getAvailableEngines();
+    if (engines.isEmpty()) {
+      throw new IllegalStateException("No InChI engine is available. Please check that the binaries for your platform have been included on the classpath.");
+    }
+    if (engines.size() == 1) {
+      return engines.get(0);
+    }
+    return selectFastest(engines);
+  }
+
+  static InchiEngine selectFastest(List<InchiEngine> engines) {
+    InchiInput benchmarkInput = createBenchmarkInput();
+    InchiEngine fastest = null;
+    long fastestTime = Long.MAX_VALUE;
+    for (InchiEngine engine : engines) {
+      long time;
+      try {
+        time = benchmark(engine, benchmarkInput);
+      }
+      catch (Exception e) {
+        continue;
+      }
+      if (time < fastestTime) {
+        fastestTime = time;
+        fastest = engine;
+      }
+    }
+    return fastest != null ? fastest : engines.get(0);
+  }
+
+  private static long benchmark(InchiEngine engine, InchiInput input) {
+    InchiOptions options = InchiOptions.DEFAULT_OPTIONS;
+    for (int i = 0; i < BENCHMARK_WARMUP_ITERATIONS; i++) {
+      runBenchmarkIteration(engine, input, options);
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+      runBenchmarkIteration(engine, input, options);
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static void runBenchmarkIteration(InchiEngine engine, InchiInput input, InchiOptions options) {
+    InchiOutput output = engine.toInchi(input, options);
+    if (output.getStatus() == InchiStatus.ERROR) {
+      throw new IllegalStateException("Engine " + engine.getName() + " failed benchmark: " + output.getMessage());
+    }
+    engine.inchiToInchiKey(output.getInchi());
+  }
+
+  /**
+   * L-alanine, which exercises atoms, bonds and stereochemistry
+   * @return
+   */
+  private static InchiInput createBenchmarkInput() {
+    InchiInput input = new InchiInput();
+    InchiAtom c1 = new InchiAtom("C");
+    c1.setImplicitHydrogen(3);
+    InchiAtom c2 = new InchiAtom("C");
+    c2.setImplicitHydrogen(1);
+    InchiAtom n = new InchiAtom("N");
+    n.setImplicitHydrogen(2);
+    InchiAtom c3 = new InchiAtom("C");
+    InchiAtom o1 = new InchiAtom("O");
+    InchiAtom o2 = new InchiAtom("O");
+    o2.setImplicitHydrogen(1);
+    input.addAtom(c1);
+    input.addAtom(c2);
+    input.addAtom(n);
+    input.addAtom(c3);
+    input.addAtom(o1);
+    input.addAtom(o2);
+    input.addBond(new InchiBond(c1, c2, InchiBondType.SINGLE));
+    input.addBond(new InchiBond(c2, n, InchiBondType.SINGLE));
+    input.addBond(new InchiBond(c2, c3, InchiBondType.SINGLE));
+    input.addBond(new InchiBond(c3, o1, InchiBondType.DOUBLE));
+    input.addBond(new InchiBond(c3, o2, InchiBondType.SINGLE));
+    input.addStereo(InchiStereo.createTetrahedralStereo(c2, n, c1, InchiStereo.STEREO_IMPLICIT_H, c3, InchiStereoParity.EVEN));
+    return input;
+  }
+
+}
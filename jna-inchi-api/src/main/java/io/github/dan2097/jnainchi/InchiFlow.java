@@ -0,0 +1,103 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+/**
+ * Interfaces for publishing and subscribing to streams of items with demand-based backpressure.
+ * <p>
+ * These have the same methods and contract as those of <code>java.util.concurrent.Flow</code>, which is not
+ * available on Java 8. On Java 9+ they can be adapted to and from <code>Flow</code> by
+ * <code>io.github.dan2097.jnainchi.flow.InchiFlowAdapters</code> in the optional jna-inchi-flow module.
+ *
+ * @see InchiFlowProcessor
+ */
+public final class InchiFlow {
+
+  private InchiFlow() {
+  }
+
+  /**
+   * A producer of items that are received by subscribers
+   *
+   * @param <T> the type of the items
+   */
+  @FunctionalInterface
+  public interface Publisher<T> {
+    /**
+     * Adds the subscriber. If this is not possible, {@link Subscriber#onError(Throwable)} is called
+     * after {@link Subscriber#onSubscribe(Subscription)}.
+     * @param subscriber
+     */
+    void subscribe(Subscriber<? super T> subscriber);
+  }
+
+  /**
+   * A receiver of items. The methods are called in sequence, never concurrently.
+   *
+   * @param <T> the type of the items
+   */
+  public interface Subscriber<T> {
+    /**
+     * Called before any other method with the subscription used to request items
+     * @param subscription
+     */
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * Called with the next item, at most as many times as items have been requested
+     * @param item
+     */
+    void onNext(T item);
+
+    /**
+     * Called when the publisher fails, no other method is called afterwards
+     * @param throwable
+     */
+    void onError(Throwable throwable);
+
+    /**
+     * Called when all items have been published, no other method is called afterwards
+     */
+    void onComplete();
+  }
+
+  /**
+   * The link between a publisher and a subscriber
+   */
+  public interface Subscription {
+    /**
+     * Requests up to <code>n</code> more items. Demand is cumulative.
+     * @param n the number of items, must be positive
+     */
+    void request(long n);
+
+    /**
+     * Requests the publisher to stop sending items
+     */
+    void cancel();
+  }
+
+  /**
+   * A subscriber that publishes the results of processing the items it receives
+   *
+   * @param <T> the type of the items received
+   * @param <R> the type of the items published
+   */
+  public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+  }
+}
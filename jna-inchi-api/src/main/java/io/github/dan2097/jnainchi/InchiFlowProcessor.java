@@ -0,0 +1,595 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import io.github.dan2097.jnainchi.InchiFlow.Processor;
+import io.github.dan2097.jnainchi.InchiFlow.Subscriber;
+import io.github.dan2097.jnainchi.InchiFlow.Subscription;
+
+/**
+ * Processor that converts the items it receives, e.g. InchiInputs, molfiles or InChIs, and publishes the results
+ * in the order the items were received.
+ * <p>
+ * The received items are grouped into batches, and each batch is converted by one task on a bounded pool of threads,
+ * so that the overhead of handing items between threads is shared by the items of a batch.
+ * At most <code>bufferSize</code> items are requested from upstream that have not yet been published downstream,
+ * and results are only published as they are requested, so a slow subscriber slows down the upstream publisher
+ * rather than filling memory.
+ * <p>
+ * A processor has a single upstream publisher and a single subscriber. If the conversion function throws an exception,
+ * the upstream subscription is cancelled and the subscriber receives the exception through
+ * {@link Subscriber#onError(Throwable)}; the functions of the static factory methods instead return an output
+ * with an error status for the item.
+ * <pre>
+ * InchiFlowProcessor&lt;String, InchiOutput&gt; processor = InchiFlowProcessor
+ *     .molToInchi(InchiEngines.getEngine(), new InchiOptionsBuilder().build()).withThreads(4).build();
+ * molfilePublisher.subscribe(processor);
+ * processor.subscribe(inchiSubscriber);
+ * </pre>
+ *
+ * @param <T> the type of the items received
+ * @param <R> the type of the results published
+ */
+public class InchiFlowProcessor<T, R> implements Processor<T, R> {
+
+  private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+  private final Function<? super T, ? extends R> function;
+  private final Executor executor;
+  private final ExecutorService ownExecutor;
+  private final int parallelism;
+  private final int batchSize;
+  private final int bufferSize;
+
+  //All fields below are guarded by this
+  private Subscription upstream;
+  private Subscriber<? super R> downstream;
+  private boolean subscribed = false;
+  /** The batches that are dispatched and not yet fully published, in order of receipt */
+  private final ArrayDeque<Batch> batches = new ArrayDeque<>();
+  private List<T> current;
+  /** Number of items requested from upstream but not yet received */
+  private long upstreamRequested = 0;
+  /** Number of items received but not yet published */
+  private int buffered = 0;
+  /** Number of batches dispatched but not yet converted */
+  private int running = 0;
+  /** Number of results requested by the subscriber but not yet published */
+  private long demand = 0;
+  private IllegalArgumentException invalidRequest;
+  private boolean upstreamDone = false;
+  private Throwable upstreamError;
+  private boolean cancelled = false;
+  private boolean terminated = false;
+  private boolean draining = false;
+  private boolean missed = false;
+
+  private InchiFlowProcessor(InchiFlowProcessorBuilder<T, R> builder) {
+    this.function = builder.function;
+    if (builder.executor != null) {
+      this.executor = builder.executor;
+      this.ownExecutor = null;
+    }
+    else {
+      final int pool = POOL_COUNT.incrementAndGet();
+      final AtomicInteger count = new AtomicInteger();
+      this.ownExecutor = Executors.newFixedThreadPool(builder.threads, runnable -> {
+        Thread thread = new Thread(runnable, "inchi-flow-" + pool + "-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.executor = ownExecutor;
+    }
+    this.parallelism = builder.executor != null ? Runtime.getRuntime().availableProcessors() : builder.threads;
+    this.batchSize = builder.batchSize;
+    this.bufferSize = builder.bufferSize > 0 ? builder.bufferSize : 2 * batchSize * parallelism;
+    this.current = new ArrayList<>(batchSize);
+  }
+
+  /**
+   * Returns a builder for a processor that applies the given function to every item
+   * @param function the conversion, it is called concurrently by the threads of the processor
+   * @return builder to configure and instantiate an InchiFlowProcessor
+   */
+  public static <T, R> InchiFlowProcessorBuilder<T, R> builder(Function<? super T, ? extends R> function) {
+    if (function == null) {
+      throw new IllegalArgumentException("function must not be null");
+    }
+    return new InchiFlowProcessorBuilder<>(function);
+  }
+
+  /**
+   * Returns a builder for a processor that converts InchiInputs to InChIs
+   * @param engine
+   * @param options
+   * @return builder to configure and instantiate an InchiFlowProcessor
+   */
+  public static InchiFlowProcessorBuilder<InchiInput, InchiOutput> toInchi(InchiEngine engine, InchiOptions options) {
+    checkArguments(engine, options);
+    return builder(input -> {
+      try {
+        return engine.toInchi(input, options);
+      }
+      catch (RuntimeException e) {
+        return errorOutput(e);
+      }
+    });
+  }
+
+  /**
+   * Returns a builder for a processor that converts molfiles to InChIs
+   * @param engine
+   * @param options
+   * @return builder to configure and instantiate an InchiFlowProcessor
+   */
+  public static InchiFlowProcessorBuilder<String, InchiOutput> molToInchi(InchiEngine engine, InchiOptions options) {
+    checkArguments(engine, options);
+    return builder(molText -> {
+      try {
+        return engine.molToInchi(molText, options);
+      }
+      catch (RuntimeException e) {
+        return errorOutput(e);
+      }
+    });
+  }
+
+  /**
+   * Returns a builder for a processor that converts InChIs to InChIs with the given options
+   * @param engine
+   * @param options
+   * @return builder to configure and instantiate an InchiFlowProcessor
+   */
+  public static InchiFlowProcessorBuilder<String, InchiOutput> inchiToInchi(InchiEngine engine, InchiOptions options) {
+    checkArguments(engine, options);
+    return builder(inchi -> {
+      try {
+        return engine.inchiToInchi(inchi, options);
+      }
+      catch (RuntimeException e) {
+        return errorOutput(e);
+      }
+    });
+  }
+
+  /**
+   * Returns a builder for a processor that converts InChIs to InChIKeys
+   * @param engine
+   * @return builder to configure and instantiate an InchiFlowProcessor
+   */
+  public static InchiFlowProcessorBuilder<String, InchiKeyOutput> inchiToInchiKey(InchiEngine engine) {
+    checkArguments(engine, InchiOptions.DEFAULT_OPTIONS);
+    return builder(inchi -> {
+      try {
+        return engine.inchiToInchiKey(inchi);
+      }
+      catch (RuntimeException e) {
+        return new InchiKeyOutput(null, InchiKeyStatus.UNKNOWN_ERROR, null, null, String.valueOf(e.getMessage()));
+      }
+    });
+  }
+
+  private static void checkArguments(InchiEngine engine, InchiOptions options) {
+    if (engine == null) {
+      throw new IllegalArgumentException("engine must not be null");
+    }
+    if (options == null) {
+      throw new IllegalArgumentException("options must not be null");
+    }
+  }
+
+  static InchiOutput errorOutput(Exception e) {
+    return new InchiOutput(null, null, String.valueOf(e.getMessage()), null, InchiStatus.ERROR);
+  }
+
+  @Override
+  public void onSubscribe(Subscription subscription) {
+    if (subscription == null) {
+      throw new NullPointerException("subscription must not be null");
+    }
+    synchronized (this) {
+      if (upstream != null || cancelled) {
+        subscription.cancel();
+        return;
+      }
+      upstream = subscription;
+    }
+    drain();
+  }
+
+  @Override
+  public void onNext(T item) {
+    if (item == null) {
+      throw new NullPointerException("item must not be null");
+    }
+    Batch batch = null;
+    synchronized (this) {
+      if (upstreamDone || cancelled) {
+        return;
+      }
+      current.add(item);
+      upstreamRequested--;
+      buffered++;
+      //Items are only held back to fill a batch while all threads are busy and more items are on their way
+      if (current.size() >= batchSize || upstreamRequested <= 0 || running < parallelism) {
+        batch = dispatch();
+      }
+    }
+    execute(batch);
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    if (throwable == null) {
+      throw new NullPointerException("throwable must not be null");
+    }
+    complete(throwable);
+  }
+
+  @Override
+  public void onComplete() {
+    complete(null);
+  }
+
+  private void complete(Throwable throwable) {
+    Batch batch;
+    synchronized (this) {
+      if (upstreamDone) {
+        return;
+      }
+      upstreamDone = true;
+      upstreamError = throwable;
+      batch = dispatch();
+    }
+    execute(batch);
+    drain();
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super R> subscriber) {
+    if (subscriber == null) {
+      throw new NullPointerException("subscriber must not be null");
+    }
+    boolean accepted = false;
+    synchronized (this) {
+      if (downstream == null) {
+        downstream = subscriber;
+        accepted = true;
+      }
+    }
+    if (!accepted) {
+      subscriber.onSubscribe(new Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+      });
+      subscriber.onError(new IllegalStateException("InchiFlowProcessor supports only one subscriber"));
+      return;
+    }
+    subscriber.onSubscribe(new DownstreamSubscription());
+    synchronized (this) {
+      subscribed = true;
+    }
+    drain();
+  }
+
+  /**
+   * Moves the items received so far into a new batch, which must then be executed
+   * @return the batch or null if there are no items
+   */
+  private Batch dispatch() {
+    if (current.isEmpty()) {
+      return null;
+    }
+    Batch batch = new Batch(current);
+    batches.add(batch);
+    running++;
+    current = new ArrayList<>(batchSize);
+    return batch;
+  }
+
+  private void execute(Batch batch) {
+    if (batch != null) {
+      try {
+        executor.execute(batch);
+      }
+      catch (RuntimeException e) {
+        batch.fail(e);
+      }
+    }
+  }
+
+  /**
+   * Publishes the results that are available and requested, requests more items from upstream
+   * and signals termination. Only one thread drains at a time, a call while another thread drains makes it loop again.
+   */
+  private void drain() {
+    synchronized (this) {
+      if (draining) {
+        missed = true;
+        return;
+      }
+      draining = true;
+    }
+    try {
+      while (true) {
+        Subscriber<? super R> subscriber;
+        List<R> results = new ArrayList<>();
+        Throwable error = null;
+        boolean complete = false;
+        boolean cancelUpstream = false;
+        long request = 0;
+        Batch batch = null;
+        Subscription subscription;
+        synchronized (this) {
+          missed = false;
+          subscriber = downstream;
+          subscription = upstream;
+          if (subscribed && !terminated && invalidRequest != null) {
+            error = invalidRequest;
+            cancelUpstream = true;
+            terminated = true;
+          }
+          else if (subscribed && !cancelled && !terminated) {
+            while (!batches.isEmpty() && batches.peek().done) {
+              Batch head = batches.peek();
+              if (head.failure != null) {
+                error = head.failure;
+                cancelUpstream = true;
+                break;
+              }
+              if (head.next == head.results.length) {
+                batches.poll();
+                continue;
+              }
+              if (demand == 0) {
+                break;
+              }
+              @SuppressWarnings("unchecked")
+              R result = (R) head.results[head.next];
+              head.results[head.next++] = null;
+              results.add(result);
+              demand--;
+              buffered--;
+            }
+            if (error == null && upstreamDone && batches.isEmpty() && current.isEmpty()) {
+              error = upstreamError;
+              complete = error == null;
+            }
+            if (error != null || complete) {
+              terminated = true;
+            }
+            else {
+              if (running < parallelism) {
+                batch = dispatch();
+              }
+              if (subscription != null && !upstreamDone) {
+                //Request in whole batches, unless nothing is outstanding at all
+                long room = bufferSize - buffered - upstreamRequested;
+                if (room >= batchSize || (room > 0 && buffered == 0 && upstreamRequested == 0)) {
+                  request = room;
+                  upstreamRequested += room;
+                }
+              }
+            }
+          }
+        }
+        execute(batch);
+        for (R result : results) {
+          subscriber.onNext(result);
+        }
+        if (request > 0) {
+          subscription.request(request);
+        }
+        if (cancelUpstream && subscription != null) {
+          subscription.cancel();
+        }
+        if (error != null) {
+          shutdown();
+          subscriber.onError(error);
+        }
+        else if (complete) {
+          shutdown();
+          subscriber.onComplete();
+        }
+        synchronized (this) {
+          if (!missed) {
+            draining = false;
+            return;
+          }
+        }
+      }
+    }
+    catch (RuntimeException | Error e) {
+      synchronized (this) {
+        draining = false;
+      }
+      throw e;
+    }
+  }
+
+  private void shutdown() {
+    if (ownExecutor != null) {
+      ownExecutor.shutdown();
+    }
+  }
+
+  private class DownstreamSubscription implements Subscription {
+    @Override
+    public void request(long n) {
+      synchronized (InchiFlowProcessor.this) {
+        if (n <= 0) {
+          invalidRequest = new IllegalArgumentException("number of requested items must be positive");
+        }
+        else {
+          demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+        }
+      }
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      Subscription subscription;
+      synchronized (InchiFlowProcessor.this) {
+        if (cancelled) {
+          return;
+        }
+        cancelled = true;
+        subscription = upstream;
+        batches.clear();
+        current.clear();
+      }
+      if (subscription != null) {
+        subscription.cancel();
+      }
+      shutdown();
+    }
+  }
+
+  /**
+   * A group of received items converted by one task
+   */
+  private class Batch implements Runnable {
+    private final List<T> items;
+    private final Object[] results;
+    /** Index of the next result to publish, guarded by the processor */
+    private int next = 0;
+    private boolean done = false;
+    private Throwable failure;
+
+    private Batch(List<T> items) {
+      this.items = items;
+      this.results = new Object[items.size()];
+    }
+
+    @Override
+    public void run() {
+      try {
+        for (int i = 0; i < results.length; i++) {
+          results[i] = function.apply(items.get(i));
+        }
+      }
+      catch (Throwable e) {
+        failure = e;
+      }
+      finish();
+    }
+
+    private void fail(Throwable e) {
+      failure = e;
+      finish();
+    }
+
+    private void finish() {
+      synchronized (InchiFlowProcessor.this) {
+        done = true;
+        running--;
+      }
+      drain();
+    }
+  }
+
+  public static class InchiFlowProcessorBuilder<T, R> {
+
+    private final Function<? super T, ? extends R> function;
+    private Executor executor = null;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int batchSize = 16;
+    private int bufferSize = 0;
+
+    private InchiFlowProcessorBuilder(Function<? super T, ? extends R> function) {
+      this.function = function;
+    }
+
+    /**
+     * Number of daemon threads the processor creates, by default the number of available processors.
+     * They are shut down when the processor terminates or is cancelled.
+     * @param threads
+     * @return builder
+     */
+    public InchiFlowProcessorBuilder<T, R> withThreads(int threads) {
+      if (threads < 1) {
+        throw new IllegalArgumentException("threads must be at least 1");
+      }
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * Runs the conversions on the given executor instead of threads created by the processor.
+     * The executor is not shut down by the processor.
+     * @param executor
+     * @return builder
+     */
+    public InchiFlowProcessorBuilder<T, R> withExecutor(Executor executor) {
+      if (executor == null) {
+        throw new IllegalArgumentException("executor must not be null");
+      }
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Maximum number of items converted by one task, by default 16
+     * @param batchSize
+     * @return builder
+     */
+    public InchiFlowProcessorBuilder<T, R> withBatchSize(int batchSize) {
+      if (batchSize < 1) {
+        throw new IllegalArgumentException("batchSize must be at least 1");
+      }
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Maximum number of items requested from upstream that have not yet been published,
+     * by default two batches per thread
+     * @param bufferSize
+     * @return builder
+     */
+    public InchiFlowProcessorBuilder<T, R> withBufferSize(int bufferSize) {
+      if (bufferSize < 1) {
+        throw new IllegalArgumentException("bufferSize must be at least 1");
+      }
+      this.bufferSize = bufferSize;
+      return this;
+    }
+
+    public InchiFlowProcessor<T, R> build() {
+      if (bufferSize > 0 && bufferSize < batchSize) {
+        throw new IllegalArgumentException("bufferSize must not be smaller than batchSize");
+      }
+      return new InchiFlowProcessor<>(this);
+    }
+  }
+}
@@ -0,0 +1,373 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.jna.Pointer;
+
+import io.github.dan2097.jnainchi.inchi.InchiLibrary;
+import io.github.dan2097.jnainchi.inchi.IxaFunctions;
+import io.github.dan2097.jnainchi.inchi.IxaFunctions.IXA_INCHIBUILDER_HANDLE;
+import io.github.dan2097.jnainchi.inchi.IxaFunctions.IXA_MOL_HANDLE;
+import io.github.dan2097.jnainchi.inchi.IxaFunctions.IXA_STATUS_HANDLE;
+import io.github.dan2097.jnainchi.inchi.tagINCHIGEN_DATA;
+import io.github.dan2097.jnainchi.inchi.tagINCHI_Input;
+import io.github.dan2097.jnainchi.inchi.tagINCHI_Output;
+
+/**
+ * Reusable InChI generator that reports the time taken by each stage of generation.
+ * <p>
+ * The generator keeps a pool of native handles. Each call borrows a set of handles
+ * for the duration of the generation and returns it, cleared, to the pool, so a single instance can be shared by any
+ * number of threads without recreating the native objects for every molecule.
+ * The pool only grows to the largest number of concurrent calls, however many threads use the generator over its
+ * lifetime, so thread pools that replace idle threads do not leak native handles.
+ * The native handles are released by {@link #close()}, which should only be called once no thread uses the generator any more.
+ * <p>
+ * By default the InChI is generated by the IXA API, as by {@link JnaInchi#toInchi(InchiInput, InchiOptions)}, which
+ * normalizes, canonicalizes and serializes the molecule in a single native call, recorded as {@link Stage#GENERATION}.
+ * A <i>staged</i> generator instead uses the step-by-step generator of the classic InChI API, so that
+ * {@link Stage#NORMALIZATION}, {@link Stage#CANONICALIZATION} and {@link Stage#SERIALIZATION} are timed separately.
+ * This takes about twice as long per molecule, so is intended for profiling rather than bulk conversion.
+ * <p>
+ * The InChIs are the same as those of {@link JnaInchi#toInchi(InchiInput, InchiOptions)}. The AuxInfo of a staged generator
+ * is that of the classic API, whose reversibility layer lacks the <code>n</code> after the atom count, which does not
+ * change how it is read back, and its log identifies each molecule by a structure number.
+ */
+public class InchiGenerator implements AutoCloseable {
+
+  /**
+   * The stages of InChI generation, in the order they are run
+   */
+  public enum Stage {
+    /** Copying the input to the native molecule, for a staged generator including the checks of the structure and options */
+    MOLECULE,
+    /** Normalization, canonicalization and serialization of the InChI in one call, not recorded by a staged generator */
+    GENERATION,
+    /** Normalization of the structure e.g. of charges, tautomers and metal bonds, only recorded by a staged generator */
+    NORMALIZATION,
+    /** Canonical numbering of the normalized structure, only recorded by a staged generator */
+    CANONICALIZATION,
+    /** Writing the InChI, AuxInfo and log, only recorded by a staged generator */
+    SERIALIZATION,
+    /** Retrieving the AuxInfo, log and status, for a staged generator releasing the native results */
+    OUTPUT
+  }
+
+  private static final int STAGE_COUNT = Stage.values().length;
+
+  private final InchiOptions options;
+  private final boolean staged;
+  /** Handles that are not in use, the most recently returned first. Guards workerCount and closed */
+  private final Deque<Worker> idleWorkers = new ArrayDeque<>();
+  private int workerCount = 0;
+  private final LongAdder[] totalNanos = new LongAdder[STAGE_COUNT];
+  private final LongAdder moleculeCount = new LongAdder();
+  private boolean closed = false;
+
+  public InchiGenerator() {
+    this(InchiOptions.DEFAULT_OPTIONS);
+  }
+
+  public InchiGenerator(InchiOptions options) {
+    this(options, false);
+  }
+
+  /**
+   * @param options
+   * @param staged true to time normalization, canonicalization and serialization separately, at the cost of speed
+   */
+  public InchiGenerator(InchiOptions options, boolean staged) {
+    if (options == null) {
+      throw new IllegalArgumentException("options must not be null");
+    }
+    this.options = options;
+    this.staged = staged;
+    for (int i = 0; i < STAGE_COUNT; i++) {
+      totalNanos[i] = new LongAdder();
+    }
+  }
+
+  public InchiOptions getOptions() {
+    return options;
+  }
+
+  /**
+   * Whether normalization, canonicalization and serialization are timed separately
+   * @return true for a staged generator
+   */
+  public boolean isStaged() {
+    return staged;
+  }
+
+  /**
+   * Generates the InChI of a molecule, recording the time taken by each stage.
+   * @param inchiInput
+   * @return InChI, AuxInfo, status and stage timings
+   * @throws IllegalStateException if the generator has been closed, or the input is invalid
+   */
+  public InchiGeneratorOutput generate(InchiInput inchiInput) {
+    if (inchiInput == null) {
+      throw new IllegalArgumentException("inchiInput must not be null");
+    }
+    JnaInchi.checkInputSize(inchiInput);
+    Worker worker = acquireWorker();
+    long[] stageNanos = new long[STAGE_COUNT];
+    try {
+      InchiGeneratorOutput output = worker.generate(inchiInput, stageNanos);
+      moleculeCount.increment();
+      for (int i = 0; i < STAGE_COUNT; i++) {
+        totalNanos[i].add(stageNanos[i]);
+      }
+      return output;
+    }
+    finally {
+      releaseWorker(worker);
+    }
+  }
+
+  private Worker acquireWorker() {
+    synchronized (idleWorkers) {
+      if (closed) {
+        throw new IllegalStateException("InchiGenerator has been closed");
+      }
+      Worker worker = idleWorkers.pollFirst();
+      if (worker != null) {
+        return worker;
+      }
+    }
+    JnaInchi.checkLibrary();
+    Worker worker = staged ? new StagedWorker(options) : new IxaWorker(options);
+    synchronized (idleWorkers) {
+      if (closed) {
+        worker.destroy();
+        throw new IllegalStateException("InchiGenerator has been closed");
+      }
+      workerCount++;
+    }
+    return worker;
+  }
+
+  private void releaseWorker(Worker worker) {
+    synchronized (idleWorkers) {
+      if (closed) {
+        worker.destroy();
+        workerCount--;
+      }
+      else {
+        idleWorkers.addFirst(worker);
+      }
+    }
+  }
+
+  /**
+   * Number of sets of native handles, idle or in use
+   */
+  int getWorkerCount() {
+    synchronized (idleWorkers) {
+      return workerCount;
+    }
+  }
+
+  /**
+   * Total time spent in the given stage, summed over all molecules and threads
+   * @param stage
+   * @return time in nanoseconds
+   */
+  public long getTotalNanos(Stage stage) {
+    return totalNanos[stage.ordinal()].sum();
+  }
+
+  /**
+   * Number of molecules for which an InChI has been generated
+   * @return molecule count
+   */
+  public long getMoleculeCount() {
+    return moleculeCount.sum();
+  }
+
+  /**
+   * Resets the stage timings and molecule count
+   */
+  public void resetStatistics() {
+    for (LongAdder adder : totalNanos) {
+      adder.reset();
+    }
+    moleculeCount.reset();
+  }
+
+  /**
+   * Destroys the pooled native handles. Handles still in use are destroyed when the call using them returns.
+   */
+  @Override
+  public void close() {
+    synchronized (idleWorkers) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      for (Worker worker : idleWorkers) {
+        worker.destroy();
+      }
+      workerCount -= idleWorkers.size();
+      idleWorkers.clear();
+    }
+  }
+
+  /**
+   * Records the time since <code>start</code> as the time of the stage
+   * @return the current time
+   */
+  private static long endStage(long[] stageNanos, Stage stage, long start) {
+    long end = System.nanoTime();
+    stageNanos[stage.ordinal()] = end - start;
+    return end;
+  }
+
+  /**
+   * One set of native handles, used by one thread at a time
+   */
+  private interface Worker {
+    InchiGeneratorOutput generate(InchiInput inchiInput, long[] stageNanos);
+
+    void destroy();
+  }
+
+  /**
+   * IXA handles. The options are applied to the builder once, when it is created.
+   */
+  private static class IxaWorker implements Worker {
+    private final InchiOptions options;
+    private final IXA_STATUS_HANDLE logger;
+    private final IXA_MOL_HANDLE nativeMol;
+    private final IXA_INCHIBUILDER_HANDLE builder;
+
+    private IxaWorker(InchiOptions options) {
+      this.options = options;
+      logger = IxaFunctions.IXA_STATUS_Create();
+      nativeMol = IxaFunctions.IXA_MOL_Create(logger);
+      builder = IxaFunctions.IXA_INCHIBUILDER_Create(logger);
+      JnaInchi.setBuilderOptions(logger, builder, options);
+      IxaFunctions.IXA_STATUS_Clear(logger);
+    }
+
+    @Override
+    public InchiGeneratorOutput generate(InchiInput inchiInput, long[] stageNanos) {
+      try {
+        long time = System.nanoTime();
+        JnaInchi.addMolecule(nativeMol, logger, inchiInput);
+        JnaInchi.setChiralFlag(logger, nativeMol, options);
+        time = endStage(stageNanos, Stage.MOLECULE, time);
+
+        IxaFunctions.IXA_INCHIBUILDER_SetMolecule(logger, builder, nativeMol);
+        String inchi = IxaFunctions.IXA_INCHIBUILDER_GetInChI(logger, builder);
+        time = endStage(stageNanos, Stage.GENERATION, time);
+
+        String auxInfo = IxaFunctions.IXA_INCHIBUILDER_GetAuxInfo(logger, builder);
+        String log = IxaFunctions.IXA_INCHIBUILDER_GetLog(logger, builder);
+        String message = JnaInchi.getMessages(logger);
+        InchiStatus status = JnaInchi.getStatus(logger);
+        endStage(stageNanos, Stage.OUTPUT, time);
+        return new InchiGeneratorOutput(inchi, auxInfo, message, log, status, stageNanos);
+      }
+      finally {
+        IxaFunctions.IXA_MOL_Clear(logger, nativeMol);
+        IxaFunctions.IXA_STATUS_Clear(logger);
+      }
+    }
+
+    @Override
+    public void destroy() {
+      IxaFunctions.IXA_INCHIBUILDER_Destroy(logger, builder);
+      IxaFunctions.IXA_MOL_Destroy(logger, nativeMol);
+      IxaFunctions.IXA_STATUS_Destroy(logger);
+    }
+  }
+
+  /**
+   * Handle of the classic API's step-by-step generator. The options are passed with each molecule.
+   */
+  private static class StagedWorker implements Worker {
+    private final InchiOptions options;
+    private final Pointer generator;
+
+    private StagedWorker(InchiOptions options) {
+      this.options = options;
+      generator = InchiLibrary.INCHIGEN_Create();
+      if (generator == null) {
+        throw new IllegalStateException("Failed to create InChI generator");
+      }
+    }
+
+    @Override
+    public InchiGeneratorOutput generate(InchiInput inchiInput, long[] stageNanos) {
+      tagINCHIGEN_DATA genData = new tagINCHIGEN_DATA();
+      tagINCHI_Output nativeOutput = new tagINCHI_Output();
+      boolean reset = false;
+      try {
+        long time = System.nanoTime();
+        tagINCHI_Input nativeInput = JnaInchi.toNativeInput(inchiInput, options);
+        InchiStatus status = JnaInchi.getInchiStatus(InchiLibrary.INCHIGEN_Setup(generator, genData, nativeInput));
+        time = endStage(stageNanos, Stage.MOLECULE, time);
+
+        //Each step is only run if the previous ones succeeded, otherwise the reason is in the error string of genData
+        boolean serialized = false;
+        if (status != InchiStatus.ERROR) {
+          status = worst(status, InchiLibrary.INCHIGEN_DoNormalization(generator, genData));
+          time = endStage(stageNanos, Stage.NORMALIZATION, time);
+        }
+        if (status != InchiStatus.ERROR) {
+          status = worst(status, InchiLibrary.INCHIGEN_DoCanonicalization(generator, genData));
+          time = endStage(stageNanos, Stage.CANONICALIZATION, time);
+        }
+        if (status != InchiStatus.ERROR) {
+          status = worst(status, InchiLibrary.INCHIGEN_DoSerialization(generator, genData, nativeOutput));
+          time = endStage(stageNanos, Stage.SERIALIZATION, time);
+          serialized = true;
+        }
+
+        String inchi = nativeOutput.szInChI;
+        String auxInfo = nativeOutput.szAuxInfo;
+        String log = nativeOutput.szLog;
+        String message = serialized ? nativeOutput.szMessage : JnaInchi.toString(genData.pStrErrStruct);
+        InchiLibrary.INCHIGEN_Reset(generator, genData, nativeOutput);
+        reset = true;
+        endStage(stageNanos, Stage.OUTPUT, time);
+        return new InchiGeneratorOutput(inchi, auxInfo, message != null ? message : "", log, status, stageNanos);
+      }
+      finally {
+        if (!reset) {
+          InchiLibrary.INCHIGEN_Reset(generator, genData, nativeOutput);
+        }
+      }
+    }
+
+    private static InchiStatus worst(InchiStatus status, int ret) {
+      InchiStatus stepStatus = JnaInchi.getInchiStatus(ret);
+      return stepStatus.compareTo(status) > 0 ? stepStatus : status;
+    }
+
+    @Override
+    public void destroy() {
+      InchiLibrary.INCHIGEN_Destroy(generator);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import io.github.dan2097.jnainchi.InchiGenerator.Stage;
+
+public class InchiGeneratorOutput extends InchiOutput {
+
+  private final long[] stageNanos;
+
+  InchiGeneratorOutput(String inchi, String auxInfo, String message, String log, InchiStatus status, long[] stageNanos) {
+    super(inchi, auxInfo, message, log, status);
+    this.stageNanos = stageNanos.clone();
+  }
+
+  /**
+   * Time spent in the given stage
+   * @param stage
+   * @return time in nanoseconds
+   */
+  public long getStageNanos(Stage stage) {
+    return stageNanos[stage.ordinal()];
+  }
+
+  /**
+   * Time spent in all stages
+   * @return time in nanoseconds
+   */
+  public long getTotalNanos() {
+    long total = 0;
+    for (long nanos : stageNanos) {
+      total += nanos;
+    }
+    return total;
+  }
+}
@@ -0,0 +1,709 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming JSON serialization of {@link InchiInput}.
+ * <p>
+ * The JSON has an "atoms" array, a "bonds" array and, if there is stereochemistry, a "stereo" array, preceded by
+ * their counts. Atoms are referred to by their index in the "atoms" array, and an implicit hydrogen
+ * ({@link InchiStereo#STEREO_IMPLICIT_H}) in a stereo element by -1. Members with their default value, such as a zero
+ * charge or a single bond type, are omitted, as are coordinates when all atoms are at the origin:
+ * <pre>
+ * {
+ * "atomCount":2,
+ * "atoms":[
+ * {"index":0,"elname":"C","implicitH":-1},
+ * {"index":1,"elname":"O","charge":-1}
+ * ],
+ * "bondCount":1,
+ * "bonds":[
+ * {"originAtom":0,"targetAtom":1}
+ * ]}
+ * </pre>
+ * The writer appends to an {@link Appendable} as it goes, so its cost is linear in the size of the molecule,
+ * and the parser builds the InchiInput in a single pass over the text without an intermediate tree.
+ * The parser accepts members in any order and ignores members it does not know.
+ */
+public class InchiJson {
+
+  /** Marks a missing atom index */
+  private static final int NO_ATOM = Integer.MIN_VALUE;
+  private static final int IMPLICIT_H_INDEX = -1;
+  /** Limit on the nesting of unknown members, so that malicious input cannot overflow the stack */
+  private static final int MAX_DEPTH = 256;
+
+  private final CharSequence text;
+  private final int length;
+  private int pos = 0;
+
+  private InchiJson(CharSequence text) {
+    this.text = text;
+    this.length = text.length();
+  }
+
+  /**
+   * Serializes the InchiInput to a JSON string
+   * @param inchiInput
+   * @return JSON
+   * @throws IllegalArgumentException if a bond or stereo element refers to an atom that is not in the input
+   */
+  public static String toJson(InchiInput inchiInput) {
+    StringBuilder sb = new StringBuilder(64 + 64 * inchiInput.getAtoms().size());
+    try {
+      write(inchiInput, sb);
+    }
+    catch (IOException e) {
+      //StringBuilder does not throw IOException
+      throw new UncheckedIOException(e);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Serializes the InchiInput as JSON to the given Appendable
+   * @param inchiInput
+   * @param out
+   * @throws IOException if appending to out fails
+   * @throws IllegalArgumentException if a bond or stereo element refers to an atom that is not in the input
+   */
+  public static void write(InchiInput inchiInput, Appendable out) throws IOException {
+    if (inchiInput == null) {
+      throw new IllegalArgumentException("inchiInput must not be null");
+    }
+    if (out == null) {
+      throw new IllegalArgumentException("out must not be null");
+    }
+    List<InchiAtom> atoms = inchiInput.getAtoms();
+    List<InchiBond> bonds = inchiInput.getBonds();
+    List<InchiStereo> stereos = inchiInput.getStereos();
+    Map<InchiAtom, Integer> atomIndices = new IdentityHashMap<>(atoms.size());
+    boolean haveXYZ = false;
+    for (int i = 0; i < atoms.size(); i++) {
+      InchiAtom atom = atoms.get(i);
+      atomIndices.put(atom, i);
+      if (atom.getX() != 0 || atom.getY() != 0 || atom.getZ() != 0) {
+        haveXYZ = true;
+      }
+    }
+
+    out.append("{\n\"atomCount\":").append(Integer.toString(atoms.size())).append(",\n\"atoms\":[\n");
+    for (int i = 0; i < atoms.size(); i++) {
+      InchiAtom atom = atoms.get(i);
+      if (i > 0) {
+        out.append(",\n");
+      }
+      out.append("{\"index\":").append(Integer.toString(i));
+      out.append(",\"elname\":");
+      appendString(out, atom.getElName());
+      if (haveXYZ) {
+        appendDouble(out, "x", atom.getX());
+        appendDouble(out, "y", atom.getY());
+        appendDouble(out, "z", atom.getZ());
+      }
+      if (atom.getRadical() != InchiRadical.NONE) {
+        appendName(out, "radical", atom.getRadical());
+      }
+      appendNonZero(out, "charge", atom.getCharge());
+      appendNonZero(out, "isotopeMass", atom.getIsotopicMass());
+      appendNonZero(out, "implicitH", atom.getImplicitHydrogen());
+      appendNonZero(out, "implicitDeuterium", atom.getImplicitDeuterium());
+      appendNonZero(out, "implicitProtium", atom.getImplicitProtium());
+      appendNonZero(out, "implicitTritium", atom.getImplicitTritium());
+      out.append('}');
+    }
+    out.append("\n],\n\"bondCount\":").append(Integer.toString(bonds.size())).append(",\n\"bonds\":[\n");
+    for (int i = 0; i < bonds.size(); i++) {
+      InchiBond bond = bonds.get(i);
+      if (i > 0) {
+        out.append(",\n");
+      }
+      out.append("{\"originAtom\":").append(Integer.toString(indexOf(atomIndices, bond.getStart())));
+      out.append(",\"targetAtom\":").append(Integer.toString(indexOf(atomIndices, bond.getEnd())));
+      if (bond.getType() != InchiBondType.SINGLE) {
+        appendName(out, "type", bond.getType());
+      }
+      if (bond.getStereo() != InchiBondStereo.NONE) {
+        appendName(out, "stereo", bond.getStereo());
+      }
+      out.append('}');
+    }
+    out.append("\n]");
+    if (!stereos.isEmpty()) {
+      out.append(",\n\"stereoCount\":").append(Integer.toString(stereos.size())).append(",\n\"stereo\":[\n");
+      for (int i = 0; i < stereos.size(); i++) {
+        InchiStereo stereo = stereos.get(i);
+        if (i > 0) {
+          out.append(",\n");
+        }
+        out.append("{\"type\":");
+        appendString(out, stereo.getType().name());
+        if (stereo.getParity() != InchiStereoParity.NONE) {
+          appendName(out, "parity", stereo.getParity());
+        }
+        if (stereo.getCentralAtom() != null) {
+          out.append(",\"centralAtom\":").append(Integer.toString(indexOf(atomIndices, stereo.getCentralAtom())));
+        }
+        out.append(",\"neighbors\":[");
+        InchiAtom[] neighbors = stereo.getAtoms();
+        for (int j = 0; j < neighbors.length; j++) {
+          if (j > 0) {
+            out.append(',');
+          }
+          out.append(Integer.toString(neighbors[j] == InchiStereo.STEREO_IMPLICIT_H ? IMPLICIT_H_INDEX : indexOf(atomIndices, neighbors[j])));
+        }
+        out.append("]}");
+      }
+      out.append("\n]");
+    }
+    out.append('}');
+  }
+
+  private static int indexOf(Map<InchiAtom, Integer> atomIndices, InchiAtom atom) {
+    Integer index = atomIndices.get(atom);
+    if (index == null) {
+      throw new IllegalArgumentException("Atom is not in the InchiInput: " + (atom != null ? atom.getElName() : null));
+    }
+    return index;
+  }
+
+  private static void appendNonZero(Appendable out, String key, int value) throws IOException {
+    if (value != 0) {
+      out.append(",\"").append(key).append("\":").append(Integer.toString(value));
+    }
+  }
+
+  private static void appendName(Appendable out, String key, Enum<?> value) throws IOException {
+    out.append(",\"").append(key).append("\":\"").append(value.name()).append('"');
+  }
+
+  private static void appendDouble(Appendable out, String key, double value) throws IOException {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      throw new IllegalArgumentException(key + " coordinate is not finite: " + value);
+    }
+    out.append(",\"").append(key).append("\":");
+    if (value == (long) value && Math.abs(value) < 1e15) {
+      //also writes -0.0 as 0
+      out.append(Long.toString((long) value));
+    }
+    else {
+      out.append(Double.toString(value));
+    }
+  }
+
+  private static void appendString(Appendable out, String s) throws IOException {
+    if (s == null) {
+      out.append("null");
+      return;
+    }
+    out.append('"');
+    for (int i = 0, len = s.length(); i < len; i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.append('\\').append(c);
+      }
+      else if (c < 0x20) {
+        out.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+      }
+      else {
+        out.append(c);
+      }
+    }
+    out.append('"');
+  }
+
+  /**
+   * Reconstructs an InchiInput from JSON in the format written by {@link #write(InchiInput, Appendable)}
+   * @param json
+   * @return the InchiInput
+   * @throws IllegalArgumentException if the JSON is malformed or does not describe a valid molecule
+   */
+  public static InchiInput read(CharSequence json) {
+    if (json == null) {
+      throw new IllegalArgumentException("json must not be null");
+    }
+    InchiJson parser = new InchiJson(json);
+    InchiInput inchiInput = parser.readMolecule();
+    parser.skipWhitespace();
+    if (parser.pos != parser.length) {
+      throw parser.error("Unexpected content after JSON value");
+    }
+    return inchiInput;
+  }
+
+  private InchiInput readMolecule() {
+    List<InchiAtom> atoms = new ArrayList<>();
+    List<PendingBond> bonds = new ArrayList<>();
+    List<PendingStereo> stereos = new ArrayList<>();
+    expect('{');
+    if (!atEnd('}')) {
+      do {
+        switch (readKey()) {
+        case "atoms":
+          expect('[');
+          if (!atEnd(']')) {
+            do {
+              atoms.add(readAtom());
+            } while (nextElement(']'));
+          }
+          break;
+        case "bonds":
+          expect('[');
+          if (!atEnd(']')) {
+            do {
+              bonds.add(readBond());
+            } while (nextElement(']'));
+          }
+          break;
+        case "stereo":
+          expect('[');
+          if (!atEnd(']')) {
+            do {
+              stereos.add(readStereo());
+            } while (nextElement(']'));
+          }
+          break;
+        default:
+          skipValue(1);
+        }
+      } while (nextElement('}'));
+    }
+
+    //Bonds and stereo are resolved once all atoms are known, as members may appear in any order
+    InchiInput inchiInput = new InchiInput();
+    for (InchiAtom atom : atoms) {
+      inchiInput.addAtom(atom);
+    }
+    for (PendingBond bond : bonds) {
+      inchiInput.addBond(new InchiBond(getAtom(atoms, bond.originAtom, "originAtom"),
+          getAtom(atoms, bond.targetAtom, "targetAtom"), bond.type, bond.stereo));
+    }
+    for (PendingStereo stereo : stereos) {
+      InchiAtom[] neighbors = new InchiAtom[stereo.neighbors.length];
+      for (int i = 0; i < neighbors.length; i++) {
+        int index = stereo.neighbors[i];
+        neighbors[i] = index == IMPLICIT_H_INDEX ? InchiStereo.STEREO_IMPLICIT_H : getAtom(atoms, index, "neighbors");
+      }
+      InchiAtom centralAtom = stereo.centralAtom == NO_ATOM ? null : getAtom(atoms, stereo.centralAtom, "centralAtom");
+      inchiInput.addStereo(new InchiStereo(neighbors, centralAtom, stereo.type, stereo.parity));
+    }
+    return inchiInput;
+  }
+
+  private static InchiAtom getAtom(List<InchiAtom> atoms, int index, String key) {
+    if (index == NO_ATOM) {
+      throw new IllegalArgumentException(key + " is missing");
+    }
+    if (index < 0 || index >= atoms.size()) {
+      throw new IllegalArgumentException(key + " atom index out of range: " + index);
+    }
+    return atoms.get(index);
+  }
+
+  private InchiAtom readAtom() {
+    InchiAtom atom = new InchiAtom(null);
+    expect('{');
+    if (!atEnd('}')) {
+      do {
+        switch (readKey()) {
+        case "elname":
+          atom.setElName(readString());
+          break;
+        case "x":
+          atom.setX(readDouble());
+          break;
+        case "y":
+          atom.setY(readDouble());
+          break;
+        case "z":
+          atom.setZ(readDouble());
+          break;
+        case "radical":
+          atom.setRadical(readEnum(InchiRadical.values(), "radical"));
+          break;
+        case "charge":
+          atom.setCharge(readInt());
+          break;
+        case "isotopeMass":
+          atom.setIsotopicMass(readInt());
+          break;
+        case "implicitH":
+          atom.setImplicitHydrogen(readInt());
+          break;
+        case "implicitDeuterium":
+          atom.setImplicitDeuterium(readInt());
+          break;
+        case "implicitProtium":
+          atom.setImplicitProtium(readInt());
+          break;
+        case "implicitTritium":
+          atom.setImplicitTritium(readInt());
+          break;
+        default:
+          skipValue(3);
+        }
+      } while (nextElement('}'));
+    }
+    if (atom.getElName() == null) {
+      throw error("Atom has no elname");
+    }
+    return atom;
+  }
+
+  private PendingBond readBond() {
+    PendingBond bond = new PendingBond();
+    expect('{');
+    if (!atEnd('}')) {
+      do {
+        switch (readKey()) {
+        case "originAtom":
+          bond.originAtom = readInt();
+          break;
+        case "targetAtom":
+          bond.targetAtom = readInt();
+          break;
+        case "type":
+          bond.type = readEnum(InchiBondType.values(), "bond type");
+          break;
+        case "stereo":
+          bond.stereo = readEnum(InchiBondStereo.values(), "bond stereo");
+          break;
+        default:
+          skipValue(3);
+        }
+      } while (nextElement('}'));
+    }
+    return bond;
+  }
+
+  private PendingStereo readStereo() {
+    PendingStereo stereo = new PendingStereo();
+    expect('{');
+    if (!atEnd('}')) {
+      do {
+        switch (readKey()) {
+        case "type":
+          stereo.type = readEnum(InchiStereoType.values(), "stereo type");
+          break;
+        case "parity":
+          stereo.parity = readEnum(InchiStereoParity.values(), "parity");
+          break;
+        case "centralAtom":
+          stereo.centralAtom = readInt();
+          break;
+        case "neighbors":
+          int[] neighbors = new int[4];
+          int count = 0;
+          expect('[');
+          if (!atEnd(']')) {
+            do {
+              if (count == neighbors.length) {
+                throw error("Stereo must have 4 neighbors");
+              }
+              neighbors[count++] = readInt();
+            } while (nextElement(']'));
+          }
+          if (count != neighbors.length) {
+            throw error("Stereo must have 4 neighbors");
+          }
+          stereo.neighbors = neighbors;
+          break;
+        default:
+          skipValue(3);
+        }
+      } while (nextElement('}'));
+    }
+    if (stereo.type == null) {
+      throw error("Stereo has no type");
+    }
+    if (stereo.neighbors == null) {
+      throw error("Stereo has no neighbors");
+    }
+    return stereo;
+  }
+
+  private <E extends Enum<E>> E readEnum(E[] values, String name) {
+    int start = pos;
+    String s = readString();
+    for (E value : values) {
+      if (value.name().equalsIgnoreCase(s)) {
+        return value;
+      }
+    }
+    pos = start;
+    throw error("Unknown " + name + " \"" + s + "\"");
+  }
+
+  /**
+   * Reads the key of an object member and the following ':'
+   */
+  private String readKey() {
+    String key = readString();
+    expect(':');
+    return key;
+  }
+
+  /**
+   * Consumes the closing bracket of an empty object or array
+   * @return whether the object or array is empty
+   */
+  private boolean atEnd(char close) {
+    skipWhitespace();
+    if (pos < length && text.charAt(pos) == close) {
+      pos++;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Consumes the separator after a member or element
+   * @return true if another member or element follows, false at the closing bracket
+   */
+  private boolean nextElement(char close) {
+    skipWhitespace();
+    char c = peek();
+    pos++;
+    if (c == ',') {
+      return true;
+    }
+    if (c == close) {
+      return false;
+    }
+    pos--;
+    throw error("Expected ',' or '" + close + "'");
+  }
+
+  /**
+   * Skips a value of an unknown member
+   * @param depth number of objects and arrays the value is nested in
+   */
+  private void skipValue(int depth) {
+    if (depth > MAX_DEPTH) {
+      throw error("JSON is nested more than " + MAX_DEPTH + " levels deep");
+    }
+    skipWhitespace();
+    char c = peek();
+    switch (c) {
+    case '{':
+      pos++;
+      if (!atEnd('}')) {
+        do {
+          readKey();
+          skipValue(depth + 1);
+        } while (nextElement('}'));
+      }
+      break;
+    case '[':
+      pos++;
+      if (!atEnd(']')) {
+        do {
+          skipValue(depth + 1);
+        } while (nextElement(']'));
+      }
+      break;
+    case '"':
+      readString();
+      break;
+    case 't':
+      expectLiteral("true");
+      break;
+    case 'f':
+      expectLiteral("false");
+      break;
+    case 'n':
+      expectLiteral("null");
+      break;
+    default:
+      readDouble();
+    }
+  }
+
+  private String readString() {
+    skipWhitespace();
+    if (peek() != '"') {
+      throw error("Expected string");
+    }
+    int start = ++pos;
+    //Fast path for strings without escapes
+    while (pos < length) {
+      char c = text.charAt(pos);
+      if (c == '"') {
+        return text.subSequence(start, pos++).toString();
+      }
+      if (c == '\\') {
+        break;
+      }
+      pos++;
+    }
+    StringBuilder sb = new StringBuilder().append(text, start, pos);
+    while (true) {
+      char c = peek();
+      pos++;
+      if (c == '"') {
+        return sb.toString();
+      }
+      if (c != '\\') {
+        sb.append(c);
+        continue;
+      }
+      char e = peek();
+      pos++;
+      switch (e) {
+      case 'b':
+        sb.append('\b');
+        break;
+      case 'f':
+        sb.append('\f');
+        break;
+      case 'n':
+        sb.append('\n');
+        break;
+      case 'r':
+        sb.append('\r');
+        break;
+      case 't':
+        sb.append('\t');
+        break;
+      case 'u':
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+          int digit = Character.digit(peek(), 16);
+          if (digit < 0) {
+            throw error("Invalid unicode escape");
+          }
+          value = (value << 4) | digit;
+          pos++;
+        }
+        sb.append((char) value);
+        break;
+      default:
+        sb.append(e);
+      }
+    }
+  }
+
+  private int readInt() {
+    skipWhitespace();
+    int start = pos;
+    boolean negative = pos < length && text.charAt(pos) == '-';
+    if (negative) {
+      pos++;
+    }
+    int digitStart = pos;
+    long value = 0;
+    while (pos < length) {
+      char c = text.charAt(pos);
+      if (c < '0' || c > '9') {
+        break;
+      }
+      value = value * 10 + (c - '0');
+      if (value > Integer.MAX_VALUE) {
+        pos = start;
+        throw error("Integer out of range");
+      }
+      pos++;
+    }
+    if (pos == digitStart || (pos < length && isNumberChar(text.charAt(pos)))) {
+      pos = start;
+      throw error("Expected an integer");
+    }
+    return (int) (negative ? -value : value);
+  }
+
+  private double readDouble() {
+    skipWhitespace();
+    int start = pos;
+    while (pos < length && isNumberChar(text.charAt(pos))) {
+      pos++;
+    }
+    try {
+      if (start == pos) {
+        throw new NumberFormatException();
+      }
+      return Double.parseDouble(text.subSequence(start, pos).toString());
+    }
+    catch (NumberFormatException e) {
+      pos = start;
+      throw error("Invalid number");
+    }
+  }
+
+  private static boolean isNumberChar(char c) {
+    return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+  }
+
+  private void expect(char expected) {
+    skipWhitespace();
+    if (peek() != expected) {
+      throw error("Expected '" + expected + "'");
+    }
+    pos++;
+  }
+
+  private void expectLiteral(String literal) {
+    for (int i = 0; i < literal.length(); i++) {
+      if (pos + i >= length || text.charAt(pos + i) != literal.charAt(i)) {
+        throw error("Invalid value");
+      }
+    }
+    pos += literal.length();
+  }
+
+  private char peek() {
+    if (pos >= length) {
+      throw error("Unexpected end of JSON");
+    }
+    return text.charAt(pos);
+  }
+
+  private void skipWhitespace() {
+    while (pos < length) {
+      char c = text.charAt(pos);
+      if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+        return;
+      }
+      pos++;
+    }
+  }
+
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException(message + " at position " + pos);
+  }
+
+  private static class PendingBond {
+    private int originAtom = NO_ATOM;
+    private int targetAtom = NO_ATOM;
+    private InchiBondType type = InchiBondType.SINGLE;
+    private InchiBondStereo stereo = InchiBondStereo.NONE;
+  }
+
+  private static class PendingStereo {
+    private InchiStereoType type;
+    private InchiStereoParity parity = InchiStereoParity.NONE;
+    private int centralAtom = NO_ATOM;
+    private int[] neighbors;
+  }
+}
@@ -0,0 +1,219 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+/**
+ * Compact binary encoding of InChIKeys.
+ * <p>
+ * An InChIKey is 27 characters: 14 letters, '-', 10 letters (8 hash letters, the standard flag and the version), '-' and the protonation letter.
+ * The 25 letters are each packed into 5 bits, most significant first, giving 125 bits which are stored in 16 bytes, or equivalently two longs.
+ * The encoding preserves order: comparing encoded keys as unsigned big-endian values gives the same order as comparing the InChIKey strings.
+ */
+public class InchiKeyCodec {
+
+  /** Number of bytes in an encoded InChIKey */
+  public static final int ENCODED_LENGTH = 16;
+
+  private static final int INCHIKEY_LENGTH = 27;
+  private static final int LETTER_COUNT = 25;
+  private static final int BITS_PER_LETTER = 5;
+  /** The high long holds letters 0-11 and the top 4 bits of letter 12, the low long holds the bottom bit of letter 12 and letters 13-24 */
+  private static final int HIGH_LETTERS = 12;
+
+  private InchiKeyCodec() {
+  }
+
+  /**
+   * Encodes an InChIKey into 16 bytes
+   * @param inchiKey
+   * @return encoded InChIKey
+   * @throws IllegalArgumentException if the InChIKey does not have the layout of an InChIKey
+   */
+  public static byte[] encode(String inchiKey) {
+    byte[] bytes = new byte[ENCODED_LENGTH];
+    encode(inchiKey, bytes, 0);
+    return bytes;
+  }
+
+  /**
+   * Encodes an InChIKey into 16 bytes of the given array
+   * @param inchiKey
+   * @param dest
+   * @param offset position in dest at which to write the encoded InChIKey
+   * @throws IllegalArgumentException if the InChIKey does not have the layout of an InChIKey
+   */
+  public static void encode(String inchiKey, byte[] dest, int offset) {
+    checkLayout(inchiKey);
+    long high = highBits(inchiKey);
+    long low = lowBits(inchiKey);
+    for (int i = 0; i < 8; i++) {
+      dest[offset + i] = (byte) (high >>> (56 - 8 * i));
+      dest[offset + 8 + i] = (byte) (low >>> (56 - 8 * i));
+    }
+  }
+
+  /**
+   * Returns the most significant 64 bits of the encoded InChIKey
+   * @param inchiKey
+   * @return high bits
+   * @throws IllegalArgumentException if the InChIKey does not have the layout of an InChIKey
+   */
+  public static long encodeHigh(String inchiKey) {
+    checkLayout(inchiKey);
+    return highBits(inchiKey);
+  }
+
+  /**
+   * Returns the least significant 64 bits of the encoded InChIKey
+   * @param inchiKey
+   * @return low bits
+   * @throws IllegalArgumentException if the InChIKey does not have the layout of an InChIKey
+   */
+  public static long encodeLow(String inchiKey) {
+    checkLayout(inchiKey);
+    return lowBits(inchiKey);
+  }
+
+  private static long highBits(String inchiKey) {
+    long value = 0;
+    for (int i = 0; i < HIGH_LETTERS; i++) {
+      value = (value << BITS_PER_LETTER) | letterValue(inchiKey, letterPosition(i));
+    }
+    //12 letters fill 60 bits, the top 4 bits of the 13th letter complete the long
+    return (value << 4) | (letterValue(inchiKey, letterPosition(HIGH_LETTERS)) >>> 1);
+  }
+
+  private static long lowBits(String inchiKey) {
+    //bottom bit of the 13th letter, then the remaining 12 letters, then 3 unused bits
+    long value = letterValue(inchiKey, letterPosition(HIGH_LETTERS)) & 1;
+    for (int i = HIGH_LETTERS + 1; i < LETTER_COUNT; i++) {
+      value = (value << BITS_PER_LETTER) | letterValue(inchiKey, letterPosition(i));
+    }
+    return value << 3;
+  }
+
+  /**
+   * Encodes the InChIKey of an InchiKeyOutput
+   * @param output
+   * @return encoded InChIKey
+   * @throws IllegalArgumentException if the output does not contain an InChIKey
+   */
+  public static byte[] encode(InchiKeyOutput output) {
+    return encode(output.getInchiKey());
+  }
+
+  /**
+   * Decodes an InChIKey from 16 bytes
+   * @param bytes
+   * @param offset
+   * @return InChIKey string
+   */
+  public static String decode(byte[] bytes, int offset) {
+    long high = 0;
+    long low = 0;
+    for (int i = 0; i < 8; i++) {
+      high = (high << 8) | (bytes[offset + i] & 0xFF);
+      low = (low << 8) | (bytes[offset + 8 + i] & 0xFF);
+    }
+    return decode(high, low);
+  }
+
+  /**
+   * Decodes an InChIKey from 16 bytes
+   * @param bytes
+   * @return InChIKey string
+   */
+  public static String decode(byte[] bytes) {
+    return decode(bytes, 0);
+  }
+
+  /**
+   * Decodes an InChIKey from its high and low 64 bits
+   * @param high
+   * @param low
+   * @return InChIKey string
+   */
+  public static String decode(long high, long low) {
+    char[] chars = new char[INCHIKEY_LENGTH];
+    chars[14] = '-';
+    chars[25] = '-';
+    for (int i = 0; i < HIGH_LETTERS; i++) {
+      int shift = 64 - BITS_PER_LETTER * (i + 1);
+      chars[letterPosition(i)] = letterChar((int) ((high >>> shift) & 0x1F));
+    }
+    int split = (int) (((high & 0xF) << 1) | (low >>> 63));
+    chars[letterPosition(HIGH_LETTERS)] = letterChar(split);
+    for (int i = HIGH_LETTERS + 1; i < LETTER_COUNT; i++) {
+      int shift = 63 - BITS_PER_LETTER * (i - HIGH_LETTERS);
+      chars[letterPosition(i)] = letterChar((int) ((low >>> shift) & 0x1F));
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Decodes an InChIKey into an InchiKeyOutput with status {@link InchiKeyStatus#OK}.
+   * The hash extensions are not stored in the encoding so are empty
+   * @param bytes
+   * @param offset
+   * @return InchiKeyOutput
+   */
+  public static InchiKeyOutput toInchiKeyOutput(byte[] bytes, int offset) {
+    return new InchiKeyOutput(decode(bytes, offset), InchiKeyStatus.OK, "", "");
+  }
+
+  static InchiKeyOutput toInchiKeyOutput(long high, long low) {
+    return new InchiKeyOutput(decode(high, low), InchiKeyStatus.OK, "", "");
+  }
+
+  /**
+   * Maps the index of a letter (0-24) to its position in the InChIKey string, skipping the two hyphens
+   */
+  private static int letterPosition(int letterIdx) {
+    if (letterIdx < 14) {
+      return letterIdx;
+    }
+    if (letterIdx < 24) {
+      return letterIdx + 1;
+    }
+    return letterIdx + 2;
+  }
+
+  private static long letterValue(String inchiKey, int position) {
+    return inchiKey.charAt(position) - 'A';
+  }
+
+  private static char letterChar(int value) {
+    if (value >= 26) {
+      throw new IllegalArgumentException("Invalid encoded InChIKey");
+    }
+    return (char) ('A' + value);
+  }
+
+  private static void checkLayout(String inchiKey) {
+    if (inchiKey == null || inchiKey.length() != INCHIKEY_LENGTH || inchiKey.charAt(14) != '-' || inchiKey.charAt(25) != '-') {
+      throw new IllegalArgumentException("Not an InChIKey: " + inchiKey);
+    }
+    for (int i = 0; i < LETTER_COUNT; i++) {
+      char c = inchiKey.charAt(letterPosition(i));
+      if (c < 'A' || c > 'Z') {
+        throw new IllegalArgumentException("Not an InChIKey: " + inchiKey);
+      }
+    }
+  }
+
+}
@@ -23,12 +23,18 @@ public class InchiKeyOutput {
   private final InchiKeyStatus status;
   private final String szXtra1;
   private final String szXtra2;
+  private final String message;
   
   InchiKeyOutput(String inchiKey, InchiKeyStatus status, String szXtra1, String szXtra2) {
+    this(inchiKey, status, szXtra1, szXtra2, null);
+  }
+
+  InchiKeyOutput(String inchiKey, InchiKeyStatus status, String szXtra1, String szXtra2, String message) {
     this.inchiKey = inchiKey;
     this.status = status;
     this.szXtra1 = szXtra1;
     this.szXtra2 = szXtra2;
+    this.message = message;
   }
 
   public String getInchiKey() {
@@ -55,4 +61,13 @@ public class InchiKeyOutput {
     return szXtra2;
   }
 
+  /**
+   * Returns why the InChIKey could not be generated, where this is known beyond the status
+   * e.g. the message of an exception thrown by the engine
+   * @return the message, or null
+   */
+  public String getMessage() {
+    return message;
+  }
+
 }
@@ -0,0 +1,423 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable sorted set of InChIKeys stored off-heap, using 16 bytes per key (see {@link InchiKeyCodec}).
+ * <p>
+ * Keys are stored in direct buffers, in segments of up to 2^26 keys, so the set is not limited to 2GB and does not contribute to GC pressure.
+ * Lookup uses interpolation search, which takes advantage of InChIKeys being uniformly distributed hashes, falling back to binary search.
+ * <p>
+ * Sets are created by bulk loading using {@link InchiKeySetBuilder}.
+ */
+public class InchiKeySet implements Iterable<String> {
+
+  private static final int SEGMENT_SHIFT = 26;
+  private static final long SEGMENT_KEYS = 1L << SEGMENT_SHIFT;
+  private static final long SEGMENT_MASK = SEGMENT_KEYS - 1;
+  private static final int INTERPOLATION_STEPS = 8;
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  private final LongBuffer[] segments;
+  private final long size;
+
+  private InchiKeySet(LongBuffer[] segments, long size) {
+    this.segments = segments;
+    this.size = size;
+  }
+
+  /**
+   * Creates a set from the given InChIKeys
+   * @param inchiKeys
+   * @return set
+   * @throws IllegalArgumentException if any string does not have the layout of an InChIKey
+   */
+  public static InchiKeySet of(Iterable<String> inchiKeys) {
+    return new InchiKeySetBuilder().addAll(inchiKeys).build();
+  }
+
+  /**
+   * Number of distinct InChIKeys in the set
+   * @return size
+   */
+  public long size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Whether the set contains the given InChIKey
+   * @param inchiKey
+   * @return true if present, false if absent or not an InChIKey
+   */
+  public boolean contains(String inchiKey) {
+    return indexOf(inchiKey) >= 0;
+  }
+
+  /**
+   * Whether the set contains the InChIKey of the given output
+   * @param output
+   * @return true if present
+   */
+  public boolean contains(InchiKeyOutput output) {
+    return contains(output.getInchiKey());
+  }
+
+  /**
+   * Returns the index of the given InChIKey in sorted order
+   * @param inchiKey
+   * @return the index if present, otherwise (-(insertion point) - 1). Strings that are not InChIKeys give -1
+   */
+  public long indexOf(String inchiKey) {
+    long high;
+    long low;
+    try {
+      high = InchiKeyCodec.encodeHigh(inchiKey);
+      low = InchiKeyCodec.encodeLow(inchiKey);
+    }
+    catch (IllegalArgumentException e) {
+      return -1;
+    }
+    return indexOf(high, low);
+  }
+
+  private long indexOf(long high, long low) {
+    long from = 0;
+    long to = size - 1;
+    int steps = 0;
+    while (from <= to) {
+      long mid;
+      long fromHigh = high(from);
+      long toHigh = high(to);
+      if (steps++ < INTERPOLATION_STEPS && Long.compareUnsigned(fromHigh, toHigh) < 0 &&
+          Long.compareUnsigned(fromHigh, high) <= 0 && Long.compareUnsigned(high, toHigh) <= 0) {
+        double fraction = (toDouble(high) - toDouble(fromHigh)) / (toDouble(toHigh) - toDouble(fromHigh));
+        mid = from + (long) (fraction * (to - from));
+        if (mid < from) {
+          mid = from;
+        }
+        else if (mid > to) {
+          mid = to;
+        }
+      }
+      else {
+        mid = (from + to) >>> 1;
+      }
+      int cmp = compare(high(mid), low(mid), high, low);
+      if (cmp < 0) {
+        from = mid + 1;
+      }
+      else if (cmp > 0) {
+        to = mid - 1;
+      }
+      else {
+        return mid;
+      }
+    }
+    return -(from + 1);
+  }
+
+  /**
+   * Returns the InChIKey at the given index in sorted order
+   * @param index
+   * @return InChIKey
+   */
+  public String getInchiKey(long index) {
+    checkIndex(index);
+    return InchiKeyCodec.decode(high(index), low(index));
+  }
+
+  /**
+   * Returns the InChIKey at the given index in sorted order as an InchiKeyOutput
+   * @param index
+   * @return InchiKeyOutput with status OK and no hash extensions
+   */
+  public InchiKeyOutput getInchiKeyOutput(long index) {
+    checkIndex(index);
+    return InchiKeyCodec.toInchiKeyOutput(high(index), low(index));
+  }
+
+  /**
+   * Iterates over the InChIKeys in sorted order
+   */
+  @Override
+  public Iterator<String> iterator() {
+    return new Iterator<String>() {
+      private long next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return next < size;
+      }
+
+      @Override
+      public String next() {
+        if (next >= size) {
+          throw new NoSuchElementException();
+        }
+        return getInchiKey(next++);
+      }
+    };
+  }
+
+  private void checkIndex(long index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+  }
+
+  private long high(long index) {
+    return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) ((index & SEGMENT_MASK) << 1));
+  }
+
+  private long low(long index) {
+    return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (((index & SEGMENT_MASK) << 1) + 1));
+  }
+
+  private static int compare(long high1, long low1, long high2, long low2) {
+    int cmp = Long.compareUnsigned(high1, high2);
+    return cmp != 0 ? cmp : Long.compareUnsigned(low1, low2);
+  }
+
+  private static double toDouble(long unsigned) {
+    return (double) (unsigned >>> 1) * 2.0;
+  }
+
+  /**
+   * Bulk loads InChIKeys into an {@link InchiKeySet}. Keys may be added in any order and may contain duplicates.
+   * Keys are encoded directly into off-heap storage as they are added; {@link #build()} then sorts and removes duplicates in place.
+   * A builder may only be built once.
+   */
+  public static class InchiKeySetBuilder {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private LongBuffer[] segments = new LongBuffer[0];
+    private long size = 0;
+    private boolean built = false;
+
+    public InchiKeySetBuilder() {
+    }
+
+    /**
+     * @param expectedSize expected number of keys, used to size the off-heap storage
+     */
+    public InchiKeySetBuilder(long expectedSize) {
+      ensureCapacity(Math.max(expectedSize, 1));
+    }
+
+    /**
+     * @param inchiKey
+     * @return this builder
+     * @throws IllegalArgumentException if the string does not have the layout of an InChIKey
+     */
+    public InchiKeySetBuilder add(String inchiKey) {
+      long high = InchiKeyCodec.encodeHigh(inchiKey);
+      long low = InchiKeyCodec.encodeLow(inchiKey);
+      add(high, low);
+      return this;
+    }
+
+    /**
+     * @param output
+     * @return this builder
+     * @throws IllegalArgumentException if the output does not contain an InChIKey
+     */
+    public InchiKeySetBuilder add(InchiKeyOutput output) {
+      return add(output.getInchiKey());
+    }
+
+    public InchiKeySetBuilder addAll(Iterable<String> inchiKeys) {
+      for (String inchiKey : inchiKeys) {
+        add(inchiKey);
+      }
+      return this;
+    }
+
+    private void add(long high, long low) {
+      if (built) {
+        throw new IllegalStateException("InchiKeySet has already been built");
+      }
+      ensureCapacity(size + 1);
+      set(size++, high, low);
+    }
+
+    public InchiKeySet build() {
+      if (built) {
+        throw new IllegalStateException("InchiKeySet has already been built");
+      }
+      built = true;
+      if (!isSorted()) {
+        sort(0, size - 1);
+      }
+      long distinct = removeDuplicates();
+      return new InchiKeySet(segments, distinct);
+    }
+
+    private void ensureCapacity(long required) {
+      long capacity = capacity();
+      if (required <= capacity) {
+        return;
+      }
+      int lastSegment = segments.length - 1;
+      if (lastSegment >= 0 && segments[lastSegment].capacity() < SEGMENT_KEYS * 2) {
+        //grow the last, partially sized, segment
+        long lastSegmentKeys = segments[lastSegment].capacity() / 2;
+        long neededInLast = Math.min(SEGMENT_KEYS, required - (long) lastSegment * SEGMENT_KEYS);
+        long newKeys = Math.min(SEGMENT_KEYS, Math.max(lastSegmentKeys * 2, neededInLast));
+        LongBuffer grown = allocate(newKeys);
+        LongBuffer old = segments[lastSegment].duplicate();
+        old.clear();
+        grown.put(old);
+        grown.clear();
+        segments[lastSegment] = grown;
+      }
+      while (capacity() < required) {
+        long remaining = required - capacity();
+        long newKeys = segments.length == 0 ? Math.max(remaining, INITIAL_CAPACITY) : remaining;
+        LongBuffer[] newSegments = new LongBuffer[segments.length + 1];
+        System.arraycopy(segments, 0, newSegments, 0, segments.length);
+        newSegments[segments.length] = allocate(Math.min(SEGMENT_KEYS, newKeys));
+        segments = newSegments;
+      }
+    }
+
+    private long capacity() {
+      if (segments.length == 0) {
+        return 0;
+      }
+      return (long) (segments.length - 1) * SEGMENT_KEYS + segments[segments.length - 1].capacity() / 2;
+    }
+
+    private static LongBuffer allocate(long keys) {
+      return ByteBuffer.allocateDirect((int) (keys * InchiKeyCodec.ENCODED_LENGTH)).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    private long high(long index) {
+      return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) ((index & SEGMENT_MASK) << 1));
+    }
+
+    private long low(long index) {
+      return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (((index & SEGMENT_MASK) << 1) + 1));
+    }
+
+    private void set(long index, long high, long low) {
+      LongBuffer segment = segments[(int) (index >>> SEGMENT_SHIFT)];
+      int pos = (int) ((index & SEGMENT_MASK) << 1);
+      segment.put(pos, high);
+      segment.put(pos + 1, low);
+    }
+
+    private int compareAt(long i, long j) {
+      return compare(high(i), low(i), high(j), low(j));
+    }
+
+    private void swap(long i, long j) {
+      long high = high(i);
+      long low = low(i);
+      set(i, high(j), low(j));
+      set(j, high, low);
+    }
+
+    private boolean isSorted() {
+      for (long i = 1; i < size; i++) {
+        if (compareAt(i - 1, i) > 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * In-place quicksort with median-of-three pivot. Recurses into the smaller partition so stack depth is logarithmic
+     */
+    private void sort(long from, long to) {
+      while (to - from >= INSERTION_SORT_THRESHOLD) {
+        long mid = (from + to) >>> 1;
+        if (compareAt(mid, from) < 0) {
+          swap(mid, from);
+        }
+        if (compareAt(to, from) < 0) {
+          swap(to, from);
+        }
+        if (compareAt(to, mid) < 0) {
+          swap(to, mid);
+        }
+        long pivotHigh = high(mid);
+        long pivotLow = low(mid);
+        long i = from;
+        long j = to;
+        while (i <= j) {
+          while (compare(high(i), low(i), pivotHigh, pivotLow) < 0) {
+            i++;
+          }
+          while (compare(high(j), low(j), pivotHigh, pivotLow) > 0) {
+            j--;
+          }
+          if (i <= j) {
+            swap(i++, j--);
+          }
+        }
+        if (j - from < to - i) {
+          sort(from, j);
+          from = i;
+        }
+        else {
+          sort(i, to);
+          to = j;
+        }
+      }
+      for (long i = from + 1; i <= to; i++) {
+        long high = high(i);
+        long low = low(i);
+        long j = i - 1;
+        while (j >= from && compare(high(j), low(j), high, low) > 0) {
+          set(j + 1, high(j), low(j));
+          j--;
+        }
+        set(j + 1, high, low);
+      }
+    }
+
+    private long removeDuplicates() {
+      if (size == 0) {
+        return 0;
+      }
+      long distinct = 1;
+      for (long i = 1; i < size; i++) {
+        if (compareAt(distinct - 1, i) != 0) {
+          if (distinct != i) {
+            set(distinct, high(i), low(i));
+          }
+          distinct++;
+        }
+      }
+      return distinct;
+    }
+  }
+
+}
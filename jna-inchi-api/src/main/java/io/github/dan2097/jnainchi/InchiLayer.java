@@ -0,0 +1,104 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+/**
+ * The layers of an InChI string, as recognised by {@link InchiLayers}
+ */
+public enum InchiLayer {
+
+  /** Chemical formula e.g. C3H5Br */
+  FORMULA('\0'),
+
+  /** Connections (/c) */
+  CONNECTIONS('c'),
+
+  /** Hydrogen atoms, including mobile hydrogen (/h) */
+  HYDROGENS('h'),
+
+  /** Charge (/q) */
+  CHARGE('q'),
+
+  /** Protonation (/p) */
+  PROTONS('p'),
+
+  /** Double bond stereo (/b) */
+  DOUBLE_BOND_STEREO('b'),
+
+  /** Tetrahedral stereo (/t) */
+  TETRAHEDRAL_STEREO('t'),
+
+  /** Whether the tetrahedral stereo is inverted (/m) */
+  STEREO_INVERTED('m'),
+
+  /** Stereo type i.e. absolute, relative or racemic (/s) */
+  STEREO_TYPE('s'),
+
+  /** Isotopic layer (/i), including its isotopic hydrogen and isotopic stereo sublayers */
+  ISOTOPIC('i'),
+
+  /** Fixed-H layer (/f), including its sublayers */
+  FIXED_H('f'),
+
+  /** Reconnected metals layer (/r), which is itself a complete InChI body */
+  RECONNECTED('r');
+
+  private final char prefix;
+
+  private InchiLayer(char prefix) {
+    this.prefix = prefix;
+  }
+
+  /**
+   * The character following '/' that introduces this layer, or '\0' for the formula which has no prefix
+   * @return prefix character
+   */
+  public char getPrefix() {
+    return prefix;
+  }
+
+  static InchiLayer of(char prefix) {
+    switch (prefix) {
+    case 'c':
+      return CONNECTIONS;
+    case 'h':
+      return HYDROGENS;
+    case 'q':
+      return CHARGE;
+    case 'p':
+      return PROTONS;
+    case 'b':
+      return DOUBLE_BOND_STEREO;
+    case 't':
+      return TETRAHEDRAL_STEREO;
+    case 'm':
+      return STEREO_INVERTED;
+    case 's':
+      return STEREO_TYPE;
+    case 'i':
+      return ISOTOPIC;
+    case 'f':
+      return FIXED_H;
+    case 'r':
+      return RECONNECTED;
+    default:
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,279 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+/**
+ * Pure-Java view of the layers of an InChI string, allowing e.g. the formula or charge layer to be retrieved,
+ * or two InChIs to be compared on only some of their layers, without calling the InChI library.
+ * <p>
+ * The InChI is scanned lazily on first query and only the offsets of each layer are recorded.
+ * Instances may be shared between threads; concurrent first queries may each scan the InChI, with identical results.
+ * Layer values are only materialised as Strings when requested; presence checks and comparisons do not allocate.
+ * <p>
+ * The main layer sublayers (formula, /c, /h), charge layers (/q, /p) and stereo layers (/b, /t, /m, /s) refer to the first occurrence of these
+ * before any isotopic, fixed-H or reconnected layer. The {@link InchiLayer#ISOTOPIC}, {@link InchiLayer#FIXED_H} and {@link InchiLayer#RECONNECTED}
+ * layers span all of their own sublayers e.g. the isotopic layer "/i2+1/t2-/m0" has the value "2+1/t2-/m0".
+ * <p>
+ * Only the structure of the string is examined, use {@link JnaInchi#checkInchi(String, boolean)} to validate the InChI.
+ */
+public class InchiLayers {
+
+  private static final String PREFIX = "InChI=";
+  private static final int LAYER_COUNT = InchiLayer.values().length;
+  /** index in the offsets array of the end of the version */
+  private static final int VERSION_END = LAYER_COUNT * 2;
+
+  private final String inchi;
+  /**
+   * start (inclusive) and end (exclusive) of the value of each layer, -1 if absent, followed by the end of the version.
+   * null until parsed, and only assigned once filled, so that other threads never see a partially filled array
+   */
+  private volatile int[] offsets;
+
+  private InchiLayers(String inchi) {
+    this.inchi = inchi;
+  }
+
+  /**
+   * Creates a view of the layers of the given InChI. The string is not scanned until a layer is requested
+   * @param inchi InChI string, starting with "InChI="
+   * @return layers
+   * @throws IllegalArgumentException if the string does not start with "InChI="
+   */
+  public static InchiLayers of(String inchi) {
+    if (inchi == null || !inchi.startsWith(PREFIX)) {
+      throw new IllegalArgumentException("Not an InChI: " + inchi);
+    }
+    return new InchiLayers(inchi);
+  }
+
+  private int[] offsets() {
+    int[] o = offsets;
+    if (o == null) {
+      o = parse(inchi);
+      offsets = o;
+    }
+    return o;
+  }
+
+  private static int[] parse(String s) {
+    int[] o = new int[LAYER_COUNT * 2 + 1];
+    for (int i = 0; i < VERSION_END; i++) {
+      o[i] = -1;
+    }
+    int len = s.length();
+    int pos = s.indexOf('/', PREFIX.length());
+    if (pos < 0) {
+      o[VERSION_END] = len;
+      return o;
+    }
+    o[VERSION_END] = pos;
+    //formula is the first layer and has no prefix letter
+    int start = pos + 1;
+    int end = nextSlash(s, start, len);
+    setOffsets(o, InchiLayer.FORMULA, start, end);
+    InchiLayer group = null;
+    while (end < len) {
+      int layerStart = end + 1;
+      end = nextSlash(s, layerStart, len);
+      if (layerStart >= len) {
+        break;
+      }
+      InchiLayer layer = InchiLayer.of(s.charAt(layerStart));
+      if (startsGroup(layer, group)) {
+        //a new group of sublayers, any previous group ends here
+        if (group != null) {
+          o[group.ordinal() * 2 + 1] = layerStart - 1;
+        }
+        group = layer;
+        setOffsets(o, layer, layerStart + 1, len);
+        if (layer == InchiLayer.RECONNECTED) {
+          //the reconnected layer extends to the end of the InChI
+          break;
+        }
+      }
+      else if (layer != null && group == null && o[layer.ordinal() * 2] < 0) {
+        setOffsets(o, layer, layerStart + 1, end);
+      }
+    }
+    return o;
+  }
+
+  /**
+   * Groups occur in the order isotopic, fixed-H, reconnected. e.g. /i within the fixed-H group is the fixed-H isotopic sublayer
+   */
+  private static boolean startsGroup(InchiLayer layer, InchiLayer currentGroup) {
+    if (layer == InchiLayer.ISOTOPIC) {
+      return currentGroup == null;
+    }
+    if (layer == InchiLayer.FIXED_H) {
+      return currentGroup == null || currentGroup == InchiLayer.ISOTOPIC;
+    }
+    return layer == InchiLayer.RECONNECTED;
+  }
+
+  private static int nextSlash(String s, int from, int len) {
+    for (int i = from; i < len; i++) {
+      if (s.charAt(i) == '/') {
+        return i;
+      }
+    }
+    return len;
+  }
+
+  private static void setOffsets(int[] o, InchiLayer layer, int start, int end) {
+    o[layer.ordinal() * 2] = start;
+    o[layer.ordinal() * 2 + 1] = end;
+  }
+
+  /**
+   * Returns the InChI that this view was created from
+   * @return InChI string
+   */
+  public String getInchi() {
+    return inchi;
+  }
+
+  /**
+   * Returns the version, e.g. "1S" for standard InChI or "1" for non-standard InChI
+   * @return version string
+   */
+  public String getVersion() {
+    return inchi.substring(PREFIX.length(), offsets()[VERSION_END]);
+  }
+
+  /**
+   * Whether this is a standard InChI i.e. the version ends in 'S'
+   * @return true if standard InChI
+   */
+  public boolean isStandard() {
+    int versionEnd = offsets()[VERSION_END];
+    return versionEnd > PREFIX.length() && inchi.charAt(versionEnd - 1) == 'S';
+  }
+
+  /**
+   * Whether the given layer is present
+   * @param layer
+   * @return true if present
+   */
+  public boolean hasLayer(InchiLayer layer) {
+    return offsets()[layer.ordinal() * 2] >= 0;
+  }
+
+  /**
+   * Returns the value of the given layer, without the '/' and prefix letter, e.g. "1-2-3-4" for /c1-2-3-4
+   * @param layer
+   * @return layer value, or null if the layer is not present
+   */
+  public String getLayer(InchiLayer layer) {
+    int[] o = offsets();
+    int start = o[layer.ordinal() * 2];
+    if (start < 0) {
+      return null;
+    }
+    return inchi.substring(start, o[layer.ordinal() * 2 + 1]);
+  }
+
+  /**
+   * Returns the chemical formula
+   * @return formula, or null if absent
+   */
+  public String getFormula() {
+    return getLayer(InchiLayer.FORMULA);
+  }
+
+  /**
+   * Whether a double bond or tetrahedral stereo layer (/b or /t) is present in the main part of the InChI
+   * @return true if stereo is present
+   */
+  public boolean hasStereo() {
+    return hasLayer(InchiLayer.DOUBLE_BOND_STEREO) || hasLayer(InchiLayer.TETRAHEDRAL_STEREO);
+  }
+
+  /**
+   * Returns the InChI truncated after the main layer i.e. the formula, connections and hydrogen layers.
+   * This is the part of the InChI that is used to compute the first block of the InChIKey
+   * @return the connectivity-only InChI prefix
+   */
+  public String getConnectivityPrefix() {
+    int[] o = offsets();
+    int end = o[VERSION_END];
+    InchiLayer[] mainLayers = {InchiLayer.FORMULA, InchiLayer.CONNECTIONS, InchiLayer.HYDROGENS};
+    for (InchiLayer layer : mainLayers) {
+      int layerEnd = o[layer.ordinal() * 2 + 1];
+      if (layerEnd > end) {
+        end = layerEnd;
+      }
+    }
+    return inchi.substring(0, end);
+  }
+
+  /**
+   * Whether the given layer has the same value (or is absent) in both InChIs
+   * @param other
+   * @param layer
+   * @return true if equal
+   */
+  public boolean layerEquals(InchiLayers other, InchiLayer layer) {
+    int[] o = offsets();
+    int[] otherOffsets = other.offsets();
+    int i = layer.ordinal() * 2;
+    int start = o[i];
+    int otherStart = otherOffsets[i];
+    if (start < 0 || otherStart < 0) {
+      return start < 0 && otherStart < 0;
+    }
+    int length = o[i + 1] - start;
+    return length == otherOffsets[i + 1] - otherStart && inchi.regionMatches(start, other.inchi, otherStart, length);
+  }
+
+  /**
+   * Whether the given layers have the same values (or are absent) in both InChIs.
+   * Layers not specified are ignored e.g. comparing on {@link InchiLayer#FORMULA}, {@link InchiLayer#CONNECTIONS} and {@link InchiLayer#HYDROGENS}
+   * compares the InChIs ignoring charge, stereochemistry and isotopes
+   * @param other
+   * @param layers
+   * @return true if all the given layers are equal
+   */
+  public boolean layersEqual(InchiLayers other, InchiLayer... layers) {
+    for (InchiLayer layer : layers) {
+      if (!layerEquals(other, layer)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Convenience method for comparing two InChI strings on only the given layers
+   * @param inchi1
+   * @param inchi2
+   * @param layers
+   * @return true if all the given layers are equal
+   * @see #layersEqual(InchiLayers, InchiLayer...)
+   */
+  public static boolean layersEqual(String inchi1, String inchi2, InchiLayer... layers) {
+    return of(inchi1).layersEqual(of(inchi2), layers);
+  }
+
+  @Override
+  public String toString() {
+    return inchi;
+  }
+
+}
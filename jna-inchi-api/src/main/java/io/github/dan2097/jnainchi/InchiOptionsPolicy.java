@@ -0,0 +1,283 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the {@link InchiOptions} for each molecule from its size.
+ * <p>
+ * {@link InchiFlag#LargeMolecules} is added for molecules with more than {@value #MAX_STANDARD_ATOMS} atoms,
+ * which the InChI library otherwise rejects, and only for those, as it makes the InChI non-standard.
+ * <p>
+ * The timeout is derived from the recent latency of molecules of similar size: atom counts are grouped
+ * into power of two size classes, each of which keeps an exponentially weighted moving average of the time per atom.
+ * The timeout is that average times the atom count times a safety multiplier, clamped to the configured range.
+ * An unmeasured size class borrows the average of the nearest larger measured size class, as the time per atom grows
+ * with size. Averages are never extrapolated to larger molecules: until a larger measured size class exists, the
+ * timeout of the base options is used, limited to the maximum timeout if there is one.
+ * A molecule that runs into its timeout raises the average of its size class to at least the time it took,
+ * so a size class whose timeout is too short recovers rather than failing every molecule.
+ * <p>
+ * Instances are thread safe, so one policy can learn from all the threads of a batch.
+ */
+public class InchiOptionsPolicy {
+
+  /**
+   * Maximum number of atoms the InChI library accepts without {@link InchiFlag#LargeMolecules}
+   */
+  public static final int MAX_STANDARD_ATOMS = 1024;
+
+  private static final int SIZE_CLASSES = 17;
+
+  private final InchiOptions baseOptions;
+  private final InchiOptions largeMoleculeOptions;
+  private final double timeoutMultiplier;
+  private final long minTimeoutMilliSecs;
+  private final long maxTimeoutMilliSecs;
+  private final double smoothing;
+  private final SizeClass[] sizeClasses = new SizeClass[SIZE_CLASSES];
+
+  private InchiOptionsPolicy(InchiOptionsPolicyBuilder builder) {
+    this.baseOptions = builder.baseOptions;
+    this.largeMoleculeOptions = copyOptions(baseOptions, baseOptions.getTimeoutMilliSeconds(), true);
+    this.timeoutMultiplier = builder.timeoutMultiplier;
+    this.minTimeoutMilliSecs = builder.minTimeoutMilliSecs;
+    this.maxTimeoutMilliSecs = builder.maxTimeoutMilliSecs;
+    this.smoothing = builder.smoothing;
+    for (int i = 0; i < SIZE_CLASSES; i++) {
+      sizeClasses[i] = new SizeClass();
+    }
+  }
+
+  public static InchiOptionsPolicyBuilder builder() {
+    return new InchiOptionsPolicyBuilder();
+  }
+
+  public static class InchiOptionsPolicyBuilder {
+    private InchiOptions baseOptions = InchiOptions.DEFAULT_OPTIONS;
+    private double timeoutMultiplier = 10;
+    private long minTimeoutMilliSecs = 1000;
+    private long maxTimeoutMilliSecs = 0;
+    private double smoothing = 0.2;
+
+    private InchiOptionsPolicyBuilder() {
+    }
+
+    /**
+     * @param baseOptions flags used for every molecule, its timeout is used for sizes that cannot be estimated from recorded latencies
+     * @return this builder
+     */
+    public InchiOptionsPolicyBuilder withBaseOptions(InchiOptions baseOptions) {
+      if (baseOptions == null) {
+        throw new IllegalArgumentException("baseOptions must not be null");
+      }
+      this.baseOptions = baseOptions;
+      return this;
+    }
+
+    /**
+     * @param timeoutMultiplier how many times the expected latency a molecule is allowed to take, default 10
+     * @return this builder
+     */
+    public InchiOptionsPolicyBuilder withTimeoutMultiplier(double timeoutMultiplier) {
+      if (!(timeoutMultiplier >= 1)) {
+        throw new IllegalArgumentException("Timeout multiplier should be at least 1: " + timeoutMultiplier);
+      }
+      this.timeoutMultiplier = timeoutMultiplier;
+      return this;
+    }
+
+    /**
+     * @param minTimeoutMilliSecs lower bound of learned timeouts, default 1000
+     * @param maxTimeoutMilliSecs upper bound of learned timeouts (0 = no upper bound), default 0
+     * @return this builder
+     */
+    public InchiOptionsPolicyBuilder withTimeoutRangeMilliSeconds(long minTimeoutMilliSecs, long maxTimeoutMilliSecs) {
+      if (minTimeoutMilliSecs < 1 || maxTimeoutMilliSecs < 0 || (maxTimeoutMilliSecs != 0 && maxTimeoutMilliSecs < minTimeoutMilliSecs)) {
+        throw new IllegalArgumentException("Invalid timeout range: " + minTimeoutMilliSecs + " to " + maxTimeoutMilliSecs);
+      }
+      this.minTimeoutMilliSecs = minTimeoutMilliSecs;
+      this.maxTimeoutMilliSecs = maxTimeoutMilliSecs;
+      return this;
+    }
+
+    /**
+     * @param smoothing weight of the newest latency in the moving averages, between 0 (exclusive) and 1, default 0.2
+     * @return this builder
+     */
+    public InchiOptionsPolicyBuilder withSmoothing(double smoothing) {
+      if (!(smoothing > 0 && smoothing <= 1)) {
+        throw new IllegalArgumentException("Smoothing should be in the range (0,1]: " + smoothing);
+      }
+      this.smoothing = smoothing;
+      return this;
+    }
+
+    public InchiOptionsPolicy build() {
+      return new InchiOptionsPolicy(this);
+    }
+  }
+
+  public InchiOptions getBaseOptions() {
+    return baseOptions;
+  }
+
+  /**
+   * Options for the given molecule
+   * @param inchiInput
+   * @return options with LargeMolecules added if required, and a timeout for the molecule's size
+   */
+  public InchiOptions getOptions(InchiInput inchiInput) {
+    return getOptions(inchiInput.getAtoms().size());
+  }
+
+  /**
+   * Options for a molecule with the given number of atoms
+   * @param atomCount
+   * @return options with LargeMolecules added if required, and a timeout for this size
+   */
+  public InchiOptions getOptions(int atomCount) {
+    boolean large = atomCount > MAX_STANDARD_ATOMS;
+    long timeout = getTimeoutMilliSeconds(atomCount);
+    if (timeout == baseOptions.getTimeoutMilliSeconds()) {
+      return large ? largeMoleculeOptions : baseOptions;
+    }
+    return copyOptions(baseOptions, timeout, large);
+  }
+
+  /**
+   * Timeout for a molecule with the given number of atoms
+   * @param atomCount
+   * @return timeout in milliseconds, 0 for none
+   */
+  public long getTimeoutMilliSeconds(int atomCount) {
+    double nanosPerAtom = Double.NaN;
+    for (int sizeClass = sizeClass(atomCount); sizeClass < SIZE_CLASSES && Double.isNaN(nanosPerAtom); sizeClass++) {
+      nanosPerAtom = sizeClasses[sizeClass].getNanosPerAtom();
+    }
+    if (Double.isNaN(nanosPerAtom)) {
+      return getFallbackTimeoutMilliSeconds();
+    }
+    double expectedNanos = nanosPerAtom * Math.max(1, atomCount);
+    long timeout = (long) Math.ceil(expectedNanos * timeoutMultiplier / TimeUnit.MILLISECONDS.toNanos(1));
+    timeout = Math.max(timeout, minTimeoutMilliSecs);
+    if (maxTimeoutMilliSecs != 0) {
+      timeout = Math.min(timeout, maxTimeoutMilliSecs);
+    }
+    return timeout;
+  }
+
+  private long getFallbackTimeoutMilliSeconds() {
+    long timeout = baseOptions.getTimeoutMilliSeconds();
+    if (maxTimeoutMilliSecs != 0 && (timeout == 0 || timeout > maxTimeoutMilliSecs)) {
+      return maxTimeoutMilliSecs;
+    }
+    return timeout;
+  }
+
+  /**
+   * Records how long a molecule took, updating the moving average of its size class
+   * @param atomCount
+   * @param elapsedNanos
+   */
+  public void recordLatency(int atomCount, long elapsedNanos) {
+    if (elapsedNanos < 0) {
+      throw new IllegalArgumentException("elapsedNanos must not be negative: " + elapsedNanos);
+    }
+    sizeClasses[sizeClass(atomCount)].record((double) elapsedNanos / Math.max(1, atomCount), smoothing);
+  }
+
+  /**
+   * Records that a molecule ran into its timeout. The time taken is a lower bound on the latency, so the average of
+   * the size class is raised to at least that, which multiplies the timeout of the size class by the timeout multiplier.
+   * @param atomCount
+   * @param elapsedNanos
+   */
+  public void recordTimeout(int atomCount, long elapsedNanos) {
+    if (elapsedNanos < 0) {
+      throw new IllegalArgumentException("elapsedNanos must not be negative: " + elapsedNanos);
+    }
+    sizeClasses[sizeClass(atomCount)].raiseTo((double) elapsedNanos / Math.max(1, atomCount));
+  }
+
+  /**
+   * Converts a molecule using the options chosen by this policy, and records its latency if it did not fail.
+   * Other failures are not recorded, as they are often rejected without doing the full amount of work, except
+   * failures that took at least the timeout, which are recorded with {@link #recordTimeout(int, long)}.
+   * @param engine
+   * @param inchiInput
+   * @return output of the engine
+   */
+  public InchiOutput toInchi(InchiEngine engine, InchiInput inchiInput) {
+    int atomCount = inchiInput.getAtoms().size();
+    InchiOptions options = getOptions(atomCount);
+    long start = System.nanoTime();
+    InchiOutput output = engine.toInchi(inchiInput, options);
+    long elapsed = System.nanoTime() - start;
+    if (output.getStatus() != InchiStatus.ERROR) {
+      recordLatency(atomCount, elapsed);
+    }
+    else if (options.getTimeoutMilliSeconds() != 0 && elapsed >= TimeUnit.MILLISECONDS.toNanos(options.getTimeoutMilliSeconds())) {
+      recordTimeout(atomCount, elapsed);
+    }
+    return output;
+  }
+
+  /**
+   * Converts a molecule with {@link InchiEngines#getEngine()} using the options chosen by this policy
+   * @param inchiInput
+   * @return output of the engine
+   */
+  public InchiOutput toInchi(InchiInput inchiInput) {
+    return toInchi(InchiEngines.getEngine(), inchiInput);
+  }
+
+  static int sizeClass(int atomCount) {
+    return Math.min(SIZE_CLASSES - 1, 32 - Integer.numberOfLeadingZeros(Math.max(0, atomCount)));
+  }
+
+  private static InchiOptions copyOptions(InchiOptions options, long timeoutMilliSecs, boolean largeMolecules) {
+    InchiOptions.InchiOptionsBuilder builder = new InchiOptions.InchiOptionsBuilder();
+    for (InchiFlag flag : options.getFlags()) {
+      builder.withFlag(flag);
+    }
+    if (largeMolecules) {
+      builder.withFlag(InchiFlag.LargeMolecules);
+    }
+    return builder.withTimeoutMilliSeconds(timeoutMilliSecs).build();
+  }
+
+  private static class SizeClass {
+    private double nanosPerAtom = Double.NaN;
+
+    synchronized double getNanosPerAtom() {
+      return nanosPerAtom;
+    }
+
+    synchronized void record(double sample, double smoothing) {
+      nanosPerAtom = Double.isNaN(nanosPerAtom) ? sample : nanosPerAtom + smoothing * (sample - nanosPerAtom);
+    }
+
+    synchronized void raiseTo(double lowerBound) {
+      if (Double.isNaN(nanosPerAtom) || nanosPerAtom < lowerBound) {
+        nanosPerAtom = lowerBound;
+      }
+    }
+  }
+}
@@ -0,0 +1,399 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Negative cache of inputs for which InChI generation failed.
+ * <p>
+ * Inputs are identified by a SHA-256 digest of their content and the options they were converted with. When an input
+ * that is in quarantine is submitted again, the recorded status and message are returned without calling the engine,
+ * saving the time the failure took e.g. a full timeout. Entries expire after a time to live, and when the maximum number
+ * of entries is reached the least recently used entry is evicted.
+ * <p>
+ * If a file is configured, entries are loaded from it when the quarantine is built and written back by {@link #save()}
+ * and {@link #close()}, so known failures are remembered across runs. Instances are thread safe.
+ */
+public class InchiQuarantine implements AutoCloseable {
+
+  private static final String FILE_HEADER = "#jna-inchi quarantine v1";
+  private static final char FIELD_SEPARATOR = '\t';
+
+  private final Path file;
+  private final long ttlMillis;
+  private final int maxEntries;
+  private final LongSupplier clock;
+  private final Map<String, Entry> entries;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder savedNanos = new LongAdder();
+
+  private InchiQuarantine(InchiQuarantineBuilder builder) {
+    this.file = builder.file;
+    this.ttlMillis = builder.ttlMillis;
+    this.maxEntries = builder.maxEntries;
+    this.clock = builder.clock;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > InchiQuarantine.this.maxEntries;
+      }
+    };
+  }
+
+  public static InchiQuarantineBuilder builder() {
+    return new InchiQuarantineBuilder();
+  }
+
+  public static class InchiQuarantineBuilder {
+    private Path file;
+    private long ttlMillis = TimeUnit.DAYS.toMillis(30);
+    private int maxEntries = 100_000;
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private InchiQuarantineBuilder() {
+    }
+
+    /**
+     * @param file file the quarantine is loaded from and saved to, by default the quarantine is only kept in memory
+     * @return this builder
+     */
+    public InchiQuarantineBuilder withFile(Path file) {
+      this.file = file;
+      return this;
+    }
+
+    /**
+     * @param ttl how long a failure is remembered for, default 30 days
+     * @param unit
+     * @return this builder
+     */
+    public InchiQuarantineBuilder withTimeToLive(long ttl, TimeUnit unit) {
+      if (ttl <= 0) {
+        throw new IllegalArgumentException("Time to live must be positive: " + ttl);
+      }
+      this.ttlMillis = unit.toMillis(ttl);
+      return this;
+    }
+
+    /**
+     * @param maxEntries maximum number of inputs in quarantine, default 100000
+     * @return this builder
+     */
+    public InchiQuarantineBuilder withMaxEntries(int maxEntries) {
+      if (maxEntries < 1) {
+        throw new IllegalArgumentException("maxEntries must be at least 1: " + maxEntries);
+      }
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    InchiQuarantineBuilder withClock(LongSupplier clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    /**
+     * @return the quarantine, with the entries of the file if it exists
+     * @throws UncheckedIOException if the file could not be read
+     */
+    public InchiQuarantine build() {
+      InchiQuarantine quarantine = new InchiQuarantine(this);
+      if (file != null && Files.exists(file)) {
+        quarantine.load();
+      }
+      return quarantine;
+    }
+  }
+
+  /**
+   * Converts the molecule with the engine, unless the same molecule and options are in quarantine.
+   * {@link InchiStatus#ERROR} outputs of the engine are put in quarantine. Exceptions thrown by the engine are rethrown
+   * and not recorded, as they usually indicate a problem with the environment, such as a missing native library,
+   * rather than with the input.
+   * @param engine
+   * @param inchiInput
+   * @param options
+   * @return output of the engine, or the recorded failure
+   * @throws RuntimeException if the engine throws one
+   */
+  public InchiOutput toInchi(InchiEngine engine, InchiInput inchiInput, InchiOptions options) {
+    return convert(InchiDigests.digest(inchiInput, options), () -> engine.toInchi(inchiInput, options));
+  }
+
+  /**
+   * Converts the molfile with the engine, unless the same molfile and options are in quarantine.
+   * Molfiles that only differ in their header lines, e.g. the program and timestamp line, or in the text after
+   * <code>M  END</code> are the same molfile, as in {@link InchiBatchScheduler}.
+   * {@link InchiStatus#ERROR} outputs of the engine are put in quarantine. Exceptions thrown by the engine are rethrown
+   * and not recorded, as they usually indicate a problem with the environment, such as a missing native library,
+   * rather than with the input.
+   * @param engine
+   * @param molText
+   * @param options
+   * @return output of the engine, or the recorded failure
+   * @throws RuntimeException if the engine throws one
+   */
+  public InchiOutput molToInchi(InchiEngine engine, String molText, InchiOptions options) {
+    return convert(InchiDigests.digest(InchiDigests.normaliseMolfile(molText), options), () -> engine.molToInchi(molText, options));
+  }
+
+  private InchiOutput convert(String key, Supplier<InchiOutput> converter) {
+    Entry entry = get(key);
+    if (entry != null) {
+      hits.increment();
+      savedNanos.add(entry.elapsedNanos);
+      return new InchiOutput(null, null, entry.message, null, entry.status);
+    }
+    misses.increment();
+    long start = System.nanoTime();
+    InchiOutput output = converter.get();
+    long elapsed = System.nanoTime() - start;
+    if (output.getStatus() == InchiStatus.ERROR) {
+      put(key, new Entry(output.getStatus(), output.getMessage() != null ? output.getMessage() : "", clock.getAsLong(), elapsed));
+    }
+    return output;
+  }
+
+  private synchronized Entry get(String key) {
+    Entry entry = entries.get(key);
+    if (entry != null && isExpired(entry, clock.getAsLong())) {
+      entries.remove(key);
+      return null;
+    }
+    return entry;
+  }
+
+  private synchronized void put(String key, Entry entry) {
+    entries.put(key, entry);
+  }
+
+  private boolean isExpired(Entry entry, long now) {
+    return now - entry.recordedMillis >= ttlMillis;
+  }
+
+  /**
+   * Number of conversions answered from the quarantine
+   * @return hit count
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Number of conversions passed to the engine
+   * @return miss count
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Time the engine took for the failures that were answered from the quarantine instead
+   * @return saved time in nanoseconds
+   */
+  public long getSavedNanos() {
+    return savedNanos.sum();
+  }
+
+  /**
+   * @return number of inputs in quarantine, including entries that have expired but not yet been removed
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Removes all entries
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Writes the unexpired entries to the file, replacing it. Does nothing if no file was configured.
+   * @throws UncheckedIOException if the file could not be written
+   */
+  public void save() {
+    if (file == null) {
+      return;
+    }
+    //the file is written from a copy, so conversions are not blocked while it is being written
+    List<Map.Entry<String, Entry>> snapshot = new ArrayList<>();
+    synchronized (this) {
+      long now = clock.getAsLong();
+      //least recently used first, so loading restores the access order
+      for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+        Map.Entry<String, Entry> e = it.next();
+        if (isExpired(e.getValue(), now)) {
+          it.remove();
+        }
+        else {
+          snapshot.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue()));
+        }
+      }
+    }
+    try {
+      Path parent = file.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+      try {
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+          writer.write(FILE_HEADER);
+          writer.write('\n');
+          for (Map.Entry<String, Entry> e : snapshot) {
+            Entry entry = e.getValue();
+            writer.write(e.getKey());
+            writer.write(FIELD_SEPARATOR);
+            writer.write(entry.status.name());
+            writer.write(FIELD_SEPARATOR);
+            writer.write(Long.toString(entry.recordedMillis));
+            writer.write(FIELD_SEPARATOR);
+            writer.write(Long.toString(entry.elapsedNanos));
+            writer.write(FIELD_SEPARATOR);
+            writer.write(escape(entry.message));
+            writer.write('\n');
+          }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      finally {
+        Files.deleteIfExists(temp);
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to save quarantine to " + file, e);
+    }
+  }
+
+  private synchronized void load() {
+    long now = clock.getAsLong();
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line = reader.readLine();
+      if (line == null) {
+        return;
+      }
+      if (!FILE_HEADER.equals(line)) {
+        throw new IOException("Not a quarantine file: " + file);
+      }
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split(String.valueOf(FIELD_SEPARATOR), -1);
+        if (fields.length != 5) {
+          throw new IOException("Malformed quarantine entry: " + line);
+        }
+        Entry entry;
+        try {
+          entry = new Entry(InchiStatus.valueOf(fields[1]), unescape(fields[4]), Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+        }
+        catch (IllegalArgumentException e) {
+          throw new IOException("Malformed quarantine entry: " + line, e);
+        }
+        if (!isExpired(entry, now)) {
+          entries.put(fields[0], entry);
+        }
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to load quarantine from " + file, e);
+    }
+  }
+
+  /**
+   * Saves the entries to the file, if one was configured
+   */
+  @Override
+  public void close() {
+    save();
+  }
+
+  static String escape(String s) {
+    StringBuilder sb = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      char ch = s.charAt(i);
+      switch (ch) {
+      case '\\':
+        sb.append("\\\\");
+        break;
+      case '\t':
+        sb.append("\\t");
+        break;
+      case '\n':
+        sb.append("\\n");
+        break;
+      case '\r':
+        sb.append("\\r");
+        break;
+      default:
+        sb.append(ch);
+      }
+    }
+    return sb.toString();
+  }
+
+  static String unescape(String s) {
+    StringBuilder sb = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      char ch = s.charAt(i);
+      if (ch == '\\' && i + 1 < s.length()) {
+        char next = s.charAt(++i);
+        sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+      }
+      else {
+        sb.append(ch);
+      }
+    }
+    return sb.toString();
+  }
+
+  private static class Entry {
+    private final InchiStatus status;
+    private final String message;
+    private final long recordedMillis;
+    private final long elapsedNanos;
+
+    private Entry(InchiStatus status, String message, long recordedMillis, long elapsedNanos) {
+      this.status = status;
+      this.message = message;
+      this.recordedMillis = recordedMillis;
+      this.elapsedNanos = elapsedNanos;
+    }
+  }
+}
@@ -0,0 +1,197 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+/**
+ * Pure-Java implementations of the non-strict InChI and InChIKey layout checks performed by the InChI library's
+ * CheckINCHI (with strict=false) and CheckINCHIKey functions. The results are identical to the native functions.
+ * <p>
+ * These only check the layout of the string (prefix, version, flags and allowed characters), not whether it describes a valid structure.
+ * The batch methods run a tight loop over the input with no per-item allocation and are intended for validating large numbers of records.
+ */
+public class InchiValidator {
+
+  private static final String INCHI_PREFIX = "InChI=";
+  private static final int INCHI_MIN_LENGTH = INCHI_PREFIX.length() + 3;
+  private static final int INCHIKEY_LENGTH = 27;
+
+  /** Characters allowed after the first '/' of an InChI */
+  private static final boolean[] INCHI_CHARS = new boolean[128];
+
+  static {
+    for (char c = 'A'; c <= 'Z'; c++) {
+      INCHI_CHARS[c] = true;
+    }
+    for (char c = 'a'; c <= 'z'; c++) {
+      INCHI_CHARS[c] = true;
+    }
+    for (char c = '0'; c <= '9'; c++) {
+      INCHI_CHARS[c] = true;
+    }
+    for (char c : "()*+,-./;?".toCharArray()) {
+      INCHI_CHARS[c] = true;
+    }
+  }
+
+  private InchiValidator() {
+  }
+
+  /**
+   * Checks whether the string has the layout of an InChIKey.
+   * Equivalent to {@link JnaInchi#checkInchiKey(String)}
+   * @param inchiKey
+   * @return InchiKeyCheckStatus
+   */
+  public static InchiKeyCheckStatus checkInchiKey(String inchiKey) {
+    if (inchiKey == null || inchiKey.length() != INCHIKEY_LENGTH) {
+      return InchiKeyCheckStatus.INVALID_LENGTH;
+    }
+    if (inchiKey.charAt(14) != '-' || inchiKey.charAt(25) != '-') {
+      return InchiKeyCheckStatus.INVALID_LAYOUT;
+    }
+    for (int i = 0; i < 14; i++) {
+      if (!isUpperCase(inchiKey.charAt(i))) {
+        return InchiKeyCheckStatus.INVALID_LAYOUT;
+      }
+    }
+    for (int i = 15; i < 25; i++) {
+      if (!isUpperCase(inchiKey.charAt(i))) {
+        return InchiKeyCheckStatus.INVALID_LAYOUT;
+      }
+    }
+    if (!isUpperCase(inchiKey.charAt(26))) {
+      return InchiKeyCheckStatus.INVALID_LAYOUT;
+    }
+    //hash triplets are encoded such that they never start with 'E'
+    if (inchiKey.charAt(0) == 'E' || inchiKey.charAt(3) == 'E' || inchiKey.charAt(6) == 'E' || inchiKey.charAt(9) == 'E' ||
+        inchiKey.charAt(15) == 'E' || inchiKey.charAt(18) == 'E') {
+      return InchiKeyCheckStatus.INVALID_LAYOUT;
+    }
+    if (inchiKey.charAt(24) != 'A') {
+      return InchiKeyCheckStatus.INVALID_VERSION;
+    }
+    switch (inchiKey.charAt(23)) {
+    case 'S':
+      return InchiKeyCheckStatus.VALID_STANDARD;
+    case 'N':
+      return InchiKeyCheckStatus.VALID_NON_STANDARD;
+    default:
+      return InchiKeyCheckStatus.INVALID_LAYOUT;
+    }
+  }
+
+  /**
+   * Briefly checks whether the string has the layout of an InChI i.e. prefix, version, standard/beta flag, layer prefixes and allowed characters.
+   * Equivalent to {@link JnaInchi#checkInchi(String, boolean)} with strict=false
+   * @param inchi
+   * @return InchiCheckStatus
+   */
+  public static InchiCheckStatus checkInchi(String inchi) {
+    if (inchi == null || inchi.length() < INCHI_MIN_LENGTH || !inchi.startsWith(INCHI_PREFIX)) {
+      return InchiCheckStatus.INVALID_PREFIX;
+    }
+    if (inchi.charAt(INCHI_PREFIX.length()) != '1') {
+      return InchiCheckStatus.INVALID_VERSION;
+    }
+    InchiCheckStatus status;
+    int slashPos = INCHI_PREFIX.length() + 1;
+    switch (inchi.charAt(slashPos)) {
+    case 'S':
+      status = InchiCheckStatus.VALID_STANDARD;
+      slashPos++;
+      break;
+    case 'B':
+      status = InchiCheckStatus.VALID_BETA;
+      slashPos++;
+      break;
+    default:
+      status = InchiCheckStatus.VALID_NON_STANDARD;
+      break;
+    }
+    if (inchi.charAt(slashPos) != '/') {
+      return InchiCheckStatus.INVALID_LAYOUT;
+    }
+    //trailing whitespace is ignored
+    int end = inchi.length();
+    while (end > slashPos + 1 && isSpace(inchi.charAt(end - 1))) {
+      end--;
+    }
+    //as are the two letters appended by the SaveOpt option e.g. \RA
+    if (end - 3 > slashPos && inchi.charAt(end - 3) == '\\' && isUpperCase(inchi.charAt(end - 2)) && isUpperCase(inchi.charAt(end - 1))) {
+      end -= 3;
+    }
+    if (end > slashPos + 1 && inchi.charAt(slashPos + 1) == '0') {
+      return InchiCheckStatus.INVALID_LAYOUT;
+    }
+    for (int i = slashPos + 1; i < end; i++) {
+      char c = inchi.charAt(i);
+      if (c >= 128 || !INCHI_CHARS[c]) {
+        return InchiCheckStatus.INVALID_LAYOUT;
+      }
+      //layers after the formula start with a lowercase letter
+      if (c == '/' && i + 1 < end && !isLowerCase(inchi.charAt(i + 1))) {
+        return InchiCheckStatus.INVALID_LAYOUT;
+      }
+    }
+    return status;
+  }
+
+  /**
+   * Checks the layout of each InChIKey
+   * @param inchiKeys
+   * @return array of statuses, corresponding to the input array
+   * @see #checkInchiKey(String)
+   */
+  public static InchiKeyCheckStatus[] checkInchiKeys(String[] inchiKeys) {
+    InchiKeyCheckStatus[] results = new InchiKeyCheckStatus[inchiKeys.length];
+    for (int i = 0; i < inchiKeys.length; i++) {
+      results[i] = checkInchiKey(inchiKeys[i]);
+    }
+    return results;
+  }
+
+  /**
+   * Checks the layout of each InChI
+   * @param inchis
+   * @return array of statuses, corresponding to the input array
+   * @see #checkInchi(String)
+   */
+  public static InchiCheckStatus[] checkInchis(String[] inchis) {
+    InchiCheckStatus[] results = new InchiCheckStatus[inchis.length];
+    for (int i = 0; i < inchis.length; i++) {
+      results[i] = checkInchi(inchis[i]);
+    }
+    return results;
+  }
+
+  private static boolean isUpperCase(char c) {
+    return c >= 'A' && c <= 'Z';
+  }
+
+  private static boolean isLowerCase(char c) {
+    return c >= 'a' && c <= 'z';
+  }
+
+  /**
+   * Same characters as C's isspace
+   */
+  private static boolean isSpace(char c) {
+    return c == ' ' || (c >= '\t' && c <= '\r');
+  }
+
+}
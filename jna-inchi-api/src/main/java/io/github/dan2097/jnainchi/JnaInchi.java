@@ -19,6 +19,7 @@ package io.github.dan2097.jnainchi;
 
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -199,24 +200,11 @@ public class JnaInchi {
   
   public static InchiOutput toInchi(InchiInput inchiInput, InchiOptions options) {
     checkLibrary();
-    List<InchiAtom> atoms = inchiInput.getAtoms();
-    int atomCount = atoms.size();
-    if (atomCount > Short.MAX_VALUE) {
-      throw new IllegalStateException("InChI is limited to 32767 atoms, input contained " + atomCount + " atoms");
-    }
-    List<InchiBond> bonds = inchiInput.getBonds();
-    List<InchiStereo> stereos = inchiInput.getStereos();
-    if (stereos.size() > Short.MAX_VALUE) {
-      throw new IllegalStateException("Too many stereochemistry elements in input");
-    }
-
+    checkInputSize(inchiInput);
     IXA_STATUS_HANDLE logger = IxaFunctions.IXA_STATUS_Create();
     IXA_MOL_HANDLE nativeMol = IxaFunctions.IXA_MOL_Create(logger);
-    IxaFunctions.IXA_MOL_ReserveSpace(logger, nativeMol, atomCount, bonds.size(), stereos.size());
     try {
-      Map<InchiAtom, IXA_ATOMID> atomToNativeAtom = addAtoms(nativeMol, logger, atoms);
-      addBonds(nativeMol, logger, bonds, atomToNativeAtom);
-      addStereos(nativeMol, logger, stereos, atomToNativeAtom);
+      addMolecule(nativeMol, logger, inchiInput);
       return buildInchi(logger, nativeMol, options);
     }
     finally {
@@ -225,6 +213,29 @@ public class JnaInchi {
     }
   }
 
+  static void checkInputSize(InchiInput inchiInput) {
+    int atomCount = inchiInput.getAtoms().size();
+    if (atomCount > Short.MAX_VALUE) {
+      throw new IllegalStateException("InChI is limited to 32767 atoms, input contained " + atomCount + " atoms");
+    }
+    if (inchiInput.getStereos().size() > Short.MAX_VALUE) {
+      throw new IllegalStateException("Too many stereochemistry elements in input");
+    }
+  }
+
+  /**
+   * Copies the atoms, bonds and stereochemistry of the input to an empty IXA molecule
+   */
+  static void addMolecule(IXA_MOL_HANDLE nativeMol, IXA_STATUS_HANDLE logger, InchiInput inchiInput) {
+    List<InchiAtom> atoms = inchiInput.getAtoms();
+    List<InchiBond> bonds = inchiInput.getBonds();
+    List<InchiStereo> stereos = inchiInput.getStereos();
+    IxaFunctions.IXA_MOL_ReserveSpace(logger, nativeMol, atoms.size(), bonds.size(), stereos.size());
+    Map<InchiAtom, IXA_ATOMID> atomToNativeAtom = addAtoms(nativeMol, logger, atoms);
+    addBonds(nativeMol, logger, bonds, atomToNativeAtom);
+    addStereos(nativeMol, logger, stereos, atomToNativeAtom);
+  }
+
   private static Map<InchiAtom, IXA_ATOMID> addAtoms(IXA_MOL_HANDLE mol, IXA_STATUS_HANDLE logger, List<InchiAtom> atoms) {
     Map<InchiAtom, IXA_ATOMID> atomToNativeAtom = new HashMap<>();
     for (InchiAtom atom : atoms) {
@@ -374,136 +385,243 @@ public class JnaInchi {
     return vertex;
   }
 
+  /**
+   * Copies the atoms, bonds and stereochemistry of the input to the input structure of the classic InChI API,
+   * which lists each bond once, in the neighbors of one of its atoms, and uses the central atom for an implicit hydrogen
+   */
+  static tagINCHI_Input toNativeInput(InchiInput inchiInput, InchiOptions options) {
+    List<InchiAtom> atoms = inchiInput.getAtoms();
+    Map<InchiAtom, Integer> atomToIndex = new HashMap<>();
+    tagInchiAtom[] nativeAtoms = atoms.isEmpty() ? null : (tagInchiAtom[]) new tagInchiAtom().toArray(atoms.size());
+    for (int i = 0; i < atoms.size(); i++) {
+      InchiAtom atom = atoms.get(i);
+      atomToIndex.put(atom, i);
+      tagInchiAtom nativeAtom = nativeAtoms[i];
+      nativeAtom.x = atom.getX();
+      nativeAtom.y = atom.getY();
+      nativeAtom.z = atom.getZ();
+      String elName = atom.getElName();
+      if (elName.length() > 5) {
+        throw new IllegalArgumentException("Element name was too long: " + elName);
+      }
+      byte[] elNameBytes = elName.getBytes(StandardCharsets.US_ASCII);
+      System.arraycopy(elNameBytes, 0, nativeAtom.elname, 0, elNameBytes.length);
+      nativeAtom.num_iso_H[0] = (byte) atom.getImplicitHydrogen();
+      nativeAtom.num_iso_H[1] = (byte) atom.getImplicitProtium();
+      nativeAtom.num_iso_H[2] = (byte) atom.getImplicitDeuterium();
+      nativeAtom.num_iso_H[3] = (byte) atom.getImplicitTritium();
+      nativeAtom.isotopic_mass = (short) atom.getIsotopicMass();
+      nativeAtom.radical = atom.getRadical().getCode();
+      nativeAtom.charge = (byte) atom.getCharge();
+    }
+    for (InchiBond bond : inchiInput.getBonds()) {
+      Integer start = atomToIndex.get(bond.getStart());
+      Integer end = atomToIndex.get(bond.getEnd());
+      if (start == null || end == null) {
+        throw new IllegalStateException("Bond referenced an atom that was not part of the InchiInput");
+      }
+      tagInchiAtom nativeAtom = nativeAtoms[start];
+      int neighbor = end;
+      byte bondStereo = bond.getStereo().getCode();
+      if (nativeAtom.num_bonds == InchiLibrary.MAXVAL) {
+        //List the bond on the other atom, so wedges now refer to the opposite end
+        nativeAtom = nativeAtoms[end];
+        neighbor = start;
+        if (bond.getStereo() != InchiBondStereo.DOUBLE_EITHER) {
+          bondStereo = (byte) -bondStereo;
+        }
+        if (nativeAtom.num_bonds == InchiLibrary.MAXVAL) {
+          throw new IllegalStateException("InChI is limited to " + InchiLibrary.MAXVAL + " bonds per atom");
+        }
+      }
+      nativeAtom.neighbor[nativeAtom.num_bonds] = (short) neighbor;
+      nativeAtom.bond_type[nativeAtom.num_bonds] = bond.getType().getCode();
+      nativeAtom.bond_stereo[nativeAtom.num_bonds] = bondStereo;
+      nativeAtom.num_bonds++;
+    }
+    List<InchiStereo> stereos = new ArrayList<>();
+    for (InchiStereo stereo : inchiInput.getStereos()) {
+      if (stereo.getType() != InchiStereoType.None) {
+        stereos.add(stereo);
+      }
+    }
+    tagINCHIStereo0D[] nativeStereos = stereos.isEmpty() ? null : (tagINCHIStereo0D[]) new tagINCHIStereo0D().toArray(stereos.size());
+    for (int i = 0; i < stereos.size(); i++) {
+      InchiStereo stereo = stereos.get(i);
+      tagINCHIStereo0D nativeStereo = nativeStereos[i];
+      int centralAtom = InchiLibrary.NO_ATOM;
+      if (stereo.getType() != InchiStereoType.DoubleBond) {
+        Integer index = atomToIndex.get(stereo.getCentralAtom());
+        if (index == null) {
+          throw new IllegalStateException("Stereo configuration central atom referenced an atom that does not exist");
+        }
+        centralAtom = index;
+      }
+      InchiAtom[] vertices = stereo.getAtoms();
+      for (int j = 0; j < 4; j++) {
+        Integer index = InchiStereo.STEREO_IMPLICIT_H == vertices[j] ? Integer.valueOf(centralAtom) : atomToIndex.get(vertices[j]);
+        if (index == null) {
+          throw new IllegalStateException("Stereo configuration referenced an atom that does not exist");
+        }
+        nativeStereo.neighbor[j] = (short) (int) index;
+      }
+      nativeStereo.central_atom = (short) centralAtom;
+      nativeStereo.type = stereo.getType().getCode();
+      nativeStereo.parity = stereo.getParity().getCode();
+    }
+    return new tagINCHI_Input(nativeAtoms != null ? nativeAtoms[0] : null, nativeStereos != null ? nativeStereos[0] : null,
+        options.toString(), (short) atoms.size(), (short) stereos.size());
+  }
+
   private static InchiOutput buildInchi(IXA_STATUS_HANDLE logger, IXA_MOL_HANDLE nativeMol, InchiOptions options) {
     IXA_INCHIBUILDER_HANDLE builder = IxaFunctions.IXA_INCHIBUILDER_Create(logger);
     try {
+      setChiralFlag(logger, nativeMol, options);
       IxaFunctions.IXA_INCHIBUILDER_SetMolecule(logger, builder, nativeMol);
-      
-      long timeoutMilliSecs = options.getTimeoutMilliSeconds();
-      if (timeoutMilliSecs != 0) {
-        IxaFunctions.IXA_INCHIBUILDER_SetOption_Timeout_MilliSeconds(logger, builder, timeoutMilliSecs);
-      }
-      for (InchiFlag flag : options.getFlags()) {
-        switch (flag) {
-        case AuxNone:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_AuxNone, true);
-          break;
-        case ChiralFlagOFF:
-          IxaFunctions.IXA_MOL_SetChiral(logger, nativeMol, false);
-          break;
-        case ChiralFlagON:
-          IxaFunctions.IXA_MOL_SetChiral(logger, nativeMol, true);
-          break;
-        case DoNotAddH:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_DoNotAddH, true);
-          break;
-        case FixedH:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_FixedH, true);
-          break;
-        case KET:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_KET, true);
-          break;
-        case LargeMolecules:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_LargeMolecules, true);
-          break;
-        case NEWPSOFF:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_NewPsOff, true);
-          break;
-        case OneFiveT:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_15T, true);
-          break;
-        case RecMet:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_RecMet, true);
-          break;
-        case SLUUD:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_SLUUD, true);
-          break;
-        case SNon:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption_Stereo(logger, builder, IXA_INCHIBUILDER_STEREOOPTION.IXA_INCHIBUILDER_STEREOOPTION_SNon);
-          break;
-        case SRac:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption_Stereo(logger, builder, IXA_INCHIBUILDER_STEREOOPTION.IXA_INCHIBUILDER_STEREOOPTION_SRac);
-          break;
-        case SRel:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption_Stereo(logger, builder, IXA_INCHIBUILDER_STEREOOPTION.IXA_INCHIBUILDER_STEREOOPTION_SRel);
-          break;
-        case SUCF:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption_Stereo(logger, builder, IXA_INCHIBUILDER_STEREOOPTION.IXA_INCHIBUILDER_STEREOOPTION_SUCF);
-          break;
-        case SAbs:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption_Stereo(logger, builder, IXA_INCHIBUILDER_STEREOOPTION.IXA_INCHIBUILDER_STEREOOPTION_SAbs);
-          break;
-        case SUU:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_SUU, true);
-          break;
-        case SaveOpt:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_SaveOpt, true);
-          break;
-        case WarnOnEmptyStructure:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_WarnOnEmptyStructure, true);
-          break;
-        case NoWarnings:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_NoWarnings, true);
-          break;
-        case LooseTSACheck:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_LooseTSACheck, true);
-          break;
-        case Polymers:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_Polymers, true);
-          break;
-        case Polymers105:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_Polymers105, true);
-          break;
-        case FoldCRU:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_FoldCRU, true);
-          break;
-        case NoFrameShift:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_NoFrameShift, true);
-          break;
-        case NoEdits:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_NoEdits, true);
-          break;
-        case NPZz:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_NPZZ, true);
-          break;
-        case SAtZz:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_SATZZ, true);
-          break;
-        case OutErrInChI:
-          IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_OutErrInChI, true);
-          break;
-        default:
-          throw new IllegalStateException("Unexpected InChI option flag: " + flag);
-        }
-      }
+      setBuilderOptions(logger, builder, options);
 
       String inchi = IxaFunctions.IXA_INCHIBUILDER_GetInChI(logger, builder);
       String auxInfo = IxaFunctions.IXA_INCHIBUILDER_GetAuxInfo(logger, builder);
       String log = IxaFunctions.IXA_INCHIBUILDER_GetLog(logger, builder);
-      
-      InchiStatus status = InchiStatus.SUCCESS;
-      if (IxaFunctions.IXA_STATUS_HasError(logger)) {
-        status = InchiStatus.ERROR;
-      }
-      else if (IxaFunctions.IXA_STATUS_HasWarning(logger)) {
-        status = InchiStatus.WARNING;
-      }
-      
-      StringBuilder sb = new StringBuilder();
-      int messageCount = IxaFunctions.IXA_STATUS_GetCount(logger);
-      for (int i = 0; i < messageCount; i++) {
-        if (i > 0) {
-          sb.append("; ");
-        }
-        sb.append(IxaFunctions.IXA_STATUS_GetMessage(logger, i));
-      }
-      return new InchiOutput(inchi, auxInfo, sb.toString(), log, status);
+      return new InchiOutput(inchi, auxInfo, getMessages(logger), log, getStatus(logger));
     }
     finally {
       IxaFunctions.IXA_INCHIBUILDER_Destroy(logger, builder); 
     }
   }
 
+  /**
+   * The chiral flag is a property of the molecule, so must be set before the molecule is handed to the builder
+   */
+  static void setChiralFlag(IXA_STATUS_HANDLE logger, IXA_MOL_HANDLE nativeMol, InchiOptions options) {
+    if (options.getFlags().contains(InchiFlag.ChiralFlagOFF)) {
+      IxaFunctions.IXA_MOL_SetChiral(logger, nativeMol, false);
+    }
+    else if (options.getFlags().contains(InchiFlag.ChiralFlagON)) {
+      IxaFunctions.IXA_MOL_SetChiral(logger, nativeMol, true);
+    }
+  }
+
+  static void setBuilderOptions(IXA_STATUS_HANDLE logger, IXA_INCHIBUILDER_HANDLE builder, InchiOptions options) {
+    long timeoutMilliSecs = options.getTimeoutMilliSeconds();
+    if (timeoutMilliSecs != 0) {
+      IxaFunctions.IXA_INCHIBUILDER_SetOption_Timeout_MilliSeconds(logger, builder, timeoutMilliSecs);
+    }
+    for (InchiFlag flag : options.getFlags()) {
+      switch (flag) {
+      case AuxNone:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_AuxNone, true);
+        break;
+      case ChiralFlagOFF:
+      case ChiralFlagON:
+        //already applied to the molecule
+        break;
+      case DoNotAddH:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_DoNotAddH, true);
+        break;
+      case FixedH:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_FixedH, true);
+        break;
+      case KET:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_KET, true);
+        break;
+      case LargeMolecules:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_LargeMolecules, true);
+        break;
+      case NEWPSOFF:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_NewPsOff, true);
+        break;
+      case OneFiveT:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_15T, true);
+        break;
+      case RecMet:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_RecMet, true);
+        break;
+      case SLUUD:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_SLUUD, true);
+        break;
+      case SNon:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption_Stereo(logger, builder, IXA_INCHIBUILDER_STEREOOPTION.IXA_INCHIBUILDER_STEREOOPTION_SNon);
+        break;
+      case SRac:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption_Stereo(logger, builder, IXA_INCHIBUILDER_STEREOOPTION.IXA_INCHIBUILDER_STEREOOPTION_SRac);
+        break;
+      case SRel:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption_Stereo(logger, builder, IXA_INCHIBUILDER_STEREOOPTION.IXA_INCHIBUILDER_STEREOOPTION_SRel);
+        break;
+      case SUCF:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption_Stereo(logger, builder, IXA_INCHIBUILDER_STEREOOPTION.IXA_INCHIBUILDER_STEREOOPTION_SUCF);
+        break;
+      case SAbs:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption_Stereo(logger, builder, IXA_INCHIBUILDER_STEREOOPTION.IXA_INCHIBUILDER_STEREOOPTION_SAbs);
+        break;
+      case SUU:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_SUU, true);
+        break;
+      case SaveOpt:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_SaveOpt, true);
+        break;
+      case WarnOnEmptyStructure:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_WarnOnEmptyStructure, true);
+        break;
+      case NoWarnings:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_NoWarnings, true);
+        break;
+      case LooseTSACheck:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_LooseTSACheck, true);
+        break;
+      case Polymers:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_Polymers, true);
+        break;
+      case Polymers105:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_Polymers105, true);
+        break;
+      case FoldCRU:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_FoldCRU, true);
+        break;
+      case NoFrameShift:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_NoFrameShift, true);
+        break;
+      case NoEdits:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_NoEdits, true);
+        break;
+      case NPZz:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_NPZZ, true);
+        break;
+      case SAtZz:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_SATZZ, true);
+        break;
+      case OutErrInChI:
+        IxaFunctions.IXA_INCHIBUILDER_SetOption(logger, builder, IXA_INCHIBUILDER_OPTION.IXA_INCHIBUILDER_OPTION_OutErrInChI, true);
+        break;
+      default:
+        throw new IllegalStateException("Unexpected InChI option flag: " + flag);
+      }
+    }
+  }
+
+  static InchiStatus getStatus(IXA_STATUS_HANDLE logger) {
+    if (IxaFunctions.IXA_STATUS_HasError(logger)) {
+      return InchiStatus.ERROR;
+    }
+    if (IxaFunctions.IXA_STATUS_HasWarning(logger)) {
+      return InchiStatus.WARNING;
+    }
+    return InchiStatus.SUCCESS;
+  }
+
+  static String getMessages(IXA_STATUS_HANDLE logger) {
+    StringBuilder sb = new StringBuilder();
+    int messageCount = IxaFunctions.IXA_STATUS_GetCount(logger);
+    for (int i = 0; i < messageCount; i++) {
+      if (i > 0) {
+        sb.append("; ");
+      }
+      sb.append(IxaFunctions.IXA_STATUS_GetMessage(logger, i));
+    }
+    return sb.toString();
+  }
+
   public static InchiOutput molToInchi(String molText) {
     return molToInchi(molText, InchiOptions.DEFAULT_OPTIONS);
   }
@@ -579,22 +697,25 @@ public class JnaInchi {
    * If strict is true, try to perform InChI2InChI conversion; returns success if a resulting InChI string exactly matches source.
    * Be cautious: the result may be too strict, i.e. a 'false alarm', due to imperfection of conversion.
    * @param inchi
-   * @param strict if false, just briefly check for proper layout (prefix, version, etc.)
+   * @param strict if false, just briefly check for proper layout (prefix, version, etc.). This check is performed in Java, see {@link InchiValidator}
    * @return InchiCheckStatus
    */
   public static InchiCheckStatus checkInchi(String inchi, boolean strict) {
+    if (!strict) {
+      return InchiValidator.checkInchi(inchi);
+    }
     checkLibrary();
     return InchiCheckStatus.of(InchiLibrary.CheckINCHI(inchi, strict));
   }
   
   /**
-   * Check if the string represents valid InChIKey
+   * Check if the string represents valid InChIKey.
+   * This check is performed in Java, see {@link InchiValidator}
    * @param inchiKey
    * @return InchiKeyCheckStatus
    */
   public static InchiKeyCheckStatus checkInchiKey(String inchiKey) {
-    checkLibrary();
-    return InchiKeyCheckStatus.of(InchiLibrary.CheckINCHIKey(inchiKey));
+    return InchiValidator.checkInchiKey(inchiKey);
   }
   
   /**
@@ -763,7 +884,7 @@ public class JnaInchi {
     }
   }
 
-  private static InchiStatus getInchiStatus(int ret) {
+  static InchiStatus getInchiStatus(int ret) {
     switch (ret) {
     case tagRetValGetINCHI.inchi_Ret_OKAY:/* Success; no errors or warnings*/
       return InchiStatus.SUCCESS;
@@ -780,7 +901,7 @@ public class JnaInchi {
     }
   }
 
-  private static String toString(byte[] cstr) {
+  static String toString(byte[] cstr) {
     StringBuilder sb = new StringBuilder(cstr.length);
     for (int i = 0; i < cstr.length; i++) {
       char ch = (char) cstr[i];
@@ -793,6 +914,17 @@ public class JnaInchi {
   }
   
   
+  /**
+   * Loads the InChI native library and performs a trivial conversion, so that the cost of library extraction,
+   * loading and JNA function binding is paid up front rather than on the first real call.
+   * The library is extracted to a persistent cache, see {@link io.github.dan2097.jnainchi.inchi.NativeLibraryCache}
+   * @throws RuntimeException if the native library could not be loaded
+   */
+  public static void preload() {
+    checkLibrary();
+    inchiToInchiKey("InChI=1S/CH4/h1H4");
+  }
+
   /**
    * Returns the version of the wrapped InChI C library
    * @return Version number String
@@ -823,7 +955,11 @@ public class JnaInchi {
     }
   }
 
-  private static void checkLibrary() {
+  static boolean isLibraryLoaded() {
+    return libraryLoadingError == null;
+  }
+
+  static void checkLibrary() {
     if (libraryLoadingError != null) {
       throw new RuntimeException("Error loading InChI native code. Please check that the binaries for your platform (" + platform + ") have been included on the classpath.", libraryLoadingError);
     }
@@ -0,0 +1,67 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+/**
+ * {@link InchiEngine} backed by {@link JnaInchi} i.e. the IXA API accessed through {@link io.github.dan2097.jnainchi.inchi.IxaFunctions}
+ */
+public class JnaInchiEngine implements InchiEngine {
+
+  public static final String NAME = "jna";
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return JnaInchi.isLibraryLoaded();
+  }
+
+  @Override
+  public InchiOutput toInchi(InchiInput inchiInput, InchiOptions options) {
+    return JnaInchi.toInchi(inchiInput, options);
+  }
+
+  @Override
+  public InchiOutput molToInchi(String molText, InchiOptions options) {
+    return JnaInchi.molToInchi(molText, options);
+  }
+
+  @Override
+  public InchiOutput inchiToInchi(String inchi, InchiOptions options) {
+    return JnaInchi.inchiToInchi(inchi, options);
+  }
+
+  @Override
+  public InchiKeyOutput inchiToInchiKey(String inchi) {
+    return JnaInchi.inchiToInchiKey(inchi);
+  }
+
+  @Override
+  public InchiInputFromInchiOutput getInchiInputFromInchi(String inchi, InchiOptions options) {
+    return JnaInchi.getInchiInputFromInchi(inchi, options);
+  }
+
+  @Override
+  public InchiCheckStatus checkInchi(String inchi, boolean strict) {
+    return JnaInchi.checkInchi(inchi, strict);
+  }
+
+}
@@ -0,0 +1,380 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Applies a function to a stream of items on a pool of threads and passes the results to a sink in input order.
+ * <p>
+ * At most <code>window</code> items are in flight: {@link #submit(Object)} blocks the producing thread,
+ * and passes completed results to the sink, until there is room for another item. Memory use is therefore
+ * bounded by the window, whatever the length of the stream or the order the threads finish in.
+ * The sink is only called by the thread that calls {@link #submit(Object)} and {@link #finish()},
+ * so it does not need to be thread-safe.
+ * <p>
+ * By default the order is strict, so one slow item holds back everything behind it.
+ * If a maximum wait is set, once the oldest item has been in flight for longer than that, results that have
+ * already completed are passed to the sink ahead of it. The sink receives the sequence number of every item
+ * so that the order can be restored downstream.
+ * <pre>
+ * try (OrderedPipeline&lt;String, InchiOutput&gt; pipeline = OrderedPipeline.builder(
+ *     (String molText) -&gt; JnaInchi.molToInchi(molText),
+ *     (sequence, molText, output) -&gt; out.write(output.getInchi() + "\n")).withThreads(4).build()) {
+ *   for (String molText : records) {
+ *     pipeline.submit(molText);
+ *   }
+ *   pipeline.finish();
+ * }
+ * </pre>
+ * A pipeline is used by a single producing thread and converts a single stream.
+ *
+ * @param <T> the type of the input items
+ * @param <R> the type of the results
+ */
+public class OrderedPipeline<T, R> implements AutoCloseable {
+
+  /**
+   * Receives the results of a pipeline
+   *
+   * @param <T> the type of the input items
+   * @param <R> the type of the results
+   */
+  @FunctionalInterface
+  public interface Sink<T, R> {
+    /**
+     * Called once for every item, in input order unless a maximum wait is set
+     * @param sequence position of the item in the input, starting at 0
+     * @param input the item
+     * @param result the result of the function
+     * @throws IOException
+     */
+    void accept(long sequence, T input, R result) throws IOException;
+  }
+
+  private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+  private final Function<? super T, ? extends R> function;
+  private final Sink<? super T, ? super R> sink;
+  private final Executor executor;
+  private final ExecutorService ownExecutor;
+  private final int window;
+  private final long maxWaitNanos;
+
+  /** The items that are submitted but not yet passed to the sink, in input order */
+  private final ArrayDeque<Item> pending;
+  /** Notified whenever an item completes */
+  private final Object completion = new Object();
+  private long submittedCount = 0;
+  private long outOfOrderCount = 0;
+  private boolean closed = false;
+
+  private OrderedPipeline(OrderedPipelineBuilder<T, R> builder) {
+    this.function = builder.function;
+    this.sink = builder.sink;
+    if (builder.executor != null) {
+      this.executor = builder.executor;
+      this.ownExecutor = null;
+    }
+    else {
+      this.ownExecutor = Executors.newFixedThreadPool(builder.threads, newThreadFactory(builder.threadName));
+      this.executor = ownExecutor;
+    }
+    int threads = builder.executor != null ? Runtime.getRuntime().availableProcessors() : builder.threads;
+    this.window = builder.window > 0 ? builder.window : 64 * threads;
+    this.maxWaitNanos = builder.maxWaitNanos;
+    this.pending = new ArrayDeque<>(Math.min(window, 1024));
+  }
+
+  /**
+   * Returns a builder for a pipeline
+   * @param function the function applied to every item, it is called concurrently by the threads of the pipeline
+   * @param sink receives the results
+   * @return builder to configure and instantiate an OrderedPipeline
+   */
+  public static <T, R> OrderedPipelineBuilder<T, R> builder(Function<? super T, ? extends R> function,
+      Sink<? super T, ? super R> sink) {
+    if (function == null) {
+      throw new IllegalArgumentException("function must not be null");
+    }
+    if (sink == null) {
+      throw new IllegalArgumentException("sink must not be null");
+    }
+    return new OrderedPipelineBuilder<>(function, sink);
+  }
+
+  /**
+   * Submits the next item of the stream. If the window is full, blocks until results have been passed to the sink.
+   * @param input
+   * @throws IOException if the sink fails, or the thread is interrupted while waiting
+   * @throws IllegalStateException if the function throws an exception or error for an item
+   */
+  public void submit(T input) throws IOException {
+    if (closed) {
+      throw new IllegalStateException("OrderedPipeline has been closed");
+    }
+    while (pending.size() >= window) {
+      emitNext();
+    }
+    Item item = new Item(submittedCount++, input);
+    executor.execute(item);
+    pending.add(item);
+  }
+
+  /**
+   * Waits for all submitted items and passes their results to the sink
+   * @throws IOException if the sink fails, or the thread is interrupted while waiting
+   * @throws IllegalStateException if the function throws an exception or error for an item
+   */
+  public void finish() throws IOException {
+    while (!pending.isEmpty()) {
+      emitNext();
+    }
+  }
+
+  /**
+   * Passes one result to the sink: that of the oldest item, or once it has exceeded the maximum wait,
+   * that of any completed item.
+   */
+  private void emitNext() throws IOException {
+    Item head = pending.peek();
+    Item next = null;
+    try {
+      synchronized (completion) {
+        while (next == null) {
+          if (head.isDone()) {
+            next = pending.poll();
+            break;
+          }
+          long waitNanos = 0;
+          if (maxWaitNanos > 0) {
+            waitNanos = head.submitNanos + maxWaitNanos - System.nanoTime();
+            if (waitNanos <= 0) {
+              next = removeCompleted();
+              if (next != null) {
+                outOfOrderCount++;
+                break;
+              }
+              waitNanos = 0;
+            }
+          }
+          if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.timedWait(completion, waitNanos);
+          }
+          else {
+            completion.wait();
+          }
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for item " + head.sequence);
+    }
+
+    R result;
+    try {
+      result = next.get();
+    }
+    catch (InterruptedException e) {
+      //Not reached, the item is done
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for item " + next.sequence);
+    }
+    catch (ExecutionException e) {
+      throw new IllegalStateException("Processing failed at item " + next.sequence, e.getCause());
+    }
+    sink.accept(next.sequence, next.input, result);
+  }
+
+  private Item removeCompleted() {
+    for (Iterator<Item> it = pending.iterator(); it.hasNext();) {
+      Item item = it.next();
+      if (item.isDone()) {
+        it.remove();
+        return item;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Number of items submitted so far
+   * @return item count
+   */
+  public long getSubmittedCount() {
+    return submittedCount;
+  }
+
+  /**
+   * Number of results passed to the sink ahead of an older item, because of the maximum wait
+   * @return out of order count
+   */
+  public long getOutOfOrderCount() {
+    return outOfOrderCount;
+  }
+
+  /**
+   * Cancels the items that have not been passed to the sink, and shuts down the threads of the pipeline
+   * unless an executor was supplied. Call {@link #finish()} first to keep the results.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    for (Item item : pending) {
+      item.cancel(true);
+    }
+    pending.clear();
+    if (ownExecutor != null) {
+      ownExecutor.shutdownNow();
+    }
+  }
+
+  private static ThreadFactory newThreadFactory(final String threadName) {
+    final int pool = POOL_COUNT.incrementAndGet();
+    final AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, threadName + "-" + pool + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private class Item extends FutureTask<R> {
+    private final long sequence;
+    private final T input;
+    private final long submitNanos = System.nanoTime();
+
+    private Item(long sequence, T input) {
+      super(() -> function.apply(input));
+      this.sequence = sequence;
+      this.input = input;
+    }
+
+    @Override
+    protected void done() {
+      synchronized (completion) {
+        completion.notifyAll();
+      }
+    }
+  }
+
+  public static class OrderedPipelineBuilder<T, R> {
+
+    private final Function<? super T, ? extends R> function;
+    private final Sink<? super T, ? super R> sink;
+    private Executor executor = null;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private String threadName = "inchi-pipeline";
+    private int window = 0;
+    private long maxWaitNanos = 0;
+
+    private OrderedPipelineBuilder(Function<? super T, ? extends R> function, Sink<? super T, ? super R> sink) {
+      this.function = function;
+      this.sink = sink;
+    }
+
+    /**
+     * Number of daemon threads the pipeline creates, by default the number of available processors.
+     * They are shut down by {@link OrderedPipeline#close()}.
+     * @param threads
+     * @return builder
+     */
+    public OrderedPipelineBuilder<T, R> withThreads(int threads) {
+      if (threads < 1) {
+        throw new IllegalArgumentException("threads must be at least 1");
+      }
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * Prefix of the names of the threads the pipeline creates
+     * @param threadName
+     * @return builder
+     */
+    public OrderedPipelineBuilder<T, R> withThreadName(String threadName) {
+      if (threadName == null) {
+        throw new IllegalArgumentException("threadName must not be null");
+      }
+      this.threadName = threadName;
+      return this;
+    }
+
+    /**
+     * Runs the function on the given executor instead of threads created by the pipeline.
+     * The executor is not shut down by {@link OrderedPipeline#close()}.
+     * @param executor
+     * @return builder
+     */
+    public OrderedPipelineBuilder<T, R> withExecutor(Executor executor) {
+      if (executor == null) {
+        throw new IllegalArgumentException("executor must not be null");
+      }
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Maximum number of items in flight, i.e. submitted but not yet passed to the sink.
+     * By default 64 items per thread.
+     * @param window
+     * @return builder
+     */
+    public OrderedPipelineBuilder<T, R> withWindow(int window) {
+      if (window < 1) {
+        throw new IllegalArgumentException("window must be at least 1");
+      }
+      this.window = window;
+      return this;
+    }
+
+    /**
+     * Once the oldest item in flight has waited longer than this, completed results are passed to the sink
+     * out of order. By default 0, which keeps the order strict.
+     * @param maxWaitMilliSeconds
+     * @return builder
+     */
+    public OrderedPipelineBuilder<T, R> withMaxWaitMilliSeconds(long maxWaitMilliSeconds) {
+      if (maxWaitMilliSeconds < 0) {
+        throw new IllegalArgumentException("maxWaitMilliSeconds must not be negative");
+      }
+      this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMilliSeconds);
+      return this;
+    }
+
+    public OrderedPipeline<T, R> build() {
+      return new OrderedPipeline<>(this);
+    }
+  }
+}
@@ -30,6 +30,9 @@ import com.sun.jna.Pointer;
  */
 public class InchiLibrary implements Library {
   public static final String JNA_LIBRARY_NAME = "jnainchi";
+  static {
+    NativeLibraryCache.register(InchiLibrary.JNA_LIBRARY_NAME, InchiLibrary.class);
+  }
   public static final NativeLibrary JNA_NATIVE_LIB = NativeLibrary.getInstance(InchiLibrary.JNA_LIBRARY_NAME);
   static {
     Native.register(InchiLibrary.class, InchiLibrary.JNA_NATIVE_LIB);
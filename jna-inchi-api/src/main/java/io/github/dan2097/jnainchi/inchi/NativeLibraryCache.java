@@ -0,0 +1,191 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi.inchi;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Platform;
+
+/**
+ * Persistent cache for native libraries that are bundled in jars as classpath resources.
+ * <p>
+ * By default JNA extracts the bundled library into a new temporary file on every JVM start.
+ * This class instead extracts it once into a cache directory, in a subdirectory named after the CRC-32 and size of the library,
+ * and then points JNA at the cached copy. On subsequent starts the cached copy is verified against the checksum recorded in the jar
+ * and re-extracted if it is missing or does not match.
+ * <p>
+ * The cache directory defaults to <code>~/.jnainchi/native</code> and may be changed using the {@value #CACHE_DIR_PROPERTY} system property.
+ * Setting {@value #CACHE_ENABLED_PROPERTY} to false disables the cache.
+ * If the cache cannot be used (e.g. read-only file system) JNA's normal extraction is used instead.
+ */
+public class NativeLibraryCache {
+
+  public static final String CACHE_DIR_PROPERTY = "jnainchi.native.cache.dir";
+  public static final String CACHE_ENABLED_PROPERTY = "jnainchi.native.cache";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private NativeLibraryCache() {
+  }
+
+  /**
+   * Extracts the given library to the cache, if enabled, and registers the cache location with JNA.
+   * Must be called before the library is first loaded by {@link NativeLibrary#getInstance(String)}.
+   * Libraries that are not inside a jar are left alone, as JNA loads these in place.
+   * Failures are silently ignored as JNA will then fallback to its normal extraction mechanism.
+   * @param libraryName library name as passed to JNA e.g. "jnainchi"
+   * @param anchor class whose class loader is used to find the bundled library
+   * @return the cached library file, or null if the cache was not used
+   */
+  public static File register(String libraryName, Class<?> anchor) {
+    if ("false".equalsIgnoreCase(System.getProperty(CACHE_ENABLED_PROPERTY))) {
+      return null;
+    }
+    try {
+      URL url = anchor.getClassLoader().getResource(getResourcePath(libraryName));
+      if (url == null || "file".equals(url.getProtocol())) {
+        return null;
+      }
+      File cached = extractToCache(libraryName, anchor.getClassLoader(), getCacheDirectory());
+      if (cached != null) {
+        NativeLibrary.addSearchPath(libraryName, cached.getParent());
+      }
+      return cached;
+    }
+    catch (Throwable e) {
+      //e.g. read-only file system, fallback to JNA extracting the library
+      return null;
+    }
+  }
+
+  /**
+   * Returns the directory under which libraries are cached
+   * @return cache directory
+   */
+  public static File getCacheDirectory() {
+    String dir = System.getProperty(CACHE_DIR_PROPERTY);
+    if (dir != null && !dir.isEmpty()) {
+      return new File(dir);
+    }
+    return new File(new File(System.getProperty("user.home"), ".jnainchi"), "native");
+  }
+
+  /**
+   * Extracts the library bundled for the current platform into cacheDir, unless a copy with the same checksum is already present
+   * @param libraryName library name as passed to JNA e.g. "jnainchi"
+   * @param classLoader class loader used to find the bundled library
+   * @param cacheDir root directory of the cache
+   * @return the cached library file, or null if no library is bundled for the current platform
+   * @throws IOException
+   */
+  public static File extractToCache(String libraryName, ClassLoader classLoader, File cacheDir) throws IOException {
+    URL url = classLoader.getResource(getResourcePath(libraryName));
+    if (url == null) {
+      return null;
+    }
+    long expectedCrc = -1;
+    long expectedSize = -1;
+    URLConnection connection = url.openConnection();
+    if (connection instanceof JarURLConnection) {
+      //the jar's central directory records the CRC and size, so these are available without reading the library
+      JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+      if (entry != null) {
+        expectedCrc = entry.getCrc();
+        expectedSize = entry.getSize();
+      }
+    }
+    if (expectedCrc == -1 || expectedSize == -1) {
+      CRC32 crc = new CRC32();
+      try (InputStream is = url.openStream()) {
+        expectedSize = copy(is, null, crc);
+      }
+      expectedCrc = crc.getValue();
+    }
+
+    String fileName = new File(getResourcePath(libraryName)).getName();
+    File libraryDir = new File(new File(cacheDir, Platform.RESOURCE_PREFIX), String.format("%08x-%d", expectedCrc, expectedSize));
+    File cached = new File(libraryDir, fileName);
+    if (cached.isFile() && cached.length() == expectedSize) {
+      CRC32 crc = new CRC32();
+      try (InputStream is = Files.newInputStream(cached.toPath())) {
+        copy(is, null, crc);
+      }
+      if (crc.getValue() == expectedCrc) {
+        return cached;
+      }
+    }
+
+    Files.createDirectories(libraryDir.toPath());
+    Path tmp = Files.createTempFile(libraryDir.toPath(), fileName, ".tmp");
+    try {
+      CRC32 crc = new CRC32();
+      try (InputStream is = url.openStream(); OutputStream os = Files.newOutputStream(tmp)) {
+        copy(is, os, crc);
+      }
+      if (crc.getValue() != expectedCrc) {
+        throw new IOException("Checksum mismatch when extracting " + url);
+      }
+      try {
+        Files.move(tmp, cached.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    finally {
+      Files.deleteIfExists(tmp);
+    }
+    return cached;
+  }
+
+  private static String getResourcePath(String libraryName) {
+    String fileName = System.mapLibraryName(libraryName);
+    if (Platform.isMac() && fileName.endsWith(".jnilib")) {
+      fileName = fileName.substring(0, fileName.length() - ".jnilib".length()) + ".dylib";
+    }
+    return Platform.RESOURCE_PREFIX + "/" + fileName;
+  }
+
+  private static long copy(InputStream is, OutputStream os, CRC32 crc) throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    long total = 0;
+    int read;
+    while ((read = is.read(buffer)) != -1) {
+      crc.update(buffer, 0, read);
+      if (os != null) {
+        os.write(buffer, 0, read);
+      }
+      total += read;
+    }
+    return total;
+  }
+
+}
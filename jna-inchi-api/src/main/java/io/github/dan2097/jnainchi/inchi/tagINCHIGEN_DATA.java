@@ -19,6 +19,7 @@ package io.github.dan2097.jnainchi.inchi;
 import java.util.Arrays;
 import java.util.List;
 
+import com.sun.jna.Pointer;
 import com.sun.jna.Structure;
 import com.sun.jna.Structure.ByReference;
 /**
@@ -37,10 +38,16 @@ public class tagINCHIGEN_DATA extends Structure implements ByReference {
    * C type : int[2]
    */
   public int[] num_components = new int[2];
-  /** C type : NORM_ATOMS*[2] */
-  public tagNormAtomData[] NormAtomsNontaut = new tagNormAtomData[2];
-  /** C type : NORM_ATOMS*[2] */
-  public tagNormAtomData[] NormAtomsTaut = new tagNormAtomData[2];
+  /**
+   * pointers to the normalized atoms, owned by the generator<br>
+   * C type : NORM_ATOMS*[2]
+   */
+  public Pointer[] NormAtomsNontaut = new Pointer[2];
+  /**
+   * pointers to the normalized atoms, owned by the generator<br>
+   * C type : NORM_ATOMS*[2]
+   */
+  public Pointer[] NormAtomsTaut = new Pointer[2];
 
   protected List<String> getFieldOrder() {
     return Arrays.asList("pStrErrStruct", "num_components", "NormAtomsNontaut", "NormAtomsTaut");
@@ -53,7 +60,7 @@ public class tagINCHIGEN_DATA extends Structure implements ByReference {
    * @param NormAtomsNontaut C type : NORM_ATOMS*[2]<br>
    * @param NormAtomsTaut C type : NORM_ATOMS*[2]
    */
-  public tagINCHIGEN_DATA(byte pStrErrStruct[], int num_components[], tagNormAtomData NormAtomsNontaut[], tagNormAtomData NormAtomsTaut[]) {
+  public tagINCHIGEN_DATA(byte pStrErrStruct[], int num_components[], Pointer NormAtomsNontaut[], Pointer NormAtomsTaut[]) {
     super();
     if ((pStrErrStruct.length != this.pStrErrStruct.length)) 
       throw new IllegalArgumentException("Wrong array size !");
@@ -69,4 +76,8 @@ public class tagINCHIGEN_DATA extends Structure implements ByReference {
     this.NormAtomsTaut = NormAtomsTaut;
   }
 
+  public tagINCHIGEN_DATA() {
+    super();
+  }
+
 }
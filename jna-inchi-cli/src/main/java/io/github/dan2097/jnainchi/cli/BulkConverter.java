@@ -0,0 +1,517 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi.cli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.function.UnaryOperator;
+
+import io.github.dan2097.jnainchi.InchiFlag;
+import io.github.dan2097.jnainchi.InchiKeyOutput;
+import io.github.dan2097.jnainchi.InchiKeyStatus;
+import io.github.dan2097.jnainchi.InchiOptions;
+import io.github.dan2097.jnainchi.InchiOptions.InchiOptionsBuilder;
+import io.github.dan2097.jnainchi.InchiOutput;
+import io.github.dan2097.jnainchi.InchiStatus;
+import io.github.dan2097.jnainchi.JnaInchi;
+import io.github.dan2097.jnainchi.OrderedPipeline;
+import io.github.dan2097.jnainchi.SmilesToInchi;
+import io.github.dan2097.jnainchi.cli.ShardReader.Record;
+import io.github.dan2097.jnarinchi.JnaRinchi;
+import io.github.dan2097.jnarinchi.RinchiOutput;
+import io.github.dan2097.jnarinchi.Status;
+
+/**
+ * Converts a file of molecules or reactions, or one shard of it, to a TSV file with one line per record:
+ * the byte offset of the record in the input, its name, the status, the InChI, InChIKey or RInChI, and any message.
+ * <p>
+ * The records are converted on all available processors and written in input order.
+ * A shard is the i-th of n equal byte ranges of the input and holds the records that start in that range,
+ * so n processes, possibly on different machines, can convert one file with no coordination and the concatenation
+ * of their outputs in shard order is the output of a single process. Only the first shard starts with the header line.
+ * <p>
+ * Every <code>checkpointInterval</code> records the output is forced to disk and a checkpoint file records how far the
+ * conversion got. A conversion that is killed and started again with the same arguments truncates the output to the
+ * last checkpoint and continues from there. A completed conversion is not repeated, unless its output has since been
+ * deleted or truncated. The checkpoint belongs to the input as it was, a replaced or modified input is a different
+ * conversion.
+ */
+public class BulkConverter {
+
+  /**
+   * Format of the input file
+   */
+  public enum InputFormat {
+    /** Molfiles separated by <code>$$$$</code> lines */
+    SDF,
+    /** One SMILES per line, optionally followed by whitespace and a name */
+    SMILES,
+    /** One InChI per line, optionally followed by whitespace and a name */
+    INCHI,
+    /** RDfile of reactions, or a single RXN file */
+    RDFILE;
+
+    /**
+     * Determines the format from the file extension
+     * @param fileName
+     * @return the format
+     * @throws IllegalArgumentException if the extension is not recognised
+     */
+    public static InputFormat fromFileName(String fileName) {
+      String name = fileName.toLowerCase(Locale.ROOT);
+      if (name.endsWith(".gz")) {
+        throw new IllegalArgumentException("Compressed input cannot be split into shards, decompress it first: " + fileName);
+      }
+      if (name.endsWith(".sdf") || name.endsWith(".sd") || name.endsWith(".mol")) {
+        return SDF;
+      }
+      if (name.endsWith(".smi") || name.endsWith(".smiles") || name.endsWith(".ism")) {
+        return SMILES;
+      }
+      if (name.endsWith(".inchi") || name.endsWith(".txt")) {
+        return INCHI;
+      }
+      if (name.endsWith(".rdf") || name.endsWith(".rd") || name.endsWith(".rxn")) {
+        return RDFILE;
+      }
+      throw new IllegalArgumentException("Cannot determine the format of " + fileName + ", specify it explicitly");
+    }
+  }
+
+  /**
+   * The identifier written for each record
+   */
+  public enum OutputType {
+    INCHI,
+    INCHIKEY,
+    /** Only for RDfile input */
+    RINCHI
+  }
+
+  static final String HEADER = "offset\tid\tstatus\tresult\tmessage";
+
+  private final InputFormat inputFormat;
+  private final OutputType outputType;
+  private final InchiOptions options;
+  private final int threads;
+  private final int shardIndex;
+  private final int shardCount;
+  private final long checkpointInterval;
+  private final Path checkpointFile;
+
+  private BulkConverter(BulkConverterBuilder builder) {
+    this.inputFormat = builder.inputFormat;
+    this.outputType = builder.outputType;
+    this.options = builder.options;
+    this.threads = builder.threads;
+    this.shardIndex = builder.shardIndex;
+    this.shardCount = builder.shardCount;
+    this.checkpointInterval = builder.checkpointInterval;
+    this.checkpointFile = builder.checkpointFile;
+  }
+
+  public static BulkConverterBuilder builder() {
+    return new BulkConverterBuilder();
+  }
+
+  /**
+   * Converts the shard of the input, resuming from the checkpoint if there is one
+   * @param input
+   * @param output the TSV file, it is created or, when resuming, appended to
+   * @return summary of the whole conversion, including the records converted before resuming
+   * @throws IOException if reading the input or writing the output or checkpoint fails
+   * @throws IllegalStateException if the checkpoint belongs to a different conversion
+   * @throws IllegalArgumentException if InChI options or a timeout are given for RDfile input
+   */
+  public Summary convert(Path input, Path output) throws IOException {
+    return convert(input, output, UnaryOperator.identity());
+  }
+
+  /**
+   * As {@link #convert(Path, Path)}, with the writer of the output lines passed through outputWrapper
+   */
+  Summary convert(Path input, Path output, UnaryOperator<Writer> outputWrapper) throws IOException {
+    if (input == null) {
+      throw new IllegalArgumentException("input must not be null");
+    }
+    if (output == null) {
+      throw new IllegalArgumentException("output must not be null");
+    }
+    long startNanos = System.nanoTime();
+    InputFormat format = inputFormat != null ? inputFormat : InputFormat.fromFileName(input.getFileName().toString());
+    OutputType type = outputType != null ? outputType : format == InputFormat.RDFILE ? OutputType.RINCHI : OutputType.INCHI;
+    if ((format == InputFormat.RDFILE) != (type == OutputType.RINCHI)) {
+      throw new IllegalArgumentException("RInChI output requires RDfile input, and RDfile input gives RInChI output");
+    }
+    if (format == InputFormat.RDFILE && (!options.getFlags().isEmpty() || options.getTimeoutMilliSeconds() != 0)) {
+      throw new IllegalArgumentException("InChI options and timeouts do not apply to RDfile input");
+    }
+    long size = Files.size(input);
+    long start = size * shardIndex / shardCount;
+    long end = size * (shardIndex + 1) / shardCount;
+    String job = describeJob(input, size, Files.getLastModifiedTime(input).toMillis(), format, type);
+    Path checkpointPath = checkpointFile != null ? checkpointFile : output.resolveSibling(output.getFileName() + ".checkpoint");
+
+    Checkpoint checkpoint = Checkpoint.read(checkpointPath);
+    if (checkpoint != null && !checkpoint.job.equals(job)) {
+      throw new IllegalStateException("The checkpoint " + checkpointPath + " belongs to a different conversion, delete it to start again: "
+          + checkpoint.job);
+    }
+    long outputSize = Files.isRegularFile(output) ? Files.size(output) : -1;
+    if (checkpoint != null && outputSize < checkpoint.outputBytes) {
+      //The output was deleted or truncated since the checkpoint, so the conversion starts again
+      checkpoint = null;
+    }
+    if (checkpoint != null && checkpoint.complete) {
+      return new Summary(checkpoint.recordCount, checkpoint.errorCount, 0, System.nanoTime() - startNanos);
+    }
+
+    try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        ShardReader reader = new ShardReader(input, format, start, end, checkpoint != null ? checkpoint.nextOffset : -1)) {
+      Writer out = outputWrapper.apply(
+          new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8), 1 << 16));
+      Progress progress;
+      if (checkpoint != null) {
+        //Lines written after the checkpoint are converted again
+        channel.truncate(checkpoint.outputBytes);
+        channel.position(checkpoint.outputBytes);
+        progress = new Progress(job, checkpointPath, channel, out, checkpoint);
+      }
+      else {
+        channel.truncate(0);
+        if (shardIndex == 0) {
+          out.write(HEADER);
+          out.write('\n');
+        }
+        progress = new Progress(job, checkpointPath, channel, out, null);
+      }
+      long resumedRecords = progress.recordCount;
+      try (OrderedPipeline<Record, Line> pipeline = OrderedPipeline.<Record, Line>builder(
+          record -> convertRecord(format, type, record), progress::write)
+          .withThreads(threads).withThreadName("inchi-cli").build()) {
+        Record record;
+        while ((record = reader.next()) != null) {
+          pipeline.submit(record);
+        }
+        pipeline.finish();
+      }
+      progress.checkpoint(true);
+      return new Summary(progress.recordCount, progress.errorCount, resumedRecords, System.nanoTime() - startNanos);
+    }
+  }
+
+  private String describeJob(Path input, long size, long lastModifiedMillis, InputFormat format, OutputType type) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(input.toAbsolutePath().normalize()).append(" size=").append(size).append(" modified=").append(lastModifiedMillis)
+        .append(" format=").append(format)
+        .append(" output=").append(type).append(" shard=").append(shardIndex + 1).append('/').append(shardCount)
+        .append(" options=");
+    for (InchiFlag flag : options.getFlags()) {
+      sb.append(flag).append(',');
+    }
+    return sb.append(" timeout=").append(options.getTimeoutMilliSeconds()).toString();
+  }
+
+  private Line convertRecord(InputFormat format, OutputType type, Record record) {
+    try {
+      switch (format) {
+      case RDFILE:
+        RinchiOutput rinchi = JnaRinchi.fileTextToRinchi(record.text);
+        return new Line(record, rinchi.getStatus() == Status.ERROR, rinchi.getStatus().toString(),
+            rinchi.getRinchi(), rinchi.getErrorMessage());
+      case INCHI:
+        if (type == OutputType.INCHIKEY) {
+          return keyLine(record, JnaInchi.inchiToInchiKey(record.text), InchiStatus.SUCCESS, "");
+        }
+        return inchiLine(record, type, JnaInchi.inchiToInchi(record.text, options));
+      case SMILES:
+        try {
+          return inchiLine(record, type, SmilesToInchi.toInchi(record.text, options));
+        }
+        catch (IOException e) {
+          return new Line(record, true, InchiStatus.ERROR.toString(), "", e.getMessage());
+        }
+      case SDF:
+        return inchiLine(record, type, JnaInchi.molToInchi(record.text, options));
+      default:
+        throw new IllegalStateException("Unexpected format: " + format);
+      }
+    }
+    catch (RuntimeException e) {
+      return new Line(record, true, "ERROR", "", String.valueOf(e.getMessage()));
+    }
+  }
+
+  private static Line inchiLine(Record record, OutputType type, InchiOutput output) {
+    if (output.getStatus() == InchiStatus.ERROR) {
+      return new Line(record, true, InchiStatus.ERROR.toString(), "", output.getMessage());
+    }
+    if (type == OutputType.INCHIKEY) {
+      return keyLine(record, JnaInchi.inchiToInchiKey(output.getInchi()), output.getStatus(), output.getMessage());
+    }
+    return new Line(record, false, output.getStatus().toString(), output.getInchi(), output.getMessage());
+  }
+
+  private static Line keyLine(Record record, InchiKeyOutput key, InchiStatus status, String message) {
+    if (key.getStatus() != InchiKeyStatus.OK) {
+      return new Line(record, true, InchiStatus.ERROR.toString(), "", key.getStatus().toString());
+    }
+    return new Line(record, false, status.toString(), key.getInchiKey(), message);
+  }
+
+  static void appendTsv(StringBuilder sb, String value) {
+    if (value == null) {
+      return;
+    }
+    for (int i = 0, len = value.length(); i < len; i++) {
+      char c = value.charAt(i);
+      switch (c) {
+      case '\t':
+        sb.append("\\t");
+        break;
+      case '\n':
+        sb.append("\\n");
+        break;
+      case '\r':
+        sb.append("\\r");
+        break;
+      case '\\':
+        sb.append("\\\\");
+        break;
+      default:
+        sb.append(c);
+      }
+    }
+  }
+
+  /**
+   * An output line, formatted by the converting thread
+   */
+  private static final class Line {
+    private final boolean error;
+    private final String text;
+
+    private Line(Record record, boolean error, String status, String result, String message) {
+      this.error = error;
+      StringBuilder sb = new StringBuilder();
+      sb.append(record.offset).append('\t');
+      appendTsv(sb, record.id);
+      sb.append('\t').append(status).append('\t');
+      appendTsv(sb, result);
+      sb.append('\t');
+      appendTsv(sb, message);
+      this.text = sb.append('\n').toString();
+    }
+  }
+
+  /**
+   * Writes the output lines in order and the checkpoints
+   */
+  private final class Progress {
+    private final String job;
+    private final Path checkpointPath;
+    private final FileChannel channel;
+    private final Writer out;
+    private long nextOffset;
+    private long recordCount;
+    private long errorCount;
+
+    private Progress(String job, Path checkpointPath, FileChannel channel, Writer out, Checkpoint checkpoint) {
+      this.job = job;
+      this.checkpointPath = checkpointPath;
+      this.channel = channel;
+      this.out = out;
+      this.nextOffset = checkpoint != null ? checkpoint.nextOffset : -1;
+      this.recordCount = checkpoint != null ? checkpoint.recordCount : 0;
+      this.errorCount = checkpoint != null ? checkpoint.errorCount : 0;
+    }
+
+    private void write(long sequence, Record record, Line line) throws IOException {
+      out.write(line.text);
+      nextOffset = record.nextOffset;
+      recordCount++;
+      if (line.error) {
+        errorCount++;
+      }
+      if (recordCount % checkpointInterval == 0) {
+        checkpoint(false);
+      }
+    }
+
+    private void checkpoint(boolean complete) throws IOException {
+      out.flush();
+      channel.force(false);
+      new Checkpoint(job, nextOffset, recordCount, errorCount, channel.position(), complete).write(checkpointPath);
+    }
+  }
+
+  /**
+   * Result of a conversion
+   */
+  public static class Summary {
+    private final long recordCount;
+    private final long errorCount;
+    private final long resumedRecordCount;
+    private final long elapsedNanos;
+
+    Summary(long recordCount, long errorCount, long resumedRecordCount, long elapsedNanos) {
+      this.recordCount = recordCount;
+      this.errorCount = errorCount;
+      this.resumedRecordCount = resumedRecordCount;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return number of records in the output, including those converted before resuming
+     */
+    public long getRecordCount() {
+      return recordCount;
+    }
+
+    /**
+     * @return number of records whose conversion failed
+     */
+    public long getErrorCount() {
+      return errorCount;
+    }
+
+    /**
+     * @return number of records taken from the checkpoint rather than converted by this run
+     */
+    public long getResumedRecordCount() {
+      return resumedRecordCount;
+    }
+
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ROOT, "%d records (%d errors, %d from checkpoint) in %.1f s",
+          recordCount, errorCount, resumedRecordCount, elapsedNanos / 1e9);
+    }
+  }
+
+  public static class BulkConverterBuilder {
+
+    private InputFormat inputFormat = null;
+    private OutputType outputType = null;
+    private InchiOptions options = new InchiOptionsBuilder().build();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int shardIndex = 0;
+    private int shardCount = 1;
+    private long checkpointInterval = 10000;
+    private Path checkpointFile = null;
+
+    private BulkConverterBuilder() {
+    }
+
+    /**
+     * Format of the input, by default determined from the file extension
+     * @param inputFormat
+     * @return builder
+     */
+    public BulkConverterBuilder withInputFormat(InputFormat inputFormat) {
+      this.inputFormat = inputFormat;
+      return this;
+    }
+
+    /**
+     * The identifier to generate, by default RInChI for RDfiles and InChI otherwise
+     * @param outputType
+     * @return builder
+     */
+    public BulkConverterBuilder withOutputType(OutputType outputType) {
+      this.outputType = outputType;
+      return this;
+    }
+
+    public BulkConverterBuilder withOptions(InchiOptions options) {
+      if (options == null) {
+        throw new IllegalArgumentException("options must not be null");
+      }
+      this.options = options;
+      return this;
+    }
+
+    /**
+     * Number of converting threads, by default the number of available processors
+     * @param threads
+     * @return builder
+     */
+    public BulkConverterBuilder withThreads(int threads) {
+      if (threads < 1) {
+        throw new IllegalArgumentException("threads must be at least 1");
+      }
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * Converts only the records that start in the given byte range of the input
+     * @param shardIndex index of the range, starting at 0
+     * @param shardCount number of equal ranges the input is divided into
+     * @return builder
+     */
+    public BulkConverterBuilder withShard(int shardIndex, int shardCount) {
+      if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+        throw new IllegalArgumentException("shardIndex must be between 0 and shardCount - 1");
+      }
+      this.shardIndex = shardIndex;
+      this.shardCount = shardCount;
+      return this;
+    }
+
+    /**
+     * Number of records between checkpoints, by default 10000
+     * @param checkpointInterval
+     * @return builder
+     */
+    public BulkConverterBuilder withCheckpointInterval(long checkpointInterval) {
+      if (checkpointInterval < 1) {
+        throw new IllegalArgumentException("checkpointInterval must be at least 1");
+      }
+      this.checkpointInterval = checkpointInterval;
+      return this;
+    }
+
+    /**
+     * Location of the checkpoint, by default the output file name followed by <code>.checkpoint</code>
+     * @param checkpointFile
+     * @return builder
+     */
+    public BulkConverterBuilder withCheckpointFile(Path checkpointFile) {
+      this.checkpointFile = checkpointFile;
+      return this;
+    }
+
+    public BulkConverter build() {
+      return new BulkConverter(this);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+/**
+ * Progress of a conversion, from which a killed conversion resumes. It is written atomically, after the output
+ * up to {@link #outputBytes} has been forced to disk, so the output and checkpoint always agree.
+ */
+final class Checkpoint {
+
+  private static final String VERSION = "1";
+
+  /** Describes the input, shard and settings, a checkpoint is only used for the same job */
+  final String job;
+  /** Offset of the next record to read, or -1 for the start of the shard */
+  final long nextOffset;
+  final long recordCount;
+  final long errorCount;
+  /** Length of the output that corresponds to the records converted */
+  final long outputBytes;
+  final boolean complete;
+
+  Checkpoint(String job, long nextOffset, long recordCount, long errorCount, long outputBytes, boolean complete) {
+    this.job = job;
+    this.nextOffset = nextOffset;
+    this.recordCount = recordCount;
+    this.errorCount = errorCount;
+    this.outputBytes = outputBytes;
+    this.complete = complete;
+  }
+
+  /**
+   * Reads a checkpoint
+   * @return the checkpoint or null if the file does not exist
+   * @throws IOException if the file cannot be read or is not a checkpoint
+   */
+  static Checkpoint read(Path file) throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(file)) {
+      properties.load(in);
+    }
+    catch (NoSuchFileException e) {
+      return null;
+    }
+    if (!VERSION.equals(properties.getProperty("version"))) {
+      throw new IOException("Not a checkpoint file: " + file);
+    }
+    try {
+      return new Checkpoint(properties.getProperty("job"), Long.parseLong(properties.getProperty("nextOffset")),
+          Long.parseLong(properties.getProperty("records")), Long.parseLong(properties.getProperty("errors")),
+          Long.parseLong(properties.getProperty("outputBytes")), Boolean.parseBoolean(properties.getProperty("complete")));
+    }
+    catch (NumberFormatException e) {
+      throw new IOException("Corrupt checkpoint file: " + file, e);
+    }
+  }
+
+  /**
+   * Writes the checkpoint to a temporary file, forces it to disk and moves it into place,
+   * so a crash leaves either the previous or the new checkpoint
+   */
+  void write(Path file) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("version", VERSION);
+    properties.setProperty("job", job);
+    properties.setProperty("nextOffset", Long.toString(nextOffset));
+    properties.setProperty("records", Long.toString(recordCount));
+    properties.setProperty("errors", Long.toString(errorCount));
+    properties.setProperty("outputBytes", Long.toString(outputBytes));
+    properties.setProperty("complete", Boolean.toString(complete));
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      OutputStream out = Channels.newOutputStream(channel);
+      properties.store(out, "jna-inchi bulk conversion checkpoint");
+      out.flush();
+      channel.force(true);
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+}
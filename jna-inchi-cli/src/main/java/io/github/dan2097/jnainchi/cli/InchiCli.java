@@ -0,0 +1,154 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi.cli;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import io.github.dan2097.jnainchi.InchiFlag;
+import io.github.dan2097.jnainchi.InchiOptions.InchiOptionsBuilder;
+import io.github.dan2097.jnainchi.cli.BulkConverter.BulkConverterBuilder;
+import io.github.dan2097.jnainchi.cli.BulkConverter.InputFormat;
+import io.github.dan2097.jnainchi.cli.BulkConverter.OutputType;
+
+/**
+ * Command line interface to {@link BulkConverter}, the main class of <code>jna-inchi-cli.jar</code>
+ */
+public class InchiCli {
+
+  static final int EXIT_USAGE = 1;
+  static final int EXIT_CHECKPOINT_MISMATCH = 2;
+  static final int EXIT_IO_ERROR = 3;
+
+  private static final String USAGE = String.join(System.lineSeparator(),
+      "Usage: java -jar jna-inchi-cli.jar [options] <input> <output>",
+      "Converts SDF, SMILES, InChI or RDfile input to a TSV file of InChIs, InChIKeys or RInChIs.",
+      "",
+      "  --format sdf|smiles|inchi|rdfile  input format (default: from the file extension)",
+      "  --to inchi|inchikey|rinchi        output (default: rinchi for RDfiles, inchi otherwise)",
+      "  --options flag,flag,...           InChI options, e.g. SNon,FixedH",
+      "  --timeout <ms>                    time limit per molecule",
+      "  --threads <n>                     converting threads (default: number of processors)",
+      "  --shard <i>/<n>                   convert only the i-th of n equal parts of the input, i from 1",
+      "  --checkpoint <file>               checkpoint file (default: <output>.checkpoint)",
+      "  --checkpoint-every <n>            records between checkpoints (default: 10000)",
+      "",
+      "A conversion that is interrupted resumes from its checkpoint when run again with the same arguments.");
+
+  public static void main(String[] args) {
+    int exitCode = run(args, System.out, System.err);
+    if (exitCode != 0) {
+      System.exit(exitCode);
+    }
+  }
+
+  static int run(String[] args, PrintStream out, PrintStream err) {
+    BulkConverterBuilder builder = BulkConverter.builder();
+    InchiOptionsBuilder optionsBuilder = new InchiOptionsBuilder();
+    List<String> files = new ArrayList<>();
+    try {
+      for (int i = 0; i < args.length; i++) {
+        String arg = args[i];
+        if (!arg.startsWith("--")) {
+          files.add(arg);
+          continue;
+        }
+        if (arg.equals("--help")) {
+          out.println(USAGE);
+          return 0;
+        }
+        if (i + 1 == args.length) {
+          throw new IllegalArgumentException("Missing value for " + arg);
+        }
+        String value = args[++i];
+        switch (arg) {
+        case "--format":
+          builder.withInputFormat(InputFormat.valueOf(value.toUpperCase(Locale.ROOT)));
+          break;
+        case "--to":
+          builder.withOutputType(OutputType.valueOf(value.toUpperCase(Locale.ROOT)));
+          break;
+        case "--options":
+          for (String name : value.split(",")) {
+            InchiFlag flag = InchiFlag.getFlagFromName(name.trim());
+            if (flag == null) {
+              throw new IllegalArgumentException("Unknown InChI option: " + name);
+            }
+            optionsBuilder.withFlag(flag);
+          }
+          break;
+        case "--timeout":
+          optionsBuilder.withTimeoutMilliSeconds(Integer.parseInt(value));
+          break;
+        case "--threads":
+          builder.withThreads(Integer.parseInt(value));
+          break;
+        case "--shard":
+          int slash = value.indexOf('/');
+          if (slash < 0) {
+            throw new IllegalArgumentException("--shard must be of the form i/n");
+          }
+          builder.withShard(Integer.parseInt(value.substring(0, slash)) - 1, Integer.parseInt(value.substring(slash + 1)));
+          break;
+        case "--checkpoint":
+          builder.withCheckpointFile(Paths.get(value));
+          break;
+        case "--checkpoint-every":
+          builder.withCheckpointInterval(Long.parseLong(value));
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option: " + arg);
+        }
+      }
+      if (files.size() != 2) {
+        throw new IllegalArgumentException("Expected an input and an output file");
+      }
+      builder.withOptions(optionsBuilder.build());
+    }
+    catch (IllegalArgumentException e) {
+      err.println(e.getMessage());
+      err.println(USAGE);
+      return EXIT_USAGE;
+    }
+
+    Path input = Paths.get(files.get(0));
+    Path output = Paths.get(files.get(1));
+    try {
+      BulkConverter.Summary summary = builder.build().convert(input, output);
+      out.println(output + ": " + summary);
+      return 0;
+    }
+    catch (IllegalArgumentException e) {
+      err.println(e.getMessage());
+      return EXIT_USAGE;
+    }
+    catch (IllegalStateException e) {
+      err.println(e.getMessage());
+      return EXIT_CHECKPOINT_MISMATCH;
+    }
+    catch (IOException e) {
+      err.println("Conversion failed: " + e);
+      return EXIT_IO_ERROR;
+    }
+  }
+}
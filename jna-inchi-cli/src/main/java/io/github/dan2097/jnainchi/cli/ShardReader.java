@@ -0,0 +1,350 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi.cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import io.github.dan2097.jnainchi.cli.BulkConverter.InputFormat;
+
+/**
+ * Reads the records of one byte range (shard) of an input file.
+ * <p>
+ * A record belongs to the shard that contains its first byte, so the shards of a file partition its records
+ * whatever the record sizes, and every process that converts a shard agrees on the boundaries without coordination.
+ * Each record carries the offset of the record that follows it, from which reading can be resumed.
+ */
+final class ShardReader implements Closeable {
+
+  private static final String SDF_END = "$$$$";
+  private static final String RDF_RECORD_START = "$RFMT";
+  /** Longest SDF record terminator line, "$$$$\r\n" */
+  private static final int SDF_END_LINE_LENGTH = 6;
+
+  /**
+   * A record of the input
+   */
+  static final class Record {
+    /** Offset of the first byte of the record in the file */
+    final long offset;
+    /** Offset from which reading continues after this record */
+    final long nextOffset;
+    final String id;
+    final String text;
+
+    Record(long offset, long nextOffset, String id, String text) {
+      this.offset = offset;
+      this.nextOffset = nextOffset;
+      this.id = id;
+      this.text = text;
+    }
+  }
+
+  private final FileChannel channel;
+  private final InputFormat format;
+  private final long end;
+  private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+  /** File offset of the first byte in the buffer */
+  private long bufferOffset = 0;
+  private byte[] lineBytes = new byte[256];
+
+  /** File offset of the start of the line last read, and of the line after it */
+  private long lineStart;
+  private long nextLineStart;
+  /** A line that was read ahead, i.e. the start of the next RDfile record */
+  private String pendingLine;
+  private long pendingLineStart;
+  /** Lines before the first RDfile record, which are prepended to every record */
+  private String rdfHeader = "";
+
+  /**
+   * Opens a shard of a file
+   * @param file the input
+   * @param format the input format
+   * @param start offset of the first byte of the shard
+   * @param end offset after the last byte of the shard
+   * @param resumeOffset a record offset returned by {@link Record#nextOffset} from which to continue, or -1 to read the
+   * shard from the start
+   */
+  ShardReader(Path file, InputFormat format, long start, long end, long resumeOffset) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.format = format;
+    this.end = end;
+    try {
+      if (format == InputFormat.RDFILE) {
+        readRdfHeader();
+      }
+      if (resumeOffset >= 0) {
+        if (resumeOffset > 0) {
+          pendingLine = null;
+        }
+        seek(resumeOffset);
+      }
+      else {
+        seekToFirstRecord(start);
+      }
+    }
+    catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the next record of the shard
+   * @return record or null at the end of the shard
+   */
+  Record next() throws IOException {
+    switch (format) {
+    case SMILES:
+    case INCHI:
+      return nextLineRecord();
+    case SDF:
+      return nextSdfRecord();
+    case RDFILE:
+      return nextRdfRecord();
+    default:
+      throw new IllegalStateException("Unexpected format: " + format);
+    }
+  }
+
+  private Record nextLineRecord() throws IOException {
+    String line;
+    while ((line = readLine()) != null) {
+      if (lineStart >= end) {
+        return null;
+      }
+      String trimmed = line.trim();
+      if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+        continue;
+      }
+      int space = indexOfWhitespace(trimmed);
+      String text = space < 0 ? trimmed : trimmed.substring(0, space);
+      String id = space < 0 ? "" : trimmed.substring(space).trim();
+      return new Record(lineStart, nextLineStart, id, text);
+    }
+    return null;
+  }
+
+  private Record nextSdfRecord() throws IOException {
+    while (true) {
+      String line = readLine();
+      if (line == null || lineStart >= end) {
+        return null;
+      }
+      long offset = lineStart;
+      String id = line.trim();
+      StringBuilder molfile = new StringBuilder();
+      boolean inMolfile = true;
+      boolean blank = id.isEmpty();
+      while (line != null && !line.trim().equals(SDF_END)) {
+        if (inMolfile) {
+          molfile.append(line).append('\n');
+          //Data items after the connection table are not passed to InChI
+          inMolfile = !line.startsWith("M  END");
+        }
+        blank &= line.trim().isEmpty();
+        line = readLine();
+      }
+      //Trailing blank lines at the end of the file are not a record
+      if (!blank || line != null) {
+        return new Record(offset, nextLineStart, id, molfile.toString());
+      }
+    }
+  }
+
+  private Record nextRdfRecord() throws IOException {
+    String first;
+    long offset;
+    if (pendingLine != null) {
+      first = pendingLine;
+      offset = pendingLineStart;
+      pendingLine = null;
+    }
+    else {
+      //Skips to the next record start, which is where reading resumes anyway
+      do {
+        first = readLine();
+        if (first == null) {
+          return null;
+        }
+      } while (!first.startsWith(RDF_RECORD_START));
+      offset = lineStart;
+    }
+    if (offset >= end) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder(rdfHeader).append(first).append('\n');
+    String line;
+    while ((line = readLine()) != null) {
+      if (line.startsWith(RDF_RECORD_START)) {
+        pendingLine = line;
+        pendingLineStart = lineStart;
+        return new Record(offset, lineStart, "", sb.toString());
+      }
+      sb.append(line).append('\n');
+    }
+    return new Record(offset, nextLineStart, "", sb.toString());
+  }
+
+  /**
+   * Reads the lines before the first <code>$RFMT</code> line. A file without such a line, e.g. an RXN file,
+   * is a single record.
+   */
+  private void readRdfHeader() throws IOException {
+    seek(0);
+    StringBuilder sb = new StringBuilder();
+    String line;
+    while ((line = readLine()) != null) {
+      if (line.startsWith(RDF_RECORD_START)) {
+        rdfHeader = sb.toString();
+        return;
+      }
+      sb.append(line).append('\n');
+    }
+    //Single record: the whole file starting at offset 0
+    rdfHeader = "";
+    seek(0);
+    String text = readAll();
+    pendingLine = text.endsWith("\n") ? text.substring(0, text.length() - 1) : text;
+    pendingLineStart = 0;
+  }
+
+  private String readAll() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    String line;
+    while ((line = readLine()) != null) {
+      sb.append(line).append('\n');
+    }
+    return sb.toString();
+  }
+
+  private void seekToFirstRecord(long start) throws IOException {
+    if (format == InputFormat.RDFILE) {
+      if (pendingLine != null) {
+        //Single record file
+        if (start > 0) {
+          pendingLine = null;
+          seek(channel.size());
+        }
+        return;
+      }
+      seekToLineStart(start);
+      //nextRdfRecord skips to the first $RFMT line
+      return;
+    }
+    if (format != InputFormat.SDF) {
+      seekToLineStart(start);
+      return;
+    }
+    if (start == 0) {
+      seek(0);
+      return;
+    }
+    //The first record starts after the first terminator line that ends at or after the shard start
+    long scanStart = start - SDF_END_LINE_LENGTH - 1;
+    if (scanStart <= 0) {
+      seek(0);
+    }
+    else {
+      seekToLineStart(scanStart);
+    }
+    String line;
+    while ((line = readLine()) != null) {
+      if (line.trim().equals(SDF_END) && nextLineStart >= start) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Positions the reader at the first line start at or after the offset
+   */
+  private void seekToLineStart(long offset) throws IOException {
+    if (offset == 0) {
+      seek(0);
+      return;
+    }
+    //Reading the line that contains the byte before the offset ends at the next line start
+    seek(offset - 1);
+    readLine();
+  }
+
+  private void seek(long offset) {
+    bufferOffset = offset;
+    buffer.clear().limit(0);
+    lineStart = offset;
+    nextLineStart = offset;
+  }
+
+  /**
+   * Reads the next line without its terminator, decoded as UTF-8
+   * @return line or null at the end of the file
+   */
+  private String readLine() throws IOException {
+    lineStart = nextLineStart;
+    int length = 0;
+    while (true) {
+      if (!buffer.hasRemaining()) {
+        bufferOffset += buffer.limit();
+        buffer.clear();
+        int read = channel.read(buffer, bufferOffset);
+        buffer.flip();
+        if (read <= 0) {
+          if (length == 0) {
+            return null;
+          }
+          break;
+        }
+      }
+      byte b = buffer.get();
+      nextLineStart++;
+      if (b == '\n') {
+        break;
+      }
+      if (length == lineBytes.length) {
+        lineBytes = Arrays.copyOf(lineBytes, length * 2);
+      }
+      lineBytes[length++] = b;
+    }
+    if (length > 0 && lineBytes[length - 1] == '\r') {
+      length--;
+    }
+    return new String(lineBytes, 0, length, StandardCharsets.UTF_8);
+  }
+
+  private static int indexOfWhitespace(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      if (Character.isWhitespace(s.charAt(i))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,345 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.dan2097.jnainchi.InchiFlag;
+import io.github.dan2097.jnainchi.InchiOptions.InchiOptionsBuilder;
+import io.github.dan2097.jnainchi.InchiOutput;
+import io.github.dan2097.jnainchi.JnaInchi;
+import io.github.dan2097.jnainchi.SmilesToInchi;
+import io.github.dan2097.jnainchi.cli.BulkConverter.InputFormat;
+import io.github.dan2097.jnainchi.cli.BulkConverter.OutputType;
+import io.github.dan2097.jnarinchi.JnaRinchi;
+
+public class BulkConverterTest {
+
+  private static final String[] ELEMENTS = {"O", "N", "S", "Cl", "Xx"};
+  private static final String[] SMILES = {"CCO", "c1ccccc1", "C[C@H](N)C(=O)O", "C1CC", "OCC(O)CO", "[Na+].[Cl-]"};
+
+  private static String molfile(String name, String element) {
+    return name + "\n  test\n\n  3  2  0  0  0  0  0  0  0  0999 V2000\n"
+        + "    0.0000    0.0000    0.0000 C   0  0  0  0  0  0  0  0  0  0  0  0\n"
+        + "    1.5000    0.0000    0.0000 C   0  0  0  0  0  0  0  0  0  0  0  0\n"
+        + String.format("    2.0000    1.0000    0.0000 %-3s 0  0  0  0  0  0  0  0  0  0  0  0\n", element)
+        + "  1  2  1  0  0  0  0\n  2  3  1  0  0  0  0\nM  END\n";
+  }
+
+  /**
+   * SDF with data items, one record in five with an invalid element and Windows line endings in every other record
+   */
+  private static String createSdf(int records) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < records; i++) {
+      String record = molfile("mol" + i, ELEMENTS[i % ELEMENTS.length]) + "> <ID>\n" + i + "\n\n$$$$\n";
+      sb.append(i % 2 == 0 ? record : record.replace("\n", "\r\n"));
+    }
+    return sb.toString();
+  }
+
+  private static String createSmiles(int records) {
+    StringBuilder sb = new StringBuilder("# SMILES file\n");
+    for (int i = 0; i < records; i++) {
+      sb.append(SMILES[i % SMILES.length]).append(i % 3 == 0 ? "\tname " : " ").append(i).append('\n');
+      if (i % 10 == 0) {
+        sb.append('\n');
+      }
+    }
+    return sb.toString();
+  }
+
+  private static String createRdFile(int records) {
+    StringBuilder sb = new StringBuilder("$RDFILE 1\n$DATM 10/18/2026 12:00:00\n");
+    for (int i = 0; i < records; i++) {
+      sb.append("$RFMT $RIREG ").append(i).append("\n$RXN\n\n  test\n\n  1  1\n$MOL\n")
+          .append(molfile("", ELEMENTS[i % 2])).append("$MOL\n").append(molfile("", ELEMENTS[2 + i % 2]));
+    }
+    return sb.toString();
+  }
+
+  private static Path write(Path directory, String fileName, String text) throws IOException {
+    Path file = directory.resolve(fileName);
+    Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  private static List<String> readLines(Path file) throws IOException {
+    return Files.readAllLines(file, StandardCharsets.UTF_8);
+  }
+
+  private static List<String> convertInShards(BulkConverter.BulkConverterBuilder builder, Path input, Path directory,
+      int shardCount) throws IOException {
+    //The shard outputs are concatenated as they are, only the first has a header
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < shardCount; i++) {
+      Path output = directory.resolve("shard" + i + "of" + shardCount + ".tsv");
+      builder.withShard(i, shardCount).build().convert(input, output);
+      lines.addAll(readLines(output));
+    }
+    return lines;
+  }
+
+  private static void assertShardsMatch(BulkConverter.BulkConverterBuilder builder, Path input, Path directory,
+      List<String> expected) throws IOException {
+    for (int shardCount : new int[] {1, 2, 3, 7, 50}) {
+      assertEquals(expected, convertInShards(builder, input, directory, shardCount), shardCount + " shards");
+    }
+  }
+
+  @Test
+  public void testSdf(@TempDir Path directory) throws IOException {
+    String sdf = createSdf(40);
+    Path input = write(directory, "input.sdf", sdf);
+    List<String> expected = new ArrayList<>();
+    expected.add(BulkConverter.HEADER);
+    int offset = 0;
+    for (String record : sdf.split("(?<=\\$\\$\\$\\$\r?\n)")) {
+      String molfile = record.replace("\r", "");
+      molfile = molfile.substring(0, molfile.indexOf("M  END\n") + 7);
+      InchiOutput output = JnaInchi.molToInchi(molfile);
+      expected.add(offset + "\t" + molfile.substring(0, molfile.indexOf('\n')) + "\t" + output.getStatus() + "\t"
+          + Objects.toString(output.getInchi(), "") + "\t" + Objects.toString(output.getMessage(), ""));
+      offset += record.length();
+    }
+    assertEquals(expected, readLines(convertTo(input, directory.resolve("single.tsv"))));
+    assertEquals(41, expected.size());
+    assertTrue(expected.get(5).contains("\tERROR\t\t"), expected.get(5));
+
+    assertShardsMatch(BulkConverter.builder().withThreads(3), input, directory, expected);
+  }
+
+  private static Path convertTo(Path input, Path output) throws IOException {
+    BulkConverter.Summary summary = BulkConverter.builder().withThreads(2).build().convert(input, output);
+    assertEquals(readLines(output).size() - 1, summary.getRecordCount());
+    return output;
+  }
+
+  @Test
+  public void testSmilesToInchiKey(@TempDir Path directory) throws IOException {
+    String smiles = createSmiles(60);
+    Path input = write(directory, "input.smi", smiles);
+    BulkConverter.BulkConverterBuilder builder = BulkConverter.builder().withOutputType(OutputType.INCHIKEY)
+        .withOptions(new InchiOptionsBuilder().withFlag(InchiFlag.SNon).build());
+    Path output = directory.resolve("single.tsv");
+    BulkConverter.Summary summary = builder.build().convert(input, output);
+    List<String> lines = readLines(output);
+    assertEquals(61, lines.size());
+    assertEquals(10, summary.getErrorCount());
+
+    String[] fields = lines.get(3).split("\t", -1);
+    assertEquals(String.valueOf(smiles.indexOf("C[C@H](N)C(=O)O 2")), fields[0]);
+    assertEquals("2", fields[1]);
+    String inchi = SmilesToInchi.toInchi("C[C@H](N)C(=O)O", new InchiOptionsBuilder().withFlag(InchiFlag.SNon).build()).getInchi();
+    assertEquals(JnaInchi.inchiToInchiKey(inchi).getInchiKey(), fields[3]);
+    assertEquals("name 0", lines.get(1).split("\t")[1]);
+
+    assertShardsMatch(builder, input, directory, lines);
+  }
+
+  @Test
+  public void testRdFile(@TempDir Path directory) throws IOException {
+    String rdf = createRdFile(12);
+    Path input = write(directory, "input.rdf", rdf);
+    List<String> lines = readLines(convertTo(input, directory.resolve("single.tsv")));
+    assertEquals(13, lines.size());
+    int secondRecord = rdf.indexOf("$RFMT $RIREG 1\n");
+    String recordText = "$RDFILE 1\n$DATM 10/18/2026 12:00:00\n" + rdf.substring(secondRecord, rdf.indexOf("$RFMT $RIREG 2\n"));
+    String[] fields = lines.get(2).split("\t", -1);
+    assertEquals(String.valueOf(secondRecord), fields[0]);
+    assertEquals(JnaRinchi.fileTextToRinchi(recordText).getRinchi(), fields[3]);
+
+    assertShardsMatch(BulkConverter.builder().withThreads(2), input, directory, lines);
+  }
+
+  /**
+   * Fails on the first output line after the given number, as if the process had been killed there.
+   * Lines that were buffered but not flushed are lost.
+   */
+  private static class KillingWriter extends FilterWriter {
+    private final int linesBeforeKill;
+    private int lines = 0;
+
+    private KillingWriter(Writer out, int linesBeforeKill) {
+      super(out);
+      this.linesBeforeKill = linesBeforeKill;
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+      if (len > 0 && str.charAt(off + len - 1) == '\n' && ++lines > linesBeforeKill) {
+        throw new IOException("Killed");
+      }
+      super.write(str, off, len);
+    }
+  }
+
+  @Test
+  public void testResumeAfterKill(@TempDir Path directory) throws IOException {
+    Path input = write(directory, "input.smi", createSmiles(200));
+    List<String> expected = readLines(convertTo(input, directory.resolve("expected.tsv")));
+
+    for (int shardIndex = 0; shardIndex < 2; shardIndex++) {
+      Path output = directory.resolve("resumed" + shardIndex + ".tsv");
+      Path uninterrupted = directory.resolve("uninterrupted" + shardIndex + ".tsv");
+      BulkConverter.builder().withShard(shardIndex, 2).build().convert(input, uninterrupted);
+      BulkConverter.BulkConverterBuilder builder = BulkConverter.builder().withThreads(3).withShard(shardIndex, 2)
+          .withCheckpointInterval(7);
+      assertThrows(IOException.class, () -> builder.build().convert(input, output, out -> new KillingWriter(out, 25)));
+      //Writes that were not covered by the checkpoint are discarded
+      Files.write(output, "garbage\tline".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+      assertThrows(IOException.class, () -> builder.build().convert(input, output, out -> new KillingWriter(out, 30)));
+
+      BulkConverter.Summary summary = builder.build().convert(input, output);
+      assertEquals(readLines(uninterrupted), readLines(output));
+      assertEquals(49, summary.getResumedRecordCount());
+      assertEquals(readLines(output).size() - (shardIndex == 0 ? 1 : 0), summary.getRecordCount());
+
+      //A completed conversion is not repeated
+      Files.write(output, "unchanged".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+      assertEquals(0, builder.build().convert(input, output).getResumedRecordCount());
+      assertTrue(readLines(output).get(readLines(output).size() - 1).endsWith("unchanged"));
+    }
+    List<String> shards = readLines(directory.resolve("uninterrupted0.tsv"));
+    List<String> secondShard = readLines(directory.resolve("uninterrupted1.tsv"));
+    assertEquals(BulkConverter.HEADER, shards.get(0));
+    shards.addAll(secondShard);
+    assertEquals(expected, shards);
+  }
+
+  @Test
+  public void testCheckpointOfDifferentJob(@TempDir Path directory) throws IOException {
+    Path input = write(directory, "input.smi", createSmiles(20));
+    Path output = directory.resolve("output.tsv");
+    BulkConverter.builder().withShard(0, 2).build().convert(input, output);
+    assertThrows(IllegalStateException.class, () -> BulkConverter.builder().withShard(1, 2).build().convert(input, output));
+    assertThrows(IllegalStateException.class, () -> BulkConverter.builder().withShard(0, 2)
+        .withOutputType(OutputType.INCHIKEY).build().convert(input, output));
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    assertEquals(InchiCli.EXIT_CHECKPOINT_MISMATCH, InchiCli.run(new String[] {"--shard", "2/2", input.toString(),
+        output.toString()}, new PrintStream(new ByteArrayOutputStream()), new PrintStream(err, true)));
+    assertTrue(err.toString().contains("belongs to a different conversion"), err.toString());
+  }
+
+  @Test
+  public void testInputReplaced(@TempDir Path directory) throws IOException {
+    String smiles = createSmiles(100);
+    Path input = write(directory, "input.smi", smiles);
+    Path output = directory.resolve("output.tsv");
+    BulkConverter.BulkConverterBuilder builder = BulkConverter.builder().withCheckpointInterval(10);
+    assertThrows(IOException.class, () -> builder.build().convert(input, output, out -> new KillingWriter(out, 35)));
+
+    //A different file of the same size must not resume from the old offset
+    String replacement = smiles.replace("CCO", "OCC");
+    assertEquals(smiles.length(), replacement.length());
+    FileTime modified = Files.getLastModifiedTime(input);
+    write(directory, "input.smi", replacement);
+    Files.setLastModifiedTime(input, FileTime.fromMillis(modified.toMillis() + 10_000));
+    assertThrows(IllegalStateException.class, () -> builder.build().convert(input, output));
+  }
+
+  @Test
+  public void testCompletedOutputRemoved(@TempDir Path directory) throws IOException {
+    Path input = write(directory, "input.smi", createSmiles(30));
+    Path output = directory.resolve("output.tsv");
+    BulkConverter.BulkConverterBuilder builder = BulkConverter.builder().withCheckpointInterval(10);
+    builder.build().convert(input, output);
+    List<String> expected = readLines(output);
+
+    //A completed checkpoint is only trusted while its output is still there
+    Files.delete(output);
+    assertEquals(30, builder.build().convert(input, output).getRecordCount());
+    assertEquals(expected, readLines(output));
+
+    byte[] bytes = Files.readAllBytes(output);
+    Files.write(output, Arrays.copyOf(bytes, bytes.length / 2));
+    BulkConverter.Summary summary = builder.build().convert(input, output);
+    assertEquals(0, summary.getResumedRecordCount());
+    assertEquals(expected, readLines(output));
+  }
+
+  @Test
+  public void testRdFileRejectsInchiOptions(@TempDir Path directory) throws IOException {
+    Path input = write(directory, "input.rdf", createRdFile(2));
+    Path output = directory.resolve("output.tsv");
+    assertThrows(IllegalArgumentException.class, () -> BulkConverter.builder()
+        .withOptions(new InchiOptionsBuilder().withFlag(InchiFlag.SNon).build()).build().convert(input, output));
+    assertThrows(IllegalArgumentException.class, () -> BulkConverter.builder()
+        .withOptions(new InchiOptionsBuilder().withTimeoutMilliSeconds(100).build()).build().convert(input, output));
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    assertEquals(InchiCli.EXIT_USAGE, InchiCli.run(new String[] {"--timeout", "100", input.toString(), output.toString()},
+        new PrintStream(new ByteArrayOutputStream()), new PrintStream(err, true)));
+    assertTrue(err.toString().contains("do not apply to RDfile input"), err.toString());
+    assertFalse(Files.exists(output));
+  }
+
+  @Test
+  public void testCli(@TempDir Path directory) throws IOException {
+    Path input = write(directory, "input.txt", "InChI=1S/C2H6O/c1-2-3/h3H,2H2,1H3 ethanol\nnot an InChI\n");
+    Path output = directory.resolve("output.tsv");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    assertEquals(0, InchiCli.run(new String[] {"--to", "inchikey", "--threads", "2", input.toString(), output.toString()},
+        new PrintStream(out, true), new PrintStream(err, true)));
+    assertTrue(out.toString().startsWith(output + ": 2 records (1 errors, 0 from checkpoint)"), out.toString());
+    assertEquals("", err.toString());
+    List<String> lines = readLines(output);
+    assertEquals(3, lines.size());
+    assertEquals("0\tethanol\tSUCCESS\tLFQSCWFLJHTTHZ-UHFFFAOYSA-N\t", lines.get(1));
+    assertEquals("42\tan InChI\tERROR\t\tINVALID_INCHI_PREFIX", lines.get(2));
+
+    err.reset();
+    assertEquals(InchiCli.EXIT_USAGE, InchiCli.run(new String[] {input.toString()}, new PrintStream(out, true),
+        new PrintStream(err, true)));
+    assertTrue(err.toString().startsWith("Expected an input and an output file"), err.toString());
+    assertTrue(err.toString().contains("Usage: java -jar jna-inchi-cli.jar"), err.toString());
+    err.reset();
+    assertEquals(InchiCli.EXIT_USAGE, InchiCli.run(new String[] {"--shard", "3/2", input.toString(), output.toString()},
+        new PrintStream(out, true), new PrintStream(err, true)));
+    assertTrue(err.toString().startsWith("shardIndex must be between 0 and shardCount - 1"), err.toString());
+    err.reset();
+    assertEquals(InchiCli.EXIT_USAGE, InchiCli.run(new String[] {"--to", "rinchi", input.toString(), output.toString()},
+        new PrintStream(out, true), new PrintStream(err, true)));
+    assertTrue(err.toString().startsWith("RInChI output requires RDfile input"), err.toString());
+    out.reset();
+    assertEquals(0, InchiCli.run(new String[] {"--help"}, new PrintStream(out, true), new PrintStream(err, true)));
+    assertTrue(out.toString().startsWith("Usage: java -jar jna-inchi-cli.jar"), out.toString());
+    assertEquals(InputFormat.RDFILE, InputFormat.fromFileName("reactions.RDF"));
+  }
+}
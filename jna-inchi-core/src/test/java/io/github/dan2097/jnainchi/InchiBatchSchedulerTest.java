@@ -0,0 +1,218 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class InchiBatchSchedulerTest {
+
+  private static final String MOL = "\n OpenBabel12062120242D\n\n  5  4  0  0  1  0  0  0  0  0999 V2000\n    1.5000   -0.8660    0.0000 F   0  0  0  0  0  0  0  0  0  0  0  0\n    0.5000   -0.8660    0.0000 C   0  0  2  0  0  0  0  0  0  0  0  0\n   -0.3660   -1.3660    0.0000 H   0  0  0  0  0  0  0  0  0  0  0  0\n    0.5000   -1.8660    0.0000 Br  0  0  0  0  0  0  0  0  0  0  0  0\n   -0.0000   -0.0000    0.0000 I   0  0  0  0  0  0  0  0  0  0  0  0\n  1  2  1  0  0  0  0\n  2  3  1  1  0  0  0\n  2  4  1  0  0  0  0\n  2  5  1  0  0  0  0\nM  END\n";
+
+  /**
+   * Chain of benzene rings, each joined to the next by a single bond
+   */
+  static InchiInput createPolyphenyl(int rings) {
+    InchiInput input = new InchiInput();
+    InchiAtom previous = null;
+    for (int r = 0; r < rings; r++) {
+      InchiAtom[] ring = new InchiAtom[6];
+      for (int i = 0; i < 6; i++) {
+        ring[i] = new InchiAtom("C");
+        boolean linked = (i == 0 && r > 0) || (i == 3 && r < rings - 1);
+        ring[i].setImplicitHydrogen(linked ? 0 : 1);
+        input.addAtom(ring[i]);
+      }
+      for (int i = 0; i < 6; i++) {
+        input.addBond(new InchiBond(ring[i], ring[(i + 1) % 6], i % 2 == 0 ? InchiBondType.DOUBLE : InchiBondType.SINGLE));
+      }
+      if (previous != null) {
+        input.addBond(new InchiBond(previous, ring[0], InchiBondType.SINGLE));
+      }
+      previous = ring[3];
+    }
+    return input;
+  }
+
+  static List<InchiInput> createMixedBatch(Random random, int smallCount, int... largeRingCounts) {
+    List<InchiInput> inputs = new ArrayList<>();
+    for (int i = 0; i < smallCount; i++) {
+      inputs.add(createPolyphenyl(1 + random.nextInt(3)));
+    }
+    for (int rings : largeRingCounts) {
+      inputs.add(createPolyphenyl(rings));
+    }
+    Collections.shuffle(inputs, random);
+    return inputs;
+  }
+
+  @Test
+  public void testSameAsSequential() {
+    List<InchiInput> inputs = createMixedBatch(new Random(42), 300, 60, 120, 80);
+    JnaInchiEngine engine = new JnaInchiEngine();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      List<InchiOutput> outputs = InchiBatchScheduler.builder().withEngine(engine).withPool(pool).build().toInchi(inputs);
+      assertEquals(inputs.size(), outputs.size());
+      for (int i = 0; i < inputs.size(); i++) {
+        InchiOutput expected = JnaInchi.toInchi(inputs.get(i));
+        assertEquals(InchiStatus.SUCCESS, outputs.get(i).getStatus());
+        assertEquals(expected.getInchi(), outputs.get(i).getInchi());
+        assertEquals(expected.getAuxInfo(), outputs.get(i).getAuxInfo());
+      }
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testChunking() {
+    //every molecule in its own task, and every molecule in a single chunk
+    List<InchiInput> inputs = createMixedBatch(new Random(7), 20, 10);
+    List<InchiOutput> expected = InchiBatchScheduler.builder().withEngine(new JnaInchiEngine()).withLargeItemCost(1).build().toInchi(inputs);
+    List<InchiOutput> outputs = InchiBatchScheduler.builder().withEngine(new JnaInchiEngine()).withLargeItemCost(Long.MAX_VALUE)
+        .withChunkCost(Long.MAX_VALUE).build().toInchi(inputs);
+    for (int i = 0; i < inputs.size(); i++) {
+      assertEquals(expected.get(i).getInchi(), outputs.get(i).getInchi());
+    }
+    assertTrue(InchiBatchScheduler.builder().withEngine(new JnaInchiEngine()).build().toInchi(new ArrayList<>()).isEmpty());
+  }
+
+  @Test
+  public void testMolfiles() {
+    List<String> molTexts = new ArrayList<>();
+    molTexts.add(MOL);
+    molTexts.add("not a molfile");
+    List<InchiOutput> outputs = InchiBatchScheduler.builder().withEngine(new JnaInchiEngine()).build().molToInchi(molTexts);
+    assertEquals("InChI=1S/CHBrFI/c2-1(3)4/h1H/t1-/m0/s1", outputs.get(0).getInchi());
+    assertEquals(JnaInchi.molToInchi("not a molfile").getStatus(), outputs.get(1).getStatus());
+  }
+
+  @Test
+  public void testCostEstimates() {
+    assertEquals(InchiBatchScheduler.estimateCost(5, 4, 0), InchiBatchScheduler.estimateMolfileCost(MOL));
+    assertEquals(InchiBatchScheduler.estimateCost(12, 11, 0),
+        InchiBatchScheduler.estimateMolfileCost("\n  Test\n\nM  V30 BEGIN CTAB\nM  V30 COUNTS 12 11 0 0 0\nM  V30 END CTAB\nM  END\n"));
+    assertEquals(1, InchiBatchScheduler.estimateMolfileCost("short"));
+    assertEquals(1, InchiBatchScheduler.estimateCost(new InchiInput()));
+
+    long previous = 0;
+    for (int rings = 1; rings < 50; rings++) {
+      long cost = InchiBatchScheduler.estimateCost(createPolyphenyl(rings));
+      assertTrue(cost > previous);
+      previous = cost;
+    }
+    assertTrue(InchiBatchScheduler.estimateCost(10, 10, 2) > InchiBatchScheduler.estimateCost(10, 10, 0));
+  }
+
+  @Test
+  public void testExceptionsBecomeErrors() {
+    InchiInput invalid = new InchiInput();
+    invalid.addAtom(new InchiAtom("C"));
+    invalid.addBond(new InchiBond(invalid.getAtom(0), new InchiAtom("O"), InchiBondType.SINGLE));
+    List<InchiInput> inputs = new ArrayList<>();
+    inputs.add(createPolyphenyl(1));
+    inputs.add(invalid);
+    List<InchiOutput> outputs = InchiBatchScheduler.builder().withEngine(new JnaInchiEngine()).build().toInchi(inputs);
+    assertEquals("InChI=1S/C6H6/c1-2-4-6-5-3-1/h1-6H", outputs.get(0).getInchi());
+    assertEquals(InchiStatus.ERROR, outputs.get(1).getStatus());
+  }
+
+  /**
+   * Engine that counts how many molecules it converted
+   */
+  private static class CountingEngine extends JnaInchiEngine {
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public InchiOutput toInchi(InchiInput inchiInput, InchiOptions options) {
+      calls.incrementAndGet();
+      return super.toInchi(inchiInput, options);
+    }
+
+    @Override
+    public InchiOutput molToInchi(String molText, InchiOptions options) {
+      calls.incrementAndGet();
+      return super.molToInchi(molText, options);
+    }
+  }
+
+  @Test
+  public void testDeduplication() {
+    Random random = new Random(45);
+    List<InchiInput> inputs = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      inputs.add(createPolyphenyl(1 + random.nextInt(5)));
+    }
+    CountingEngine engine = new CountingEngine();
+    InchiBatchScheduler scheduler = InchiBatchScheduler.builder().withEngine(engine).withDeduplication(1000).build();
+    List<InchiOutput> outputs = scheduler.toInchi(inputs);
+    assertEquals(5, engine.calls.get());
+    for (int i = 0; i < inputs.size(); i++) {
+      assertEquals(JnaInchi.toInchi(inputs.get(i)).getInchi(), outputs.get(i).getInchi());
+    }
+    assertEquals(500, scheduler.getInputCount());
+    assertEquals(5, scheduler.getConvertedCount());
+    assertEquals(100.0, scheduler.getDeduplicationRatio(), 1e-9);
+
+    //only one digest is remembered, so only duplicates of the first molecule are found
+    CountingEngine limitedEngine = new CountingEngine();
+    InchiBatchScheduler limited = InchiBatchScheduler.builder().withEngine(limitedEngine).withDeduplication(1).build();
+    List<InchiInput> batch = new ArrayList<>();
+    batch.add(createPolyphenyl(1));
+    batch.add(createPolyphenyl(2));
+    batch.add(createPolyphenyl(2));
+    batch.add(createPolyphenyl(1));
+    limited.toInchi(batch);
+    assertEquals(3, limitedEngine.calls.get());
+
+    InchiBatchScheduler noDeduplication = InchiBatchScheduler.builder().withEngine(new JnaInchiEngine()).build();
+    noDeduplication.toInchi(batch);
+    assertEquals(1.0, noDeduplication.getDeduplicationRatio(), 1e-9);
+  }
+
+  @Test
+  public void testMolfileDeduplication() {
+    List<String> molTexts = new ArrayList<>();
+    molTexts.add(MOL);
+    molTexts.add(MOL.replace("\n OpenBabel12062120242D", "aspirin?\n  -OEChem-01012400002D"));
+    molTexts.add(MOL.replace("\n", "\r\n") + "> <ID>\n1\n\n$$$$\n");
+    molTexts.add(MOL.replace("0.5000   -0.8660    0.0000 C", "0.5000   -0.8660    0.0000 N"));
+    CountingEngine engine = new CountingEngine();
+    InchiBatchScheduler scheduler = InchiBatchScheduler.builder().withEngine(engine).withDeduplication(100).build();
+    List<InchiOutput> outputs = scheduler.molToInchi(molTexts);
+    assertEquals(2, engine.calls.get());
+    assertEquals(outputs.get(0).getInchi(), outputs.get(1).getInchi());
+    assertEquals(outputs.get(0).getInchi(), outputs.get(2).getInchi());
+    assertEquals(2.0, scheduler.getDeduplicationRatio(), 1e-9);
+
+    assertEquals(InchiDigests.normaliseMolfile(MOL), InchiDigests.normaliseMolfile(molTexts.get(1)));
+    assertTrue(InchiDigests.normaliseMolfile(MOL).startsWith("\n2D\n\n  5  4"));
+    assertTrue(InchiDigests.normaliseMolfile(molTexts.get(2)).endsWith("M  END\n"));
+  }
+}
@@ -0,0 +1,82 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class InchiEnginesTest {
+
+  @AfterEach
+  public void resetSelection() {
+    System.clearProperty(InchiEngines.ENGINE_PROPERTY);
+    InchiEngines.reset();
+  }
+
+  @Test
+  public void testJnaEngineDiscovered() {
+    List<InchiEngine> engines = InchiEngines.getAvailableEngines();
+    assertTrue(engines.stream().anyMatch(e -> e instanceof JnaInchiEngine));
+    assertEquals(JnaInchiEngine.NAME, InchiEngines.getEngine(JnaInchiEngine.NAME).getName());
+  }
+
+  @Test
+  public void testBrokenProviderSkipped() {
+    //the test resources register a provider class that does not exist, ahead of the jna engine
+    assertTrue(InchiEngines.getAvailableEngines().stream().anyMatch(e -> e instanceof JnaInchiEngine));
+  }
+
+  @Test
+  public void testSelectionByProperty() {
+    System.setProperty(InchiEngines.ENGINE_PROPERTY, "JNA");
+    assertEquals(JnaInchiEngine.NAME, InchiEngines.getEngine().getName());
+  }
+
+  @Test
+  public void testUnknownEngine() {
+    System.setProperty(InchiEngines.ENGINE_PROPERTY, "doesNotExist");
+    assertThrows(IllegalArgumentException.class, () -> InchiEngines.getEngine());
+  }
+
+  @Test
+  public void testBenchmarkSelection() {
+    List<InchiEngine> engines = InchiEngines.getAvailableEngines();
+    InchiEngine fastest = InchiEngines.selectFastest(engines);
+    assertTrue(engines.contains(fastest));
+  }
+
+  @Test
+  public void testEngineMatchesJnaInchi() {
+    InchiEngine engine = InchiEngines.getEngine();
+    String inchi = "InChI=1S/C3H7NO2/c1-2(4)3(5)6/h2H,4H2,1H3,(H,5,6)/t2-/m0/s1";
+    InchiOutput output = engine.inchiToInchi(inchi, InchiOptions.DEFAULT_OPTIONS);
+    assertEquals(InchiStatus.SUCCESS, output.getStatus());
+    assertEquals(inchi, output.getInchi());
+    assertEquals(JnaInchi.inchiToInchiKey(inchi).getInchiKey(), engine.inchiToInchiKey(inchi).getInchiKey());
+    assertEquals(InchiCheckStatus.VALID_STANDARD, engine.checkInchi(inchi, false));
+    assertEquals(JnaInchi.getInchiInputFromInchi(inchi).getInchiInput().getAtoms().size(),
+        engine.getInchiInputFromInchi(inchi, InchiOptions.DEFAULT_OPTIONS).getInchiInput().getAtoms().size());
+  }
+
+}
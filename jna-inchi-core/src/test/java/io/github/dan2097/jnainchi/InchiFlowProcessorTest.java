@@ -0,0 +1,275 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.dan2097.jnainchi.InchiFlow.Publisher;
+import io.github.dan2097.jnainchi.InchiFlow.Subscriber;
+import io.github.dan2097.jnainchi.InchiFlow.Subscription;
+
+public class InchiFlowProcessorTest {
+
+  private static final String[] INCHIS = {"InChI=1S/CH4/h1H4", "InChI=1S/H2O/h1H2", "InChI=1S/C2H6O/c1-2-3/h3H,2H2,1H3",
+      "InChI=1S/C6H6/c1-2-4-6-5-3-1/h1-6H", "InChI=1S/C4H10O2/c1-3-6-4-5-2/h3-4H2,1-2H3", "not an InChI"};
+
+  private static final String ETHANOL_MOL = "ethanol\n  test\n\n  3  2  0  0  0  0  0  0  0  0999 V2000\n"
+      + "    0.0000    0.0000    0.0000 C   0  0  0  0  0  0  0  0  0  0  0  0\n"
+      + "    1.5000    0.0000    0.0000 C   0  0  0  0  0  0  0  0  0  0  0  0\n"
+      + "    2.0000    1.0000    0.0000 O   0  0  0  0  0  0  0  0  0  0  0  0\n"
+      + "  1  2  1  0  0  0  0\n  2  3  1  0  0  0  0\nM  END\n";
+
+  /**
+   * Publishes the items of a list synchronously, as they are requested
+   */
+  private static class ListPublisher<T> implements Publisher<T> {
+    private final List<T> items;
+    private int published = 0;
+    private long requested = 0;
+    private boolean emitting = false;
+    private boolean cancelled = false;
+
+    private ListPublisher(List<T> items) {
+      this.items = items;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+      subscriber.onSubscribe(new Subscription() {
+        @Override
+        public void request(long n) {
+          synchronized (ListPublisher.this) {
+            requested += n;
+            if (emitting) {
+              return;
+            }
+            emitting = true;
+          }
+          while (true) {
+            T item;
+            synchronized (ListPublisher.this) {
+              if (cancelled || requested == 0 || published == items.size()) {
+                emitting = false;
+                if (!cancelled && published == items.size()) {
+                  cancelled = true;
+                  break;
+                }
+                return;
+              }
+              requested--;
+              item = items.get(published++);
+            }
+            subscriber.onNext(item);
+          }
+          subscriber.onComplete();
+        }
+
+        @Override
+        public void cancel() {
+          synchronized (ListPublisher.this) {
+            cancelled = true;
+          }
+        }
+      });
+    }
+
+    private synchronized int getPublished() {
+      return published;
+    }
+  }
+
+  /**
+   * Requests a fixed number of items at a time, up to a limit
+   */
+  private static class CollectingSubscriber<T> implements Subscriber<T> {
+    private final int chunk;
+    private final int limit;
+    private final List<T> items = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private final CountDownLatch limitReached = new CountDownLatch(1);
+    private volatile Subscription subscription;
+    private volatile Throwable error;
+
+    private CollectingSubscriber(int chunk, int limit) {
+      this.chunk = chunk;
+      this.limit = limit;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(Math.min(chunk, limit));
+    }
+
+    @Override
+    public void onNext(T item) {
+      items.add(item);
+      int size = items.size();
+      if (size == limit) {
+        limitReached.countDown();
+      }
+      else if (size % chunk == 0 && size < limit) {
+        subscription.request(Math.min(chunk, limit - size));
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+      terminated.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      terminated.countDown();
+    }
+
+    private void await() throws InterruptedException {
+      assertTrue(terminated.await(60, TimeUnit.SECONDS));
+    }
+  }
+
+  private static List<String> createInchis(int count) {
+    List<String> inchis = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      inchis.add(INCHIS[i % INCHIS.length]);
+    }
+    return inchis;
+  }
+
+  @Test
+  public void testInchiToInchiKeyInOrder() throws InterruptedException {
+    List<String> inchis = createInchis(500);
+    InchiFlowProcessor<String, InchiKeyOutput> processor = InchiFlowProcessor
+        .inchiToInchiKey(InchiEngines.getEngine("jna")).withThreads(3).withBatchSize(8).build();
+    CollectingSubscriber<InchiKeyOutput> subscriber = new CollectingSubscriber<>(7, Integer.MAX_VALUE);
+    processor.subscribe(subscriber);
+    new ListPublisher<>(inchis).subscribe(processor);
+    subscriber.await();
+
+    assertNull(subscriber.error);
+    assertEquals(inchis.size(), subscriber.items.size());
+    for (int i = 0; i < inchis.size(); i++) {
+      InchiKeyOutput expected = JnaInchi.inchiToInchiKey(inchis.get(i));
+      assertEquals(expected.getInchiKey(), subscriber.items.get(i).getInchiKey(), inchis.get(i));
+      assertSame(expected.getStatus(), subscriber.items.get(i).getStatus());
+    }
+  }
+
+  @Test
+  public void testMolToInchi() throws InterruptedException {
+    List<String> molfiles = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      molfiles.add(i % 5 == 4 ? "garbage" : ETHANOL_MOL);
+    }
+    InchiFlowProcessor<String, InchiOutput> processor = InchiFlowProcessor
+        .molToInchi(InchiEngines.getEngine("jna"), InchiOptions.DEFAULT_OPTIONS).withThreads(2).build();
+    CollectingSubscriber<InchiOutput> subscriber = new CollectingSubscriber<>(1000, Integer.MAX_VALUE);
+    new ListPublisher<>(molfiles).subscribe(processor);
+    processor.subscribe(subscriber);
+    subscriber.await();
+
+    assertNull(subscriber.error);
+    assertEquals(molfiles.size(), subscriber.items.size());
+    for (int i = 0; i < molfiles.size(); i++) {
+      InchiOutput expected = JnaInchi.molToInchi(molfiles.get(i));
+      assertEquals(expected.getInchi(), subscriber.items.get(i).getInchi());
+      assertSame(expected.getStatus(), subscriber.items.get(i).getStatus());
+    }
+  }
+
+  @Test
+  public void testEngineExceptionMessage() throws InterruptedException {
+    InchiEngine engine = new JnaInchiEngine() {
+      @Override
+      public InchiKeyOutput inchiToInchiKey(String inchi) {
+        throw new IllegalStateException("Error loading InChI native code");
+      }
+    };
+    InchiFlowProcessor<String, InchiKeyOutput> processor = InchiFlowProcessor.inchiToInchiKey(engine).withThreads(1).build();
+    CollectingSubscriber<InchiKeyOutput> subscriber = new CollectingSubscriber<>(10, Integer.MAX_VALUE);
+    processor.subscribe(subscriber);
+    new ListPublisher<>(createInchis(2)).subscribe(processor);
+    subscriber.await();
+
+    assertNull(subscriber.error);
+    assertEquals(2, subscriber.items.size());
+    for (InchiKeyOutput output : subscriber.items) {
+      assertSame(InchiKeyStatus.UNKNOWN_ERROR, output.getStatus());
+      assertEquals("Error loading InChI native code", output.getMessage());
+    }
+  }
+
+  @Test
+  public void testBackpressure() throws InterruptedException {
+    List<String> inchis = createInchis(1000);
+    int bufferSize = 32;
+    InchiFlowProcessor<String, String> processor = InchiFlowProcessor.<String, String>builder(String::toUpperCase)
+        .withThreads(2).withBatchSize(4).withBufferSize(bufferSize).build();
+    CollectingSubscriber<String> subscriber = new CollectingSubscriber<>(5, 10);
+    ListPublisher<String> publisher = new ListPublisher<>(inchis);
+    processor.subscribe(subscriber);
+    publisher.subscribe(processor);
+    assertTrue(subscriber.limitReached.await(60, TimeUnit.SECONDS));
+    Thread.sleep(100);
+    assertEquals(10, subscriber.items.size());
+    assertTrue(publisher.getPublished() <= 10 + bufferSize, String.valueOf(publisher.getPublished()));
+
+    subscriber.subscription.request(Long.MAX_VALUE);
+    subscriber.await();
+    assertEquals(inchis.size(), subscriber.items.size());
+    for (int i = 0; i < inchis.size(); i++) {
+      assertEquals(inchis.get(i).toUpperCase(), subscriber.items.get(i));
+    }
+  }
+
+  @Test
+  public void testFailure() throws InterruptedException {
+    RuntimeException failure = new RuntimeException("test");
+    InchiFlowProcessor<String, String> processor = InchiFlowProcessor.<String, String>builder(inchi -> {
+      if (inchi.startsWith("not")) {
+        throw failure;
+      }
+      return inchi;
+    }).withThreads(2).withBatchSize(2).build();
+    CollectingSubscriber<String> subscriber = new CollectingSubscriber<>(100, Integer.MAX_VALUE);
+    processor.subscribe(subscriber);
+    ListPublisher<String> publisher = new ListPublisher<>(createInchis(100));
+    publisher.subscribe(processor);
+    subscriber.await();
+    assertSame(failure, subscriber.error);
+    assertTrue(subscriber.items.size() < INCHIS.length);
+    assertTrue(publisher.cancelled);
+
+    CollectingSubscriber<String> second = new CollectingSubscriber<>(1, 1);
+    processor.subscribe(second);
+    second.await();
+    assertTrue(second.error instanceof IllegalStateException);
+  }
+}
@@ -0,0 +1,203 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.dan2097.jnainchi.InchiGenerator.Stage;
+
+public class InchiGeneratorTest {
+
+  private static final String[] INCHIS = {
+      "InChI=1S/CH4/h1H4",
+      "InChI=1S/C2H3BrClI/c1-2(3,4)5/h1H3/t2-/m0/s1",
+      "InChI=1S/CH4/h1H4/i1+2TD2",
+      "InChI=1S/C3H5Br/c1-2-3-4/h2-3H,1H3/b3-2-",
+      "InChI=1S/C6H6/c1-2-4-6-5-3-1/h1-6H",
+      "InChI=1S/C2H4O2/c1-2(3)4/h1H3,(H,3,4)",
+      "InChI=1S/C4H10O2/c1-3(5)4(2)6/h3-6H,1-2H3/t3-,4-/m1/s1",
+      "InChI=1S/C5H8/c1-3-5-4-2/h3-4H,1-2H3/t5-/m0/s1",
+      "InChI=1S/Na.H2O/h;1H2/q+1;/p-1",
+      "InChI=1S/C6H12O6/c7-1-2-3(8)4(9)5(10)6(11)12-2/h2-11H,1H2/t2-,3-,4+,5-,6?/m1/s1"
+  };
+
+  private static InchiInput fromInchi(String inchi) {
+    InchiInputFromInchiOutput output = JnaInchi.getInchiInputFromInchi(inchi);
+    assertEquals(InchiStatus.SUCCESS, output.getStatus(), inchi);
+    return output.getInchiInput();
+  }
+
+  @Test
+  public void testSameAsToInchi() {
+    InchiOptions[] optionsList = {InchiOptions.DEFAULT_OPTIONS,
+        new InchiOptions.InchiOptionsBuilder().withFlag(InchiFlag.SNon).build(),
+        new InchiOptions.InchiOptionsBuilder().withFlag(InchiFlag.FixedH, InchiFlag.RecMet).build()};
+    for (InchiOptions options : optionsList) {
+      try (InchiGenerator generator = new InchiGenerator(options)) {
+        for (String inchi : INCHIS) {
+          InchiInput input = fromInchi(inchi);
+          InchiOutput expected = JnaInchi.toInchi(input, options);
+          InchiGeneratorOutput output = generator.generate(input);
+          assertEquals(expected.getStatus(), output.getStatus(), inchi);
+          assertEquals(expected.getInchi(), output.getInchi(), inchi);
+          assertEquals(expected.getAuxInfo(), output.getAuxInfo(), inchi);
+          long total = 0;
+          for (Stage stage : Stage.values()) {
+            assertTrue(output.getStageNanos(stage) >= 0);
+            total += output.getStageNanos(stage);
+          }
+          assertEquals(total, output.getTotalNanos());
+        }
+        assertEquals(INCHIS.length, generator.getMoleculeCount());
+      }
+    }
+  }
+
+  @Test
+  public void testStagedSameAsToInchi() {
+    InchiOptions[] optionsList = {InchiOptions.DEFAULT_OPTIONS,
+        new InchiOptions.InchiOptionsBuilder().withFlag(InchiFlag.SNon).build(),
+        new InchiOptions.InchiOptionsBuilder().withFlag(InchiFlag.FixedH, InchiFlag.RecMet).build()};
+    for (InchiOptions options : optionsList) {
+      try (InchiGenerator generator = new InchiGenerator(options, true)) {
+        assertTrue(generator.isStaged());
+        for (String inchi : INCHIS) {
+          InchiInput input = fromInchi(inchi);
+          InchiOutput expected = JnaInchi.toInchi(input, options);
+          InchiGeneratorOutput output = generator.generate(input);
+          assertEquals(expected.getStatus(), output.getStatus(), inchi);
+          assertEquals(expected.getInchi(), output.getInchi(), inchi);
+          //the classic API omits the 'n' after the atom count of the reversibility layer
+          assertEquals(expected.getAuxInfo().replaceFirst("/rA:(\\d+)n", "/rA:$1"), output.getAuxInfo(), inchi);
+          assertEquals(0, output.getStageNanos(Stage.GENERATION));
+          assertTrue(output.getStageNanos(Stage.NORMALIZATION) > 0, inchi);
+          assertTrue(output.getStageNanos(Stage.CANONICALIZATION) > 0, inchi);
+          assertTrue(output.getStageNanos(Stage.SERIALIZATION) > 0, inchi);
+        }
+        assertEquals(INCHIS.length, generator.getMoleculeCount());
+      }
+    }
+  }
+
+  @Test
+  public void testStageNanosNotShared() {
+    try (InchiGenerator generator = new InchiGenerator()) {
+      InchiGeneratorOutput first = generator.generate(fromInchi(INCHIS[0]));
+      long[] before = new long[Stage.values().length];
+      for (Stage stage : Stage.values()) {
+        before[stage.ordinal()] = first.getStageNanos(stage);
+      }
+      generator.generate(fromInchi(INCHIS[9]));
+      for (Stage stage : Stage.values()) {
+        assertEquals(before[stage.ordinal()], first.getStageNanos(stage));
+      }
+      assertTrue(first.getStageNanos(Stage.OUTPUT) > 0);
+    }
+  }
+
+  @Test
+  public void testBondStereo() {
+    InchiInput input = new InchiInput();
+    InchiAtom a1 = new InchiAtom("C", 0, 0, 0);
+    InchiAtom a2 = new InchiAtom("C", 1, 0, 0);
+    InchiAtom a3 = new InchiAtom("Cl", 1.5, 0.8, 0);
+    InchiAtom a4 = new InchiAtom("Br", 1.5, -0.8, 0);
+    InchiAtom a5 = new InchiAtom("F", 1, -1, 0);
+    a1.setImplicitHydrogen(3);
+    input.addAtom(a1);
+    input.addAtom(a2);
+    input.addAtom(a3);
+    input.addAtom(a4);
+    input.addAtom(a5);
+    input.addBond(new InchiBond(a2, a1, InchiBondType.SINGLE, InchiBondStereo.SINGLE_1UP));
+    input.addBond(new InchiBond(a2, a3, InchiBondType.SINGLE));
+    input.addBond(new InchiBond(a2, a4, InchiBondType.SINGLE));
+    input.addBond(new InchiBond(a2, a5, InchiBondType.SINGLE));
+    try (InchiGenerator generator = new InchiGenerator(); InchiGenerator staged = new InchiGenerator(InchiOptions.DEFAULT_OPTIONS, true)) {
+      assertEquals(JnaInchi.toInchi(input).getInchi(), generator.generate(input).getInchi());
+      assertEquals(JnaInchi.toInchi(input).getInchi(), staged.generate(input).getInchi());
+    }
+  }
+
+  @Test
+  public void testEmptyAndErrors() {
+    testEmptyAndErrors(false);
+    testEmptyAndErrors(true);
+  }
+
+  private void testEmptyAndErrors(boolean staged) {
+    try (InchiGenerator generator = new InchiGenerator(InchiOptions.DEFAULT_OPTIONS, staged)) {
+      InchiGeneratorOutput empty = generator.generate(new InchiInput());
+      assertEquals(JnaInchi.toInchi(new InchiInput()).getStatus(), empty.getStatus());
+
+      InchiInput input = new InchiInput();
+      input.addAtom(new InchiAtom("Zz"));
+      InchiGeneratorOutput output = generator.generate(input);
+      assertEquals(InchiStatus.ERROR, output.getStatus());
+      assertTrue(output.getMessage().length() > 0);
+      assertEquals(JnaInchi.toInchi(input).getInchi(), output.getInchi());
+
+      //The generator is still usable after a failure
+      assertEquals(INCHIS[0], generator.generate(fromInchi(INCHIS[0])).getInchi());
+    }
+    InchiGenerator closed = new InchiGenerator();
+    closed.close();
+    assertThrows(IllegalStateException.class, () -> closed.generate(new InchiInput()));
+  }
+
+  @Test
+  public void testParallel() {
+    testParallel(false);
+    testParallel(true);
+  }
+
+  private void testParallel(boolean staged) {
+    InchiInput[] inputs = new InchiInput[INCHIS.length];
+    for (int i = 0; i < INCHIS.length; i++) {
+      inputs[i] = fromInchi(INCHIS[i]);
+    }
+    try (InchiGenerator generator = new InchiGenerator(InchiOptions.DEFAULT_OPTIONS, staged)) {
+      IntStream.range(0, 2000).parallel().forEach(i -> assertEquals(INCHIS[i % INCHIS.length],
+          generator.generate(inputs[i % INCHIS.length]).getInchi()));
+      assertEquals(2000, generator.getMoleculeCount());
+      assertTrue(generator.getTotalNanos(staged ? Stage.CANONICALIZATION : Stage.GENERATION) > 0);
+      assertTrue(generator.getWorkerCount() <= Runtime.getRuntime().availableProcessors() + 1);
+    }
+  }
+
+  @Test
+  public void testHandlesOutliveThreads() throws InterruptedException {
+    InchiInput input = fromInchi(INCHIS[1]);
+    try (InchiGenerator generator = new InchiGenerator()) {
+      //as in a cached thread pool, each thread uses the generator once and then exits
+      for (int i = 0; i < 50; i++) {
+        Thread thread = new Thread(() -> assertEquals(INCHIS[1], generator.generate(input).getInchi()));
+        thread.start();
+        thread.join();
+      }
+      assertEquals(50, generator.getMoleculeCount());
+      assertEquals(1, generator.getWorkerCount());
+    }
+  }
+}
@@ -0,0 +1,191 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+public class InchiJsonTest {
+
+  private static final String[] INCHIS = {
+      "InChI=1S/C3H7NO2/c1-2(4)3(5)6/h2H,4H2,1H3,(H,5,6)/t2-/m0/s1",
+      "InChI=1S/C4H8/c1-3-4-2/h3-4H,1-2H3/b4-3+",
+      "InChI=1S/C5H8/c1-3-5-4-2/h3-4H,1-2H3/t5-/m1/s1",
+      "InChI=1S/C2H6O/c1-2-3/h3H,2H2,1H3/i1D,2+1",
+      "InChI=1S/CH4N.Na/c1-2;/h2H,1H3;/q-1;+1",
+      "InChI=1S/C6H12O6/c7-1-2-3(8)4(9)5(10)6(11)12-2/h2-11H,1H2/t2-,3-,4+,5-,6?/m1/s1"
+  };
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    for (String inchi : INCHIS) {
+      InchiInput input = JnaInchi.getInchiInputFromInchi(inchi).getInchiInput();
+      String json = InchiJson.toJson(input);
+      StringWriter writer = new StringWriter();
+      InchiJson.write(input, writer);
+      assertEquals(json, writer.toString(), inchi);
+
+      InchiInput read = InchiJson.read(json);
+      assertEquals(json, InchiJson.toJson(read), inchi);
+      assertEquals(input.getStereos().size(), read.getStereos().size(), inchi);
+      assertEquals(inchi, JnaInchi.toInchi(read).getInchi());
+    }
+  }
+
+  @Test
+  public void testFormat() {
+    InchiInput input = new InchiInput();
+    InchiAtom c1 = new InchiAtom("C", 1.5, -0.25, 0);
+    InchiAtom c2 = new InchiAtom("C");
+    InchiAtom o = new InchiAtom("O", 2, 1.0E-7, 0);
+    c1.setImplicitHydrogen(-1);
+    c2.setImplicitHydrogen(2);
+    c2.setRadical(InchiRadical.DOUBLET);
+    o.setCharge(-1);
+    o.setIsotopicMass(18);
+    input.addAtom(c1);
+    input.addAtom(c2);
+    input.addAtom(o);
+    input.addBond(new InchiBond(c1, c2, InchiBondType.SINGLE, InchiBondStereo.SINGLE_1UP));
+    input.addBond(new InchiBond(c2, o, InchiBondType.DOUBLE));
+    input.addStereo(InchiStereo.createTetrahedralStereo(c2, c1, o, c2, InchiStereo.STEREO_IMPLICIT_H, InchiStereoParity.EVEN));
+    String json = "{\n\"atomCount\":3,\n\"atoms\":[\n"
+        + "{\"index\":0,\"elname\":\"C\",\"x\":1.5,\"y\":-0.25,\"z\":0,\"implicitH\":-1},\n"
+        + "{\"index\":1,\"elname\":\"C\",\"x\":0,\"y\":0,\"z\":0,\"radical\":\"DOUBLET\",\"implicitH\":2},\n"
+        + "{\"index\":2,\"elname\":\"O\",\"x\":2,\"y\":1.0E-7,\"z\":0,\"charge\":-1,\"isotopeMass\":18}\n],\n"
+        + "\"bondCount\":2,\n\"bonds\":[\n"
+        + "{\"originAtom\":0,\"targetAtom\":1,\"stereo\":\"SINGLE_1UP\"},\n"
+        + "{\"originAtom\":1,\"targetAtom\":2,\"type\":\"DOUBLE\"}\n],\n"
+        + "\"stereoCount\":1,\n\"stereo\":[\n"
+        + "{\"type\":\"Tetrahedral\",\"parity\":\"EVEN\",\"centralAtom\":1,\"neighbors\":[0,2,1,-1]}\n]}";
+    assertEquals(json, InchiJson.toJson(input));
+
+    InchiInput read = InchiJson.read(json);
+    InchiAtom readO = read.getAtom(2);
+    assertEquals(1.0E-7, readO.getY());
+    assertEquals(18, readO.getIsotopicMass());
+    assertEquals(-1, read.getAtom(0).getImplicitHydrogen());
+    assertSame(InchiRadical.DOUBLET, read.getAtom(1).getRadical());
+    assertSame(InchiBondStereo.SINGLE_1UP, read.getBond(0).getStereo());
+    InchiStereo stereo = read.getStereos().get(0);
+    assertSame(read.getAtom(1), stereo.getCentralAtom());
+    assertSame(InchiStereo.STEREO_IMPLICIT_H, stereo.getAtoms()[3]);
+    assertSame(InchiStereoParity.EVEN, stereo.getParity());
+  }
+
+  @Test
+  public void testMemberOrderAndUnknownMembers() {
+    String json = " { \"stereo\" : [ { \"neighbors\" : [ 1 , 2 , 3 , -1 ] , \"centralAtom\" : 0 , \"parity\" : \"odd\" , \"type\" : \"tetrahedral\" } ] ,\r\n"
+        + "\t\"bonds\":[{\"targetAtom\":1,\"originAtom\":0,\"order\":{\"a\":[1,2.5e3,true,null]}},{\"originAtom\":0,\"targetAtom\":2},"
+        + "{\"originAtom\":0,\"targetAtom\":3}],\n"
+        + "\"comment\":\"a \\\"molecule\\\"\\n\",\"atoms\":[{\"elname\":\"C\",\"implicitH\":-1},{\"elname\":\"\\u004e\",\"implicitH\":-1},"
+        + "{\"elname\":\"O\",\"implicitH\":-1},{\"elname\":\"C\",\"implicitH\":-1,\"flag\":false}] } ";
+    InchiInput input = InchiJson.read(json);
+    assertEquals(4, input.getAtoms().size());
+    assertEquals("N", input.getAtom(1).getElName());
+    assertEquals(3, input.getBonds().size());
+    assertSame(InchiStereoParity.ODD, input.getStereos().get(0).getParity());
+    assertSame(InchiStereoType.Tetrahedral, input.getStereos().get(0).getType());
+
+    InchiInput expected = new InchiInput();
+    InchiAtom[] atoms = {new InchiAtom("C"), new InchiAtom("N"), new InchiAtom("O"), new InchiAtom("C")};
+    for (InchiAtom atom : atoms) {
+      atom.setImplicitHydrogen(-1);
+      expected.addAtom(atom);
+    }
+    for (int i = 1; i < 4; i++) {
+      expected.addBond(new InchiBond(atoms[0], atoms[i], InchiBondType.SINGLE));
+    }
+    expected.addStereo(InchiStereo.createTetrahedralStereo(atoms[0], atoms[1], atoms[2], atoms[3],
+        InchiStereo.STEREO_IMPLICIT_H, InchiStereoParity.ODD));
+    String inchi = JnaInchi.toInchi(expected).getInchi();
+    assertTrue(inchi.contains("/t"), inchi);
+    assertEquals(inchi, JnaInchi.toInchi(input).getInchi());
+
+    InchiInput empty = InchiJson.read("{}");
+    assertEquals(0, empty.getAtoms().size());
+  }
+
+  @Test
+  public void testLargeMolecule() {
+    InchiInput input = new InchiInput();
+    InchiAtom previous = null;
+    for (int i = 0; i < 50000; i++) {
+      InchiAtom atom = new InchiAtom("C", i * 1.3, (i % 2) * 0.75, 0);
+      input.addAtom(atom);
+      if (previous != null) {
+        input.addBond(new InchiBond(previous, atom, InchiBondType.SINGLE));
+      }
+      previous = atom;
+    }
+    String json = InchiJson.toJson(input);
+    InchiInput read = InchiJson.read(json);
+    assertEquals(50000, read.getAtoms().size());
+    assertEquals(49999, read.getBonds().size());
+    assertEquals(49999 * 1.3, read.getAtom(49999).getX());
+    assertSame(read.getAtom(49998), read.getBond(49998).getStart());
+  }
+
+  @Test
+  public void testInvalid() {
+    String[] invalid = {"", "[]", "{", "{\"atoms\":[{\"elname\":\"C\"}]", "{\"atoms\":[{\"elname\":\"C\"}]}x",
+        "{\"atoms\":[{\"x\":1}]}", "{\"atoms\":[{\"elname\":\"C\",\"charge\":1.5}]}",
+        "{\"atoms\":[{\"elname\":\"C\",\"charge\":200}]}", "{\"atoms\":[{\"elname\":\"C\" \"charge\":1}]}",
+        "{\"atoms\":[{\"elname\":\"C\",\"radical\":\"QUARTET\"}]}", "{\"atoms\":[{\"elname\":\"C\",\"x\":1..0}]}",
+        "{\"atoms\":[{\"elname\":\"C\"}],\"bonds\":[{\"originAtom\":0,\"targetAtom\":1}]}",
+        "{\"atoms\":[{\"elname\":\"C\"}],\"bonds\":[{\"originAtom\":0}]}",
+        "{\"atoms\":[{\"elname\":\"C\"}],\"stereo\":[{\"type\":\"Tetrahedral\",\"centralAtom\":0,\"neighbors\":[0,0,0]}]}",
+        "{\"atoms\":[{\"elname\":\"C\"}],\"stereo\":[{\"type\":\"Tetrahedral\",\"neighbors\":[0,0,0,0]}]}",
+        "{\"atoms\":[{\"elname\":\"C\"}],\"stereo\":[{\"centralAtom\":0,\"neighbors\":[0,0,0,0]}]}",
+        "{\"atoms\":[{\"elname\":\"C\\u00g0\"}]}", "{\"atoms\":[{\"elname\":\"C\"}],\"extra\":tru}"};
+    for (String json : invalid) {
+      assertThrows(IllegalArgumentException.class, () -> InchiJson.read(json), json);
+    }
+    assertThrows(IllegalArgumentException.class, () -> InchiJson.read(null));
+
+    //deeply nested unknown members are rejected rather than overflowing the stack
+    StringBuilder nested = new StringBuilder("{\"atoms\":[{\"elname\":\"C\",\"extra\":");
+    for (int i = 0; i < 100_000; i++) {
+      nested.append('[');
+    }
+    assertThrows(IllegalArgumentException.class, () -> InchiJson.read(nested));
+    StringBuilder shallow = new StringBuilder("{\"extra\":");
+    for (int i = 0; i < 100; i++) {
+      shallow.append("[{\"a\":");
+    }
+    shallow.append("null");
+    for (int i = 0; i < 100; i++) {
+      shallow.append("}]");
+    }
+    shallow.append(",\"atoms\":[{\"elname\":\"C\"}]}");
+    assertEquals(1, InchiJson.read(shallow).getAtoms().size());
+
+    InchiInput input = new InchiInput();
+    InchiAtom atom = new InchiAtom("C");
+    input.addAtom(atom);
+    input.addBond(new InchiBond(atom, new InchiAtom("O"), InchiBondType.SINGLE));
+    assertThrows(IllegalArgumentException.class, () -> InchiJson.toJson(input));
+  }
+}
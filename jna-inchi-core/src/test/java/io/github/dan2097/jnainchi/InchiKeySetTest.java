@@ -0,0 +1,139 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+public class InchiKeySetTest {
+
+  private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+  @Test
+  public void testCodecRoundTrip() {
+    String[] keys = {"VNWKTOKETHGBQD-UHFFFAOYSA-N", "AAAAAAAAAAAAAA-AAAAAAAAAA-A", "ZZZZZZZZZZZZZZ-ZZZZZZZZZZ-Z", "QNAYBMKLOCPYGJ-REOHCLBHSA-N"};
+    for (String key : keys) {
+      byte[] encoded = InchiKeyCodec.encode(key);
+      assertEquals(InchiKeyCodec.ENCODED_LENGTH, encoded.length);
+      assertEquals(key, InchiKeyCodec.decode(encoded));
+      assertEquals(key, InchiKeyCodec.decode(InchiKeyCodec.encodeHigh(key), InchiKeyCodec.encodeLow(key)));
+    }
+    byte[] buffer = new byte[40];
+    InchiKeyCodec.encode(keys[0], buffer, 7);
+    assertEquals(keys[0], InchiKeyCodec.decode(buffer, 7));
+    assertThrows(IllegalArgumentException.class, () -> InchiKeyCodec.encode("VNWKTOKETHGBQD-UHFFFAOYSA"));
+    assertThrows(IllegalArgumentException.class, () -> InchiKeyCodec.encode("vNWKTOKETHGBQD-UHFFFAOYSA-N"));
+  }
+
+  @Test
+  public void testCodecPreservesOrder() {
+    Random random = new Random(2018);
+    for (int i = 0; i < 10000; i++) {
+      String a = randomKey(random);
+      String b = randomKey(random);
+      byte[] encodedA = InchiKeyCodec.encode(a);
+      byte[] encodedB = InchiKeyCodec.encode(b);
+      int expected = Integer.signum(a.compareTo(b));
+      int actual = 0;
+      for (int j = 0; j < encodedA.length && actual == 0; j++) {
+        actual = Integer.signum(Integer.compare(encodedA[j] & 0xff, encodedB[j] & 0xff));
+      }
+      assertEquals(expected, actual, a + " vs " + b);
+    }
+  }
+
+  @Test
+  public void testInchiKeyOutput() {
+    InchiKeyOutput output = JnaInchi.inchiToInchiKey("InChI=1S/CH4/h1H4");
+    assertEquals(InchiKeyStatus.OK, output.getStatus());
+    byte[] encoded = InchiKeyCodec.encode(output);
+    InchiKeyOutput decoded = InchiKeyCodec.toInchiKeyOutput(encoded, 0);
+    assertEquals(output.getInchiKey(), decoded.getInchiKey());
+    assertEquals(InchiKeyStatus.OK, decoded.getStatus());
+
+    InchiKeySet set = new InchiKeySet.InchiKeySetBuilder().add(output).build();
+    assertTrue(set.contains(output));
+    assertEquals(output.getInchiKey(), set.getInchiKeyOutput(0).getInchiKey());
+  }
+
+  @Test
+  public void testSetMatchesTreeSet() {
+    Random random = new Random(42);
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 100000; i++) {
+      keys.add(randomKey(random));
+    }
+    //duplicates
+    keys.addAll(keys.subList(0, 5000));
+    InchiKeySet set = new InchiKeySet.InchiKeySetBuilder().addAll(keys).build();
+    TreeSet<String> expected = new TreeSet<>(keys);
+    assertEquals(expected.size(), set.size());
+
+    List<String> actual = new ArrayList<>();
+    set.forEach(actual::add);
+    assertEquals(new ArrayList<>(expected), actual);
+
+    for (int i = 0; i < 1000; i++) {
+      String key = keys.get(random.nextInt(keys.size()));
+      assertTrue(set.contains(key));
+      assertEquals(expected.headSet(key).size(), set.indexOf(key));
+    }
+    for (int i = 0; i < 1000; i++) {
+      String key = randomKey(random);
+      if (!expected.contains(key)) {
+        assertFalse(set.contains(key));
+        assertEquals(-(expected.headSet(key).size() + 1), set.indexOf(key));
+      }
+    }
+    assertFalse(set.contains("not an InChIKey"));
+  }
+
+  @Test
+  public void testPresortedAndEmpty() {
+    List<String> keys = Arrays.asList("AAAAAAAAAAAAAA-AAAAAAAAAA-A", "BSYNRYMUTXBXSQ-UHFFFAOYSA-O", "BSYNRYMUTXBXSQ-UHFFFAOYSA-O", "VNWKTOKETHGBQD-UHFFFAOYSA-N");
+    InchiKeySet set = InchiKeySet.of(keys);
+    assertEquals(3, set.size());
+    assertEquals("VNWKTOKETHGBQD-UHFFFAOYSA-N", set.getInchiKey(2));
+
+    InchiKeySet empty = new InchiKeySet.InchiKeySetBuilder().build();
+    assertTrue(empty.isEmpty());
+    assertFalse(empty.contains("VNWKTOKETHGBQD-UHFFFAOYSA-N"));
+    assertThrows(IndexOutOfBoundsException.class, () -> empty.getInchiKey(0));
+  }
+
+  private static String randomKey(Random random) {
+    char[] chars = new char[27];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = LETTERS.charAt(random.nextInt(random.nextInt(10) == 0 ? 3 : 26));
+    }
+    chars[14] = '-';
+    chars[25] = '-';
+    return new String(chars);
+  }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+public class InchiLayersTest {
+
+  @Test
+  public void testMainAndStereoLayers() {
+    InchiLayers layers = InchiLayers.of("InChI=1S/C3H7NO2/c1-2(4)3(5)6/h2H,4H2,1H3,(H,5,6)/t2-/m0/s1");
+    assertEquals("1S", layers.getVersion());
+    assertTrue(layers.isStandard());
+    assertEquals("C3H7NO2", layers.getFormula());
+    assertEquals("1-2(4)3(5)6", layers.getLayer(InchiLayer.CONNECTIONS));
+    assertEquals("2H,4H2,1H3,(H,5,6)", layers.getLayer(InchiLayer.HYDROGENS));
+    assertEquals("2-", layers.getLayer(InchiLayer.TETRAHEDRAL_STEREO));
+    assertEquals("0", layers.getLayer(InchiLayer.STEREO_INVERTED));
+    assertEquals("1", layers.getLayer(InchiLayer.STEREO_TYPE));
+    assertTrue(layers.hasStereo());
+    assertFalse(layers.hasLayer(InchiLayer.CHARGE));
+    assertNull(layers.getLayer(InchiLayer.ISOTOPIC));
+    assertEquals("InChI=1S/C3H7NO2/c1-2(4)3(5)6/h2H,4H2,1H3,(H,5,6)", layers.getConnectivityPrefix());
+  }
+
+  @Test
+  public void testChargeLayers() {
+    InchiLayers layers = InchiLayers.of("InChI=1S/C2H7N/c1-2-3/h2-3H2,1H3/p+1");
+    assertEquals("+1", layers.getLayer(InchiLayer.PROTONS));
+    assertFalse(layers.hasLayer(InchiLayer.CHARGE));
+    InchiLayers layers2 = InchiLayers.of("InChI=1S/CH4N.Na/c1-2;/h2H,1H3;/q-1;+1");
+    assertEquals("-1;+1", layers2.getLayer(InchiLayer.CHARGE));
+  }
+
+  @Test
+  public void testIsotopicLayerIncludesSublayers() {
+    InchiLayers layers = InchiLayers.of("InChI=1S/C2H6O/c1-2-3/h3H,2H2,1H3/t2-/m1/s1/i1D/t2-/m0");
+    assertEquals("2-", layers.getLayer(InchiLayer.TETRAHEDRAL_STEREO));
+    assertEquals("1", layers.getLayer(InchiLayer.STEREO_INVERTED));
+    assertEquals("1D/t2-/m0", layers.getLayer(InchiLayer.ISOTOPIC));
+  }
+
+  @Test
+  public void testFixedHAndReconnected() {
+    InchiLayers layers = InchiLayers.of("InChI=1/CH2O2/c2-1-3/h1H,(H,2,3)/f/h2H/i1+1/rC2H/c1-2");
+    assertEquals("1", layers.getVersion());
+    assertFalse(layers.isStandard());
+    assertNull(layers.getLayer(InchiLayer.TETRAHEDRAL_STEREO));
+    assertEquals("/h2H/i1+1", layers.getLayer(InchiLayer.FIXED_H));
+    assertNull(layers.getLayer(InchiLayer.ISOTOPIC));
+    assertEquals("C2H/c1-2", layers.getLayer(InchiLayer.RECONNECTED));
+  }
+
+  @Test
+  public void testEmptyStructure() {
+    InchiLayers layers = InchiLayers.of("InChI=1S//");
+    assertEquals("", layers.getFormula());
+    assertFalse(layers.hasLayer(InchiLayer.CONNECTIONS));
+  }
+
+  @Test
+  public void testLayersEqual() {
+    String r = "InChI=1S/C3H7NO2/c1-2(4)3(5)6/h2H,4H2,1H3,(H,5,6)/t2-/m0/s1";
+    String s = "InChI=1S/C3H7NO2/c1-2(4)3(5)6/h2H,4H2,1H3,(H,5,6)/t2-/m1/s1";
+    String racemic = "InChI=1S/C3H7NO2/c1-2(4)3(5)6/h2H,4H2,1H3,(H,5,6)";
+    assertTrue(InchiLayers.layersEqual(r, s, InchiLayer.FORMULA, InchiLayer.CONNECTIONS, InchiLayer.HYDROGENS, InchiLayer.TETRAHEDRAL_STEREO));
+    assertFalse(InchiLayers.layersEqual(r, s, InchiLayer.STEREO_INVERTED));
+    assertTrue(InchiLayers.layersEqual(r, racemic, InchiLayer.FORMULA, InchiLayer.CONNECTIONS, InchiLayer.HYDROGENS));
+    assertFalse(InchiLayers.layersEqual(r, racemic, InchiLayer.TETRAHEDRAL_STEREO));
+    assertTrue(InchiLayers.layersEqual(racemic, racemic, InchiLayer.TETRAHEDRAL_STEREO));
+  }
+
+  @Test
+  public void testConnectivityPrefixMatchesNativeInchiKeyFirstBlock() {
+    String inchi = "InChI=1S/C3H5Br/c1-2-3-4/h2-3H,1H3/b3-2-";
+    String prefix = InchiLayers.of(inchi).getConnectivityPrefix();
+    assertEquals(JnaInchi.inchiToInchiKey(inchi).getInchiKey().substring(0, 14), JnaInchi.inchiToInchiKey(prefix).getInchiKey().substring(0, 14));
+  }
+
+  @Test
+  public void testSharedBetweenThreads() {
+    String inchi = "InChI=1S/C3H7NO2/c1-2(4)3(5)6/h2H,4H2,1H3,(H,5,6)/t2-/m0/s1";
+    for (int i = 0; i < 200; i++) {
+      InchiLayers layers = InchiLayers.of(inchi);
+      IntStream.range(0, 8).parallel().forEach(j -> {
+        assertEquals("1S", layers.getVersion());
+        assertEquals("C3H7NO2", layers.getFormula());
+        assertEquals("2-", layers.getLayer(InchiLayer.TETRAHEDRAL_STEREO));
+      });
+    }
+  }
+
+  @Test
+  public void testNotAnInchi() {
+    assertThrows(IllegalArgumentException.class, () -> InchiLayers.of("C3H5Br"));
+  }
+
+}
@@ -0,0 +1,168 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class InchiOptionsPolicyTest {
+
+  @Test
+  public void testLargeMolecules() {
+    InchiOptions base = new InchiOptions.InchiOptionsBuilder().withFlag(InchiFlag.SNon).withTimeoutMilliSeconds(5000).build();
+    InchiOptionsPolicy policy = InchiOptionsPolicy.builder().withBaseOptions(base).build();
+    assertSame(base, policy.getOptions(InchiOptionsPolicy.MAX_STANDARD_ATOMS));
+    InchiOptions large = policy.getOptions(InchiOptionsPolicy.MAX_STANDARD_ATOMS + 1);
+    assertTrue(large.getFlags().contains(InchiFlag.LargeMolecules));
+    assertTrue(large.getFlags().contains(InchiFlag.SNon));
+    assertEquals(5000, large.getTimeoutMilliSeconds());
+
+    InchiInput polyphenyl = InchiBatchSchedulerTest.createPolyphenyl(200);
+    assertEquals(InchiStatus.ERROR, JnaInchi.toInchi(polyphenyl).getStatus());
+    InchiOutput output = InchiOptionsPolicy.builder().build().toInchi(new JnaInchiEngine(), polyphenyl);
+    assertFalse(output.getStatus() == InchiStatus.ERROR, output.getMessage());
+    assertTrue(output.getInchi().startsWith("InChI=1B/C1200H802/"));
+
+    InchiInput small = InchiBatchSchedulerTest.createPolyphenyl(2);
+    assertEquals(JnaInchi.toInchi(small).getInchi(), policy.toInchi(new JnaInchiEngine(), small).getInchi());
+  }
+
+  @Test
+  public void testLearnedTimeouts() {
+    InchiOptionsPolicy policy = InchiOptionsPolicy.builder().withSmoothing(0.5).withTimeoutMultiplier(10)
+        .withTimeoutRangeMilliSeconds(1, 0).build();
+    assertEquals(0, policy.getTimeoutMilliSeconds(100));
+    assertEquals(0, policy.getOptions(100).getTimeoutMilliSeconds());
+
+    policy.recordLatency(100, 2_000_000);
+    assertEquals(20, policy.getTimeoutMilliSeconds(100));
+    assertEquals(20, policy.getOptions(100).getTimeoutMilliSeconds());
+    //smaller unmeasured sizes use the nearest larger measured size class, larger ones are not extrapolated to
+    assertEquals(1, policy.getTimeoutMilliSeconds(1));
+    assertEquals(0, policy.getTimeoutMilliSeconds(200));
+
+    policy.recordLatency(100, 4_000_000);
+    assertEquals(30, policy.getTimeoutMilliSeconds(100));
+
+    policy.recordLatency(3000, 3_000_000_000L);
+    assertEquals(30, policy.getTimeoutMilliSeconds(100));
+    assertEquals(30_000, policy.getTimeoutMilliSeconds(3000));
+    assertTrue(policy.getOptions(3000).getFlags().contains(InchiFlag.LargeMolecules));
+  }
+
+  @Test
+  public void testTimeoutRange() {
+    InchiOptionsPolicy policy = InchiOptionsPolicy.builder().withTimeoutRangeMilliSeconds(100, 1000).build();
+    policy.recordLatency(10, 1000);
+    assertEquals(100, policy.getTimeoutMilliSeconds(10));
+    policy.recordLatency(2000, 60_000_000_000L);
+    assertEquals(1000, policy.getTimeoutMilliSeconds(2000));
+
+    assertThrows(IllegalArgumentException.class, () -> InchiOptionsPolicy.builder().withTimeoutRangeMilliSeconds(100, 10));
+    assertThrows(IllegalArgumentException.class, () -> InchiOptionsPolicy.builder().withSmoothing(0));
+    assertThrows(IllegalArgumentException.class, () -> InchiOptionsPolicy.builder().withTimeoutMultiplier(0.5));
+  }
+
+  @Test
+  public void testNoExtrapolationToLargerMolecules() {
+    InchiOptionsPolicy policy = InchiOptionsPolicy.builder().build();
+    for (int i = 0; i < 10; i++) {
+      policy.recordLatency(10, 100_000);
+    }
+    assertEquals(1000, policy.getTimeoutMilliSeconds(10));
+    InchiOptions options = policy.getOptions(5000);
+    assertEquals(0, options.getTimeoutMilliSeconds());
+    assertTrue(options.getFlags().contains(InchiFlag.LargeMolecules));
+
+    InchiOptionsPolicy bounded = InchiOptionsPolicy.builder().withTimeoutRangeMilliSeconds(100, 60_000).build();
+    bounded.recordLatency(10, 100_000);
+    assertEquals(60_000, bounded.getTimeoutMilliSeconds(5000));
+  }
+
+  /**
+   * Engine whose molecules take time quadratic in their atom count, and that fails when that exceeds the timeout
+   */
+  private static class QuadraticEngine extends JnaInchiEngine {
+    private final AtomicInteger timeouts = new AtomicInteger();
+
+    @Override
+    public InchiOutput toInchi(InchiInput inchiInput, InchiOptions options) {
+      int atomCount = inchiInput.getAtoms().size();
+      long costMilliSecs = (long) atomCount * atomCount / 100_000;
+      long timeout = options.getTimeoutMilliSeconds();
+      try {
+        if (timeout != 0 && costMilliSecs > timeout) {
+          Thread.sleep(timeout);
+          timeouts.incrementAndGet();
+          return new InchiOutput(null, null, "Time limit exceeded", null, InchiStatus.ERROR);
+        }
+        Thread.sleep(costMilliSecs);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return new InchiOutput("InChI=1S/test", null, null, null, InchiStatus.SUCCESS);
+    }
+  }
+
+  @Test
+  public void testTimeoutsRaiseTheTimeout() {
+    QuadraticEngine engine = new QuadraticEngine();
+    InchiOptionsPolicy policy = InchiOptionsPolicy.builder().withTimeoutRangeMilliSeconds(1, 0).build();
+    //small molecules are fast per atom, large ones are not
+    InchiInput small = InchiBatchSchedulerTest.createPolyphenyl(10);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(InchiStatus.SUCCESS, policy.toInchi(engine, small).getStatus());
+    }
+    InchiInput large = InchiBatchSchedulerTest.createPolyphenyl(800);
+    int atomCount = large.getAtoms().size();
+    //a measured size class whose average is far too low
+    policy.recordLatency(atomCount, 1_000_000);
+    long previousTimeout = policy.getTimeoutMilliSeconds(atomCount);
+    InchiStatus status = null;
+    for (int attempt = 0; attempt < 4 && status != InchiStatus.SUCCESS; attempt++) {
+      status = policy.toInchi(engine, large).getStatus();
+      if (status == InchiStatus.ERROR) {
+        long timeout = policy.getTimeoutMilliSeconds(atomCount);
+        assertTrue(timeout > previousTimeout, timeout + " > " + previousTimeout);
+        previousTimeout = timeout;
+      }
+    }
+    assertEquals(InchiStatus.SUCCESS, status);
+    assertTrue(engine.timeouts.get() > 0);
+  }
+
+  @Test
+  public void testErrorsAreNotRecorded() {
+    InchiOptionsPolicy policy = InchiOptionsPolicy.builder().build();
+    InchiInput input = new InchiInput();
+    input.addAtom(new InchiAtom("Zz"));
+    assertEquals(InchiStatus.ERROR, policy.toInchi(new JnaInchiEngine(), input).getStatus());
+    assertEquals(0, policy.getTimeoutMilliSeconds(1));
+
+    policy.toInchi(new JnaInchiEngine(), InchiBatchSchedulerTest.createPolyphenyl(1));
+    assertTrue(policy.getTimeoutMilliSeconds(6) >= 1000);
+  }
+}
@@ -0,0 +1,214 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class InchiQuarantineTest {
+
+  /**
+   * Engine that fails for every input and counts how often it was called
+   */
+  private static class FailingEngine extends JnaInchiEngine {
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public InchiOutput toInchi(InchiInput inchiInput, InchiOptions options) {
+      calls.incrementAndGet();
+      return new InchiOutput(null, null, "Timeout\texceeded\nretry", null, InchiStatus.ERROR);
+    }
+
+    @Override
+    public InchiOutput molToInchi(String molText, InchiOptions options) {
+      calls.incrementAndGet();
+      return new InchiOutput(null, null, "Invalid molfile", null, InchiStatus.ERROR);
+    }
+  }
+
+  /**
+   * Engine that cannot run at all, as when the native library fails to load
+   */
+  private static class BrokenEngine extends JnaInchiEngine {
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public InchiOutput toInchi(InchiInput inchiInput, InchiOptions options) {
+      calls.incrementAndGet();
+      throw new IllegalStateException("Error loading InChI native code");
+    }
+  }
+
+  private static InchiInput createInput(String element) {
+    InchiInput input = new InchiInput();
+    InchiAtom a1 = new InchiAtom(element);
+    InchiAtom a2 = new InchiAtom("C");
+    input.addAtom(a1);
+    input.addAtom(a2);
+    input.addBond(new InchiBond(a1, a2, InchiBondType.SINGLE));
+    return input;
+  }
+
+  @Test
+  public void testShortCircuit() {
+    FailingEngine engine = new FailingEngine();
+    InchiQuarantine quarantine = InchiQuarantine.builder().build();
+    InchiOptions options = InchiOptions.DEFAULT_OPTIONS;
+    InchiOutput first = quarantine.toInchi(engine, createInput("Zz"), options);
+    InchiOutput second = quarantine.toInchi(engine, createInput("Zz"), options);
+    assertEquals(1, engine.calls.get());
+    assertEquals(InchiStatus.ERROR, second.getStatus());
+    assertEquals(first.getMessage(), second.getMessage());
+    assertEquals(1, quarantine.getHitCount());
+    assertEquals(1, quarantine.getMissCount());
+    assertTrue(quarantine.getSavedNanos() > 0);
+
+    //different options or molecules are not affected
+    quarantine.toInchi(engine, createInput("Zz"), new InchiOptions.InchiOptionsBuilder().withTimeoutMilliSeconds(10).build());
+    quarantine.toInchi(engine, createInput("Yy"), options);
+    assertEquals(3, engine.calls.get());
+
+    assertEquals("Invalid molfile", quarantine.molToInchi(engine, "mol", options).getMessage());
+    assertEquals(InchiStatus.ERROR, quarantine.molToInchi(engine, "mol", options).getStatus());
+    assertEquals(4, engine.calls.get());
+  }
+
+  @Test
+  public void testMolfileHeaderIgnored() {
+    FailingEngine engine = new FailingEngine();
+    InchiQuarantine quarantine = InchiQuarantine.builder().build();
+    String body = "\n\n  1  0  0  0  0  0  0  0  0  0999 V2000\n"
+        + "    0.0000    0.0000    0.0000 Zz  0  0  0  0  0  0  0  0  0  0  0  0\nM  END\n";
+    //the same structure resubmitted a day later, with a new program/timestamp line
+    String monday = "structure\n  Program 10122609332D" + body;
+    String tuesday = "structure\n  Program 10132609152D" + body;
+    quarantine.molToInchi(engine, monday, InchiOptions.DEFAULT_OPTIONS);
+    InchiOutput output = quarantine.molToInchi(engine, tuesday, InchiOptions.DEFAULT_OPTIONS);
+    assertEquals(InchiStatus.ERROR, output.getStatus());
+    assertEquals(1, engine.calls.get());
+    assertEquals(1, quarantine.getHitCount());
+
+    //a different dimension code is a different molfile
+    quarantine.molToInchi(engine, "structure\n  Program 10132609153D" + body, InchiOptions.DEFAULT_OPTIONS);
+    assertEquals(2, engine.calls.get());
+  }
+
+  @Test
+  public void testExceptionsAreNotQuarantined() {
+    BrokenEngine engine = new BrokenEngine();
+    InchiQuarantine quarantine = InchiQuarantine.builder().build();
+    InchiInput input = InchiBatchSchedulerTest.createPolyphenyl(1);
+    for (int i = 0; i < 2; i++) {
+      IllegalStateException e = assertThrows(IllegalStateException.class,
+          () -> quarantine.toInchi(engine, input, InchiOptions.DEFAULT_OPTIONS));
+      assertEquals("Error loading InChI native code", e.getMessage());
+    }
+    assertEquals(2, engine.calls.get());
+    assertEquals(0, quarantine.size());
+    assertEquals(0, quarantine.getHitCount());
+
+    //once the environment is fixed, the input converts
+    InchiOutput output = quarantine.toInchi(new JnaInchiEngine(), input, InchiOptions.DEFAULT_OPTIONS);
+    assertEquals(InchiStatus.SUCCESS, output.getStatus());
+  }
+
+  @Test
+  public void testSuccessIsNotQuarantined() {
+    InchiQuarantine quarantine = InchiQuarantine.builder().build();
+    InchiInput input = InchiBatchSchedulerTest.createPolyphenyl(1);
+    quarantine.toInchi(new JnaInchiEngine(), input, InchiOptions.DEFAULT_OPTIONS);
+    InchiOutput output = quarantine.toInchi(new JnaInchiEngine(), input, InchiOptions.DEFAULT_OPTIONS);
+    assertEquals("InChI=1S/C6H6/c1-2-4-6-5-3-1/h1-6H", output.getInchi());
+    assertEquals(0, quarantine.size());
+    assertEquals(0, quarantine.getHitCount());
+  }
+
+  @Test
+  public void testTimeToLiveAndSize() {
+    AtomicLong now = new AtomicLong(1000);
+    FailingEngine engine = new FailingEngine();
+    InchiQuarantine quarantine = InchiQuarantine.builder().withTimeToLive(1, TimeUnit.SECONDS).withMaxEntries(2)
+        .withClock(now::get).build();
+    quarantine.toInchi(engine, createInput("Zz"), InchiOptions.DEFAULT_OPTIONS);
+    now.addAndGet(999);
+    quarantine.toInchi(engine, createInput("Zz"), InchiOptions.DEFAULT_OPTIONS);
+    assertEquals(1, engine.calls.get());
+    now.addAndGet(1);
+    quarantine.toInchi(engine, createInput("Zz"), InchiOptions.DEFAULT_OPTIONS);
+    assertEquals(2, engine.calls.get());
+
+    quarantine.toInchi(engine, createInput("Yy"), InchiOptions.DEFAULT_OPTIONS);
+    quarantine.toInchi(engine, createInput("Xx"), InchiOptions.DEFAULT_OPTIONS);
+    assertEquals(2, quarantine.size());
+    //Zz was least recently used, so was evicted
+    quarantine.toInchi(engine, createInput("Zz"), InchiOptions.DEFAULT_OPTIONS);
+    assertEquals(5, engine.calls.get());
+  }
+
+  @Test
+  public void testPersistence(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("quarantine").resolve("failures.tsv");
+    AtomicLong now = new AtomicLong(1000);
+    FailingEngine engine = new FailingEngine();
+    try (InchiQuarantine quarantine = InchiQuarantine.builder().withFile(file).withTimeToLive(1, TimeUnit.HOURS).withClock(now::get).build()) {
+      quarantine.toInchi(engine, createInput("Zz"), InchiOptions.DEFAULT_OPTIONS);
+      quarantine.molToInchi(engine, "mol", InchiOptions.DEFAULT_OPTIONS);
+    }
+    assertEquals(3, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+
+    InchiQuarantine reloaded = InchiQuarantine.builder().withFile(file).withTimeToLive(1, TimeUnit.HOURS).withClock(now::get).build();
+    assertEquals(2, reloaded.size());
+    InchiOutput output = reloaded.toInchi(engine, createInput("Zz"), InchiOptions.DEFAULT_OPTIONS);
+    assertEquals("Timeout\texceeded\nretry", output.getMessage());
+    assertEquals(2, engine.calls.get());
+
+    now.addAndGet(TimeUnit.HOURS.toMillis(1));
+    assertEquals(0, InchiQuarantine.builder().withFile(file).withTimeToLive(1, TimeUnit.HOURS).withClock(now::get).build().size());
+
+    Files.write(file, "something else\n".getBytes(StandardCharsets.UTF_8));
+    assertThrows(UncheckedIOException.class, () -> InchiQuarantine.builder().withFile(file).build());
+  }
+
+  @Test
+  public void testDigest() {
+    InchiInput input = InchiBatchSchedulerTest.createPolyphenyl(2);
+    String digest = InchiDigests.digest(input, InchiOptions.DEFAULT_OPTIONS);
+    assertEquals(64, digest.length());
+    assertEquals(digest, InchiDigests.digest(InchiBatchSchedulerTest.createPolyphenyl(2), InchiOptions.DEFAULT_OPTIONS));
+    assertNotEquals(digest, InchiDigests.digest(InchiBatchSchedulerTest.createPolyphenyl(3), InchiOptions.DEFAULT_OPTIONS));
+    input.getAtom(0).setCharge(1);
+    assertNotEquals(digest, InchiDigests.digest(input, InchiOptions.DEFAULT_OPTIONS));
+    assertNotEquals(InchiDigests.digest("mol", InchiOptions.DEFAULT_OPTIONS),
+        InchiDigests.digest("mol", new InchiOptions.InchiOptionsBuilder().withFlag(InchiFlag.SAbs).build()));
+    assertEquals("a\\tb\\\\c\\nd", InchiQuarantine.escape("a\tb\\c\nd"));
+    assertEquals("a\tb\\c\nd", InchiQuarantine.unescape("a\\tb\\\\c\\nd"));
+  }
+}
@@ -0,0 +1,145 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.dan2097.jnainchi.inchi.InchiLibrary;
+
+public class InchiValidatorTest {
+
+  private static final String[] SEED_KEYS = {
+      "VNWKTOKETHGBQD-UHFFFAOYSA-N",
+      "SPSSULHKWOKEEL-UHFFFAOYSA-N",
+      "QNAYBMKLOCPYGJ-REOHCLBHSA-N",
+      "XLYOFNOQVPJJNP-UHFFFAOYNA-N",
+      "UHOVQNZJYSORNB-UHFFFAOYSA-M",
+      "BSYNRYMUTXBXSQ-UHFFFAOYSA-O"
+  };
+
+  private static final String[] SEED_INCHIS = {
+      "InChI=1S/CH4/h1H4",
+      "InChI=1/C7H5N3O6/c1-4-6(9(13)14)2-5(8(11)12)3-7(4)10(15)16/h2-3H,1H3",
+      "InChI=1S/C3H7NO2/c1-2(4)3(5)6/h2H,4H2,1H3,(H,5,6)/t2-/m0/s1",
+      "InChI=1B/C2H6O/c1-2-3/h3H,2H2,1H3/i1D",
+      "InChI=1S/CH4N.Na/c1-2;/h2H,1H3;/q-1;+1",
+      "InChI=1/CH2O2/c2-1-3/h1H,(H,2,3)/f/h2H/rC2H/c1-2",
+      "InChI=1S//",
+      "InChI=1/CH4/h1H4\\RA"
+  };
+
+  /** Printable ASCII plus whitespace */
+  private static final char[] ALPHABET;
+
+  static {
+    StringBuilder sb = new StringBuilder(" \t\n\r\u000b\f");
+    for (char c = 33; c < 127; c++) {
+      sb.append(c);
+    }
+    //weight the alphabet towards characters that commonly appear in valid input
+    sb.append("ABCDEFGHIJKLMNOPQRSTUVWXYZABCDEFGHIJKLMNOPQRSTUVWXYZESNA--//\\\\");
+    ALPHABET = sb.toString().toCharArray();
+  }
+
+  @Test
+  public void testInchiKeyExamples() {
+    assertEquals(InchiKeyCheckStatus.VALID_STANDARD, InchiValidator.checkInchiKey("VNWKTOKETHGBQD-UHFFFAOYSA-N"));
+    assertEquals(InchiKeyCheckStatus.VALID_NON_STANDARD, InchiValidator.checkInchiKey("VNWKTOKETHGBQD-UHFFFAOYNA-N"));
+    assertEquals(InchiKeyCheckStatus.INVALID_VERSION, InchiValidator.checkInchiKey("VNWKTOKETHGBQD-UHFFFAOYSB-N"));
+    assertEquals(InchiKeyCheckStatus.INVALID_LAYOUT, InchiValidator.checkInchiKey("ENWKTOKETHGBQD-UHFFFAOYSA-N"));
+    assertEquals(InchiKeyCheckStatus.INVALID_LAYOUT, InchiValidator.checkInchiKey("VNWKTOKETHGBQD_UHFFFAOYSA-N"));
+    assertEquals(InchiKeyCheckStatus.INVALID_LENGTH, InchiValidator.checkInchiKey("VNWKTOKETHGBQD-UHFFFAOYSA"));
+    assertEquals(InchiKeyCheckStatus.INVALID_LENGTH, InchiValidator.checkInchiKey(null));
+  }
+
+  @Test
+  public void testInchiExamples() {
+    assertEquals(InchiCheckStatus.VALID_STANDARD, InchiValidator.checkInchi("InChI=1S/CH4/h1H4"));
+    assertEquals(InchiCheckStatus.VALID_NON_STANDARD, InchiValidator.checkInchi("InChI=1/CH4/h1H4"));
+    assertEquals(InchiCheckStatus.VALID_BETA, InchiValidator.checkInchi("InChI=1B/CH4/h1H4"));
+    assertEquals(InchiCheckStatus.VALID_STANDARD, InchiValidator.checkInchi("InChI=1S/CH4/h1H4 \n"));
+    assertEquals(InchiCheckStatus.INVALID_LAYOUT, InchiValidator.checkInchi("InChI=1S/CH4 /h1H4"));
+    assertEquals(InchiCheckStatus.INVALID_VERSION, InchiValidator.checkInchi("InChI=2S/CH4/h1H4"));
+    assertEquals(InchiCheckStatus.INVALID_PREFIX, InchiValidator.checkInchi("InChi=1S/CH4/h1H4"));
+    assertEquals(InchiCheckStatus.INVALID_PREFIX, InchiValidator.checkInchi(null));
+  }
+
+  @Test
+  public void testBatch() {
+    String[] keys = {"VNWKTOKETHGBQD-UHFFFAOYSA-N", "VNWKTOKETHGBQD-UHFFFAOYSB-N", ""};
+    assertArrayEquals(new InchiKeyCheckStatus[] {InchiKeyCheckStatus.VALID_STANDARD, InchiKeyCheckStatus.INVALID_VERSION, InchiKeyCheckStatus.INVALID_LENGTH},
+        InchiValidator.checkInchiKeys(keys));
+    String[] inchis = {"InChI=1S/CH4/h1H4", "InChI=1/CH4/h1H4"};
+    assertArrayEquals(new InchiCheckStatus[] {InchiCheckStatus.VALID_STANDARD, InchiCheckStatus.VALID_NON_STANDARD},
+        InchiValidator.checkInchis(inchis));
+  }
+
+  @Test
+  public void testInchiKeyParityWithNative() {
+    Random random = new Random(20180101);
+    for (int i = 0; i < 200000; i++) {
+      String key = mutate(SEED_KEYS[random.nextInt(SEED_KEYS.length)], random, true);
+      InchiKeyCheckStatus expected = InchiKeyCheckStatus.of(InchiLibrary.CheckINCHIKey(key));
+      assertEquals(expected, InchiValidator.checkInchiKey(key), key);
+    }
+  }
+
+  @Test
+  public void testInchiParityWithNative() {
+    Random random = new Random(20180102);
+    for (int i = 0; i < 200000; i++) {
+      String inchi = mutate(SEED_INCHIS[random.nextInt(SEED_INCHIS.length)], random, false);
+      InchiCheckStatus expected = InchiCheckStatus.of(InchiLibrary.CheckINCHI(inchi, false));
+      assertEquals(expected, InchiValidator.checkInchi(inchi), inchi);
+    }
+  }
+
+  /**
+   * Applies a small number of random substitutions, and occasionally an insertion, deletion or truncation
+   */
+  private static String mutate(String seed, Random random, boolean preferSubstitution) {
+    StringBuilder sb = new StringBuilder(seed);
+    int mutations = random.nextInt(3);
+    for (int m = 0; m < mutations; m++) {
+      int op = random.nextInt(preferSubstitution ? 20 : 8);
+      char c = ALPHABET[random.nextInt(ALPHABET.length)];
+      if (op == 0 && sb.length() > 0) {
+        sb.deleteCharAt(random.nextInt(sb.length()));
+      }
+      else if (op == 1) {
+        sb.insert(random.nextInt(sb.length() + 1), c);
+      }
+      else if (op == 2 && sb.length() > 0) {
+        sb.setLength(random.nextInt(sb.length()));
+      }
+      else if (op == 3) {
+        sb.append(c);
+      }
+      else if (sb.length() > 0) {
+        sb.setCharAt(random.nextInt(sb.length()), c);
+      }
+    }
+    return sb.toString();
+  }
+
+}
@@ -187,4 +187,20 @@ public class JnaInchiTest {
     assertEquals("InChI=1S/C2H3BrClI/c1-2(3,4)5/h1H3/t2-/m0/s1", JnaInchi.toInchi(inchiInput).getInchi());
   }
 
+  @Test
+  public void testChiralFlag() {
+    InchiInput inchiInput = new InchiInput();
+    inchiInput.addAtom(new InchiAtom("C", 0, 0, 0));
+    InchiOutput output = JnaInchi.toInchi(inchiInput, new InchiOptions.InchiOptionsBuilder().withFlag(InchiFlag.ChiralFlagON).build());
+    assertEquals("AuxInfo=1/0/N:1/rA:1cC0/rB:/rC:;", output.getAuxInfo());
+    output = JnaInchi.toInchi(inchiInput, new InchiOptions.InchiOptionsBuilder().withFlag(InchiFlag.ChiralFlagOFF).build());
+    assertEquals("AuxInfo=1/0/N:1/rA:1nC0/rB:/rC:;", output.getAuxInfo());
+  }
+
+  @Test
+  public void testPreload() {
+    JnaInchi.preload();
+    assertEquals("VNWKTOKETHGBQD-UHFFFAOYSA-N", JnaInchi.inchiToInchiKey("InChI=1S/CH4/h1H4").getInchiKey());
+  }
+
 }
@@ -0,0 +1,123 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+
+public class OrderedPipelineTest {
+
+  @Test
+  public void testOrderAndWindow() throws IOException {
+    Random random = new Random(46);
+    List<Integer> inputs = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      inputs.add(random.nextInt(1000));
+    }
+    List<Long> sequences = new ArrayList<>();
+    List<String> results = new ArrayList<>();
+    int window = 8;
+    try (OrderedPipeline<Integer, String> pipeline = OrderedPipeline.<Integer, String>builder(i -> {
+      LockSupport.parkNanos(i * 200L);
+      return Integer.toHexString(i);
+    }, (sequence, input, result) -> {
+      sequences.add(sequence);
+      results.add(result);
+    }).withThreads(4).withWindow(window).build()) {
+      for (Integer input : inputs) {
+        pipeline.submit(input);
+        assertTrue(pipeline.getSubmittedCount() - results.size() <= window);
+      }
+      pipeline.finish();
+      assertEquals(inputs.size(), pipeline.getSubmittedCount());
+      assertEquals(0, pipeline.getOutOfOrderCount());
+    }
+    for (int i = 0; i < inputs.size(); i++) {
+      assertEquals(i, sequences.get(i).longValue());
+      assertEquals(Integer.toHexString(inputs.get(i)), results.get(i));
+    }
+  }
+
+  @Test
+  public void testMaxWait() throws Exception {
+    int count = 20;
+    CountDownLatch release = new CountDownLatch(1);
+    List<Long> sequences = new ArrayList<>();
+    try (OrderedPipeline<Integer, Integer> pipeline = OrderedPipeline.<Integer, Integer>builder(i -> {
+      if (i == 0) {
+        try {
+          release.await();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return i;
+    }, (sequence, input, result) -> {
+      assertEquals(sequence, result.longValue());
+      sequences.add(sequence);
+      if (sequences.size() == count - 1) {
+        release.countDown();
+      }
+    }).withThreads(2).withWindow(4).withMaxWaitMilliSeconds(20).build()) {
+      for (int i = 0; i < count; i++) {
+        pipeline.submit(i);
+      }
+      pipeline.finish();
+      //Everything overtakes the blocked first item, which is emitted last
+      assertEquals(count - 1, pipeline.getOutOfOrderCount());
+    }
+    assertEquals(count, sequences.size());
+    for (int i = 1; i < count; i++) {
+      assertEquals(i, sequences.get(i - 1).longValue());
+    }
+    assertEquals(0, sequences.get(count - 1).longValue());
+  }
+
+  @Test
+  public void testFailure() throws IOException {
+    RuntimeException failure = new RuntimeException("test");
+    List<Integer> results = new ArrayList<>();
+    try (OrderedPipeline<Integer, Integer> pipeline = OrderedPipeline.<Integer, Integer>builder(i -> {
+      if (i == 3) {
+        throw failure;
+      }
+      return i;
+    }, (sequence, input, result) -> results.add(result)).withThreads(2).build()) {
+      for (int i = 0; i < 6; i++) {
+        pipeline.submit(i);
+      }
+      IllegalStateException e = assertThrows(IllegalStateException.class, pipeline::finish);
+      assertSame(failure, e.getCause());
+      pipeline.close();
+      assertThrows(IllegalStateException.class, () -> pipeline.submit(7));
+    }
+    assertEquals(3, results.size());
+  }
+}
@@ -0,0 +1,135 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.github.dan2097.jnainchi.inchi.NativeLibraryCache;
+
+/**
+ * Measures time-to-first-InChI in freshly started JVMs, with and without the persistent native library cache.
+ * The native library must be on the classpath as a jar (not a directory) for extraction to occur.
+ * Run with java, passing the number of runs per configuration as the first argument (default 10).
+ */
+public class StartupBenchmark {
+
+  private static final String RESULT_PREFIX = "TIME_TO_FIRST_INCHI_NS=";
+
+  public static void main(String[] args) throws Exception {
+    if (args.length > 0 && args[0].equals("child")) {
+      long start = System.nanoTime();
+      InchiOutput output = JnaInchi.toInchi(createInput());
+      long end = System.nanoTime();
+      if (output.getStatus() == InchiStatus.ERROR) {
+        throw new IllegalStateException(output.getMessage());
+      }
+      System.out.println(RESULT_PREFIX + (end - start));
+      return;
+    }
+    int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+    File cacheDir = Files.createTempDirectory("jnainchi-cache").toFile();
+    try {
+      //first run populates the cache, so is measured separately
+      report("cache (first run)", new long[][] {runChild("-D" + NativeLibraryCache.CACHE_DIR_PROPERTY + "=" + cacheDir)});
+      long[][] uncached = new long[runs][];
+      long[][] cached = new long[runs][];
+      for (int i = 0; i < runs; i++) {
+        uncached[i] = runChild("-D" + NativeLibraryCache.CACHE_ENABLED_PROPERTY + "=false");
+        cached[i] = runChild("-D" + NativeLibraryCache.CACHE_DIR_PROPERTY + "=" + cacheDir);
+      }
+      report("no cache", uncached);
+      report("cache (warm)", cached);
+    }
+    finally {
+      deleteRecursively(cacheDir);
+    }
+  }
+
+  /**
+   * @return {time to first InChI measured in the child, wall time of the child process} in nanoseconds
+   */
+  private static long[] runChild(String property) throws Exception {
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    List<String> command = new ArrayList<>(Arrays.asList(java, property, "-cp", System.getProperty("java.class.path"), StartupBenchmark.class.getName(), "child"));
+    long start = System.nanoTime();
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    long timeToFirstInchi = -1;
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(RESULT_PREFIX)) {
+          timeToFirstInchi = Long.parseLong(line.substring(RESULT_PREFIX.length()));
+        }
+        else {
+          System.err.println(line);
+        }
+      }
+    }
+    if (process.waitFor() != 0 || timeToFirstInchi < 0) {
+      throw new IllegalStateException("Benchmark child process failed");
+    }
+    return new long[] {timeToFirstInchi, System.nanoTime() - start};
+  }
+
+  private static void report(String name, long[][] results) {
+    long[] firstInchi = new long[results.length];
+    long[] wall = new long[results.length];
+    for (int i = 0; i < results.length; i++) {
+      firstInchi[i] = results[i][0];
+      wall[i] = results[i][1];
+    }
+    Arrays.sort(firstInchi);
+    Arrays.sort(wall);
+    System.out.printf("%-20s time-to-first-InChI median %6.1f ms, min %6.1f ms | process wall time median %6.1f ms%n",
+        name, firstInchi[firstInchi.length / 2] / 1e6, firstInchi[0] / 1e6, wall[wall.length / 2] / 1e6);
+  }
+
+  private static InchiInput createInput() {
+    InchiInput input = new InchiInput();
+    InchiAtom c1 = new InchiAtom("C");
+    c1.setImplicitHydrogen(3);
+    InchiAtom c2 = new InchiAtom("C");
+    c2.setImplicitHydrogen(2);
+    InchiAtom o = new InchiAtom("O");
+    o.setImplicitHydrogen(1);
+    input.addAtom(c1);
+    input.addAtom(c2);
+    input.addAtom(o);
+    input.addBond(new InchiBond(c1, c2, InchiBondType.SINGLE));
+    input.addBond(new InchiBond(c2, o, InchiBondType.SINGLE));
+    return input;
+  }
+
+  private static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    file.delete();
+  }
+
+}
@@ -0,0 +1,82 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi.inchi;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.jna.Platform;
+
+public class NativeLibraryCacheTest {
+
+  @TempDir
+  Path cacheDir;
+
+  @Test
+  public void testExtractAndReuse() throws Exception {
+    File cached = NativeLibraryCache.extractToCache(InchiLibrary.JNA_LIBRARY_NAME, getClass().getClassLoader(), cacheDir.toFile());
+    assertNotNull(cached);
+    assertTrue(cached.isFile());
+    assertArrayEquals(readBundledLibrary(), Files.readAllBytes(cached.toPath()));
+
+    long lastModified = cached.lastModified();
+    File cachedAgain = NativeLibraryCache.extractToCache(InchiLibrary.JNA_LIBRARY_NAME, getClass().getClassLoader(), cacheDir.toFile());
+    assertEquals(cached, cachedAgain);
+    assertEquals(lastModified, cachedAgain.lastModified());
+  }
+
+  @Test
+  public void testCorruptedCacheIsReplaced() throws Exception {
+    File cached = NativeLibraryCache.extractToCache(InchiLibrary.JNA_LIBRARY_NAME, getClass().getClassLoader(), cacheDir.toFile());
+    Files.write(cached.toPath(), new byte[]{1, 2, 3});
+    File repaired = NativeLibraryCache.extractToCache(InchiLibrary.JNA_LIBRARY_NAME, getClass().getClassLoader(), cacheDir.toFile());
+    assertEquals(cached, repaired);
+    assertArrayEquals(readBundledLibrary(), Files.readAllBytes(repaired.toPath()));
+  }
+
+  @Test
+  public void testMissingLibrary() throws Exception {
+    assertNull(NativeLibraryCache.extractToCache("doesNotExist", getClass().getClassLoader(), cacheDir.toFile()));
+  }
+
+  private byte[] readBundledLibrary() throws Exception {
+    String resourcePath = Platform.RESOURCE_PREFIX + "/" + System.mapLibraryName(InchiLibrary.JNA_LIBRARY_NAME);
+    try (InputStream is = getClass().getClassLoader().getResourceAsStream(resourcePath)) {
+      byte[] buffer = new byte[1024 * 1024];
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        baos.write(buffer, 0, read);
+      }
+      return baos.toByteArray();
+    }
+  }
+
+}
@@ -0,0 +1,286 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi.flow;
+
+import java.util.concurrent.Flow;
+
+import io.github.dan2097.jnainchi.InchiFlow;
+
+/**
+ * Converts between the {@link InchiFlow} interfaces and those of {@link java.util.concurrent.Flow},
+ * so that an {@link io.github.dan2097.jnainchi.InchiFlowProcessor} can be used with Java 9+ reactive
+ * libraries e.g. fed by a {@link java.util.concurrent.SubmissionPublisher}.
+ * <p>
+ * The adapters only delegate, so the backpressure and ordering of the adapted object are unchanged.
+ * Adapting an adapter returns the original object.
+ */
+public final class InchiFlowAdapters {
+
+  private InchiFlowAdapters() {
+  }
+
+  /**
+   * Adapts an InchiFlow publisher to a Flow publisher
+   * @param <T> the type of the items
+   * @param publisher
+   * @return a Flow publisher
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Flow.Publisher<T> toFlowPublisher(InchiFlow.Publisher<T> publisher) {
+    checkNotNull(publisher, "publisher");
+    if (publisher instanceof InchiPublisherFromFlow) {
+      return ((InchiPublisherFromFlow<T>) publisher).publisher;
+    }
+    return new FlowPublisherFromInchi<>(publisher);
+  }
+
+  /**
+   * Adapts a Flow publisher to an InchiFlow publisher
+   * @param <T> the type of the items
+   * @param publisher
+   * @return an InchiFlow publisher
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> InchiFlow.Publisher<T> toInchiFlowPublisher(Flow.Publisher<T> publisher) {
+    checkNotNull(publisher, "publisher");
+    if (publisher instanceof FlowPublisherFromInchi) {
+      return ((FlowPublisherFromInchi<T>) publisher).publisher;
+    }
+    return new InchiPublisherFromFlow<>(publisher);
+  }
+
+  /**
+   * Adapts an InchiFlow subscriber to a Flow subscriber
+   * @param <T> the type of the items
+   * @param subscriber
+   * @return a Flow subscriber
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Flow.Subscriber<T> toFlowSubscriber(InchiFlow.Subscriber<T> subscriber) {
+    checkNotNull(subscriber, "subscriber");
+    if (subscriber instanceof InchiSubscriberFromFlow) {
+      return ((InchiSubscriberFromFlow<T>) subscriber).subscriber;
+    }
+    return new FlowSubscriberFromInchi<>(subscriber);
+  }
+
+  /**
+   * Adapts a Flow subscriber to an InchiFlow subscriber
+   * @param <T> the type of the items
+   * @param subscriber
+   * @return an InchiFlow subscriber
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> InchiFlow.Subscriber<T> toInchiFlowSubscriber(Flow.Subscriber<T> subscriber) {
+    checkNotNull(subscriber, "subscriber");
+    if (subscriber instanceof FlowSubscriberFromInchi) {
+      return ((FlowSubscriberFromInchi<T>) subscriber).subscriber;
+    }
+    return new InchiSubscriberFromFlow<>(subscriber);
+  }
+
+  /**
+   * Adapts an InchiFlow processor, typically an {@link io.github.dan2097.jnainchi.InchiFlowProcessor}, to a Flow processor
+   * @param <T> the type of the items received
+   * @param <R> the type of the items published
+   * @param processor
+   * @return a Flow processor
+   */
+  public static <T, R> Flow.Processor<T, R> toFlowProcessor(InchiFlow.Processor<T, R> processor) {
+    checkNotNull(processor, "processor");
+    return new FlowProcessorFromInchi<>(processor);
+  }
+
+  private static void checkNotNull(Object obj, String name) {
+    if (obj == null) {
+      throw new IllegalArgumentException(name + " must not be null");
+    }
+  }
+
+  private static InchiFlow.Subscription toInchiFlowSubscription(Flow.Subscription subscription) {
+    if (subscription instanceof FlowSubscriptionFromInchi) {
+      return ((FlowSubscriptionFromInchi) subscription).subscription;
+    }
+    return new InchiSubscriptionFromFlow(subscription);
+  }
+
+  private static Flow.Subscription toFlowSubscription(InchiFlow.Subscription subscription) {
+    if (subscription instanceof InchiSubscriptionFromFlow) {
+      return ((InchiSubscriptionFromFlow) subscription).subscription;
+    }
+    return new FlowSubscriptionFromInchi(subscription);
+  }
+
+  private static final class FlowPublisherFromInchi<T> implements Flow.Publisher<T> {
+
+    private final InchiFlow.Publisher<T> publisher;
+
+    FlowPublisherFromInchi(InchiFlow.Publisher<T> publisher) {
+      this.publisher = publisher;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+      publisher.subscribe(toInchiFlowSubscriber(subscriber));
+    }
+  }
+
+  private static final class InchiPublisherFromFlow<T> implements InchiFlow.Publisher<T> {
+
+    private final Flow.Publisher<T> publisher;
+
+    InchiPublisherFromFlow(Flow.Publisher<T> publisher) {
+      this.publisher = publisher;
+    }
+
+    @Override
+    public void subscribe(InchiFlow.Subscriber<? super T> subscriber) {
+      publisher.subscribe(toFlowSubscriber(subscriber));
+    }
+  }
+
+  private static final class FlowSubscriberFromInchi<T> implements Flow.Subscriber<T> {
+
+    private final InchiFlow.Subscriber<T> subscriber;
+
+    FlowSubscriberFromInchi(InchiFlow.Subscriber<T> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      subscriber.onSubscribe(toInchiFlowSubscription(subscription));
+    }
+
+    @Override
+    public void onNext(T item) {
+      subscriber.onNext(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      subscriber.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      subscriber.onComplete();
+    }
+  }
+
+  private static final class InchiSubscriberFromFlow<T> implements InchiFlow.Subscriber<T> {
+
+    private final Flow.Subscriber<T> subscriber;
+
+    InchiSubscriberFromFlow(Flow.Subscriber<T> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void onSubscribe(InchiFlow.Subscription subscription) {
+      subscriber.onSubscribe(toFlowSubscription(subscription));
+    }
+
+    @Override
+    public void onNext(T item) {
+      subscriber.onNext(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      subscriber.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      subscriber.onComplete();
+    }
+  }
+
+  private static final class FlowProcessorFromInchi<T, R> implements Flow.Processor<T, R> {
+
+    private final InchiFlow.Processor<T, R> processor;
+
+    FlowProcessorFromInchi(InchiFlow.Processor<T, R> processor) {
+      this.processor = processor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super R> subscriber) {
+      processor.subscribe(toInchiFlowSubscriber(subscriber));
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      processor.onSubscribe(toInchiFlowSubscription(subscription));
+    }
+
+    @Override
+    public void onNext(T item) {
+      processor.onNext(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      processor.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      processor.onComplete();
+    }
+  }
+
+  private static final class FlowSubscriptionFromInchi implements Flow.Subscription {
+
+    private final InchiFlow.Subscription subscription;
+
+    FlowSubscriptionFromInchi(InchiFlow.Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void request(long n) {
+      subscription.request(n);
+    }
+
+    @Override
+    public void cancel() {
+      subscription.cancel();
+    }
+  }
+
+  private static final class InchiSubscriptionFromFlow implements InchiFlow.Subscription {
+
+    private final Flow.Subscription subscription;
+
+    InchiSubscriptionFromFlow(Flow.Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void request(long n) {
+      subscription.request(n);
+    }
+
+    @Override
+    public void cancel() {
+      subscription.cancel();
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi.flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.dan2097.jnainchi.InchiEngines;
+import io.github.dan2097.jnainchi.InchiFlow;
+import io.github.dan2097.jnainchi.InchiFlowProcessor;
+import io.github.dan2097.jnainchi.InchiKeyOutput;
+import io.github.dan2097.jnainchi.JnaInchi;
+
+public class InchiFlowAdaptersTest {
+
+  private static final String[] INCHIS = {"InChI=1S/CH4/h1H4", "InChI=1S/H2O/h1H2", "InChI=1S/C2H6O/c1-2-3/h3H,2H2,1H3",
+      "InChI=1S/C6H6/c1-2-4-6-5-3-1/h1-6H", "not an InChI"};
+
+  /**
+   * Requests one item at a time and records what it receives
+   */
+  private static class CollectingSubscriber<T> implements Flow.Subscriber<T> {
+    private final List<T> items = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch done = new CountDownLatch(1);
+    private Flow.Subscription subscription;
+    private volatile Throwable error;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(1);
+    }
+
+    @Override
+    public void onNext(T item) {
+      items.add(item);
+      subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+      done.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      done.countDown();
+    }
+
+    void await() throws InterruptedException {
+      assertTrue(done.await(60, TimeUnit.SECONDS), "Timed out waiting for completion");
+    }
+  }
+
+  @Test
+  public void testSubmissionPublisherThroughProcessor() throws InterruptedException {
+    List<String> inchis = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      inchis.add(INCHIS[i % INCHIS.length]);
+    }
+    InchiFlowProcessor<String, InchiKeyOutput> processor = InchiFlowProcessor.inchiToInchiKey(InchiEngines.getEngine())
+        .withThreads(4).build();
+    Flow.Processor<String, InchiKeyOutput> flowProcessor = InchiFlowAdapters.toFlowProcessor(processor);
+    CollectingSubscriber<InchiKeyOutput> subscriber = new CollectingSubscriber<>();
+    flowProcessor.subscribe(subscriber);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      //a small buffer, so submit blocks until the processor has requested more
+      try (SubmissionPublisher<String> publisher = new SubmissionPublisher<>(executor, 4)) {
+        publisher.subscribe(flowProcessor);
+        for (String inchi : inchis) {
+          publisher.submit(inchi);
+        }
+      }
+      subscriber.await();
+    }
+    finally {
+      executor.shutdown();
+    }
+
+    assertNull(subscriber.error);
+    assertEquals(inchis.size(), subscriber.items.size());
+    for (int i = 0; i < inchis.size(); i++) {
+      InchiKeyOutput expected = JnaInchi.inchiToInchiKey(inchis.get(i));
+      InchiKeyOutput actual = subscriber.items.get(i);
+      assertSame(expected.getStatus(), actual.getStatus());
+      assertEquals(expected.getInchiKey(), actual.getInchiKey());
+    }
+  }
+
+  @Test
+  public void testRoundTripReturnsOriginal() {
+    InchiFlow.Publisher<String> publisher = subscriber -> {};
+    assertSame(publisher, InchiFlowAdapters.toInchiFlowPublisher(InchiFlowAdapters.toFlowPublisher(publisher)));
+
+    Flow.Subscriber<String> subscriber = new CollectingSubscriber<>();
+    assertSame(subscriber, InchiFlowAdapters.toFlowSubscriber(InchiFlowAdapters.toInchiFlowSubscriber(subscriber)));
+  }
+}
@@ -183,6 +183,10 @@ public class InchiAPI {
 		 }
 	}
 
+	static boolean isLibraryLoaded() {
+		return libraryLoadingError == null;
+	}
+
 	private static void checkLibrary() {
 		if (libraryLoadingError != null) {
 			String platform = (isJS ? "WASM" : Platform.RESOURCE_PREFIX);
@@ -1242,131 +1246,12 @@ public class InchiAPI {
 		}
 	}
 
+	/**
+	 * Serializes the molecule as JSON, see {@link InchiJson} for the format, which
+	 * {@link InchiJson#read(CharSequence)} reads back.
+	 */
 	public static String getJSONFromInchiInput(InchiInput inchiInput) {
-		int na = inchiInput.getAtoms().size();
-		int nb = inchiInput.getBonds().size();
-		int ns = inchiInput.getStereos().size();
-		Map<InchiAtom, Integer> mapAtoms = new HashMap<>();
-		boolean haveXYZ = false;
-		for (int i = 0; i < na; i++) {
-			InchiAtom a = inchiInput.getAtom(i);
-			if (a.getX() != 0 || a.getY() != 0 || a.getZ() != 0) {
-				haveXYZ = true;
-				break;
-			}
-		}
-		String s = "{";
-		s += "\n\"atomCount\":" + na + ",\n";
-		s += "\"atoms\":[\n";
-		for (int i = 0; i < na; i++) {
-			InchiAtom a = inchiInput.getAtom(i);
-			mapAtoms.put(a, Integer.valueOf(i));
-			if (i > 0)
-				s += ",\n";
-			s += "{";
-			s += toJSONInt("index", Integer.valueOf(i), "");
-			s += toJSONNotNone("elname", a.getElName(), ",");
-			if (haveXYZ) {
-				s += toJSONDouble("x", a.getX(), ",");
-				s += toJSONDouble("y", a.getY(), ",");
-				s += toJSONDouble("z", a.getZ(), ",");
-			}
-			s += toJSONNotNone("radical", a.getRadical(), ",");
-			s += toJSONNonZero("charge", a.getCharge(), ",");
-			s += toJSONNonZero("isotopeMass", a.getIsotopicMass(), ",");
-			if (a.getImplicitHydrogen() > 0)
-				s += toJSONNonZero("implicitH", a.getImplicitHydrogen(), ",");
-			s += toJSONNonZero("implicitDeuterium", a.getImplicitDeuterium(), ",");
-			s += toJSONNonZero("implicitProtium", a.getImplicitProtium(), ",");
-			s += toJSONNonZero("implicitTritium", a.getImplicitTritium(), ",");
-			s += "}";
-		}
-		s += "\n],";
-		s += "\n\"bondCount\":" + nb + ",";
-		s += "\n\"bonds\":[\n";
-
-		for (int i = 0; i < nb; i++) {
-			if (i > 0)
-				s += ",\n";
-			s += "{";
-			InchiBond b = inchiInput.getBond(i);
-			s += toJSONInt("originAtom", mapAtoms.get(b.getStart()).intValue(), "");
-			s += toJSONInt("targetAtom", mapAtoms.get(b.getEnd()).intValue(), ",");
-			String bt = b.getType().toString().toUpperCase(Locale.ROOT);
-			if (!bt.equals("SINGLE"))
-				s += toJSONString("type", bt, ",");
-			s += toJSONNotNone("stereo", b.getStereo().toString().toUpperCase(Locale.ROOT), ",");
-			s += "}";
-		}
-		s += "\n]";
-		if (ns > 0) {
-			s += ",\n\"stereoCount\":" + ns + ",\n";
-			s += "\"stereo\":[\n";
-			for (int i = 0; i < ns; i++) {
-				if (i > 0)
-					s += ",\n";
-				s += "{";
-				InchiStereo d = inchiInput.getStereos().get(i);
-				InchiAtom a = d.getCentralAtom();
-				s += toJSONNotNone("parity", d.getParity(), "");
-				s += toJSONNotNone("type", d.getType(), ",");
-				if (a != null)
-					s += toJSONInt("centralAtom", mapAtoms.get(a).intValue(), ",");
-				// s += toJSON("debugString",d.getDebugString(), ",");
-				// never implemented? s +=
-				// toJSON("disconnectedParity",d.getDisconnectedParity(), ",");
-				InchiAtom[] an = d.getAtoms();
-				int[] nbs = new int[an.length];
-				for (int j = 0; j < an.length; j++) {
-					nbs[j] = mapAtoms.get(an[j]).intValue();
-				}
-				s += toJSONArray("neighbors", nbs, ",");
-				s += "}";
-			}
-			s += "\n]";
-		}
-		s += "}";
-		return s;
-	}
-
-	private static String toJSONArray(String key, int[] val, String term) {
-		String s = term + "\"" + key + "\":[" + val[0];
-		for (int i = 1; i < val.length; i++) {
-			s += "," + val[i];
-		}
-		return s + "]";
-	}
-
-	private static String toJSONNonZero(String key, int val, String term) {
-		return (val == 0 ? "" : toJSONInt(key, val, term));
-	}
-
-	private static String toJSONInt(String key, int val, String term) {
-		return term + "\"" + key + "\":" + val;
-	}
-
-	private static String toJSONDouble(String key, double val, String term) {
-		String s;
-		if (val == 0) {
-			s = "0";
-		} else {
-			s = "" + (val + (val > 0 ? 0.00000001 : -0.00000001));
-			s = s.substring(0, s.indexOf(".") + 5);
-			int n = s.length();
-			while (s.charAt(--n) == '0') {
-			}
-			s = s.substring(0, n + 1);
-		}
-		return term + "\"" + key + "\":" + s;
-	}
-
-	private static String toJSONString(String key, String val, String term) {
-		return term + "\"" + key + "\":\"" + val + "\"";
-	}
-
-	private static String toJSONNotNone(String key, Object val, String term) {
-		String s = val.toString();
-		return ("NONE".equals(s) ? "" : term + "\"" + key + "\":\"" + s + "\"");
+		return InchiJson.toJson(inchiInput);
 	}
 
 }
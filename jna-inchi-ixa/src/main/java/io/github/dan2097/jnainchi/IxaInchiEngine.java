@@ -0,0 +1,68 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi;
+
+/**
+ * {@link InchiEngine} backed by {@link InchiAPI} i.e. the IXA API accessed
+ * through raw Pointers, as used for both JNA and WASM.
+ */
+public class IxaInchiEngine implements InchiEngine {
+
+	public static final String NAME = "ixa";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean isAvailable() {
+		return InchiAPI.isLibraryLoaded();
+	}
+
+	@Override
+	public InchiOutput toInchi(InchiInput inchiInput, InchiOptions options) {
+		return InchiAPI.toInchi(inchiInput, options);
+	}
+
+	@Override
+	public InchiOutput molToInchi(String molText, InchiOptions options) {
+		return InchiAPI.molFileToInchi(molText, options);
+	}
+
+	@Override
+	public InchiOutput inchiToInchi(String inchi, InchiOptions options) {
+		return InchiAPI.inchiToInchi(inchi, options);
+	}
+
+	@Override
+	public InchiKeyOutput inchiToInchiKey(String inchi) {
+		return InchiAPI.inchiToInchiKey(inchi);
+	}
+
+	@Override
+	public InchiInputFromInchiOutput getInchiInputFromInchi(String inchi, InchiOptions options) {
+		return InchiAPI.getInchiInputFromInchi(inchi, options);
+	}
+
+	@Override
+	public InchiCheckStatus checkInchi(String inchi, boolean strict) {
+		return InchiAPI.checkInchi(inchi, strict);
+	}
+
+}
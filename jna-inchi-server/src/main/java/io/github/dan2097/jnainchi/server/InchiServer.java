@@ -0,0 +1,717 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.github.dan2097.jnainchi.InchiFlag;
+import io.github.dan2097.jnainchi.InchiGenerator;
+import io.github.dan2097.jnainchi.InchiInput;
+import io.github.dan2097.jnainchi.InchiJson;
+import io.github.dan2097.jnainchi.InchiKeyOutput;
+import io.github.dan2097.jnainchi.InchiOptions;
+import io.github.dan2097.jnainchi.InchiOptions.InchiOptionsBuilder;
+import io.github.dan2097.jnainchi.InchiOutput;
+import io.github.dan2097.jnainchi.JnaInchi;
+import io.github.dan2097.jnainchi.SmilesToInchi;
+import io.github.dan2097.jnarinchi.JnaRinchi;
+import io.github.dan2097.jnarinchi.RinchiOutput;
+
+/**
+ * Local HTTP service for InChI, InChIKey and RInChI generation, so that programs not running on the JVM can use
+ * a single copy of the native libraries. It uses the JDK's built-in HTTP server and has no further dependencies.
+ * <p>
+ * Every conversion is a POST of the input as UTF-8 text to one of the {@link Operation} paths, the response is a JSON object
+ * with the fields of the output, e.g. <code>{"status":"SUCCESS","inchi":"InChI=1S/CH4/h1H4","auxInfo":"..."}</code>.
+ * The InChI options can be given with the query parameters <code>options</code>, a comma separated list of {@link InchiFlag}s,
+ * and <code>timeout</code> in seconds. <code>GET /stats</code> returns the request and batch counts.
+ * <p>
+ * Requests are put on a bounded queue, from which each worker thread takes all waiting requests, up to the maximum
+ * batch size, at once, and converts them back to back. Only {@link Operation#TO_INCHI} requests with the default options
+ * gain from this: they share one {@link InchiGenerator}, so a batch reuses one set of pooled native InChI handles
+ * rather than creating them per request. Every other request is converted on its own by {@link JnaInchi},
+ * {@link SmilesToInchi} or {@link JnaRinchi}, so for these a batch only saves the queue hand-off.
+ * When the queue is full, requests are rejected with status 503,
+ * and requests that are not converted within the request timeout get status 504.
+ * <p>
+ * The HTTP handler threads do not wait for the conversions: they queue the request and write the response once a worker
+ * has converted it, so their number is independent of the queue depth.
+ * <pre>
+ * java -jar jna-inchi-server.jar --port 8080 --threads 4
+ * curl --data-binary @molecule.mol http://localhost:8080/molToInchi?options=FixedH
+ * </pre>
+ */
+public class InchiServer implements AutoCloseable {
+
+  /**
+   * The conversions offered by the server
+   */
+  public enum Operation {
+    /** InchiInput, as JSON in the format of {@link InchiJson}, to InChI */
+    TO_INCHI("/toInchi"),
+    /** Molfile to InChI */
+    MOL_TO_INCHI("/molToInchi"),
+    /** InChI to InChIKey */
+    INCHI_TO_INCHIKEY("/inchiToInchiKey"),
+    /** SMILES to InChI */
+    SMILES_TO_INCHI("/smilesToInchi"),
+    /** RXN or RDfile to RInChI */
+    FILE_TEXT_TO_RINCHI("/fileTextToRinchi");
+
+    private final String path;
+
+    private Operation(String path) {
+      this.path = path;
+    }
+
+    public String getPath() {
+      return path;
+    }
+  }
+
+  private static final String STATS_PATH = "/stats";
+  private static final InchiOptions DEFAULT_OPTIONS = new InchiOptionsBuilder().build();
+  private static final AtomicInteger SERVER_COUNT = new AtomicInteger();
+
+  private final String bindAddress;
+  private final int requestedPort;
+  private final int workerThreads;
+  private final int handlerThreads;
+  private final int maxBatchSize;
+  private final int maxRequestBytes;
+  private final long requestTimeoutMilliSeconds;
+  private final BlockingQueue<Job> queue;
+  private final InchiGenerator generator = new InchiGenerator();
+  private final LongAdder requestCount = new LongAdder();
+  private final LongAdder batchCount = new LongAdder();
+  private final LongAdder rejectedCount = new LongAdder();
+  private final LongAdder timeoutCount = new LongAdder();
+
+  private HttpServer server;
+  private ExecutorService handlers;
+  private ScheduledThreadPoolExecutor timer;
+  private List<Thread> workers;
+  private volatile boolean running = false;
+
+  private InchiServer(InchiServerBuilder builder) {
+    this.bindAddress = builder.bindAddress;
+    this.requestedPort = builder.port;
+    this.workerThreads = builder.workerThreads;
+    this.maxBatchSize = builder.maxBatchSize;
+    this.maxRequestBytes = builder.maxRequestBytes;
+    this.requestTimeoutMilliSeconds = builder.requestTimeoutMilliSeconds;
+    int maxQueueDepth = builder.maxQueueDepth > 0 ? builder.maxQueueDepth : 64 * workerThreads;
+    this.queue = new ArrayBlockingQueue<>(maxQueueDepth);
+    this.handlerThreads = builder.handlerThreads > 0 ? builder.handlerThreads : Math.max(2, workerThreads);
+  }
+
+  public static InchiServerBuilder builder() {
+    return new InchiServerBuilder();
+  }
+
+  /**
+   * Binds the server socket and starts the worker threads
+   * @return this server
+   * @throws IOException if the socket cannot be bound
+   * @throws IllegalStateException if the server has already been started
+   */
+  public synchronized InchiServer start() throws IOException {
+    if (server != null) {
+      throw new IllegalStateException("InchiServer has already been started");
+    }
+    server = HttpServer.create(new InetSocketAddress(bindAddress, requestedPort), 0);
+    for (Operation operation : Operation.values()) {
+      server.createContext(operation.getPath(), exchange -> handleConversion(exchange, operation));
+    }
+    server.createContext(STATS_PATH, this::handleStats);
+    int serverNumber = SERVER_COUNT.incrementAndGet();
+    handlers = Executors.newFixedThreadPool(handlerThreads, newThreadFactory("inchi-server-" + serverNumber + "-http-"));
+    server.setExecutor(handlers);
+    timer = new ScheduledThreadPoolExecutor(1, newThreadFactory("inchi-server-" + serverNumber + "-timer-"));
+    timer.setRemoveOnCancelPolicy(true);
+    running = true;
+    workers = new ArrayList<>();
+    for (int i = 0; i < workerThreads; i++) {
+      Thread worker = new Thread(this::work, "inchi-server-" + serverNumber + "-worker-" + (i + 1));
+      worker.setDaemon(true);
+      worker.start();
+      workers.add(worker);
+    }
+    server.start();
+    return this;
+  }
+
+  /**
+   * The port the server listens on, which is chosen by the system if the server was built with port 0
+   * @return port
+   */
+  public synchronized int getPort() {
+    if (server == null) {
+      throw new IllegalStateException("InchiServer has not been started");
+    }
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Number of conversion requests received, including rejected ones
+   * @return request count
+   */
+  public long getRequestCount() {
+    return requestCount.sum();
+  }
+
+  /**
+   * Number of batches converted, the average batch size is the number of converted requests divided by this
+   * @return batch count
+   */
+  public long getBatchCount() {
+    return batchCount.sum();
+  }
+
+  /**
+   * Number of requests rejected because the queue was full
+   * @return rejected count
+   */
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  /**
+   * The generator shared by the {@link Operation#TO_INCHI} requests with the default options
+   */
+  InchiGenerator getGenerator() {
+    return generator;
+  }
+
+  /**
+   * Stops accepting requests, waits up to a second for the exchanges in progress, and stops the worker threads
+   */
+  @Override
+  public synchronized void close() {
+    if (server == null || !running) {
+      return;
+    }
+    running = false;
+    server.stop(1);
+    for (Thread worker : workers) {
+      worker.interrupt();
+    }
+    for (Thread worker : workers) {
+      try {
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    timer.shutdownNow();
+    Job job;
+    while ((job = queue.poll()) != null) {
+      job.result.cancel(false);
+    }
+    handlers.shutdownNow();
+    generator.close();
+  }
+
+  private void work() {
+    List<Job> batch = new ArrayList<>(maxBatchSize);
+    while (running) {
+      try {
+        batch.add(queue.take());
+      }
+      catch (InterruptedException e) {
+        return;
+      }
+      queue.drainTo(batch, maxBatchSize - 1);
+      batchCount.increment();
+      for (Job job : batch) {
+        //Requests that timed out while waiting are skipped
+        if (!job.result.isDone()) {
+          job.result.complete(convert(job));
+        }
+      }
+      batch.clear();
+    }
+  }
+
+  private String convert(Job job) {
+    try {
+      switch (job.operation) {
+      case TO_INCHI:
+        InchiInput input = (InchiInput) job.input;
+        //Only this conversion has a reusable generator, the others create and free their native objects per call
+        if (job.options == DEFAULT_OPTIONS) {
+          return toJson(generator.generate(input));
+        }
+        return toJson(JnaInchi.toInchi(input, job.options));
+      case MOL_TO_INCHI:
+        return toJson(JnaInchi.molToInchi((String) job.input, job.options));
+      case INCHI_TO_INCHIKEY:
+        return toJson(JnaInchi.inchiToInchiKey(((String) job.input).trim()));
+      case SMILES_TO_INCHI:
+        try {
+          return toJson(SmilesToInchi.toInchi(((String) job.input).trim(), job.options));
+        }
+        catch (IOException e) {
+          return errorJson(e.getMessage());
+        }
+      case FILE_TEXT_TO_RINCHI:
+        return toJson(JnaRinchi.fileTextToRinchi((String) job.input));
+      default:
+        throw new IllegalStateException("Unexpected operation: " + job.operation);
+      }
+    }
+    catch (RuntimeException e) {
+      return errorJson(String.valueOf(e.getMessage()));
+    }
+    catch (Throwable e) {
+      //Errors such as JNA's invalid memory access fail only this job, so the worker stays alive for the others
+      return errorJson(e.toString());
+    }
+  }
+
+  private void handleConversion(HttpExchange exchange, Operation operation) throws IOException {
+    boolean queued = false;
+    try {
+      if (!"POST".equals(exchange.getRequestMethod())) {
+        exchange.getResponseHeaders().set("Allow", "POST");
+        sendJson(exchange, 405, errorJson("Use POST"));
+        return;
+      }
+      if (!exchange.getRequestURI().getPath().equals(operation.getPath())) {
+        sendJson(exchange, 404, errorJson("Not found"));
+        return;
+      }
+      requestCount.increment();
+      String body = readBody(exchange.getRequestBody());
+      if (body == null) {
+        sendJson(exchange, 413, errorJson("Request larger than " + maxRequestBytes + " bytes"));
+        return;
+      }
+      Job job;
+      try {
+        InchiOptions options = parseOptions(exchange.getRequestURI().getRawQuery());
+        Object input = operation == Operation.TO_INCHI ? InchiJson.read(body) : body;
+        job = new Job(operation, input, options);
+      }
+      catch (IllegalArgumentException e) {
+        sendJson(exchange, 400, errorJson(e.getMessage()));
+        return;
+      }
+      if (!running || !queue.offer(job)) {
+        rejectedCount.increment();
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        sendJson(exchange, 503, errorJson("Server busy"));
+        return;
+      }
+      queued = true;
+      job.result.whenComplete((response, failure) -> respond(exchange, response, failure));
+      try {
+        ScheduledFuture<?> timeout = timer.schedule(() -> {
+          //Requests that time out while waiting are skipped by the workers
+          if (job.result.completeExceptionally(new TimeoutException())) {
+            timeoutCount.increment();
+          }
+        }, requestTimeoutMilliSeconds, TimeUnit.MILLISECONDS);
+        job.result.whenComplete((response, failure) -> timeout.cancel(false));
+      }
+      catch (RejectedExecutionException e) {
+        job.result.cancel(false);
+      }
+    }
+    finally {
+      if (!queued) {
+        exchange.close();
+      }
+    }
+  }
+
+  /**
+   * Writes the response of a queued request on a handler thread, so that the workers only convert
+   */
+  private void respond(HttpExchange exchange, String response, Throwable failure) {
+    try {
+      handlers.execute(() -> {
+        try {
+          if (failure == null) {
+            sendJson(exchange, 200, response);
+          }
+          else if (failure instanceof TimeoutException) {
+            sendJson(exchange, 504, errorJson("Conversion timed out"));
+          }
+          else {
+            sendJson(exchange, 503, errorJson("Server stopping"));
+          }
+        }
+        catch (IOException e) {
+          //The client has disconnected
+        }
+        finally {
+          exchange.close();
+        }
+      });
+    }
+    catch (RejectedExecutionException e) {
+      exchange.close();
+    }
+  }
+
+  private void handleStats(HttpExchange exchange) throws IOException {
+    try {
+      StringBuilder sb = new StringBuilder("{");
+      Json.appendMember(sb, "requests", requestCount.sum());
+      Json.appendMember(sb, "batches", batchCount.sum());
+      Json.appendMember(sb, "rejected", rejectedCount.sum());
+      Json.appendMember(sb, "timedOut", timeoutCount.sum());
+      Json.appendMember(sb, "queueDepth", queue.size());
+      Json.appendMember(sb, "workerThreads", workerThreads);
+      sendJson(exchange, 200, sb.append('}').toString());
+    }
+    finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Reads the request body, or returns null if it exceeds the maximum size
+   */
+  private String readBody(InputStream in) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      if (body.size() + read > maxRequestBytes) {
+        return null;
+      }
+      body.write(buffer, 0, read);
+    }
+    return new String(body.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static void sendJson(HttpExchange exchange, int code, String json) throws IOException {
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(code, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Parses the <code>options</code> and <code>timeout</code> query parameters
+   */
+  static InchiOptions parseOptions(String rawQuery) {
+    if (rawQuery == null || rawQuery.isEmpty()) {
+      return DEFAULT_OPTIONS;
+    }
+    InchiOptionsBuilder builder = new InchiOptionsBuilder();
+    boolean changed = false;
+    for (String parameter : rawQuery.split("&")) {
+      int eq = parameter.indexOf('=');
+      String name = decode(eq < 0 ? parameter : parameter.substring(0, eq));
+      String value = eq < 0 ? "" : decode(parameter.substring(eq + 1));
+      if (name.equals("options")) {
+        for (String flagName : value.split("[,\\s]+")) {
+          if (flagName.isEmpty()) {
+            continue;
+          }
+          InchiFlag flag = InchiFlag.getFlagFromName(flagName.startsWith("-") || flagName.startsWith("/") ? flagName.substring(1) : flagName);
+          if (flag == null) {
+            throw new IllegalArgumentException("Unknown InChI option: " + flagName);
+          }
+          builder.withFlag(flag);
+          changed = true;
+        }
+      }
+      else if (name.equals("timeout")) {
+        try {
+          builder.withTimeout(Integer.parseInt(value));
+        }
+        catch (NumberFormatException e) {
+          throw new IllegalArgumentException("timeout must be a whole number of seconds");
+        }
+        changed = true;
+      }
+      else {
+        throw new IllegalArgumentException("Unknown query parameter: " + name);
+      }
+    }
+    return changed ? builder.build() : DEFAULT_OPTIONS;
+  }
+
+  private static String decode(String s) {
+    try {
+      return URLDecoder.decode(s, "UTF-8");
+    }
+    catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static String toJson(InchiOutput output) {
+    StringBuilder sb = new StringBuilder("{");
+    Json.appendMember(sb, "status", output.getStatus());
+    Json.appendMember(sb, "inchi", output.getInchi());
+    Json.appendMember(sb, "auxInfo", output.getAuxInfo());
+    Json.appendMember(sb, "message", output.getMessage());
+    Json.appendMember(sb, "log", output.getLog());
+    return sb.append('}').toString();
+  }
+
+  static String toJson(InchiKeyOutput output) {
+    StringBuilder sb = new StringBuilder("{");
+    Json.appendMember(sb, "status", output.getStatus());
+    Json.appendMember(sb, "inchiKey", output.getInchiKey());
+    Json.appendMember(sb, "block1HashExtension", output.getBlock1HashExtension());
+    Json.appendMember(sb, "block2HashExtension", output.getBlock2HashExtension());
+    return sb.append('}').toString();
+  }
+
+  static String toJson(RinchiOutput output) {
+    StringBuilder sb = new StringBuilder("{");
+    Json.appendMember(sb, "status", output.getStatus());
+    Json.appendMember(sb, "rinchi", output.getRinchi());
+    Json.appendMember(sb, "auxInfo", output.getAuxInfo());
+    Json.appendMember(sb, "errorCode", output.getErrorCode());
+    Json.appendMember(sb, "errorMessage", output.getErrorMessage());
+    return sb.append('}').toString();
+  }
+
+  static String errorJson(String message) {
+    StringBuilder sb = new StringBuilder("{");
+    Json.appendMember(sb, "status", "ERROR");
+    Json.appendMember(sb, "message", message);
+    return sb.append('}').toString();
+  }
+
+  private static ThreadFactory newThreadFactory(String prefix) {
+    AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Starts a server, the arguments are <code>--port</code>, <code>--bind</code>, <code>--threads</code>,
+   * <code>--batch</code>, <code>--queue</code> and <code>--timeout</code> (milliseconds), each followed by its value
+   * @param args
+   * @throws IOException if the port cannot be bound
+   */
+  public static void main(String[] args) throws IOException {
+    InchiServerBuilder builder = builder();
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (i + 1 >= args.length) {
+        throw new IllegalArgumentException("Missing value for " + arg);
+      }
+      String value = args[++i];
+      switch (arg) {
+      case "--port":
+        builder.withPort(Integer.parseInt(value));
+        break;
+      case "--bind":
+        builder.withBindAddress(value);
+        break;
+      case "--threads":
+        builder.withWorkerThreads(Integer.parseInt(value));
+        break;
+      case "--batch":
+        builder.withMaxBatchSize(Integer.parseInt(value));
+        break;
+      case "--queue":
+        builder.withMaxQueueDepth(Integer.parseInt(value));
+        break;
+      case "--timeout":
+        builder.withRequestTimeoutMilliSeconds(Long.parseLong(value));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown argument: " + arg);
+      }
+    }
+    InchiServer server = builder.build().start();
+    Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+    System.out.println("InChI server listening on " + server.bindAddress + ":" + server.getPort());
+  }
+
+  private static class Job {
+    private final Operation operation;
+    private final Object input;
+    private final InchiOptions options;
+    private final CompletableFuture<String> result = new CompletableFuture<>();
+
+    private Job(Operation operation, Object input, InchiOptions options) {
+      this.operation = operation;
+      this.input = input;
+      this.options = options;
+    }
+  }
+
+  public static class InchiServerBuilder {
+
+    private String bindAddress = "127.0.0.1";
+    private int port = 8080;
+    private int workerThreads = Runtime.getRuntime().availableProcessors();
+    private int handlerThreads = 0;
+    private int maxBatchSize = 32;
+    private int maxQueueDepth = 0;
+    private int maxRequestBytes = 16 * 1024 * 1024;
+    private long requestTimeoutMilliSeconds = 30000;
+
+    private InchiServerBuilder() {
+    }
+
+    /**
+     * Address to listen on, by default 127.0.0.1 so that only local programs can connect
+     * @param bindAddress host name or IP address
+     * @return builder
+     */
+    public InchiServerBuilder withBindAddress(String bindAddress) {
+      if (bindAddress == null) {
+        throw new IllegalArgumentException("bindAddress must not be null");
+      }
+      this.bindAddress = bindAddress;
+      return this;
+    }
+
+    /**
+     * Port to listen on, by default 8080. With 0 the system chooses a free port, see {@link InchiServer#getPort()}
+     * @param port
+     * @return builder
+     */
+    public InchiServerBuilder withPort(int port) {
+      if (port < 0 || port > 65535) {
+        throw new IllegalArgumentException("port must be between 0 and 65535");
+      }
+      this.port = port;
+      return this;
+    }
+
+    /**
+     * Number of threads that run the conversions, by default the number of available processors
+     * @param workerThreads
+     * @return builder
+     */
+    public InchiServerBuilder withWorkerThreads(int workerThreads) {
+      if (workerThreads < 1) {
+        throw new IllegalArgumentException("workerThreads must be at least 1");
+      }
+      this.workerThreads = workerThreads;
+      return this;
+    }
+
+    /**
+     * Number of threads that read requests and write responses, by default the number of worker threads and at least 2.
+     * These threads do not wait for the conversions, so need not grow with the queue depth
+     * @param handlerThreads
+     * @return builder
+     */
+    public InchiServerBuilder withHandlerThreads(int handlerThreads) {
+      if (handlerThreads < 1) {
+        throw new IllegalArgumentException("handlerThreads must be at least 1");
+      }
+      this.handlerThreads = handlerThreads;
+      return this;
+    }
+
+    /**
+     * Maximum number of queued requests a worker takes at once, by default 32
+     * @param maxBatchSize
+     * @return builder
+     */
+    public InchiServerBuilder withMaxBatchSize(int maxBatchSize) {
+      if (maxBatchSize < 1) {
+        throw new IllegalArgumentException("maxBatchSize must be at least 1");
+      }
+      this.maxBatchSize = maxBatchSize;
+      return this;
+    }
+
+    /**
+     * Maximum number of requests waiting for a worker, further requests are rejected with status 503.
+     * By default 64 per worker thread
+     * @param maxQueueDepth
+     * @return builder
+     */
+    public InchiServerBuilder withMaxQueueDepth(int maxQueueDepth) {
+      if (maxQueueDepth < 1) {
+        throw new IllegalArgumentException("maxQueueDepth must be at least 1");
+      }
+      this.maxQueueDepth = maxQueueDepth;
+      return this;
+    }
+
+    /**
+     * Maximum size of a request body, larger requests are rejected with status 413. By default 16 MiB
+     * @param maxRequestBytes
+     * @return builder
+     */
+    public InchiServerBuilder withMaxRequestBytes(int maxRequestBytes) {
+      if (maxRequestBytes < 1) {
+        throw new IllegalArgumentException("maxRequestBytes must be at least 1");
+      }
+      this.maxRequestBytes = maxRequestBytes;
+      return this;
+    }
+
+    /**
+     * Time a request may wait for its conversion, including the time in the queue, before it fails with status 504.
+     * By default 30 seconds
+     * @param requestTimeoutMilliSeconds
+     * @return builder
+     */
+    public InchiServerBuilder withRequestTimeoutMilliSeconds(long requestTimeoutMilliSeconds) {
+      if (requestTimeoutMilliSeconds < 1) {
+        throw new IllegalArgumentException("requestTimeoutMilliSeconds must be at least 1");
+      }
+      this.requestTimeoutMilliSeconds = requestTimeoutMilliSeconds;
+      return this;
+    }
+
+    public InchiServer build() {
+      return new InchiServer(this);
+    }
+  }
+}
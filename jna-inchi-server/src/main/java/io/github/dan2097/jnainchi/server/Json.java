@@ -0,0 +1,82 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi.server;
+
+import java.util.Locale;
+
+/**
+ * Minimal JSON support for the server responses. Requests with molecules are read by
+ * {@link io.github.dan2097.jnainchi.InchiJson}.
+ */
+final class Json {
+
+  private Json() {
+  }
+
+  /**
+   * Appends a JSON member, the value is a quoted string, or a number or boolean as is. Null values are skipped.
+   */
+  static void appendMember(StringBuilder sb, String key, Object value) {
+    if (value == null) {
+      return;
+    }
+    if (sb.charAt(sb.length() - 1) != '{') {
+      sb.append(',');
+    }
+    appendString(sb, key);
+    sb.append(':');
+    if (value instanceof Number || value instanceof Boolean) {
+      sb.append(value);
+    }
+    else {
+      appendString(sb, value.toString());
+    }
+  }
+
+  static void appendString(StringBuilder sb, String s) {
+    sb.append('"');
+    for (int i = 0, len = s.length(); i < len; i++) {
+      char c = s.charAt(i);
+      switch (c) {
+      case '"':
+        sb.append("\\\"");
+        break;
+      case '\\':
+        sb.append("\\\\");
+        break;
+      case '\n':
+        sb.append("\\n");
+        break;
+      case '\r':
+        sb.append("\\r");
+        break;
+      case '\t':
+        sb.append("\\t");
+        break;
+      default:
+        if (c < 0x20) {
+          sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+        }
+        else {
+          sb.append(c);
+        }
+      }
+    }
+    sb.append('"');
+  }
+}
@@ -0,0 +1,255 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load-test harness for {@link InchiServer}: posts the same payload from a number of concurrent clients
+ * and reports the throughput, the latency percentiles and the response status codes.
+ * <pre>
+ * java -cp jna-inchi-server.jar io.github.dan2097.jnainchi.server.LoadTest \
+ *     --url http://localhost:8080/molToInchi --file molecule.mol --clients 32 --requests 20000
+ * </pre>
+ * A warm-up of one request per client precedes the measurement, and is not counted.
+ */
+public class LoadTest {
+
+  private final URL url;
+  private final byte[] payload;
+  private final int clients;
+  private final int requests;
+
+  public LoadTest(URL url, byte[] payload, int clients, int requests) {
+    if (url == null) {
+      throw new IllegalArgumentException("url must not be null");
+    }
+    if (payload == null) {
+      throw new IllegalArgumentException("payload must not be null");
+    }
+    if (clients < 1 || requests < 1) {
+      throw new IllegalArgumentException("clients and requests must be at least 1");
+    }
+    this.url = url;
+    this.payload = payload;
+    this.clients = clients;
+    this.requests = requests;
+  }
+
+  /**
+   * Runs the load test
+   * @return the measurements
+   * @throws InterruptedException if interrupted while waiting for the clients
+   */
+  public Result run() throws InterruptedException {
+    runClients(clients, new long[clients], new TreeMap<>(), new AtomicInteger());
+    long[] latencies = new long[requests];
+    Map<Integer, Integer> statusCounts = new TreeMap<>();
+    AtomicInteger failures = new AtomicInteger();
+    long start = System.nanoTime();
+    runClients(requests, latencies, statusCounts, failures);
+    long elapsed = System.nanoTime() - start;
+    Arrays.sort(latencies);
+    return new Result(requests, elapsed, latencies, statusCounts, failures.get());
+  }
+
+  private void runClients(int total, long[] latencies, Map<Integer, Integer> statusCounts, AtomicInteger failures)
+      throws InterruptedException {
+    AtomicInteger next = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(clients);
+    for (int c = 0; c < clients; c++) {
+      Thread client = new Thread(() -> {
+        try {
+          int i;
+          while ((i = next.getAndIncrement()) < total) {
+            long start = System.nanoTime();
+            int status;
+            try {
+              status = post();
+            }
+            catch (IOException e) {
+              failures.incrementAndGet();
+              status = -1;
+            }
+            latencies[i] = System.nanoTime() - start;
+            if (status > 0) {
+              synchronized (statusCounts) {
+                statusCounts.merge(status, 1, Integer::sum);
+              }
+            }
+          }
+        }
+        finally {
+          done.countDown();
+        }
+      }, "load-test-client-" + c);
+      client.setDaemon(true);
+      client.start();
+    }
+    done.await();
+  }
+
+  private int post() throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    connection.setFixedLengthStreamingMode(payload.length);
+    connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(payload);
+    }
+    int status = connection.getResponseCode();
+    //Reading the response fully lets the connection be reused
+    try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+      if (in != null) {
+        byte[] buffer = new byte[4096];
+        while (in.read(buffer) != -1) {
+        }
+      }
+    }
+    return status;
+  }
+
+  /**
+   * The measurements of a load test
+   */
+  public static class Result {
+    private final int requests;
+    private final long elapsedNanos;
+    private final long[] sortedLatencies;
+    private final Map<Integer, Integer> statusCounts;
+    private final int failures;
+
+    private Result(int requests, long elapsedNanos, long[] sortedLatencies, Map<Integer, Integer> statusCounts, int failures) {
+      this.requests = requests;
+      this.elapsedNanos = elapsedNanos;
+      this.sortedLatencies = sortedLatencies;
+      this.statusCounts = statusCounts;
+      this.failures = failures;
+    }
+
+    public int getRequests() {
+      return requests;
+    }
+
+    public double getRequestsPerSecond() {
+      return requests * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return latency in nanoseconds
+     */
+    public long getLatencyNanos(double percentile) {
+      int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+      return sortedLatencies[Math.max(0, Math.min(sortedLatencies.length - 1, index))];
+    }
+
+    /**
+     * Number of responses per HTTP status code
+     * @return map from status code to count
+     */
+    public Map<Integer, Integer> getStatusCounts() {
+      return statusCounts;
+    }
+
+    /**
+     * Number of requests that failed without an HTTP response
+     * @return failure count
+     */
+    public int getFailures() {
+      return failures;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ROOT, "%d requests, %.1f requests/s, latency ms p50 %.2f p90 %.2f p99 %.2f max %.2f, status %s, failures %d",
+          requests, getRequestsPerSecond(), getLatencyNanos(50) / 1e6, getLatencyNanos(90) / 1e6,
+          getLatencyNanos(99) / 1e6, getLatencyNanos(100) / 1e6, statusCounts, failures);
+    }
+  }
+
+  /**
+   * Runs a load test, the arguments are <code>--url</code>, <code>--file</code> (the payload),
+   * <code>--clients</code> (default 16) and <code>--requests</code> (default 10000), each followed by its value.
+   * The server statistics are printed afterwards.
+   * @param args
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    String url = null;
+    String file = null;
+    int clients = 16;
+    int requests = 10000;
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      switch (args[i]) {
+      case "--url":
+        url = args[i + 1];
+        break;
+      case "--file":
+        file = args[i + 1];
+        break;
+      case "--clients":
+        clients = Integer.parseInt(args[i + 1]);
+        break;
+      case "--requests":
+        requests = Integer.parseInt(args[i + 1]);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown argument: " + args[i]);
+      }
+    }
+    if (url == null || file == null) {
+      System.err.println("Usage: LoadTest --url <conversion url> --file <payload> [--clients n] [--requests n]");
+      System.exit(1);
+    }
+    URL target = new URL(url);
+    Result result = new LoadTest(target, Files.readAllBytes(Paths.get(file)), clients, requests).run();
+    System.out.println(result);
+    System.out.println(readStats(target));
+  }
+
+  /**
+   * Returns the statistics of the server that serves the given URL
+   */
+  static String readStats(URL conversionUrl) throws IOException {
+    URL statsUrl = new URL(conversionUrl.getProtocol(), conversionUrl.getHost(), conversionUrl.getPort(), "/stats");
+    try (InputStream in = statsUrl.openStream()) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return new String(out.toByteArray(), "UTF-8");
+    }
+  }
+}
@@ -0,0 +1,201 @@
+/**
+ * JNA-InChI - Library for calling InChI from Java
+ * Copyright © 2018 Daniel Lowe
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnainchi.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import io.github.dan2097.jnainchi.InchiAtom;
+import io.github.dan2097.jnainchi.InchiBond;
+import io.github.dan2097.jnainchi.InchiBondType;
+import io.github.dan2097.jnainchi.InchiFlag;
+import io.github.dan2097.jnainchi.InchiInput;
+import io.github.dan2097.jnainchi.InchiOptions.InchiOptionsBuilder;
+import io.github.dan2097.jnainchi.JnaInchi;
+import io.github.dan2097.jnainchi.SmilesToInchi;
+import io.github.dan2097.jnarinchi.JnaRinchi;
+
+public class InchiServerTest {
+
+  private static final String ETHANOL_MOL = "\n  test\n\n  3  2  0  0  0  0  0  0  0  0999 V2000\n"
+      + "    0.0000    0.0000    0.0000 C   0  0  0  0  0  0  0  0  0  0  0  0\n"
+      + "    1.5000    0.0000    0.0000 C   0  0  0  0  0  0  0  0  0  0  0  0\n"
+      + "    2.0000    1.0000    0.0000 O   0  0  0  0  0  0  0  0  0  0  0  0\n"
+      + "  1  2  1  0  0  0  0\n  2  3  1  0  0  0  0\nM  END\n";
+  private static final String RXN = "$RXN\n\n  test\n\n  1  1\n$MOL\n" + ETHANOL_MOL
+      + "$MOL\n" + ETHANOL_MOL.replace("O   0", "N   0");
+
+  private static InchiServer server;
+
+  @BeforeAll
+  public static void startServer() throws IOException {
+    server = InchiServer.builder().withPort(0).withWorkerThreads(2).build().start();
+  }
+
+  @AfterAll
+  public static void stopServer() {
+    server.close();
+  }
+
+  private static URL url(String pathAndQuery) throws IOException {
+    return new URL("http://127.0.0.1:" + server.getPort() + pathAndQuery);
+  }
+
+  /**
+   * Returns the status code followed by a space and the response body
+   */
+  private static String post(String pathAndQuery, String body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url(pathAndQuery).openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(body.getBytes(StandardCharsets.UTF_8));
+    }
+    return connection.getResponseCode() + " " + read(connection);
+  }
+
+  private static String read(HttpURLConnection connection) throws IOException {
+    int code = connection.getResponseCode();
+    try (InputStream in = code < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  @Test
+  public void testConversions() throws Exception {
+    assertEquals("200 " + InchiServer.toJson(JnaInchi.molToInchi(ETHANOL_MOL)), post("/molToInchi", ETHANOL_MOL));
+    assertEquals("200 " + InchiServer.toJson(JnaInchi.molToInchi(ETHANOL_MOL,
+        new InchiOptionsBuilder().withFlag(InchiFlag.FixedH, InchiFlag.AuxNone).build())),
+        post("/molToInchi?options=FixedH,AuxNone", ETHANOL_MOL));
+    assertEquals("200 " + InchiServer.toJson(JnaInchi.inchiToInchiKey("InChI=1S/C2H6O/c1-2-3/h3H,2H2,1H3")),
+        post("/inchiToInchiKey", "InChI=1S/C2H6O/c1-2-3/h3H,2H2,1H3\n"));
+    assertEquals("200 " + InchiServer.toJson(SmilesToInchi.toInchi("OCC")), post("/smilesToInchi", "OCC"));
+    assertTrue(post("/smilesToInchi", "C1CC").startsWith("200 {\"status\":\"ERROR\""));
+    assertEquals("200 " + InchiServer.toJson(JnaRinchi.fileTextToRinchi(RXN)), post("/fileTextToRinchi", RXN));
+  }
+
+  @Test
+  public void testToInchi() throws Exception {
+    InchiInput input = new InchiInput();
+    InchiAtom c1 = new InchiAtom("C");
+    c1.setImplicitHydrogen(2);
+    InchiAtom c2 = new InchiAtom("C");
+    c2.setImplicitHydrogen(1);
+    c2.setCharge(-1);
+    InchiAtom n = new InchiAtom("N");
+    n.setIsotopicMass(15);
+    input.addAtom(c1);
+    input.addAtom(c2);
+    input.addAtom(n);
+    input.addBond(new InchiBond(c1, c2, InchiBondType.DOUBLE));
+    input.addBond(new InchiBond(c2, n, InchiBondType.SINGLE));
+    String json = "{\n\"atomCount\":3,\n\"atoms\":[\n{\"index\":0,\"elname\":\"C\",\"implicitH\":2},\n"
+        + "{\"index\":1,\"elname\":\"C\",\"charge\":-1,\"implicitH\":1},\n{\"index\":2,\"elname\":\"N\",\"isotopeMass\":15}\n],"
+        + "\n\"bondCount\":2,\n\"bonds\":[\n{\"originAtom\":0,\"targetAtom\":1,\"type\":\"DOUBLE\"},\n"
+        + "{\"originAtom\":1,\"targetAtom\":2}\n]}";
+    assertEquals("200 " + InchiServer.toJson(JnaInchi.toInchi(input)), post("/toInchi", json));
+  }
+
+  @Test
+  public void testBadRequests() throws Exception {
+    assertTrue(post("/toInchi", "{\"atoms\":[").startsWith("400 "));
+    assertTrue(post("/toInchi", "{\"atoms\":[{\"elname\":\"C\"}],\"bonds\":[{\"originAtom\":0,\"targetAtom\":5}]}").startsWith("400 "));
+    assertTrue(post("/molToInchi?options=NoSuchFlag", ETHANOL_MOL).startsWith("400 "));
+    assertTrue(post("/molToInchi/extra", ETHANOL_MOL).startsWith("404 "));
+    HttpURLConnection connection = (HttpURLConnection) url("/molToInchi").openConnection();
+    assertEquals(405, connection.getResponseCode());
+  }
+
+  @Test
+  public void testLoad() throws Exception {
+    long batchesBefore = server.getBatchCount();
+    LoadTest.Result result = new LoadTest(url("/molToInchi"), ETHANOL_MOL.getBytes(StandardCharsets.UTF_8), 8, 400).run();
+    assertEquals(Collections.singletonMap(200, 400), result.getStatusCounts());
+    assertEquals(0, result.getFailures());
+    assertTrue(result.getLatencyNanos(50) <= result.getLatencyNanos(100));
+    //Warm-up and measured requests, some of which are coalesced
+    assertTrue(server.getBatchCount() - batchesBefore <= 408);
+    assertTrue(LoadTest.readStats(url("/molToInchi")).startsWith("{\"requests\":"));
+  }
+
+  @Test
+  public void testDefaultToInchiSharesGenerator() throws Exception {
+    String methane = "{\"atoms\":[{\"elname\":\"C\",\"implicitH\":4}]}";
+    try (InchiServer single = InchiServer.builder().withPort(0).withWorkerThreads(1).build().start()) {
+      URL toInchiUrl = new URL("http://127.0.0.1:" + single.getPort() + "/toInchi");
+      LoadTest.Result result = new LoadTest(toInchiUrl, methane.getBytes(StandardCharsets.UTF_8), 8, 200).run();
+      assertEquals(Collections.singletonMap(200, 200), result.getStatusCounts());
+      //Every request of every batch, including the warm-up, was converted by the server's one generator
+      assertEquals(208, single.getRequestCount());
+      assertEquals(208, single.getGenerator().getMoleculeCount());
+
+      //Requests with options, and the other operations, do not use the generator
+      URL optionsUrl = new URL("http://127.0.0.1:" + single.getPort() + "/toInchi?options=FixedH");
+      result = new LoadTest(optionsUrl, methane.getBytes(StandardCharsets.UTF_8), 2, 10).run();
+      assertEquals(Collections.singletonMap(200, 10), result.getStatusCounts());
+      assertEquals(208, single.getGenerator().getMoleculeCount());
+    }
+  }
+
+  @Test
+  public void testRequestTimeout() throws Exception {
+    try (InchiServer slow = InchiServer.builder().withPort(0).withWorkerThreads(1).withHandlerThreads(2)
+        .withRequestTimeoutMilliSeconds(1).build().start()) {
+      URL molUrl = new URL("http://127.0.0.1:" + slow.getPort() + "/molToInchi");
+      LoadTest.Result result = new LoadTest(molUrl, ETHANOL_MOL.getBytes(StandardCharsets.UTF_8), 8, 200).run();
+      //More concurrent clients than handler threads, each answered with its conversion or a timeout
+      int ok = result.getStatusCounts().getOrDefault(200, 0);
+      int timedOut = result.getStatusCounts().getOrDefault(504, 0);
+      assertEquals(200, ok + timedOut);
+      assertEquals(0, result.getFailures());
+    }
+  }
+
+  @Test
+  public void testQueueFull() throws Exception {
+    try (InchiServer small = InchiServer.builder().withPort(0).withWorkerThreads(1).withMaxQueueDepth(1)
+        .withHandlerThreads(16).build().start()) {
+      URL molUrl = new URL("http://127.0.0.1:" + small.getPort() + "/molToInchi");
+      LoadTest.Result result = new LoadTest(molUrl, ETHANOL_MOL.getBytes(StandardCharsets.UTF_8), 16, 2000).run();
+      int ok = result.getStatusCounts().getOrDefault(200, 0);
+      int busy = result.getStatusCounts().getOrDefault(503, 0);
+      assertEquals(2000, ok + busy);
+      //The warm-up requests may have been rejected too
+      assertTrue(small.getRejectedCount() >= busy);
+    }
+  }
+}
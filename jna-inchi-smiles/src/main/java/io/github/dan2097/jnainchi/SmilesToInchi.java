@@ -63,6 +63,26 @@ public class SmilesToInchi {
     return JnaInchi.toInchi(input, options);
   }
 
+  /**
+   * Returns a builder for a processor that converts SMILES strings to InChIs with the given options.
+   * SMILES that cannot be parsed result in an output with status ERROR
+   * @param options
+   * @return builder to configure and instantiate an InchiFlowProcessor
+   */
+  public static InchiFlowProcessor.InchiFlowProcessorBuilder<String, InchiOutput> processor(InchiOptions options) {
+    if (options == null) {
+      throw new IllegalArgumentException("options must not be null");
+    }
+    return InchiFlowProcessor.builder(smiles -> {
+      try {
+        return toInchi(smiles, options);
+      }
+      catch (IOException | RuntimeException e) {
+        return InchiFlowProcessor.errorOutput(e);
+      }
+    });
+  }
+
   private static InchiInput graphToInput(Graph g) throws IOException {
     g = g.kekule();
     InchiInput input = new InchiInput();
@@ -18,6 +18,8 @@
 package io.github.dan2097.jnarinchi;
 
 import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Properties;
 
 import com.sun.jna.Platform;
@@ -68,6 +70,7 @@ public class JnaRinchi {
     private static final String RINCHI_DECOMPOSE_LINE_SEPARATOR = "\n";
     private static final String RINCHI_DECOMPOSE_DIRECTION_SHORT_DESIGNATION = "D";
     private static final int ERROR_CODE_DECOMPOSE_FROM_LINES = -1;
+    private static final RinchiAssembler DIRECT_ASSEMBLER = new RinchiAssembler();
 
     /**
      * Converts a reaction represented as a RinchiInput object into RInChI and RAuxInfo.
@@ -90,6 +93,13 @@ public class JnaRinchi {
      * RInChI and RAuxInfo.
      * <br>
      * RInChI generation is customized via {@link RinchiOptions}.
+     * <br>
+     * The InChIs of the reaction components are generated directly and assembled into RInChI and RAuxInfo
+     * without writing and parsing an RDFile. The result is identical to the one of
+     * {@link #fileTextToRinchi(String, RinchiOptions)} applied to the RDFile of the reaction,
+     * which is still used for the reactions that cannot be processed directly.
+     * <br>
+     * Component InChIs are not cached, see {@link RinchiAssembler} for conversions with a cache.
      *
      * @param rinchiInput input reaction as RinchiInput object
      * @param options RInChI generation options
@@ -97,6 +107,10 @@ public class JnaRinchi {
      * @see #toRinchi(RinchiInput)
      */
     public static RinchiOutput toRinchi(RinchiInput rinchiInput, RinchiOptions options) {
+        return DIRECT_ASSEMBLER.toRinchi(rinchiInput, options);
+    }
+
+    static RinchiOutput toRinchiViaFileText(RinchiInput rinchiInput, RinchiOptions options) {
         //Converting RinchiInput to RXN/RDFile
         MdlReactionWriter mdlWriter = new MdlReactionWriter(ReactionFileFormat.RD);
         String fileText = mdlWriter.rinchiInputToFileText(rinchiInput);
@@ -325,6 +339,74 @@ public class JnaRinchi {
         }
     }
 
+    /**
+     * Converts a reaction represented in MDL RXN or RDFile format into RInChI, RAuxInfo
+     * and the RInChIKeys of all types ({@link RinchiKeyType#LONG}, {@link RinchiKeyType#SHORT}
+     * and {@link RinchiKeyType#WEB}).
+     * The reaction file text is parsed only once.
+     * The file format is automatically recognized.
+     * Default generation options are applied.
+     *
+     * @param reactionFileText reaction represented in RXN or RDFile format
+     * @return result RinchiFullOutput object
+     * @see #fileTextToRinchiFull(String, RinchiOptions, ReactionFileFormat)
+     */
+    public static RinchiFullOutput fileTextToRinchiFull(String reactionFileText) {
+        return fileTextToRinchiFull(reactionFileText, RinchiOptions.DEFAULT_OPTIONS, ReactionFileFormat.AUTO);
+    }
+
+    /**
+     * Converts a reaction represented in MDL RXN or RDFile format into RInChI, RAuxInfo
+     * and the RInChIKeys of all types ({@link RinchiKeyType#LONG}, {@link RinchiKeyType#SHORT}
+     * and {@link RinchiKeyType#WEB}).
+     * The reaction file text is parsed only once, the RInChIKeys are derived from the generated RInChI.
+     * <br>
+     * The result is the same as calling {@link #fileTextToRinchi(String, RinchiOptions, ReactionFileFormat)}
+     * and {@link #fileTextToRinchiKey(String, RinchiKeyType, RinchiOptions, ReactionFileFormat)} for each key type.
+     *
+     * @param reactionFileText reaction represented in RXN or RDFile format
+     * @param options          RInChI/RInChIKey generation options
+     * @param fileFormat       the MDL file format for reaction representation: {@link ReactionFileFormat#RXN}, {@link ReactionFileFormat#RD} or {@link ReactionFileFormat#AUTO}
+     * @return result RinchiFullOutput object
+     * @see #fileTextToRinchiFull(String)
+     */
+    public static RinchiFullOutput fileTextToRinchiFull(String reactionFileText, RinchiOptions options, ReactionFileFormat fileFormat) {
+        RinchiOutput rinchiOutput = fileTextToRinchi(reactionFileText, options, fileFormat);
+        return addRinchiKeys(rinchiOutput);
+    }
+
+    /**
+     * Converts a reaction represented as a RinchiInput object into RInChI, RAuxInfo
+     * and the RInChIKeys of all types ({@link RinchiKeyType#LONG}, {@link RinchiKeyType#SHORT}
+     * and {@link RinchiKeyType#WEB}).
+     *
+     * @param rinchiInput input reaction as RinchiInput object
+     * @param options RInChI generation options
+     * @return result RinchiFullOutput object
+     * @see #toRinchi(RinchiInput, RinchiOptions)
+     */
+    public static RinchiFullOutput toRinchiFull(RinchiInput rinchiInput, RinchiOptions options) {
+        RinchiOutput rinchiOutput = toRinchi(rinchiInput, options);
+        return addRinchiKeys(rinchiOutput);
+    }
+
+    private static RinchiFullOutput addRinchiKeys(RinchiOutput rinchiOutput) {
+        if (rinchiOutput.getStatus() == Status.ERROR)
+            return new RinchiFullOutput(rinchiOutput.getRinchi(), rinchiOutput.getAuxInfo(), null,
+                    Status.ERROR, rinchiOutput.getErrorCode(), rinchiOutput.getErrorMessage());
+
+        Map<RinchiKeyType, String> rinchiKeys = new EnumMap<>(RinchiKeyType.class);
+        for (RinchiKeyType keyType : RinchiKeyType.values()) {
+            RinchiKeyOutput keyOutput = rinchiToRinchiKey(keyType, rinchiOutput.getRinchi());
+            if (keyOutput.getStatus() == Status.ERROR)
+                return new RinchiFullOutput(rinchiOutput.getRinchi(), rinchiOutput.getAuxInfo(), rinchiKeys,
+                        Status.ERROR, keyOutput.getErrorCode(), keyOutput.getErrorMessage());
+            rinchiKeys.put(keyType, keyOutput.getRinchiKey());
+        }
+        return new RinchiFullOutput(rinchiOutput.getRinchi(), rinchiOutput.getAuxInfo(), rinchiKeys,
+                rinchiOutput.getStatus(), rinchiOutput.getErrorCode(), rinchiOutput.getErrorMessage());
+    }
+
     /**
      * Converts RInChI and RAuxInfo into a reaction, represented in MDL RXN or RDFile format.
      * The output object of type FileTextOutput contains the conversion status, error messages if any,
@@ -366,12 +448,30 @@ public class JnaRinchi {
      * and RInChIKey.
      * <br>
      * RInChIKey could be of type: {@link RinchiKeyType#LONG}, {@link RinchiKeyType#SHORT} or {@link RinchiKeyType#WEB}.
+     * <br>
+     * The key is generated in Java by {@link RinchiKeyGenerator}, without holding the lock. The native library
+     * is only called if the RInChI is rejected, to obtain its error message. A protonation layer that does not fit
+     * in an integer is an error for all key types, although the native library accepts it for Long keys.
+     * Unlike the native library, the InChIs of the RInChI are not parsed, so invalid InChIs are not detected.
      *
      * @param keyType RInChI-Key type
      * @param rinchi input RInChi string
      * @return result RinchiKeyOutput object
      */
     public static RinchiKeyOutput rinchiToRinchiKey(RinchiKeyType keyType, String rinchi) {
+        requireNonNull(keyType, "keyType");
+        requireNonNull(rinchi, "rinchi");
+        RinchiKeyOutput output = RinchiKeyGenerator.toRinchiKey(keyType, rinchi);
+        if (output.getStatus() == Status.SUCCESS || libraryLoadingError != null
+                || RinchiKeyGenerator.findInvalidProtonation(rinchi) != null)
+            return output;
+        return rinchiToRinchiKeyNative(keyType, rinchi);
+    }
+
+    /**
+     * Generates a RInChIKey from a RInChI string with the native library.
+     */
+    static RinchiKeyOutput rinchiToRinchiKeyNative(RinchiKeyType keyType, String rinchi) {
         synchronized (lock) {
             checkLibrary();
             requireNonNull(keyType, "keyType");
@@ -410,6 +510,9 @@ public class JnaRinchi {
      * The output object of type RinchiDecompositionOutput contains the decomposition status, error messages if any,
      * an array of InChIs together with their roles as components in the reaction, an array of AuxInfos, and the
      * RInChI reaction direction.
+     * <br>
+     * The RInChI is decomposed in Java by {@link RinchiView}, without holding the lock. The native library
+     * is only called if the RInChI or RAuxInfo is rejected, to obtain its result and error message.
      *
      * @param rinchi input RInChi string
      * @param auxInfo input RAuxInfo string
@@ -417,6 +520,22 @@ public class JnaRinchi {
      * @see #decomposeRinchi(String)
      */
     public static RinchiDecompositionOutput decomposeRinchi(String rinchi, String auxInfo) {
+        requireNonNull(rinchi, "rinchi");
+        requireNonNull(auxInfo, "auxInfo");
+        try {
+            return RinchiView.parse(rinchi, auxInfo).toDecompositionOutput();
+        } catch (IllegalArgumentException exception) {
+            if (libraryLoadingError != null)
+                return new RinchiDecompositionOutput(ReactionDirection.FORWARD, null, null, null,
+                        Status.ERROR, ERROR_CODE_DECOMPOSE_FROM_LINES, exception.getMessage());
+        }
+        return decomposeRinchiNative(rinchi, auxInfo);
+    }
+
+    /**
+     * Splits a RInChI into individual components with the native library.
+     */
+    static RinchiDecompositionOutput decomposeRinchiNative(String rinchi, String auxInfo) {
         synchronized (lock) {
             checkLibrary();
             requireNonNull(rinchi, "rinchi");
@@ -438,6 +557,17 @@ public class JnaRinchi {
         }
     }
 
+    /**
+     * Loads the RInChI native library and performs a trivial RInChIKey generation, so that the cost of library extraction,
+     * loading and JNA function binding is paid up front rather than on the first real call.
+     *
+     * @throws RuntimeException if the native library could not be loaded
+     * @see io.github.dan2097.jnainchi.inchi.NativeLibraryCache
+     */
+    public static void preload() {
+        rinchiToRinchiKeyNative(RinchiKeyType.LONG, "RInChI=1.00.1S/<>C6H6/c1-2-4-6-5-3-1/h1-6H/d-");
+    }
+
     /**
      * Returns the version of the wrapped RInChI C library.
      * @return version number string or <code>null</code> if there is an error when retrieving the version number
@@ -22,6 +22,7 @@ package io.github.dan2097.jnarinchi;
  *
  * @see RinchiOutput
  * @see RinchiKeyOutput
+ * @see RinchiFullOutput
  * @see RinchiInputFromRinchiOutput
  * @see RinchiDecompositionOutput
  * @see FileTextOutput
@@ -0,0 +1,445 @@
+/**
+ * JNA-RInChI - Library for calling RInChI from Java
+ * Copyright © 2022 Nikolay Kochev
+ * <p>
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnarinchi;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.dan2097.jnainchi.InchiAtom;
+import io.github.dan2097.jnainchi.InchiBond;
+import io.github.dan2097.jnainchi.InchiBondStereo;
+import io.github.dan2097.jnainchi.InchiBondType;
+import io.github.dan2097.jnainchi.InchiFlag;
+import io.github.dan2097.jnainchi.InchiInput;
+import io.github.dan2097.jnainchi.InchiOptions;
+import io.github.dan2097.jnainchi.InchiOutput;
+import io.github.dan2097.jnainchi.InchiRadical;
+import io.github.dan2097.jnainchi.InchiStatus;
+import io.github.dan2097.jnainchi.JnaInchi;
+import io.github.dan2097.jnainchi.JnaInchiEngine;
+import io.github.dan2097.jnarinchi.cheminfo.MdlReactionUtils;
+import io.github.dan2097.jnarinchi.cheminfo.StereoUtils;
+
+/**
+ * Assembles RInChI and RAuxInfo directly from a {@link RinchiInput} object.
+ * <p>
+ * The InChI of each reaction component is generated with {@link JnaInchi}
+ * and the RInChI layers are then put together in Java. This avoids writing
+ * the reaction as an RDFile and parsing it again in the native RInChI library.
+ * <br>
+ * Each component is first projected onto what the RDFile round trip would keep
+ * (coordinates rounded to the MDL number format, no implicit hydrogen counts,
+ * no stereo elements, MDL chiral flag), so that the output is identical to the
+ * one of the native library.
+ * <br>
+ * If the InChI native library is not available or a component cannot be handled
+ * this way, the reaction is converted via the RDFile route.
+ * </p>
+ * <p>
+ * An assembler may keep a cache of component InChIs. Reagents, solvents and catalysts
+ * recur in many reactions of a reaction database, and with a cache their InChIs are
+ * generated only once. A component is looked up by the content of its projection,
+ * therefore the same molecule drawn with other coordinates is a different cache entry.
+ * <br>
+ * Instances are thread-safe.
+ * </p>
+ *
+ * @author Nikolay Kochev
+ */
+public class RinchiAssembler {
+    static final String RINCHI_STD_HEADER = "RInChI=1.00.1S/";
+    static final String RINCHI_AUXINFO_HEADER = "RAuxInfo=1.00.1/";
+    static final String INCHI_STD_HEADER = "InChI=1S/";
+    static final String INCHI_AUXINFO_HEADER = "AuxInfo=1/";
+    static final String GROUP_DELIMITER = "<>";
+    static final char COMPONENT_DELIMITER = '!';
+    static final String DIRECTION_LAYER = "/d";
+    static final String NO_STRUCTURE_LAYER = "/u";
+
+    //Limits of the MDL V2000 fixed width fields used by the RDFile route
+    private static final int MAX_CTAB_COUNT = 999;
+    private static final int MAX_PROPERTY_VALUE = 999;
+    private static final double MAX_FAST_ROUNDING_VALUE = 9999.0;
+    private static final double ROUNDING_SCALE = 10000.0;
+    private static final double ROUNDING_TIE_TOLERANCE = 1e-6;
+
+    private static final JnaInchiEngine INCHI_ENGINE = new JnaInchiEngine();
+    private static final InchiOptions NON_CHIRAL_OPTIONS = new InchiOptions.InchiOptionsBuilder().build();
+    private static final InchiOptions CHIRAL_OPTIONS = new InchiOptions.InchiOptionsBuilder()
+            .withFlag(InchiFlag.ChiralFlagON).build();
+
+    //NumberFormat is not thread-safe
+    private static final ThreadLocal<NumberFormat> MDL_NUMBER_FORMAT =
+            ThreadLocal.withInitial(() -> (NumberFormat) MdlReactionUtils.MDL_NUMBER_FORMAT.clone());
+
+    private static final Comparator<String[]> BY_INCHI = (c1, c2) -> c1[0].compareTo(c2[0]);
+
+    //Marks components for which the InChI builder failed, these are not retried
+    private static final String[] UNSUPPORTED = new String[0];
+
+    private final Map<String, String[]> cache;
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    /**
+     * Creates an assembler without component cache.
+     */
+    public RinchiAssembler() {
+        this(0);
+    }
+
+    /**
+     * Creates an assembler which caches the InChIs of up to <code>maxCacheSize</code> components.
+     * When the cache is full, the least recently used component is evicted.
+     *
+     * @param maxCacheSize maximal number of cached components, 0 disables caching
+     */
+    public RinchiAssembler(final int maxCacheSize) {
+        if (maxCacheSize < 0)
+            throw new IllegalArgumentException("The argument 'maxCacheSize' must not be negative.");
+        if (maxCacheSize == 0) {
+            cache = null;
+        } else {
+            cache = Collections.synchronizedMap(new LinkedHashMap<String, String[]>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+                    return size() > maxCacheSize;
+                }
+            });
+        }
+    }
+
+    /**
+     * Converts a reaction into RInChI and RAuxInfo with default RInChI generation options.
+     *
+     * @param rinchiInput input reaction
+     * @return result RinchiOutput object
+     * @see #toRinchi(RinchiInput, RinchiOptions)
+     */
+    public RinchiOutput toRinchi(RinchiInput rinchiInput) {
+        return toRinchi(rinchiInput, RinchiOptions.DEFAULT_OPTIONS);
+    }
+
+    /**
+     * Converts a reaction into RInChI and RAuxInfo.
+     * The result is the same as the one of {@link JnaRinchi#toRinchi(RinchiInput, RinchiOptions)}.
+     *
+     * @param rinchiInput input reaction
+     * @param options RInChI generation options
+     * @return result RinchiOutput object
+     */
+    public RinchiOutput toRinchi(RinchiInput rinchiInput, RinchiOptions options) {
+        if (rinchiInput == null)
+            throw new IllegalArgumentException("The argument 'rinchiInput' must not be null.");
+        if (options == null)
+            throw new IllegalArgumentException("The argument 'options' must not be null.");
+        RinchiOutput output = assemble(rinchiInput, options);
+        if (output != null)
+            return output;
+        return JnaRinchi.toRinchiViaFileText(rinchiInput, options);
+    }
+
+    /**
+     * Returns the number of components currently held in the cache.
+     *
+     * @return number of cached components
+     */
+    public int getCacheSize() {
+        return cache == null ? 0 : cache.size();
+    }
+
+    /**
+     * Returns how often a component InChI was taken from the cache.
+     *
+     * @return number of cache hits
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Returns how often a component InChI had to be generated.
+     *
+     * @return number of cache misses
+     */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * Removes all components from the cache.
+     */
+    public void clearCache() {
+        if (cache != null)
+            cache.clear();
+    }
+
+    /**
+     * Generates RInChI and RAuxInfo for a reaction without the RDFile round trip.
+     *
+     * @param rinchiInput input reaction
+     * @param options RInChI generation options
+     * @return RInChI and RAuxInfo or <code>null</code> if the reaction must be processed via the RDFile route
+     */
+    RinchiOutput assemble(RinchiInput rinchiInput, RinchiOptions options) {
+        //jna-rinchi-core does not bring the InChI binaries, they may be missing on the classpath
+        if (!INCHI_ENGINE.isAvailable())
+            return null;
+
+        List<List<String[]>> groups = new ArrayList<>(3);
+        for (int i = 0; i < 3; i++)
+            groups.add(new ArrayList<>());
+        int[] noStructureCounts = new int[3];
+
+        for (RinchiInputComponent component : rinchiInput.getComponents()) {
+            int group = getGroupIndex(component.getRole());
+            if (group < 0)
+                return null;
+            if (component.getAtoms().isEmpty()) {
+                noStructureCounts[group]++;
+                continue;
+            }
+            String[] inchiAndAuxInfo = componentToInchi(component);
+            if (inchiAndAuxInfo == null)
+                return null;
+            groups.get(group).add(inchiAndAuxInfo);
+        }
+
+        for (List<String[]> group : groups)
+            group.sort(BY_INCHI);
+
+        String reagents = joinGroup(groups.get(0), 0);
+        String products = joinGroup(groups.get(1), 0);
+        String agents = joinGroup(groups.get(2), 0);
+        //Reagents and products are swapped (backward direction) if this gives alphabetical order
+        boolean swap = reagents.compareTo(products) > 0;
+        int first = swap ? 1 : 0;
+        int second = swap ? 0 : 1;
+
+        StringBuilder rinchi = new StringBuilder(RINCHI_STD_HEADER);
+        appendLayers(rinchi, swap ? products : reagents, swap ? reagents : products, agents);
+        rinchi.append(DIRECTION_LAYER);
+        if (options.getFlags().contains(RinchiFlag.ForceEquilibrium))
+            rinchi.append(ReactionDirection.EQUILIBRIUM.getShortRinchiDesignation());
+        else if (swap)
+            rinchi.append(ReactionDirection.BACKWARD.getShortRinchiDesignation());
+        else
+            rinchi.append(ReactionDirection.FORWARD.getShortRinchiDesignation());
+
+        if (noStructureCounts[0] + noStructureCounts[1] + noStructureCounts[2] > 0) {
+            rinchi.append(NO_STRUCTURE_LAYER)
+                    .append(noStructureCounts[first]).append('-')
+                    .append(noStructureCounts[second]).append('-')
+                    .append(noStructureCounts[2]);
+        }
+
+        StringBuilder auxInfo = new StringBuilder(RINCHI_AUXINFO_HEADER);
+        appendLayers(auxInfo, joinGroup(groups.get(first), 1), joinGroup(groups.get(second), 1),
+                joinGroup(groups.get(2), 1));
+
+        return new RinchiOutput(rinchi.toString(), auxInfo.toString(), Status.SUCCESS, 0, "");
+    }
+
+    private static int getGroupIndex(ReactionComponentRole role) {
+        if (role == null)
+            return -1;
+        switch (role) {
+            case REAGENT:
+                return 0;
+            case PRODUCT:
+                return 1;
+            case AGENT:
+                return 2;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Generates InChI and AuxInfo (without their headers) for a single reaction component.
+     *
+     * @param component reaction component with at least one atom
+     * @return InChI and AuxInfo or <code>null</code> if the component is not supported
+     */
+    String[] componentToInchi(RinchiInputComponent component) {
+        InchiInput projection = toMolfileEquivalent(component);
+        if (projection == null)
+            return null;
+        boolean chiral = !StereoUtils.getAtomParities(component, true).isEmpty();
+        if (cache == null)
+            return generateInchi(projection, chiral);
+
+        String key = getCacheKey(projection, chiral);
+        String[] inchiAndAuxInfo = cache.get(key);
+        if (inchiAndAuxInfo != null) {
+            cacheHits.incrementAndGet();
+        } else {
+            cacheMisses.incrementAndGet();
+            inchiAndAuxInfo = generateInchi(projection, chiral);
+            cache.put(key, inchiAndAuxInfo == null ? UNSUPPORTED : inchiAndAuxInfo);
+        }
+        return inchiAndAuxInfo == UNSUPPORTED ? null : inchiAndAuxInfo;
+    }
+
+    private static String[] generateInchi(InchiInput projection, boolean chiral) {
+        InchiOutput output = INCHI_ENGINE.toInchi(projection, chiral ? CHIRAL_OPTIONS : NON_CHIRAL_OPTIONS);
+        if (output.getStatus() == InchiStatus.ERROR)
+            return null;
+        String inchi = output.getInchi();
+        String auxInfo = output.getAuxInfo();
+        if (inchi == null || !inchi.startsWith(INCHI_STD_HEADER)
+                || auxInfo == null || !auxInfo.startsWith(INCHI_AUXINFO_HEADER))
+            return null;
+        return new String[]{inchi.substring(INCHI_STD_HEADER.length()),
+                auxInfo.substring(INCHI_AUXINFO_HEADER.length())};
+    }
+
+    /**
+     * Describes everything that determines the InChI and AuxInfo of a projected component.
+     *
+     * @param projection component as returned by {@link #toMolfileEquivalent(RinchiInputComponent)}
+     * @param chiral MDL chiral flag
+     * @return cache key
+     */
+    static String getCacheKey(InchiInput projection, boolean chiral) {
+        StringBuilder sb = new StringBuilder(32 * projection.getAtoms().size() + 8 * projection.getBonds().size() + 2);
+        sb.append(chiral ? 'c' : 'n');
+        Map<InchiAtom, Integer> atomIndices = new IdentityHashMap<>();
+        for (InchiAtom atom : projection.getAtoms()) {
+            atomIndices.put(atom, atomIndices.size());
+            sb.append(';').append(atom.getElName())
+                    .append(',').append(atom.getX())
+                    .append(',').append(atom.getY())
+                    .append(',').append(atom.getZ())
+                    .append(',').append(atom.getCharge())
+                    .append(',').append(atom.getIsotopicMass())
+                    .append(',').append(atom.getRadical().ordinal());
+        }
+        sb.append('|');
+        for (InchiBond bond : projection.getBonds()) {
+            sb.append(atomIndices.get(bond.getStart()))
+                    .append(',').append(atomIndices.get(bond.getEnd()))
+                    .append(',').append(bond.getType().ordinal())
+                    .append(',').append(bond.getStereo().ordinal())
+                    .append(';');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Creates a copy of the component that holds only the information which
+     * survives writing the component as an MDL V2000 molfile and reading it back.
+     *
+     * @param component reaction component
+     * @return the projected structure or <code>null</code> if the component cannot be written faithfully
+     */
+    static InchiInput toMolfileEquivalent(RinchiInputComponent component) {
+        if (component.getAtoms().size() > MAX_CTAB_COUNT || component.getBonds().size() > MAX_CTAB_COUNT)
+            return null;
+
+        InchiInput projection = new InchiInput();
+        Map<InchiAtom, InchiAtom> atomMap = new IdentityHashMap<>();
+        for (InchiAtom atom : component.getAtoms()) {
+            String elName = atom.getElName();
+            //D and T are read back as hydrogen isotopes, which the InChI API does not accept by symbol
+            if (elName == null || elName.isEmpty() || elName.length() > 3 || "D".equals(elName) || "T".equals(elName))
+                return null;
+            if (Math.abs(atom.getCharge()) > MAX_PROPERTY_VALUE
+                    || atom.getIsotopicMass() < 0 || atom.getIsotopicMass() > MAX_PROPERTY_VALUE)
+                return null;
+
+            InchiAtom copy = new InchiAtom(elName, roundCoordinate(atom.getX()),
+                    roundCoordinate(atom.getY()), roundCoordinate(atom.getZ()));
+            copy.setCharge(atom.getCharge());
+            copy.setIsotopicMass(atom.getIsotopicMass());
+            copy.setRadical(atom.getRadical() == null ? InchiRadical.NONE : atom.getRadical());
+            //The molfile does not carry implicit hydrogen counts, hence they are perceived
+            copy.setImplicitHydrogen(-1);
+            projection.addAtom(copy);
+            atomMap.put(atom, copy);
+        }
+
+        for (InchiBond bond : component.getBonds()) {
+            InchiAtom start = atomMap.get(bond.getStart());
+            InchiAtom end = atomMap.get(bond.getEnd());
+            if (start == null || end == null)
+                return null;
+            InchiBondType type = bond.getType();
+            if (type != InchiBondType.DOUBLE && type != InchiBondType.TRIPLE && type != InchiBondType.ALTERN)
+                type = InchiBondType.SINGLE;
+            InchiBondStereo stereo = bond.getStereo() == null ? InchiBondStereo.NONE : bond.getStereo();
+            projection.addBond(new InchiBond(start, end, type, stereo));
+        }
+        return projection;
+    }
+
+    /**
+     * Rounds a coordinate the same way as it is written in a molfile
+     * (see {@link MdlReactionUtils#MDL_NUMBER_FORMAT}).
+     *
+     * @param value coordinate
+     * @return the value that is read back from the molfile
+     */
+    static double roundCoordinate(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            return 0.0;
+        if (Math.abs(value) < MAX_FAST_ROUNDING_VALUE) {
+            double scaled = value * ROUNDING_SCALE;
+            double fraction = Math.abs(scaled - Math.floor(scaled) - 0.5);
+            if (fraction > ROUNDING_TIE_TOLERANCE)
+                return Math.rint(scaled) / ROUNDING_SCALE;
+        }
+        //Values close to a rounding tie or with more than 4 integer digits are formatted exactly as in the writer
+        String formatted = MDL_NUMBER_FORMAT.get().format(value);
+        if (formatted.length() > MdlReactionUtils.MDL_FLOAT_SPACES)
+            return 0.0;
+        return Double.parseDouble(formatted);
+    }
+
+    private static String joinGroup(List<String[]> components, int index) {
+        if (components.isEmpty())
+            return "";
+        StringBuilder sb = new StringBuilder();
+        for (String[] component : components) {
+            if (sb.length() > 0)
+                sb.append(COMPONENT_DELIMITER);
+            sb.append(component[index]);
+        }
+        return sb.toString();
+    }
+
+    private static void appendLayers(StringBuilder sb, String group1, String group2, String agents) {
+        //Trailing empty groups are omitted
+        sb.append(group1);
+        if (group2.isEmpty() && agents.isEmpty())
+            return;
+        sb.append(GROUP_DELIMITER).append(group2);
+        if (agents.isEmpty())
+            return;
+        sb.append(GROUP_DELIMITER).append(agents);
+    }
+}
@@ -0,0 +1,476 @@
+/**
+ * JNA-RInChI - Library for calling RInChI from Java
+ * Copyright © 2022 Nikolay Kochev
+ * <p>
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnarinchi;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import io.github.dan2097.jnainchi.OrderedPipeline;
+import io.github.dan2097.jnarinchi.cheminfo.RdFileReader;
+
+/**
+ * Converts many reactions into RInChI, RAuxInfo and RInChIKeys on a pool of worker threads
+ * and writes one line per reaction as TSV or JSON Lines.
+ * <p>
+ * The input is either an RDFile with any number of reaction records or a directory of RXN files.
+ * The output lines are written in input order, whatever order the workers finish in.
+ * At most <code>queueCapacity</code> reactions are read ahead of the last written line,
+ * so memory use does not depend on the size of the input.
+ * <br>
+ * A reaction that cannot be converted results in a line with status ERROR and the error message,
+ * the conversion of the other reactions is not affected.
+ * </p>
+ * <p>
+ * Each reaction is converted with {@link JnaRinchi#fileTextToRinchiFull(String, RinchiOptions, ReactionFileFormat)},
+ * so the output is the same as that of a sequential conversion. The native RInChI library is called by one worker
+ * at a time, while splitting the input, generating the RInChIKeys and formatting the output run in parallel.
+ * </p>
+ * <pre>
+ * RinchiBatchConverter converter = RinchiBatchConverter.builder()
+ *         .withThreads(4).withOutputFormat(OutputFormat.JSONL).build();
+ * try (Writer out = Files.newBufferedWriter(Paths.get("reactions.jsonl"))) {
+ *     converter.convertRdFile(Paths.get("reactions.rdf"), out);
+ * }
+ * </pre>
+ * Instances are thread-safe, each conversion uses its own worker threads.
+ *
+ * @author Nikolay Kochev
+ */
+public class RinchiBatchConverter {
+
+    /**
+     * Format of the output lines.
+     */
+    public enum OutputFormat {
+        /** Tab-separated values with a header line, tabs and line breaks within values are escaped */
+        TSV,
+        /** One JSON object per line */
+        JSONL
+    }
+
+    /**
+     * Receives the progress of a conversion. It is called by the thread that writes the output.
+     */
+    public interface ProgressListener {
+        /**
+         * Called after every <code>progressInterval</code> records and once after the last record.
+         *
+         * @param recordCount number of records written so far
+         * @param errorCount number of records written so far whose conversion failed
+         */
+        void progress(long recordCount, long errorCount);
+    }
+
+    static final String[] COLUMNS = {"record", "source", "status", "rinchi", "auxInfo",
+            "longKey", "shortKey", "webKey", "errorCode", "errorMessage"};
+    private static final int ERROR_CODE_BATCH = -1;
+    private static final String RXN_FILE_EXTENSION = ".rxn";
+
+    private final RinchiOptions options;
+    private final OutputFormat outputFormat;
+    private final int numThreads;
+    private final int queueCapacity;
+    private final ProgressListener progressListener;
+    private final int progressInterval;
+
+    private RinchiBatchConverter(RinchiBatchConverterBuilder builder) {
+        this.options = builder.options;
+        this.outputFormat = builder.outputFormat;
+        this.numThreads = builder.numThreads;
+        this.queueCapacity = builder.queueCapacity > 0 ? builder.queueCapacity : 64 * builder.numThreads;
+        this.progressListener = builder.progressListener;
+        this.progressInterval = builder.progressInterval;
+    }
+
+    /**
+     * Returns a builder for this object.
+     * @return builder to configure and instantiate a RinchiBatchConverter object
+     */
+    public static RinchiBatchConverterBuilder builder() {
+        return new RinchiBatchConverterBuilder();
+    }
+
+    /**
+     * Converts all reactions of an RDFile in UTF-8 encoding.
+     * The source column holds the file name.
+     *
+     * @param rdFile the RDFile
+     * @param out destination of the output lines, it is flushed but not closed
+     * @return summary of the conversion
+     * @throws IOException if reading the input or writing the output fails
+     */
+    public Summary convertRdFile(Path rdFile, Writer out) throws IOException {
+        if (rdFile == null)
+            throw new IllegalArgumentException("The argument 'rdFile' must not be null.");
+        try (RdFileReader reader = new RdFileReader(rdFile)) {
+            return convert(reader, String.valueOf(rdFile.getFileName()), out);
+        }
+    }
+
+    /**
+     * Converts all reactions of RDFile text read from a character stream.
+     * The source column is empty.
+     *
+     * @param rdFile the RDFile text, it is not closed
+     * @param out destination of the output lines, it is flushed but not closed
+     * @return summary of the conversion
+     * @throws IOException if reading the input or writing the output fails
+     */
+    public Summary convertRdFile(Reader rdFile, Writer out) throws IOException {
+        if (rdFile == null)
+            throw new IllegalArgumentException("The argument 'rdFile' must not be null.");
+        return convert(new RdFileReader(rdFile), "", out);
+    }
+
+    private Summary convert(final RdFileReader reader, final String source, Writer out) throws IOException {
+        return convert(new TaskSource() {
+            @Override
+            public Supplier<RinchiFullOutput> next() throws IOException {
+                final String recordText = reader.nextRecordText();
+                if (recordText == null)
+                    return null;
+                return () -> convertRecord(recordText);
+            }
+
+            @Override
+            public String sourceName() {
+                return source;
+            }
+        }, out);
+    }
+
+    /**
+     * Converts the RXN (or RDFile) files with extension <code>.rxn</code> in a directory, in the order of their names.
+     * Subdirectories are not searched. The source column holds the file name. The files are read by the workers,
+     * a file that cannot be read results in an ERROR line.
+     *
+     * @param directory the directory
+     * @param out destination of the output lines, it is flushed but not closed
+     * @return summary of the conversion
+     * @throws IOException if listing the directory or writing the output fails
+     */
+    public Summary convertDirectory(Path directory, Writer out) throws IOException {
+        if (directory == null)
+            throw new IllegalArgumentException("The argument 'directory' must not be null.");
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file) && file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(RXN_FILE_EXTENSION))
+                    files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return convert(new TaskSource() {
+            private int index = -1;
+
+            @Override
+            public Supplier<RinchiFullOutput> next() {
+                if (++index >= files.size())
+                    return null;
+                final Path file = files.get(index);
+                return () -> {
+                    String fileText;
+                    try {
+                        fileText = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                    } catch (IOException e) {
+                        return errorOutput("Error reading file: " + e);
+                    }
+                    return convertRecord(fileText);
+                };
+            }
+
+            @Override
+            public String sourceName() {
+                return String.valueOf(files.get(index).getFileName());
+            }
+        }, out);
+    }
+
+    /**
+     * Supplies the conversion tasks in input order.
+     */
+    private interface TaskSource {
+        /** Returns the next task or <code>null</code> at the end of the input */
+        Supplier<RinchiFullOutput> next() throws IOException;
+
+        /** Returns the source name of the task last returned by {@link #next()} */
+        String sourceName();
+    }
+
+    private Summary convert(TaskSource taskSource, Writer out) throws IOException {
+        if (out == null)
+            throw new IllegalArgumentException("The argument 'out' must not be null.");
+        long start = System.nanoTime();
+        Progress progress = new Progress(out);
+        if (outputFormat == OutputFormat.TSV)
+            out.write(String.join("\t", COLUMNS) + "\n");
+
+        //Records are read ahead of the last written line up to the queue capacity
+        try (OrderedPipeline<PendingRecord, RinchiFullOutput> pipeline = OrderedPipeline
+                .<PendingRecord, RinchiFullOutput>builder(record -> record.task.get(), progress::write)
+                .withThreads(numThreads).withThreadName("rinchi-batch").withWindow(queueCapacity).build()) {
+            Supplier<RinchiFullOutput> task;
+            while ((task = taskSource.next()) != null)
+                pipeline.submit(new PendingRecord(taskSource.sourceName(), task));
+            pipeline.finish();
+        }
+        out.flush();
+        if (progressListener != null && (progress.recordCount == 0 || progress.recordCount % progressInterval != 0))
+            progressListener.progress(progress.recordCount, progress.errorCount);
+        return new Summary(progress.recordCount, progress.errorCount, System.nanoTime() - start);
+    }
+
+    /**
+     * Converts the text of one reaction, exceptions are captured in the output.
+     */
+    private RinchiFullOutput convertRecord(String fileText) {
+        try {
+            return JnaRinchi.fileTextToRinchiFull(fileText, options, ReactionFileFormat.AUTO);
+        } catch (RuntimeException e) {
+            return errorOutput(e.toString());
+        }
+    }
+
+    private static RinchiFullOutput errorOutput(String errorMessage) {
+        return new RinchiFullOutput("", "", null, Status.ERROR, ERROR_CODE_BATCH, errorMessage);
+    }
+
+    private static class PendingRecord {
+        private final String source;
+        private final Supplier<RinchiFullOutput> task;
+
+        private PendingRecord(String source, Supplier<RinchiFullOutput> task) {
+            this.source = source;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Writes the output lines and keeps count of them.
+     */
+    private class Progress {
+        private final Writer out;
+        private final StringBuilder line = new StringBuilder();
+        private long recordCount = 0;
+        private long errorCount = 0;
+
+        private Progress(Writer out) {
+            this.out = out;
+        }
+
+        private void write(long sequence, PendingRecord record, RinchiFullOutput output) throws IOException {
+            Object[] values = {sequence + 1, record.source, output.getStatus(), output.getRinchi(),
+                    output.getAuxInfo(), output.getLongRinchiKey(), output.getShortRinchiKey(),
+                    output.getWebRinchiKey(), output.getErrorCode(), output.getErrorMessage()};
+            line.setLength(0);
+            if (outputFormat == OutputFormat.TSV)
+                appendTsv(line, values);
+            else
+                appendJson(line, values);
+            out.write(line.append('\n').toString());
+
+            recordCount++;
+            if (output.getStatus() == Status.ERROR)
+                errorCount++;
+            if (progressListener != null && recordCount % progressInterval == 0)
+                progressListener.progress(recordCount, errorCount);
+        }
+    }
+
+    static void appendTsv(StringBuilder sb, Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                sb.append('\t');
+            String value = values[i] == null ? "" : values[i].toString();
+            for (int k = 0; k < value.length(); k++) {
+                char c = value.charAt(k);
+                switch (c) {
+                    case '\t': sb.append("\\t"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    case '\\': sb.append("\\\\"); break;
+                    default: sb.append(c);
+                }
+            }
+        }
+    }
+
+    static void appendJson(StringBuilder sb, Object[] values) {
+        sb.append('{');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                sb.append(',');
+            appendJsonString(sb, COLUMNS[i]);
+            sb.append(':');
+            Object value = values[i];
+            if (value instanceof Number)
+                sb.append(value);
+            else
+                appendJsonString(sb, value == null ? "" : value.toString());
+        }
+        sb.append('}');
+    }
+
+    private static void appendJsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int) c));
+                    else
+                        sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Immutable summary of a conversion.
+     */
+    public static class Summary {
+        private final long recordCount;
+        private final long errorCount;
+        private final long elapsedNanos;
+
+        Summary(long recordCount, long errorCount, long elapsedNanos) {
+            this.recordCount = recordCount;
+            this.errorCount = errorCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRecordCount() {
+            return recordCount;
+        }
+
+        public long getErrorCount() {
+            return errorCount;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d records, %d errors, %.1f s", recordCount, errorCount, elapsedNanos / 1e9);
+        }
+    }
+
+    /**
+     * Builder for RinchiBatchConverter.
+     */
+    public static class RinchiBatchConverterBuilder {
+        private RinchiOptions options = RinchiOptions.DEFAULT_OPTIONS;
+        private OutputFormat outputFormat = OutputFormat.TSV;
+        private int numThreads = Runtime.getRuntime().availableProcessors();
+        private int queueCapacity = 0;
+        private ProgressListener progressListener = null;
+        private int progressInterval = 1000;
+
+        private RinchiBatchConverterBuilder() {
+
+        }
+
+        /**
+         * Sets the RInChI generation options, default is {@link RinchiOptions#DEFAULT_OPTIONS}.
+         * @param options RInChI generation options
+         * @return returns itself to allow for chaining method calls
+         */
+        public RinchiBatchConverterBuilder withOptions(RinchiOptions options) {
+            if (options == null)
+                throw new IllegalArgumentException("The argument 'options' must not be null.");
+            this.options = options;
+            return this;
+        }
+
+        /**
+         * Sets the output format, default is {@link OutputFormat#TSV}.
+         * @param outputFormat output format
+         * @return returns itself to allow for chaining method calls
+         */
+        public RinchiBatchConverterBuilder withOutputFormat(OutputFormat outputFormat) {
+            if (outputFormat == null)
+                throw new IllegalArgumentException("The argument 'outputFormat' must not be null.");
+            this.outputFormat = outputFormat;
+            return this;
+        }
+
+        /**
+         * Sets the number of worker threads, default is the number of available processors.
+         * @param numThreads number of worker threads
+         * @return returns itself to allow for chaining method calls
+         */
+        public RinchiBatchConverterBuilder withThreads(int numThreads) {
+            if (numThreads < 1)
+                throw new IllegalArgumentException("The argument 'numThreads' must be positive.");
+            this.numThreads = numThreads;
+            return this;
+        }
+
+        /**
+         * Sets the maximal number of records that are read but not yet written, default is 64 per worker thread.
+         * @param queueCapacity maximal number of pending records
+         * @return returns itself to allow for chaining method calls
+         */
+        public RinchiBatchConverterBuilder withQueueCapacity(int queueCapacity) {
+            if (queueCapacity < 1)
+                throw new IllegalArgumentException("The argument 'queueCapacity' must be positive.");
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Sets a listener that is notified every <code>progressInterval</code> records.
+         * @param progressListener listener
+         * @param progressInterval number of records between notifications
+         * @return returns itself to allow for chaining method calls
+         */
+        public RinchiBatchConverterBuilder withProgressListener(ProgressListener progressListener, int progressInterval) {
+            if (progressInterval < 1)
+                throw new IllegalArgumentException("The argument 'progressInterval' must be positive.");
+            this.progressListener = progressListener;
+            this.progressInterval = progressInterval;
+            return this;
+        }
+
+        /**
+         * Returns an instance of {@link RinchiBatchConverter} as configured by this builder.
+         * @return an instance of RinchiBatchConverter
+         */
+        public RinchiBatchConverter build() {
+            return new RinchiBatchConverter(this);
+        }
+    }
+}
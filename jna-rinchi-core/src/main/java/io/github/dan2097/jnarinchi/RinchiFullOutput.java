@@ -0,0 +1,87 @@
+/**
+ * JNA-RInChI - Library for calling RInChI from Java
+ * Copyright © 2022 Nikolay Kochev
+ * <p>
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnarinchi;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Immutable data class for the result of generating RInChI, RAuxInfo and
+ * all RInChIKey types ({@link RinchiKeyType#LONG}, {@link RinchiKeyType#SHORT}
+ * and {@link RinchiKeyType#WEB}) in a single conversion.
+ *
+ * @author Nikolay Kochev
+ */
+public class RinchiFullOutput extends Output {
+    private final String rinchi;
+    private final String auxInfo;
+    private final Map<RinchiKeyType, String> rinchiKeys;
+
+    public RinchiFullOutput(String rinchi, String auxInfo, Map<RinchiKeyType, String> rinchiKeys,
+                            Status status, int errorCode, String errorMessage) {
+        super(status, errorCode, errorMessage);
+        this.rinchi = rinchi;
+        this.auxInfo = auxInfo;
+        Map<RinchiKeyType, String> keys = new EnumMap<>(RinchiKeyType.class);
+        if (rinchiKeys != null)
+            keys.putAll(rinchiKeys);
+        this.rinchiKeys = Collections.unmodifiableMap(keys);
+    }
+
+    public String getRinchi() {
+        return rinchi;
+    }
+
+    public String getAuxInfo() {
+        return auxInfo;
+    }
+
+    /**
+     * Returns the RInChIKey of the given type.
+     *
+     * @param keyType RInChI-Key type
+     * @return RInChIKey or an empty string if it has not been generated
+     */
+    public String getRinchiKey(RinchiKeyType keyType) {
+        String key = rinchiKeys.get(keyType);
+        return key == null ? "" : key;
+    }
+
+    public String getLongRinchiKey() {
+        return getRinchiKey(RinchiKeyType.LONG);
+    }
+
+    public String getShortRinchiKey() {
+        return getRinchiKey(RinchiKeyType.SHORT);
+    }
+
+    public String getWebRinchiKey() {
+        return getRinchiKey(RinchiKeyType.WEB);
+    }
+
+    public Map<RinchiKeyType, String> getRinchiKeys() {
+        return rinchiKeys;
+    }
+
+    @Override
+    public String toString() {
+        return rinchi;
+    }
+
+}
@@ -20,7 +20,10 @@ package io.github.dan2097.jnarinchi;
 import io.github.dan2097.jnainchi.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class models a particular component of a reaction.
@@ -32,11 +35,18 @@ import java.util.List;
  * RinchiInputComponent adds a {@link ReactionComponentRole component role} and the
  * ability to convert an instance to a String representation.
  * </p>
+ * <p>
+ * Atom indices and the bonds of each atom are looked up in an index that is built on first use
+ * and discarded whenever an atom or bond is added, so that repeated neighbour and bond queries
+ * take constant time instead of scanning the bond list.
+ * </p>
  *
  * @author Nikolay Kochev
  */
 public class RinchiInputComponent extends InchiInput {
     private ReactionComponentRole role = ReactionComponentRole.REAGENT;
+    //Built lazily, reset to null when atoms or bonds are added
+    private volatile Index index = null;
 
     public ReactionComponentRole getRole() {
         return role;
@@ -46,6 +56,30 @@ public class RinchiInputComponent extends InchiInput {
         this.role = role;
     }
 
+    @Override
+    public void addAtom(InchiAtom atom) {
+        super.addAtom(atom);
+        index = null;
+    }
+
+    @Override
+    public void addBond(InchiBond bond) {
+        super.addBond(bond);
+        index = null;
+    }
+
+    /**
+     * Returns the index of <code>atom</code> within the atom list of this component.
+     * The result is the same as <code>getAtoms().indexOf(atom)</code>.
+     *
+     * @param atom the atom
+     * @return index of the atom or -1 if the atom does not belong to this component
+     */
+    public int getAtomIndex(InchiAtom atom) {
+        Integer atomIndex = getIndex().atomIndices.get(atom);
+        return atomIndex == null ? -1 : atomIndex;
+    }
+
     /**
      * Returns a list of atoms that are connected to <code>atom</code>.
      *
@@ -56,13 +90,13 @@ public class RinchiInputComponent extends InchiInput {
         if (atom == null) {
             return null;
         }
-        List<InchiAtom> list = new ArrayList<>();
+        List<InchiBond> bonds = getIndex().getBonds(atom);
+        List<InchiAtom> list = new ArrayList<>(bonds.size());
 
-        for (int i = 0; i < getBonds().size(); i++) {
-            InchiBond bond = getBond(i);
+        for (InchiBond bond : bonds) {
             if (bond.getStart() == atom)
                 list.add(bond.getEnd());
-            else if (bond.getEnd() == atom)
+            else
                 list.add(bond.getStart());
         }
 
@@ -77,8 +111,8 @@ public class RinchiInputComponent extends InchiInput {
      * @return the bond that connects <code>atom1</code> and <code>atom2</code> or <code>null</code> if no such bond exists
      */
     public InchiBond getBond(InchiAtom atom1, InchiAtom atom2) {
-        for (int i = 0; i < getBonds().size(); i++) {
-            InchiBond bond = getBond(i);
+        //The bonds of an atom are in the order of the bond list, so the first match is the same as with a full scan
+        for (InchiBond bond : getIndex().getBonds(atom1)) {
             if ((bond.getStart() == atom1 && bond.getEnd() == atom2) || (bond.getStart() == atom2 && bond.getEnd() == atom1)) {
                 return bond;
             }
@@ -87,6 +121,49 @@ public class RinchiInputComponent extends InchiInput {
         return null;
     }
 
+    private Index getIndex() {
+        Index idx = index;
+        if (idx == null) {
+            idx = new Index(getAtoms(), getBonds());
+            index = idx;
+        }
+        return idx;
+    }
+
+    /**
+     * Atom indices and bonds per atom, both keyed by atom identity like the comparisons in this class.
+     */
+    private static class Index {
+        private final Map<InchiAtom, Integer> atomIndices;
+        private final Map<InchiAtom, List<InchiBond>> atomBonds;
+
+        private Index(List<InchiAtom> atoms, List<InchiBond> bonds) {
+            atomIndices = new IdentityHashMap<>(atoms.size() * 2);
+            for (int i = atoms.size() - 1; i >= 0; i--)
+                atomIndices.put(atoms.get(i), i); //the first occurrence wins, like indexOf
+            atomBonds = new IdentityHashMap<>(atoms.size() * 2);
+            for (InchiBond bond : bonds) {
+                addAtomBond(bond.getStart(), bond);
+                if (bond.getEnd() != bond.getStart())
+                    addAtomBond(bond.getEnd(), bond);
+            }
+        }
+
+        private void addAtomBond(InchiAtom atom, InchiBond bond) {
+            List<InchiBond> list = atomBonds.get(atom);
+            if (list == null) {
+                list = new ArrayList<>(4);
+                atomBonds.put(atom, list);
+            }
+            list.add(bond);
+        }
+
+        private List<InchiBond> getBonds(InchiAtom atom) {
+            List<InchiBond> list = atomBonds.get(atom);
+            return list == null ? Collections.<InchiBond>emptyList() : list;
+        }
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -130,8 +207,8 @@ public class RinchiInputComponent extends InchiInput {
 
     private String bondToString(int i) {
         InchiBond bond = getBond(i);
-        int atomIndex1 = getAtoms().indexOf(bond.getStart()) + 1;
-        int atomIndex2 = getAtoms().indexOf(bond.getEnd()) + 1;
+        int atomIndex1 = getAtomIndex(bond.getStart()) + 1;
+        int atomIndex2 = getAtomIndex(bond.getEnd()) + 1;
 
         StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append(atomIndex1).append(" ").append(atomIndex2).append(" ").append(bond.getType());
@@ -149,25 +226,25 @@ public class RinchiInputComponent extends InchiInput {
 
         switch (stereo.getType()) {
             case Tetrahedral:
-                stringBuilder.append("center ").append(getAtoms().indexOf(stereo.getCentralAtom()) + 1);
+                stringBuilder.append("center ").append(getAtomIndex(stereo.getCentralAtom()) + 1);
                 stringBuilder.append(" ligands");
                 for (int i = 0; i < 4; i++)
-                    stringBuilder.append(" ").append(getAtoms().indexOf(stereo.getAtoms()[i]) + 1);
+                    stringBuilder.append(" ").append(getAtomIndex(stereo.getAtoms()[i]) + 1);
                 break;
             case DoubleBond:
                 stringBuilder.append(" ");
-                stringBuilder.append(getAtoms().indexOf(stereo.getAtoms()[0]) + 1).append(" - ");
-                stringBuilder.append(getAtoms().indexOf(stereo.getAtoms()[1]) + 1).append(" = ");
-                stringBuilder.append(getAtoms().indexOf(stereo.getAtoms()[2]) + 1).append(" - ");
-                stringBuilder.append(getAtoms().indexOf(stereo.getAtoms()[3]) + 1);
+                stringBuilder.append(getAtomIndex(stereo.getAtoms()[0]) + 1).append(" - ");
+                stringBuilder.append(getAtomIndex(stereo.getAtoms()[1]) + 1).append(" = ");
+                stringBuilder.append(getAtomIndex(stereo.getAtoms()[2]) + 1).append(" - ");
+                stringBuilder.append(getAtomIndex(stereo.getAtoms()[3]) + 1);
                 break;
             case Allene:
                 stringBuilder.append(" ");
-                stringBuilder.append(getAtoms().indexOf(stereo.getAtoms()[0]) + 1).append(" - ");
-                stringBuilder.append(getAtoms().indexOf(stereo.getAtoms()[1]) + 1).append(" = ");
-                stringBuilder.append(getAtoms().indexOf(stereo.getCentralAtom()) + 1).append(" = ");
-                stringBuilder.append(getAtoms().indexOf(stereo.getAtoms()[2]) + 1).append(" - ");
-                stringBuilder.append(getAtoms().indexOf(stereo.getAtoms()[3]) + 1);
+                stringBuilder.append(getAtomIndex(stereo.getAtoms()[0]) + 1).append(" - ");
+                stringBuilder.append(getAtomIndex(stereo.getAtoms()[1]) + 1).append(" = ");
+                stringBuilder.append(getAtomIndex(stereo.getCentralAtom()) + 1).append(" = ");
+                stringBuilder.append(getAtomIndex(stereo.getAtoms()[2]) + 1).append(" - ");
+                stringBuilder.append(getAtomIndex(stereo.getAtoms()[3]) + 1);
                 break;
             case None:
                 break;
@@ -0,0 +1,464 @@
+/**
+ * JNA-RInChI - Library for calling RInChI from Java
+ * Copyright © 2022 Nikolay Kochev
+ * <p>
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnarinchi;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Pure-Java generation of Long, Short and Web RInChIKeys from a RInChI string.
+ * The keys are identical to those of the native function <code>rinchilib_rinchikey_from_rinchi</code>.
+ * <br>
+ * No native code and no lock is involved, so keys can be generated from any number of threads
+ * and in environments where the RInChI library is not available.
+ * <p>
+ * The RInChI is put into canonical form (components sorted within their groups, reactants and products swapped
+ * if not in alphabetical order) the same way the native library does before hashing.
+ * The RInChI is parsed by {@link RinchiView}, so its InChIs are checked against the InChI layer syntax,
+ * but not whether they describe valid structures.
+ *
+ * @see JnaRinchi#rinchiToRinchiKey(RinchiKeyType, String)
+ */
+public class RinchiKeyGenerator {
+
+    private static final String LONG_KEY_HEADER = "Long-RInChIKey=";
+    private static final String SHORT_KEY_HEADER = "Short-RInChIKey=";
+    private static final String WEB_KEY_HEADER = "Web-RInChIKey=";
+    private static final String KEY_VERSION = "SA";
+    //First characters of the hash of an empty string, reserved by RInChI
+    private static final String RESERVED_FLAGS = "UHFF";
+    private static final String INCHI_STD_FLAG = "SA";
+    private static final String NO_STRUCTURE_INCHI = "/";
+    private static final String NO_STRUCTURE_INCHIKEY = "MOSFIJXAXDLOML-UHFFFAOYSA-N";
+    private static final int MINOR_HASH_DOUBLING_LIMIT = 255;
+    private static final int MAX_PROTONATION = 12;
+    private static final int MAX_NO_STRUCTURE_COUNT = 25;
+    private static final int NUMBER_OF_GROUPS = 3;
+
+    //Base-26 encoding tables of the InChIKey: 14 bits per triplet and 9 bits per doublet
+    private static final String[] TRIPLETS = new String[16384];
+    private static final String[] DOUBLETS = new String[512];
+
+    static {
+        int n = 0;
+        for (char c1 = 'A'; c1 <= 'Z'; c1++) {
+            //Triplets never start with 'E' and the range TAA..TTV is not used
+            if (c1 == 'E')
+                continue;
+            for (char c2 = 'A'; c2 <= 'Z'; c2++) {
+                for (char c3 = 'A'; c3 <= 'Z'; c3++) {
+                    if (c1 == 'T' && (c2 < 'T' || (c2 == 'T' && c3 < 'W')))
+                        continue;
+                    TRIPLETS[n++] = new String(new char[]{c1, c2, c3});
+                }
+            }
+        }
+        n = 0;
+        for (char c1 = 'A'; n < DOUBLETS.length; c1++)
+            for (char c2 = 'A'; c2 <= 'Z' && n < DOUBLETS.length; c2++)
+                DOUBLETS[n++] = new String(new char[]{c1, c2});
+    }
+
+    private static final int[] SHA256_K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    private static final int[] SHA256_H0 = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    private RinchiKeyGenerator() {
+    }
+
+    /**
+     * Generates a RInChIKey of the given type from a RInChI string.
+     * <br>
+     * Returns an output with status {@link Status#ERROR} if the RInChI layout is not valid,
+     * or if a protonation layer does not fit in an integer, whatever the key type.
+     *
+     * @param keyType the type of RInChIKey
+     * @param rinchi input RInChI string
+     * @return result RinchiKeyOutput object
+     */
+    public static RinchiKeyOutput toRinchiKey(RinchiKeyType keyType, String rinchi) {
+        if (keyType == null)
+            throw new IllegalArgumentException("The argument 'keyType' must not be null.");
+        if (rinchi == null)
+            throw new IllegalArgumentException("The argument 'rinchi' must not be null.");
+
+        String invalidProtonation = findInvalidProtonation(rinchi);
+        if (invalidProtonation != null)
+            return new RinchiKeyOutput("", keyType, Status.ERROR, 1,
+                    "rinchi::BadConversion: str2int: \"" + invalidProtonation + "\" is not a valid integer.");
+
+        ParsedRinchi parsed;
+        try {
+            parsed = new ParsedRinchi(rinchi);
+        } catch (IllegalArgumentException e) {
+            return new RinchiKeyOutput("", keyType, Status.ERROR, 1, e.getMessage());
+        }
+
+        String rinchiKey;
+        switch (keyType) {
+            case LONG:
+                rinchiKey = toLongKey(parsed);
+                break;
+            case SHORT:
+                rinchiKey = toShortKey(parsed);
+                break;
+            default:
+                rinchiKey = toWebKey(parsed);
+                break;
+        }
+        return new RinchiKeyOutput(rinchiKey, keyType, Status.SUCCESS, 0, "");
+    }
+
+    /**
+     * Returns the first protonation layer value, such as "+99999999999", that is a number but does not fit in an integer.
+     * The native library rejects these for Short and Web keys but not for Long keys; they are rejected for all key types.
+     *
+     * @return the value, <code>null</code> if there is none
+     */
+    static String findInvalidProtonation(String rinchi) {
+        for (int pos = rinchi.indexOf('p'); pos > 0; pos = rinchi.indexOf('p', pos + 1)) {
+            char previous = rinchi.charAt(pos - 1);
+            if (previous != '/' && previous != RinchiAssembler.COMPONENT_DELIMITER && previous != '>')
+                continue;
+            int end = pos + 1;
+            while (end < rinchi.length() && "/!<".indexOf(rinchi.charAt(end)) < 0)
+                end++;
+            int digitsStart = pos + 1;
+            if (digitsStart < end && (rinchi.charAt(digitsStart) == '+' || rinchi.charAt(digitsStart) == '-'))
+                digitsStart++;
+            if (digitsStart == end)
+                continue;
+            boolean digits = true;
+            for (int i = digitsStart; i < end && digits; i++)
+                digits = rinchi.charAt(i) >= '0' && rinchi.charAt(i) <= '9';
+            if (!digits)
+                continue;
+            String value = rinchi.substring(pos + 1, end);
+            try {
+                Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static String toLongKey(ParsedRinchi parsed) {
+        StringBuilder sb = new StringBuilder(LONG_KEY_HEADER);
+        appendHeader(sb, parsed);
+        int lastGroup = NUMBER_OF_GROUPS - 1;
+        while (lastGroup >= 0 && parsed.groups.get(lastGroup).isEmpty() && parsed.noStructures[lastGroup] == 0)
+            lastGroup--;
+        for (int g = 0; g <= lastGroup; g++) {
+            sb.append(g == 0 ? "-" : "--");
+            boolean first = true;
+            for (String inchi : parsed.groups.get(g)) {
+                if (!first)
+                    sb.append('-');
+                sb.append(toInchiKey(inchi));
+                first = false;
+            }
+            for (int k = 0; k < parsed.noStructures[g]; k++) {
+                if (!first)
+                    sb.append('-');
+                sb.append(NO_STRUCTURE_INCHIKEY);
+                first = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String toShortKey(ParsedRinchi parsed) {
+        StringBuilder sb = new StringBuilder(SHORT_KEY_HEADER);
+        appendHeader(sb, parsed);
+        String[][] layers = new String[NUMBER_OF_GROUPS][];
+        for (int g = 0; g < NUMBER_OF_GROUPS; g++) {
+            layers[g] = splitGroup(parsed.groups.get(g));
+            sb.append('-').append(encodeMajor(sha256(layers[g][0])), 0, 10);
+        }
+        for (int g = 0; g < NUMBER_OF_GROUPS; g++) {
+            sb.append('-').append(layers[g][2]);
+            sb.append(encodeMajor(sha256(layers[g][1])), 0, 4);
+        }
+        sb.append('-');
+        for (int g = 0; g < NUMBER_OF_GROUPS; g++) {
+            int count = Math.min(parsed.noStructures[g], MAX_NO_STRUCTURE_COUNT);
+            sb.append(count == 0 ? 'Z' : (char) ('A' + count - 1));
+        }
+        return sb.toString();
+    }
+
+    private static String toWebKey(ParsedRinchi parsed) {
+        //Each distinct component counts once, irrespective of its role
+        TreeSet<String> inchis = new TreeSet<>();
+        boolean noStructure = false;
+        for (int g = 0; g < NUMBER_OF_GROUPS; g++) {
+            inchis.addAll(parsed.groups.get(g));
+            noStructure |= parsed.noStructures[g] > 0;
+        }
+        if (noStructure)
+            inchis.add(NO_STRUCTURE_INCHI);
+        String[] layers = splitGroup(new ArrayList<>(inchis));
+
+        StringBuilder sb = new StringBuilder(WEB_KEY_HEADER);
+        byte[] hash = sha256(layers[0]);
+        sb.append(encodeMajor(hash));
+        sb.append(TRIPLETS[u(hash[8]) | (u(hash[9]) & 0x3f) << 8]);
+        sb.append('-').append(layers[2]);
+        sb.append(encodeMajor(sha256(layers[1])), 0, 12);
+        sb.append(KEY_VERSION);
+        return sb.toString();
+    }
+
+    private static void appendHeader(StringBuilder sb, ParsedRinchi parsed) {
+        sb.append(KEY_VERSION).append('-').append(parsed.direction).append(RESERVED_FLAGS);
+    }
+
+    /**
+     * Splits the InChIs of a group into their major and minor layers.
+     *
+     * @return the joined major layers, the joined minor layers and the protonation character
+     */
+    private static String[] splitGroup(List<String> inchis) {
+        StringBuilder majors = new StringBuilder();
+        StringBuilder minors = new StringBuilder();
+        //Leading components without minor layers are left out of the minor layers
+        boolean hasMinor = false;
+        long protons = 0;
+        for (int i = 0; i < inchis.size(); i++) {
+            String[] layers = splitInchi(inchis.get(i));
+            if (i > 0)
+                majors.append(RinchiAssembler.COMPONENT_DELIMITER);
+            majors.append(layers[0]);
+            if (hasMinor)
+                minors.append(RinchiAssembler.COMPONENT_DELIMITER);
+            minors.append(layers[1]);
+            hasMinor |= !layers[1].isEmpty();
+            protons += getProtons(layers[2]);
+        }
+        return new String[]{majors.toString(), minors.toString(), String.valueOf(getProtonationChar(protons))};
+    }
+
+    /**
+     * Splits an InChI without its prefix into the major layers (formula, connections, hydrogens, charge),
+     * the minor layers (stereo, isotopic, fixed hydrogen, reconnected) and the protonation layer.
+     */
+    private static String[] splitInchi(String inchi) {
+        int end = inchi.indexOf('/');
+        if (end < 0)
+            return new String[]{inchi, "", ""};
+        StringBuilder major = new StringBuilder(inchi.length());
+        major.append(inchi, 0, end);
+        StringBuilder minor = new StringBuilder();
+        String protonation = "";
+        boolean inMinor = false;
+        while (end < inchi.length()) {
+            int start = end + 1;
+            end = inchi.indexOf('/', start);
+            if (end < 0)
+                end = inchi.length();
+            char prefix = start < end ? inchi.charAt(start) : ' ';
+            if (prefix == 'p') {
+                protonation = inchi.substring(start + 1, end);
+                continue;
+            }
+            if ("btmsifr".indexOf(prefix) >= 0)
+                inMinor = true;
+            if (inMinor) {
+                if (minor.length() > 0)
+                    minor.append('/');
+                minor.append(inchi, start, end);
+            }
+            else
+                major.append('/').append(inchi, start, end);
+        }
+        return new String[]{major.toString(), minor.toString(), protonation};
+    }
+
+    private static int getProtons(String protonation) {
+        return protonation.isEmpty() ? 0 : Integer.parseInt(protonation);
+    }
+
+    private static char getProtonationChar(long protons) {
+        if (Math.abs(protons) > MAX_PROTONATION)
+            return 'A';
+        return (char) ('N' + protons);
+    }
+
+    /**
+     * Generates the standard InChIKey of an InChI given without its "InChI=1S/" prefix.
+     */
+    static String toInchiKey(String inchi) {
+        String[] layers = splitInchi(inchi);
+        String minor = layers[1].isEmpty() ? "" : "/" + layers[1];
+        if (minor.length() < MINOR_HASH_DOUBLING_LIMIT)
+            minor = minor + minor;
+        return encodeMajor(sha256(layers[0])) + "-" + encodeMinor(sha256(minor))
+                + INCHI_STD_FLAG + "-" + getProtonationChar(getProtons(layers[2]));
+    }
+
+    private static int u(byte b) {
+        return b & 0xff;
+    }
+
+    //First 65 bits of the hash as four triplets and a doublet
+    private static String encodeMajor(byte[] h) {
+        int t1 = u(h[0]) | (u(h[1]) & 0x3f) << 8;
+        int t2 = ((u(h[1]) & 0xc0) | u(h[2]) << 8 | (u(h[3]) & 0x0f) << 16) >> 6;
+        int t3 = ((u(h[3]) & 0xf0) | u(h[4]) << 8 | (u(h[5]) & 0x03) << 16) >> 4;
+        int t4 = ((u(h[5]) & 0xfc) | u(h[6]) << 8) >> 2;
+        int d = u(h[7]) | (u(h[8]) & 0x01) << 8;
+        return TRIPLETS[t1] + TRIPLETS[t2] + TRIPLETS[t3] + TRIPLETS[t4] + DOUBLETS[d];
+    }
+
+    //First 37 bits of the hash as two triplets and a doublet
+    private static String encodeMinor(byte[] h) {
+        int t1 = u(h[0]) | (u(h[1]) & 0x3f) << 8;
+        int t2 = ((u(h[1]) & 0xc0) | u(h[2]) << 8 | (u(h[3]) & 0x0f) << 16) >> 6;
+        int d = ((u(h[3]) & 0xf0) | (u(h[4]) & 0x1f) << 8) >> 4;
+        return TRIPLETS[t1] + TRIPLETS[t2] + DOUBLETS[d];
+    }
+
+    /**
+     * SHA-256 of the ASCII bytes of a string.
+     * Implemented here rather than with MessageDigest so that it is also available in the JavaScript build.
+     */
+    static byte[] sha256(String s) {
+        byte[] data = s.getBytes(StandardCharsets.US_ASCII);
+        int nBlocks = (data.length + 9 + 63) / 64;
+        byte[] padded = new byte[nBlocks * 64];
+        System.arraycopy(data, 0, padded, 0, data.length);
+        padded[data.length] = (byte) 0x80;
+        long bitLength = 8L * data.length;
+        for (int i = 0; i < 8; i++)
+            padded[padded.length - 1 - i] = (byte) (bitLength >>> (8 * i));
+
+        int[] h = SHA256_H0.clone();
+        int[] w = new int[64];
+        for (int block = 0; block < nBlocks; block++) {
+            int offset = block * 64;
+            for (int i = 0; i < 16; i++) {
+                int p = offset + 4 * i;
+                w[i] = u(padded[p]) << 24 | u(padded[p + 1]) << 16 | u(padded[p + 2]) << 8 | u(padded[p + 3]);
+            }
+            for (int i = 16; i < 64; i++) {
+                int s0 = Integer.rotateRight(w[i - 15], 7) ^ Integer.rotateRight(w[i - 15], 18) ^ (w[i - 15] >>> 3);
+                int s1 = Integer.rotateRight(w[i - 2], 17) ^ Integer.rotateRight(w[i - 2], 19) ^ (w[i - 2] >>> 10);
+                w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+            }
+            int a = h[0], b = h[1], c = h[2], d = h[3], e = h[4], f = h[5], g = h[6], hh = h[7];
+            for (int i = 0; i < 64; i++) {
+                int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+                int t1 = hh + s1 + ((e & f) ^ (~e & g)) + SHA256_K[i] + w[i];
+                int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+                int t2 = s0 + ((a & b) ^ (a & c) ^ (b & c));
+                hh = g;
+                g = f;
+                f = e;
+                e = d + t1;
+                d = c;
+                c = b;
+                b = a;
+                a = t1 + t2;
+            }
+            h[0] += a;
+            h[1] += b;
+            h[2] += c;
+            h[3] += d;
+            h[4] += e;
+            h[5] += f;
+            h[6] += g;
+            h[7] += hh;
+        }
+
+        byte[] digest = new byte[32];
+        for (int i = 0; i < 32; i++)
+            digest[i] = (byte) (h[i / 4] >>> (24 - 8 * (i % 4)));
+        return digest;
+    }
+
+    /**
+     * A RInChI split into its groups of component InChIs (without the "InChI=1S/" prefix),
+     * no-structure counts and direction, in canonical form.
+     */
+    private static class ParsedRinchi {
+        final List<List<String>> groups = new ArrayList<>();
+        final int[] noStructures = new int[NUMBER_OF_GROUPS];
+        final char direction;
+
+        ParsedRinchi(String rinchi) {
+            RinchiView view = RinchiView.parse(rinchi);
+            for (int g = 0; g < NUMBER_OF_GROUPS; g++) {
+                List<String> group = new ArrayList<>();
+                for (int i = 0; i < view.getGroupSize(g); i++)
+                    group.add(view.getGroupInchiLayers(g, i));
+                Collections.sort(group);
+                groups.add(group);
+                noStructures[g] = view.getNoStructureCount(g);
+            }
+            ReactionDirection reactionDirection = view.getDirection();
+
+            //A backward reaction is first turned into a forward one, then reactants and products
+            //are swapped if not in alphabetical order
+            if (reactionDirection == ReactionDirection.BACKWARD) {
+                swapReactantsAndProducts();
+                reactionDirection = ReactionDirection.FORWARD;
+            }
+            String reactants = String.join(String.valueOf(RinchiAssembler.COMPONENT_DELIMITER), groups.get(0));
+            String products = String.join(String.valueOf(RinchiAssembler.COMPONENT_DELIMITER), groups.get(1));
+            if (reactants.compareTo(products) > 0) {
+                swapReactantsAndProducts();
+                if (reactionDirection == ReactionDirection.FORWARD)
+                    reactionDirection = ReactionDirection.BACKWARD;
+            }
+            direction = getKeyDirectionChar(reactionDirection);
+        }
+
+        private void swapReactantsAndProducts() {
+            Collections.swap(groups, 0, 1);
+            int n = noStructures[0];
+            noStructures[0] = noStructures[1];
+            noStructures[1] = n;
+        }
+
+        private static char getKeyDirectionChar(ReactionDirection direction) {
+            switch (direction) {
+                case BACKWARD:
+                    return 'B';
+                case EQUILIBRIUM:
+                    return 'E';
+                default:
+                    return 'F';
+            }
+        }
+    }
+}
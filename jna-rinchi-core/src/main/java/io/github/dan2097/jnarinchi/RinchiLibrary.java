@@ -22,6 +22,8 @@ import com.sun.jna.Native;
 import com.sun.jna.NativeLibrary;
 import com.sun.jna.ptr.PointerByReference;
 
+import io.github.dan2097.jnainchi.inchi.NativeLibraryCache;
+
 /**
  * JNA Wrapper for library <b>rinchi</b>.
  *
@@ -29,6 +31,9 @@ import com.sun.jna.ptr.PointerByReference;
  */
 public class RinchiLibrary implements Library {
     public static final String JNA_LIBRARY_NAME = "rinchi";
+    static {
+        NativeLibraryCache.register(RinchiLibrary.JNA_LIBRARY_NAME, RinchiLibrary.class);
+    }
     public static final NativeLibrary JNA_NATIVE_LIB = NativeLibrary.getInstance(RinchiLibrary.JNA_LIBRARY_NAME);
 
     static {
@@ -0,0 +1,707 @@
+/**
+ * JNA-RInChI - Library for calling RInChI from Java
+ * Copyright © 2022 Nikolay Kochev
+ * <p>
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnarinchi;
+
+import io.github.dan2097.jnarinchi.cheminfo.PeriodicTable;
+
+/**
+ * Read-only view of the reaction components of a RInChI and, optionally, its RAuxInfo.
+ * <p>
+ * Parsing only records the positions of the component InChIs and AuxInfos within the given strings;
+ * the components are returned as {@link CharSequence} views onto these strings, so no text is copied
+ * until a component is converted with <code>toString()</code>.
+ * No native code and no lock is involved, so RInChIs can be decomposed from any number of threads.
+ * </p>
+ * <p>
+ * The components are in the same order as those of the native function <code>rinchilib_inchis_from_rinchi</code>:
+ * reactants, products and agents, each followed by their no-structure components. For a backward reaction
+ * the first group of the RInChI holds the products and the second group the reactants.
+ * The InChIs are checked against the layer syntax of standard InChIs, but not whether they describe valid structures.
+ * </p>
+ *
+ * @see JnaRinchi#decomposeRinchi(String, String)
+ */
+public class RinchiView {
+
+    private static final String NO_STRUCTURE_INCHI = RinchiAssembler.INCHI_STD_HEADER + "/";
+    private static final String NO_STRUCTURE_AUXINFO = RinchiAssembler.INCHI_AUXINFO_HEADER + "/";
+    private static final int NUMBER_OF_GROUPS = 3;
+    private static final int NO_STRUCTURE = -1;
+    //Prefixes of the layers of a standard InChI after the formula, in their order, and of the isotopic sublayers
+    private static final String MAIN_LAYERS = "chqpbtmsi";
+    private static final String ISOTOPIC_LAYERS = "hbtms";
+
+    private final String rinchi;
+    private final String auxInfo;
+    private final ReactionDirection direction;
+    private final int[] noStructures = new int[NUMBER_OF_GROUPS];
+    //Positions of the components in the order of the groups of the RInChI
+    private final int[] groupSizes = new int[NUMBER_OF_GROUPS];
+    private final int[] groupInchiStarts;
+    private final int[] groupInchiEnds;
+    private final int[] groupAuxInfoStarts;
+    private final int[] groupAuxInfoEnds;
+    //Components in decomposition order, as indices into the group arrays or NO_STRUCTURE
+    private final int[] components;
+    private final ReactionComponentRole[] roles;
+
+    private RinchiView(String rinchi, String auxInfo) {
+        this.rinchi = rinchi;
+        this.auxInfo = auxInfo;
+        if (!rinchi.startsWith(RinchiAssembler.RINCHI_STD_HEADER))
+            throw new IllegalArgumentException("Invalid or incompatible RInChI header.");
+        int bodyStart = RinchiAssembler.RINCHI_STD_HEADER.length();
+        int bodyEnd = rinchi.length();
+
+        //The direction and no-structure layers follow the groups, in either order
+        int directionStart = -1;
+        int directionEnd = -1;
+        int noStructureStart = -1;
+        int noStructureEnd = -1;
+        while (bodyEnd > bodyStart) {
+            int pos = rinchi.lastIndexOf('/', bodyEnd - 1);
+            if (pos < bodyStart)
+                break;
+            if (rinchi.startsWith(RinchiAssembler.DIRECTION_LAYER, pos)) {
+                if (directionStart >= 0)
+                    throw new IllegalArgumentException("Duplicate direction tag in RInChI input string.");
+                directionStart = pos + 2;
+                directionEnd = bodyEnd;
+            } else if (rinchi.startsWith(RinchiAssembler.NO_STRUCTURE_LAYER, pos)) {
+                if (noStructureStart >= 0)
+                    throw new IllegalArgumentException("Duplicate No-Structure tag in RInChI input string.");
+                noStructureStart = pos + 2;
+                noStructureEnd = bodyEnd;
+            } else
+                break;
+            bodyEnd = pos;
+        }
+
+        ReactionDirection reactionDirection = ReactionDirection.FORWARD;
+        if (directionStart >= 0) {
+            reactionDirection = directionEnd - directionStart != 1 ? null
+                    : ReactionDirection.getDirectionFromShortDesignation(rinchi.substring(directionStart, directionEnd));
+            if (reactionDirection == null)
+                throw new IllegalArgumentException("Invalid reaction direction '" + rinchi.substring(directionStart, directionEnd) + "'.");
+        }
+        direction = reactionDirection;
+        if (noStructureStart >= 0)
+            parseNoStructureCounts(noStructureStart, noStructureEnd);
+
+        int nComponents = countComponents(rinchi, bodyStart, bodyEnd);
+        groupInchiStarts = new int[nComponents];
+        groupInchiEnds = new int[nComponents];
+        splitGroups(rinchi, bodyStart, bodyEnd, groupSizes, groupInchiStarts, groupInchiEnds);
+        for (int i = 0; i < nComponents; i++)
+            checkInchi(groupInchiStarts[i], groupInchiEnds[i]);
+
+        if (auxInfo.isEmpty()) {
+            groupAuxInfoStarts = null;
+            groupAuxInfoEnds = null;
+        } else {
+            if (!auxInfo.startsWith(RinchiAssembler.RINCHI_AUXINFO_HEADER))
+                throw new IllegalArgumentException("Invalid or incompatible RAuxInfo header.");
+            int auxStart = RinchiAssembler.RINCHI_AUXINFO_HEADER.length();
+            int[] auxGroupSizes = new int[NUMBER_OF_GROUPS];
+            int nAuxComponents = countComponents(auxInfo, auxStart, auxInfo.length());
+            groupAuxInfoStarts = new int[nAuxComponents];
+            groupAuxInfoEnds = new int[nAuxComponents];
+            splitGroups(auxInfo, auxStart, auxInfo.length(), auxGroupSizes, groupAuxInfoStarts, groupAuxInfoEnds);
+            for (int g = 0; g < NUMBER_OF_GROUPS; g++)
+                if (auxGroupSizes[g] != groupSizes[g])
+                    throw new IllegalArgumentException("The components of RAuxInfo do not match those of RInChI.");
+        }
+
+        int nTotal = nComponents;
+        for (int g = 0; g < NUMBER_OF_GROUPS; g++)
+            nTotal += noStructures[g];
+        components = new int[nTotal];
+        roles = new ReactionComponentRole[nTotal];
+        int n = 0;
+        for (ReactionComponentRole role : ReactionComponentRole.values()) {
+            int group = getGroup(role);
+            int groupStart = 0;
+            for (int g = 0; g < group; g++)
+                groupStart += groupSizes[g];
+            for (int i = 0; i < groupSizes[group]; i++) {
+                components[n] = groupStart + i;
+                roles[n++] = role;
+            }
+            for (int i = 0; i < noStructures[group]; i++) {
+                components[n] = NO_STRUCTURE;
+                roles[n++] = role;
+            }
+        }
+    }
+
+    /**
+     * Parses the reaction components of a RInChI.
+     *
+     * @param rinchi input RInChI string
+     * @return view of the components of the RInChI
+     * @throws IllegalArgumentException if the layout of the RInChI is not valid
+     */
+    public static RinchiView parse(String rinchi) {
+        return parse(rinchi, "");
+    }
+
+    /**
+     * Parses the reaction components of a RInChI and its RAuxInfo.
+     * If RAuxInfo is not present an empty string should be given, the AuxInfos of all components are then empty.
+     *
+     * @param rinchi input RInChI string
+     * @param auxInfo input RAuxInfo string
+     * @return view of the components of the RInChI
+     * @throws IllegalArgumentException if the layout of the RInChI or RAuxInfo is not valid
+     * or RAuxInfo does not have the same components as RInChI
+     */
+    public static RinchiView parse(String rinchi, String auxInfo) {
+        if (rinchi == null)
+            throw new IllegalArgumentException("The argument 'rinchi' must not be null.");
+        if (auxInfo == null)
+            throw new IllegalArgumentException("The argument 'auxInfo' must not be null.");
+        return new RinchiView(rinchi, auxInfo);
+    }
+
+    /**
+     * Returns the RInChI string this view refers to.
+     *
+     * @return RInChI string
+     */
+    public String getRinchi() {
+        return rinchi;
+    }
+
+    /**
+     * Returns the RAuxInfo string this view refers to.
+     *
+     * @return RAuxInfo string, empty if not given
+     */
+    public String getAuxInfo() {
+        return auxInfo;
+    }
+
+    /**
+     * Returns the reaction direction, {@link ReactionDirection#FORWARD} if the RInChI has no direction layer.
+     *
+     * @return reaction direction
+     */
+    public ReactionDirection getDirection() {
+        return direction;
+    }
+
+    /**
+     * Returns the number of components, including no-structure components.
+     *
+     * @return number of components
+     */
+    public int getNumberOfComponents() {
+        return components.length;
+    }
+
+    /**
+     * Returns the role of a component.
+     *
+     * @param index component index
+     * @return component role
+     */
+    public ReactionComponentRole getRole(int index) {
+        return roles[index];
+    }
+
+    /**
+     * Returns whether a component is a no-structure component.
+     *
+     * @param index component index
+     * @return <code>true</code> for a no-structure component
+     */
+    public boolean isNoStructure(int index) {
+        return components[index] == NO_STRUCTURE;
+    }
+
+    /**
+     * Returns the InChI of a component as a view onto the RInChI string, including the "InChI=1S/" prefix.
+     * The InChI of a no-structure component is "InChI=1S//".
+     *
+     * @param index component index
+     * @return component InChI
+     */
+    public CharSequence getInchi(int index) {
+        int component = components[index];
+        if (component == NO_STRUCTURE)
+            return NO_STRUCTURE_INCHI;
+        return new ComponentText(RinchiAssembler.INCHI_STD_HEADER, rinchi,
+                groupInchiStarts[component], groupInchiEnds[component]);
+    }
+
+    /**
+     * Returns the AuxInfo of a component as a view onto the RAuxInfo string, including the "AuxInfo=1/" prefix.
+     * The AuxInfo of a no-structure component is "AuxInfo=1//". All AuxInfos are empty if no RAuxInfo was given.
+     *
+     * @param index component index
+     * @return component AuxInfo
+     */
+    public CharSequence getAuxInfo(int index) {
+        if (groupAuxInfoStarts == null)
+            return "";
+        int component = components[index];
+        if (component == NO_STRUCTURE)
+            return NO_STRUCTURE_AUXINFO;
+        return new ComponentText(RinchiAssembler.INCHI_AUXINFO_HEADER, auxInfo,
+                groupAuxInfoStarts[component], groupAuxInfoEnds[component]);
+    }
+
+    /**
+     * Converts this view into a decomposition output, with the same content as the output of the native library.
+     *
+     * @return decomposition output
+     */
+    public RinchiDecompositionOutput toDecompositionOutput() {
+        int n = getNumberOfComponents();
+        String[] inchis = new String[n];
+        String[] auxInfos = new String[n];
+        for (int i = 0; i < n; i++) {
+            inchis[i] = getInchi(i).toString();
+            auxInfos[i] = getAuxInfo(i).toString();
+        }
+        return new RinchiDecompositionOutput(direction, inchis, auxInfos, roles.clone(), Status.SUCCESS, 0, "");
+    }
+
+    /**
+     * Returns the number of structures in a group of the RInChI, in the order of the RInChI.
+     */
+    int getGroupSize(int group) {
+        return groupSizes[group];
+    }
+
+    /**
+     * Returns the number of no-structures in a group of the RInChI, in the order of the RInChI.
+     */
+    int getNoStructureCount(int group) {
+        return noStructures[group];
+    }
+
+    /**
+     * Returns a component InChI without the "InChI=1S/" prefix by its position in the groups of the RInChI.
+     */
+    String getGroupInchiLayers(int group, int index) {
+        int component = index;
+        for (int g = 0; g < group; g++)
+            component += groupSizes[g];
+        return rinchi.substring(groupInchiStarts[component], groupInchiEnds[component]);
+    }
+
+    /**
+     * Returns the group of the RInChI that holds the components of a role.
+     */
+    private int getGroup(ReactionComponentRole role) {
+        switch (role) {
+            case REAGENT:
+                return direction == ReactionDirection.BACKWARD ? 1 : 0;
+            case PRODUCT:
+                return direction == ReactionDirection.BACKWARD ? 0 : 1;
+            default:
+                return 2;
+        }
+    }
+
+    private void parseNoStructureCounts(int start, int end) {
+        int g = 0;
+        int fieldStart = start;
+        for (int pos = start; pos <= end; pos++) {
+            if (pos < end && rinchi.charAt(pos) != '-')
+                continue;
+            if (g == NUMBER_OF_GROUPS || !isDigits(rinchi, fieldStart, pos))
+                throw new IllegalArgumentException("Invalid No-Structure count format in '" + rinchi.substring(start, end) + "'.");
+            noStructures[g++] = Integer.parseInt(rinchi.substring(fieldStart, pos));
+            fieldStart = pos + 1;
+        }
+        if (g != NUMBER_OF_GROUPS)
+            throw new IllegalArgumentException("Invalid No-Structure count format in '" + rinchi.substring(start, end) + "'.");
+    }
+
+    /**
+     * Counts the components of the groups between start and end.
+     */
+    private static int countComponents(String s, int start, int end) {
+        int n = 0;
+        int groupStart = start;
+        for (int g = 0; g < NUMBER_OF_GROUPS; g++) {
+            int groupEnd = findGroupEnd(s, groupStart, end);
+            if (groupEnd > groupStart) {
+                n++;
+                for (int pos = groupStart; pos < groupEnd; pos++)
+                    if (s.charAt(pos) == RinchiAssembler.COMPONENT_DELIMITER)
+                        n++;
+            }
+            if (groupEnd == end)
+                break;
+            groupStart = groupEnd + RinchiAssembler.GROUP_DELIMITER.length();
+        }
+        return n;
+    }
+
+    /**
+     * Records the positions of the components of the groups between start and end.
+     */
+    private static void splitGroups(String s, int start, int end, int[] groupSizes, int[] starts, int[] ends) {
+        int n = 0;
+        int groupStart = start;
+        for (int g = 0; ; g++) {
+            if (g == NUMBER_OF_GROUPS)
+                throw new IllegalArgumentException("Too many component groups.");
+            int groupEnd = findGroupEnd(s, groupStart, end);
+            if (groupEnd > groupStart) {
+                int componentStart = groupStart;
+                for (int pos = groupStart; pos <= groupEnd; pos++) {
+                    if (pos < groupEnd && s.charAt(pos) != RinchiAssembler.COMPONENT_DELIMITER)
+                        continue;
+                    if (pos == componentStart)
+                        throw new IllegalArgumentException("Empty component.");
+                    starts[n] = componentStart;
+                    ends[n++] = pos;
+                    groupSizes[g]++;
+                    componentStart = pos + 1;
+                }
+            }
+            if (groupEnd == end)
+                return;
+            groupStart = groupEnd + RinchiAssembler.GROUP_DELIMITER.length();
+        }
+    }
+
+    private static int findGroupEnd(String s, int start, int end) {
+        int pos = s.indexOf(RinchiAssembler.GROUP_DELIMITER, start);
+        return pos < 0 || pos >= end ? end : pos;
+    }
+
+    /**
+     * Checks a component InChI against the layer syntax of standard InChIs: the formula with valid element
+     * symbols, the known layers in their fixed order and the characters each layer may contain.
+     * The number of hydrogens of the main hydrogen layer must not exceed that of the formula.
+     * Anything else the native InChI parser could reject is rejected too; as rejected RInChIs are passed
+     * to the native library this only affects speed, never the result.
+     */
+    private void checkInchi(int start, int end) {
+        int pos = start;
+        String layers = MAIN_LAYERS;
+        int layerIndex = -1;
+        long formulaHydrogens = -1;
+        long hydrogens = 0;
+        if (rinchi.charAt(start) == 'p')
+            pos--;
+        else {
+            pos = findLayerEnd(start, end);
+            formulaHydrogens = checkFormula(start, pos);
+        }
+        while (pos < end) {
+            int layerStart = pos + 1;
+            int layerEnd = findLayerEnd(layerStart, end);
+            if (layerEnd - layerStart < 2)
+                throw invalidInchi(start, end);
+            char prefix = rinchi.charAt(layerStart);
+            int next = layers.indexOf(prefix, layerIndex + 1);
+            if (next < 0)
+                throw invalidInchi(start, end);
+            layerIndex = next;
+            boolean isotopic = layers == ISOTOPIC_LAYERS;
+            switch (prefix) {
+                case 'h':
+                    if (isotopic)
+                        checkChars(layerStart + 1, layerEnd, "0123456789-,;*HDT", start, end);
+                    else
+                        hydrogens = checkHydrogens(layerStart + 1, layerEnd, start, end);
+                    break;
+                case 'q':
+                    for (int itemStart = layerStart + 1; itemStart <= layerEnd; ) {
+                        int itemEnd = findChar(';', itemStart, layerEnd);
+                        if (itemEnd > itemStart)
+                            checkSignedNumber(skipMultiplier(itemStart, itemEnd), itemEnd, start, end);
+                        itemStart = itemEnd + 1;
+                    }
+                    break;
+                case 'p':
+                    checkSignedNumber(layerStart + 1, layerEnd, start, end);
+                    break;
+                case 'c':
+                    checkChars(layerStart + 1, layerEnd, "0123456789-(),;*", start, end);
+                    break;
+                case 'b':
+                    checkParities(layerStart + 1, layerEnd, true, start, end);
+                    break;
+                case 't':
+                    checkParities(layerStart + 1, layerEnd, false, start, end);
+                    break;
+                case 'm':
+                    checkChars(layerStart + 1, layerEnd, "0123456789.", start, end);
+                    break;
+                case 's':
+                    checkChars(layerStart + 1, layerEnd, "0123456789", start, end);
+                    break;
+                case 'i':
+                    checkChars(layerStart + 1, layerEnd, "0123456789-+,;*HDT", start, end);
+                    layers = ISOTOPIC_LAYERS;
+                    layerIndex = -1;
+                    break;
+                default:
+                    throw invalidInchi(start, end);
+            }
+            pos = layerEnd;
+        }
+        if (formulaHydrogens >= 0 && hydrogens > formulaHydrogens)
+            throw invalidInchi(start, end);
+    }
+
+    /**
+     * Checks the formula layer and returns its number of hydrogens.
+     */
+    private long checkFormula(int start, int end) {
+        long hydrogens = 0;
+        for (int componentStart = start; componentStart <= end; ) {
+            int componentEnd = findChar('.', componentStart, end);
+            int pos = componentStart;
+            while (pos < componentEnd && isDigit(rinchi.charAt(pos)))
+                pos++;
+            long multiplier = pos == componentStart ? 1 : parseCount(componentStart, pos, start, end);
+            if (pos == componentEnd)
+                throw invalidInchi(start, end);
+            while (pos < componentEnd) {
+                int symbolStart = pos;
+                if (rinchi.charAt(pos) < 'A' || rinchi.charAt(pos) > 'Z')
+                    throw invalidInchi(start, end);
+                pos++;
+                if (pos < componentEnd && rinchi.charAt(pos) >= 'a' && rinchi.charAt(pos) <= 'z')
+                    pos++;
+                String symbol = rinchi.substring(symbolStart, pos);
+                if (PeriodicTable.getAtomicNumberFromElementSymbol(symbol) <= 0)
+                    throw invalidInchi(start, end);
+                int countStart = pos;
+                while (pos < componentEnd && isDigit(rinchi.charAt(pos)))
+                    pos++;
+                long count = pos == countStart ? 1 : parseCount(countStart, pos, start, end);
+                if (symbol.equals("H"))
+                    hydrogens += multiplier * count;
+            }
+            componentStart = componentEnd + 1;
+        }
+        return hydrogens;
+    }
+
+    /**
+     * Checks the main hydrogen layer, such as "1H4" or "3H,2H2,(H,1,2);2*1H4", and returns its number of hydrogens.
+     */
+    private long checkHydrogens(int layerStart, int layerEnd, int start, int end) {
+        long hydrogens = 0;
+        for (int componentStart = layerStart; componentStart <= layerEnd; ) {
+            int componentEnd = findChar(';', componentStart, layerEnd);
+            int pos = skipMultiplier(componentStart, componentEnd);
+            long multiplier = pos == componentStart ? 1 : parseCount(componentStart, pos - 1, start, end);
+            long componentHydrogens = 0;
+            while (pos < componentEnd) {
+                if (rinchi.charAt(pos) == '(') {
+                    //mobile group: (H<count>,<atom>,<atom>...)
+                    int groupEnd = findChar(')', pos, componentEnd);
+                    if (groupEnd == componentEnd || rinchi.charAt(pos + 1) != 'H')
+                        throw invalidInchi(start, end);
+                    int countEnd = findChar(',', pos + 2, groupEnd);
+                    if (countEnd == groupEnd)
+                        throw invalidInchi(start, end);
+                    componentHydrogens += countEnd == pos + 2 ? 1 : parseCount(pos + 2, countEnd, start, end);
+                    checkChars(countEnd + 1, groupEnd, "0123456789,", start, end);
+                    pos = groupEnd + 1;
+                } else {
+                    //fixed hydrogens: <atom or range>,<atom or range>...H<count>
+                    long atoms = 0;
+                    while (true) {
+                        int numberStart = pos;
+                        while (pos < componentEnd && isDigit(rinchi.charAt(pos)))
+                            pos++;
+                        long first = parseCount(numberStart, pos, start, end);
+                        long last = first;
+                        if (pos < componentEnd && rinchi.charAt(pos) == '-') {
+                            numberStart = ++pos;
+                            while (pos < componentEnd && isDigit(rinchi.charAt(pos)))
+                                pos++;
+                            last = parseCount(numberStart, pos, start, end);
+                        }
+                        if (last < first)
+                            throw invalidInchi(start, end);
+                        atoms += last - first + 1;
+                        if (pos < componentEnd && rinchi.charAt(pos) == ',')
+                            pos++;
+                        else
+                            break;
+                    }
+                    if (pos == componentEnd || rinchi.charAt(pos) != 'H')
+                        throw invalidInchi(start, end);
+                    int countStart = ++pos;
+                    while (pos < componentEnd && isDigit(rinchi.charAt(pos)))
+                        pos++;
+                    componentHydrogens += atoms * (pos == countStart ? 1 : parseCount(countStart, pos, start, end));
+                }
+                if (pos < componentEnd) {
+                    if (rinchi.charAt(pos) != ',' || pos + 1 == componentEnd)
+                        throw invalidInchi(start, end);
+                    pos++;
+                }
+            }
+            hydrogens += multiplier * componentHydrogens;
+            componentStart = componentEnd + 1;
+        }
+        return hydrogens;
+    }
+
+    /**
+     * Checks a double bond or tetrahedral stereo layer, such as "2-1+,3-4-" or "2-,3+;2*4?".
+     * Every item is an atom, or a pair of atoms for double bonds, followed by its parity.
+     */
+    private void checkParities(int layerStart, int layerEnd, boolean atomPairs, int start, int end) {
+        for (int componentStart = layerStart; componentStart <= layerEnd; ) {
+            int componentEnd = findChar(';', componentStart, layerEnd);
+            int itemStart = skipMultiplier(componentStart, componentEnd);
+            while (itemStart < componentEnd) {
+                int itemEnd = findChar(',', itemStart, componentEnd);
+                int parity = itemEnd - 1;
+                if (parity <= itemStart || "+-?".indexOf(rinchi.charAt(parity)) < 0)
+                    throw invalidInchi(start, end);
+                int atomEnd = atomPairs ? findChar('-', itemStart, parity) : parity;
+                parseCount(itemStart, atomEnd, start, end);
+                if (atomPairs) {
+                    if (atomEnd == parity)
+                        throw invalidInchi(start, end);
+                    parseCount(atomEnd + 1, parity, start, end);
+                }
+                if (itemEnd < componentEnd && itemEnd + 1 == componentEnd)
+                    throw invalidInchi(start, end);
+                itemStart = itemEnd + 1;
+            }
+            componentStart = componentEnd + 1;
+        }
+    }
+
+    /**
+     * Checks for a sign followed by a number, as in the charge and protonation layers.
+     */
+    private void checkSignedNumber(int numberStart, int numberEnd, int start, int end) {
+        if (numberStart >= numberEnd || (rinchi.charAt(numberStart) != '+' && rinchi.charAt(numberStart) != '-')
+                || numberStart + 1 == numberEnd)
+            throw invalidInchi(start, end);
+        for (int pos = numberStart + 1; pos < numberEnd; pos++)
+            if (!isDigit(rinchi.charAt(pos)))
+                throw invalidInchi(start, end);
+        try {
+            Integer.parseInt(rinchi.substring(numberStart, numberEnd));
+        } catch (NumberFormatException e) {
+            throw invalidInchi(start, end);
+        }
+    }
+
+    private void checkChars(int from, int to, String allowed, int start, int end) {
+        for (int pos = from; pos < to; pos++)
+            if (allowed.indexOf(rinchi.charAt(pos)) < 0)
+                throw invalidInchi(start, end);
+    }
+
+    /**
+     * Returns the position after a multiplier such as "2*", or <code>from</code> if there is none.
+     */
+    private int skipMultiplier(int from, int to) {
+        int pos = from;
+        while (pos < to && isDigit(rinchi.charAt(pos)))
+            pos++;
+        return pos > from && pos < to && rinchi.charAt(pos) == '*' ? pos + 1 : from;
+    }
+
+    private long parseCount(int from, int to, int start, int end) {
+        if (!isDigits(rinchi, from, to))
+            throw invalidInchi(start, end);
+        return Integer.parseInt(rinchi.substring(from, to));
+    }
+
+    private int findLayerEnd(int from, int end) {
+        return findChar('/', from, end);
+    }
+
+    private int findChar(char c, int from, int end) {
+        int pos = rinchi.indexOf(c, from);
+        return pos < 0 || pos > end ? end : pos;
+    }
+
+    private IllegalArgumentException invalidInchi(int start, int end) {
+        return new IllegalArgumentException("Invalid InChI component '" + rinchi.substring(start, end) + "'.");
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Checks for one to nine decimal digits.
+     */
+    private static boolean isDigits(String s, int start, int end) {
+        if (start >= end || end - start > 9)
+            return false;
+        for (int i = start; i < end; i++)
+            if (s.charAt(i) < '0' || s.charAt(i) > '9')
+                return false;
+        return true;
+    }
+
+    /**
+     * A prefix followed by a range of a string, without copying the characters.
+     */
+    private static class ComponentText implements CharSequence {
+        private final String prefix;
+        private final String source;
+        private final int start;
+        private final int end;
+
+        ComponentText(String prefix, String source, int start, int end) {
+            this.prefix = prefix;
+            this.source = source;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return prefix.length() + end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length())
+                throw new IndexOutOfBoundsException("Index " + index + ", length " + length());
+            return index < prefix.length() ? prefix.charAt(index) : source.charAt(start + index - prefix.length());
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || to > length() || from > to)
+                throw new IndexOutOfBoundsException("Range " + from + " to " + to + ", length " + length());
+            if (from >= prefix.length())
+                return new ComponentText("", source, start + from - prefix.length(), start + to - prefix.length());
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(length()).append(prefix).append(source, start, end).toString();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ * JNA-RInChI - Library for calling RInChI from Java
+ * Copyright © 2022 Nikolay Kochev
+ * <p>
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnarinchi.cheminfo;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Line scanner for MDL files that keeps the current line in a reusable char array
+ * and parses fixed-column fields from it without creating intermediate strings.
+ * <br>
+ * Lines are terminated by '\n', '\r' or "\r\n" as with {@link java.io.BufferedReader#readLine()}.
+ * Fields are trimmed of characters up to and including space, like {@link String#trim()}.
+ */
+class MdlLineScanner {
+
+    /** Returned by {@link #getInt(int, int)} if the field is not a valid integer */
+    static final int INVALID_INT = Integer.MIN_VALUE;
+    /** Returned by {@link #getInt(int, int)} if the field extends beyond the end of the line */
+    static final int MISSING_INT = Integer.MIN_VALUE + 1;
+
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+            1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+    //Up to 15 digits fit into the 53 bit mantissa of a double exactly
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int pos = 0;
+    private int limit = 0;
+    private boolean skipLF = false;
+
+    private char[] line = new char[128];
+    private int length = 0;
+
+    MdlLineScanner(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Advances to the next line.
+     *
+     * @return <code>false</code> if the end of input has been reached
+     */
+    boolean nextLine() throws IOException {
+        length = 0;
+        boolean read = false;
+        while (true) {
+            if (pos == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return read;
+                }
+            }
+            if (skipLF) {
+                skipLF = false;
+                if (buffer[pos] == '\n') {
+                    pos++;
+                    continue;
+                }
+            }
+            read = true;
+            int start = pos;
+            while (pos < limit && buffer[pos] != '\n' && buffer[pos] != '\r')
+                pos++;
+            append(start, pos);
+            if (pos < limit) {
+                skipLF = buffer[pos] == '\r';
+                pos++;
+                return true;
+            }
+        }
+    }
+
+    private void append(int start, int end) {
+        int n = end - start;
+        if (length + n > line.length) {
+            char[] newLine = new char[Math.max(line.length * 2, length + n)];
+            System.arraycopy(line, 0, newLine, 0, length);
+            line = newLine;
+        }
+        System.arraycopy(buffer, start, line, length, n);
+        length += n;
+    }
+
+    int length() {
+        return length;
+    }
+
+    char charAt(int index) {
+        return line[index];
+    }
+
+    boolean startsWith(String prefix) {
+        return startsWith(prefix, 0);
+    }
+
+    boolean startsWith(String prefix, int offset) {
+        if (offset < 0 || offset + prefix.length() > length)
+            return false;
+        for (int i = 0; i < prefix.length(); i++)
+            if (line[offset + i] != prefix.charAt(i))
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the index of the first character at or after <code>offset</code> that is not whitespace.
+     */
+    int skipWhitespace(int offset) {
+        while (offset < length && line[offset] <= ' ')
+            offset++;
+        return offset;
+    }
+
+    /**
+     * Returns the current line as a string. Only intended for error messages.
+     */
+    String lineToString() {
+        return new String(line, 0, length);
+    }
+
+    /**
+     * Returns the trimmed field as a string. Only intended for error messages.
+     */
+    String fieldToString(int start, int fieldLength) {
+        int end = trimEnd(start, Math.min(start + fieldLength, length));
+        start = trimStart(start, end);
+        return new String(line, start, end - start);
+    }
+
+    private int trimStart(int start, int end) {
+        while (start < end && line[start] <= ' ')
+            start++;
+        return start;
+    }
+
+    private int trimEnd(int start, int end) {
+        while (end > start && line[end - 1] <= ' ')
+            end--;
+        return end;
+    }
+
+    /**
+     * Parses an integer from a fixed-column field, with the same result as
+     * <code>Integer.parseInt(line.substring(start, start + fieldLength).trim())</code>.
+     *
+     * @return the value, {@link #MISSING_INT} if the line is too short or {@link #INVALID_INT} if the field is not an integer
+     */
+    int getInt(int start, int fieldLength) {
+        int end = start + fieldLength;
+        if (start > length || end > length)
+            return MISSING_INT;
+        end = trimEnd(start, end);
+        start = trimStart(start, end);
+        if (start == end)
+            return INVALID_INT;
+        boolean negative = false;
+        char c = line[start];
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            start++;
+            if (start == end)
+                return INVALID_INT;
+        }
+        //Fields are at most a few characters wide, overflow cannot occur below ten digits
+        if (end - start > 9)
+            return INVALID_INT;
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            c = line[i];
+            if (c < '0' || c > '9')
+                return INVALID_INT;
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a decimal number of the form [sign]digits[.digits] from a fixed-column field, with the same result as
+     * <code>Double.parseDouble(line.substring(start, start + fieldLength).trim())</code>.
+     * Other number formats are passed on to Double.parseDouble.
+     *
+     * @return the value or NaN if the field is not a number
+     */
+    double getDouble(int start, int fieldLength) {
+        int end = trimEnd(start, start + fieldLength);
+        start = trimStart(start, end);
+        if (start == end)
+            return Double.NaN;
+        int i = start;
+        boolean negative = false;
+        if (line[i] == '-' || line[i] == '+') {
+            negative = line[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int nDigits = 0;
+        int nFractionDigits = -1;
+        for (; i < end; i++) {
+            char c = line[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                nDigits++;
+                if (nFractionDigits >= 0)
+                    nFractionDigits++;
+            }
+            else if (c == '.' && nFractionDigits < 0)
+                nFractionDigits = 0;
+            else
+                return parseDouble(start, end);
+        }
+        if (nDigits == 0 || nDigits > MAX_EXACT_DIGITS)
+            return parseDouble(start, end);
+        //Both operands are exact, so the division is correctly rounded like Double.parseDouble
+        double value = nFractionDigits > 0 ? mantissa / POWERS_OF_TEN[nFractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private double parseDouble(int start, int end) {
+        try {
+            return Double.parseDouble(new String(line, start, end - start));
+        } catch (NumberFormatException x) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Returns the element symbol in a fixed-column field as the constant string from {@link PeriodicTable}.
+     *
+     * @return element symbol or <code>null</code> if the field is not a known element symbol
+     */
+    String getElementSymbol(int start, int fieldLength) {
+        int end = trimEnd(start, start + fieldLength);
+        start = trimStart(start, end);
+        return PeriodicTable.getElementSymbol(line, start, end);
+    }
+}
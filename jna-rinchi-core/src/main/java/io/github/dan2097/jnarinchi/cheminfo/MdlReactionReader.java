@@ -137,6 +137,7 @@ public class MdlReactionReader {
         private final List<String> errors = new ArrayList<>();
         private final RinchiInput rInput = new RinchiInput();
         private final BufferedReader inputReader;
+        private final MdlLineScanner scanner;
     
         private int curLineNum = 0;
         private int numOfReagentsToRead = 0;
@@ -147,6 +148,7 @@ public class MdlReactionReader {
     
         MdlReactionReaderInstance(BufferedReader inputReader) {
             this.inputReader = inputReader;
+            this.scanner = new MdlLineScanner(inputReader);
         }
 
         RinchiInput toRinchiInput() throws MdlReactionReaderException {
@@ -165,14 +167,22 @@ public class MdlReactionReader {
         }
 
         private String readLine() {
-            String line = null;
+            return nextLine() ? scanner.lineToString() : null;
+        }
+
+        /**
+         * Advances the scanner to the next line, which is then parsed in place.
+         *
+         * @return <code>false</code> if there are no more lines or the line cannot be read
+         */
+        private boolean nextLine() {
             curLineNum++;
             try {
-                line = inputReader.readLine();
+                return scanner.nextLine();
             } catch (Exception x) {
                 errors.add("Unable to read line " + curLineNum + ": " + x.getMessage());
+                return false;
             }
-            return line;
         }
     
         private int iterateInputLines() {
@@ -233,12 +243,10 @@ public class MdlReactionReader {
         }
     
         private void iterateAgentsDataLines() {
-            String line;
             int nAgents = 0;
-            while ((line = readLine()) != null) {
-                if (line.startsWith("$DATUM ")) {
-                    String line1 = line.substring(7).trim();
-                    if (line1.startsWith("$MFMT")) {
+            while (nextLine()) {
+                if (scanner.startsWith("$DATUM ")) {
+                    if (scanner.startsWith("$MFMT", scanner.skipWhitespace(7))) {
                         errorComponentContext = "Reading agent #" + (nAgents + 1) + " ";
                         RinchiInputComponent ric = readMdlMolecule(false);
                         if (ric != null) {
@@ -318,20 +326,19 @@ public class MdlReactionReader {
     
         private void readRxnCountLine() {
             //Read RXN count line: rrrppp
-            String line = readLine();
-            if (line == null) {
+            if (!nextLine()) {
                 errors.add("RXN counts Line " + curLineNum + " is missing !");
                 return;
             }
-            Integer rrr = readInteger(line, 0, 3);
-            if (rrr == null || rrr < 0) {
-                errors.add("RXN counts (rrrppp) Line  " + curLineNum + " : incorrect number of reagents (rrr part): " + line);
+            int rrr = readInteger(0, 3);
+            if (rrr < 0) {
+                errors.add("RXN counts (rrrppp) Line  " + curLineNum + " : incorrect number of reagents (rrr part): " + scanner.lineToString());
                 return;
             } else
                 numOfReagentsToRead = rrr;
-            Integer ppp = readInteger(line, 3, 3);
-            if (ppp == null || ppp < 0) {
-                errors.add("RXN counts (rrrppp) Line  " + curLineNum + " : incorrect number of reagents (ppp part): " + line);
+            int ppp = readInteger(3, 3);
+            if (ppp < 0) {
+                errors.add("RXN counts (rrrppp) Line  " + curLineNum + " : incorrect number of reagents (ppp part): " + scanner.lineToString());
             } else {
                 numOfProductsToRead = ppp;
             }
@@ -368,22 +375,21 @@ public class MdlReactionReader {
     
         private void readMolCountsLine() {
             //MOL Counts line: aaabbblllfffcccsssxxxrrrpppiiimmmvvvvvv
-            String line = readLine();
-            if (line == null) {
+            if (!nextLine()) {
                 errors.add("MOL counts Line " + curLineNum + " is missing !");
                 return;
             }
-            Integer aaa = readInteger(line, 0, 3);
-            if (aaa == null || aaa < 0) {
+            int aaa = readInteger(0, 3);
+            if (aaa < 0) {
                 errors.add("MOL counts (aaabbblll...) Line  " + curLineNum
-                        + " : incorrect number of atoms (aaa part): " + line);
+                        + " : incorrect number of atoms (aaa part): " + scanner.lineToString());
                 return;
             } else
                 numOfAtomsToRead = aaa;
-            Integer bbb = readInteger(line, 3, 3);
-            if (bbb == null || bbb < 0) {
+            int bbb = readInteger(3, 3);
+            if (bbb < 0) {
                 errors.add("MOL counts (aaabbblll...) Line  " + curLineNum
-                        + " : incorrect number of bonds (bbb part): " + line);
+                        + " : incorrect number of bonds (bbb part): " + scanner.lineToString());
             } else {
                 numOfBondsToRead = bbb;
             }
@@ -417,50 +423,43 @@ public class MdlReactionReader {
         private void readMolAtomLine(int atomIndex, RinchiInputComponent ric, Map<InchiAtom, InchiStereoParity> parities) {
             //Read MDL atom line
             //xxxxx.xxxxyyyyy.yyyyzzzzz.zzzz aaaddcccssshhhbbbvvvHHHrrriiimmmnnneee
-            String line = readLine();
-            if (line == null) {
+            if (!nextLine()) {
                 errors.add(errorComponentContext + "MOL atom # " + (atomIndex + 1)
                         + " in Line " + curLineNum + " is missing !");
                 return;
             }
-            Double coordX = readMdlCoordinate(line, 0);
-            if (coordX == null) {
-                errors.add(errorComponentContext + "MOL atom # " + (atomIndex + 1)
-                        + " in Line " + curLineNum + " coordinate x error --> " + line);
-                return;
-            }
-            Double coordY = readMdlCoordinate(line, 10);
-            if (coordY == null) {
+            double coordX = readMdlCoordinate(0);
+            if (Double.isNaN(coordX)) {
                 errors.add(errorComponentContext + "MOL atom # " + (atomIndex + 1)
-                        + " in Line " + curLineNum + " coordinate y error --> " + line);
+                        + " in Line " + curLineNum + " coordinate x error --> " + scanner.lineToString());
                 return;
             }
-            Double coordZ = readMdlCoordinate(line, 20);
-            if (coordZ == null) {
+            double coordY = readMdlCoordinate(10);
+            if (Double.isNaN(coordY)) {
                 errors.add(errorComponentContext + "MOL atom # " + (atomIndex + 1)
-                        + " in Line " + curLineNum + " coordinate z error --> " + line);
+                        + " in Line " + curLineNum + " coordinate y error --> " + scanner.lineToString());
                 return;
             }
-            String atSymbol = 34 > line.length() ? null : line.substring(30, 34).trim();
-            if (atSymbol == null) {
+            double coordZ = readMdlCoordinate(20);
+            if (Double.isNaN(coordZ)) {
                 errors.add(errorComponentContext + "MOL atom # " + (atomIndex + 1)
-                        + " in Line " + curLineNum + " atom symbol error --> " + line);
+                        + " in Line " + curLineNum + " coordinate z error --> " + scanner.lineToString());
                 return;
             }
-    
+
             //Check atom symbol
-            int atNum = PeriodicTable.getAtomicNumberFromElementSymbol(atSymbol);
-            if (atNum == -1) {
+            String atSymbol = 34 > scanner.length() ? null : scanner.getElementSymbol(30, 4);
+            if (atSymbol == null) {
                 errors.add(errorComponentContext + "MOL atom # " + (atomIndex + 1)
-                        + " in Line " + curLineNum + " atom symbol error --> " + line);
+                        + " in Line " + curLineNum + " atom symbol error --> " + scanner.lineToString());
                 return;
             }
     
             //Check old CTAB charge style
-            Integer chCode = readInteger(line, 36, 3);
-            if (chCode == null || chCode < 0 || chCode > 7) {
+            int chCode = readInteger(36, 3);
+            if (chCode < 0 || chCode > 7) {
                 errors.add(errorComponentContext + "MOL atom # " + (atomIndex + 1)
-                        + " in Line " + curLineNum + " atom charge coding error --> " + line);
+                        + " in Line " + curLineNum + " atom charge coding error --> " + scanner.lineToString());
                 return;
             }
             int charge = getChargeFromOldCtabCoding(chCode);
@@ -476,10 +475,10 @@ public class MdlReactionReader {
                 atom.setRadical(InchiRadical.DOUBLET);
     
             //sss stereo parity
-            Integer parityCode = readInteger(line, 39, 3);
-            if (parityCode == null || parityCode < 0 || parityCode > 3) {
+            int parityCode = readInteger(39, 3);
+            if (parityCode < 0 || parityCode > 3) {
                 errors.add(errorComponentContext + "MOL atom # " + (atomIndex + 1)
-                        + " in Line " + curLineNum + " atom parity coding error --> " + line);
+                        + " in Line " + curLineNum + " atom parity coding error --> " + scanner.lineToString());
                 return;
             }
             InchiStereoParity parity = getParity(parityCode);
@@ -503,95 +502,89 @@ public class MdlReactionReader {
         private void readMolBondLine(int bondIndex, RinchiInputComponent ric) {
             //Read MDL bond line
             //111222tttsssxxxrrrccc
-            String line = readLine();
-            if (line == null) {
+            if (!nextLine()) {
                 errors.add(errorComponentContext + "MOL bond # " + (bondIndex + 1)
                         + " in Line " + curLineNum + " is missing !");
                 return;
             }
-            Integer a1 = readInteger(line, 0, 3);
-            if (a1 == null || a1 < 0 || a1 > numOfAtomsToRead) {
+            int a1 = readInteger(0, 3);
+            if (a1 < 0 || a1 > numOfAtomsToRead) {
                 errors.add("MOL counts (111222ttt...) Line  " + curLineNum
-                        + " : incorrect atom number (111 part): " + line);
+                        + " : incorrect atom number (111 part): " + scanner.lineToString());
                 return;
             }
-            Integer a2 = readInteger(line, 3, 3);
-            if (a2 == null || a2 < 0 || a2 > numOfAtomsToRead) {
+            int a2 = readInteger(3, 3);
+            if (a2 < 0 || a2 > numOfAtomsToRead) {
                 errors.add("MOL counts (111222ttt...) Line  " + curLineNum
-                        + " : incorrect atom number (222 part): " + line);
+                        + " : incorrect atom number (222 part): " + scanner.lineToString());
                 return;
             }
-            Integer ttt = readInteger(line, 6, 3);
-            if (ttt == null || ttt < 0 || ttt > 3) {
+            int ttt = readInteger(6, 3);
+            if (ttt < 0 || ttt > 3) {
                 errors.add("MOL counts (111222ttt...) Line  " + curLineNum
-                        + " : incorrect bond typer (ttt part): " + line);
+                        + " : incorrect bond typer (ttt part): " + scanner.lineToString());
                 return;
             }
-            Integer sss = readInteger(line, 9, 3);
-            if (sss == null) {
-                errors.add("MOL counts (111222ttt...) Line  " + curLineNum
-                        + " : incorrect bond stereo (sss part): " + line);
-                return;
-            }
-            InchiBondStereo ibs = getBondStereoFromMdlCode(sss);
+            int sss = readInteger(9, 3);
+            InchiBondStereo ibs = isMissingOrInvalid(sss) ? null : getBondStereoFromMdlCode(sss);
             if (ibs == null) {
                 errors.add("MOL counts (111222ttt...) Line  " + curLineNum
-                        + " : incorrect bond stereo (sss part): " + line);
+                        + " : incorrect bond stereo (sss part): " + scanner.lineToString());
                 return;
             }
     
-            InchiBond bond = new InchiBond(ric.getAtom(a1 - 1), ric.getAtom(a2 - 1), InchiBondType.of((byte) ttt.intValue()), ibs);
+            InchiBond bond = new InchiBond(ric.getAtom(a1 - 1), ric.getAtom(a2 - 1), InchiBondType.of((byte) ttt), ibs);
             ric.addBond(bond);
         }
     
         private void readMolPropertiesBlock(RinchiInputComponent ric) {
-            String line = readLine();
-            while (processPropertyLine(line, ric) == 0)
-                line = readLine();
+            while (nextLine() && processPropertyLine(ric) == 0) {
+                //property lines are processed until M  END
+            }
         }
     
-        private int processPropertyLine(String line, RinchiInputComponent ric) {
-            if (line == null || line.startsWith("M  END"))
+        private int processPropertyLine(RinchiInputComponent ric) {
+            if (scanner.startsWith("M  END"))
                 return -1;
     
-            if (line.startsWith("M  ISO"))
-                readIsotopePropertyLine(line, ric);
+            if (scanner.startsWith("M  ISO"))
+                readIsotopePropertyLine(ric);
     
-            if (line.startsWith("M  CHG"))
-                readChargePropertyLine(line, ric);
+            if (scanner.startsWith("M  CHG"))
+                readChargePropertyLine(ric);
     
-            if (line.startsWith("M  RAD"))
-                readRadicalPropertyLine(line, ric);
+            if (scanner.startsWith("M  RAD"))
+                readRadicalPropertyLine(ric);
     
             return 0;
         }
     
-        private int readIsotopePropertyLine(String line, RinchiInputComponent ric) {
+        private int readIsotopePropertyLine(RinchiInputComponent ric) {
             //MDL format for isotope line:
             //M  ISOnn8 aaa vvv ...
     
-            Integer n = readInteger(line, 6, 3); //atom count
-            if (n == null || n < 1 || n > 8) {
+            int n = readInteger(6, 3); //atom count
+            if (n < 1 || n > 8) {
                 errors.add("M ISO molecule property Line (M  ISOnn8 aaa vvv ...) " + curLineNum
-                        + " : incorrect number of atoms (nn8 part): " + line);
+                        + " : incorrect number of atoms (nn8 part): " + scanner.lineToString());
                 return -1;
             }
     
             int pos = 9;
             for (int i = 0; i < n; i++) {
                 // aaa
-                Integer atomIndex = readInteger(line, pos, 4);
-                if (atomIndex == null || atomIndex < 1 || atomIndex > ric.getAtoms().size()) {
+                int atomIndex = readInteger(pos, 4);
+                if (atomIndex < 1 || atomIndex > ric.getAtoms().size()) {
                     errors.add("M ISO molecule property Line (M  ISOnn8 aaa vvv ...) " + curLineNum
-                            + " : incorrect atom index for (aaa vvv) pair #" + (i + 1) + " in line: " + line);
+                            + " : incorrect atom index for (aaa vvv) pair #" + (i + 1) + " in line: " + scanner.lineToString());
                     return -2;
                 }
                 pos += 4;
                 // vvv
-                Integer mass = readInteger(line, pos, 4);
-                if (mass == null || mass < 1) {
+                int mass = readInteger(pos, 4);
+                if (mass < 1) {
                     errors.add("M ISO molecule property Line (M  ISOnn8 aaa vvv ...) " + curLineNum
-                            + " : incorrect mass for (aaa vvv) pair #" + (i + 1) + " in line: " + line);
+                            + " : incorrect mass for (aaa vvv) pair #" + (i + 1) + " in line: " + scanner.lineToString());
                     return -3;
                 }
                 pos += 4;
@@ -600,32 +593,32 @@ public class MdlReactionReader {
             return 0;
         }
     
-        private int readChargePropertyLine(String line, RinchiInputComponent ric) {
+        private int readChargePropertyLine(RinchiInputComponent ric) {
             //MDL format for charge line:
             //M  CHGnn8 aaa vvv ...
     
-            Integer n = readInteger(line, 6, 3); //atom count
-            if (n == null || n < 1 || n > 8) {
+            int n = readInteger(6, 3); //atom count
+            if (n < 1 || n > 8) {
                 errors.add("M CHG molecule property Line (M  CHGnn8 aaa vvv ...) " + curLineNum
-                        + " : incorrect number of atoms (nn8 part): " + line);
+                        + " : incorrect number of atoms (nn8 part): " + scanner.lineToString());
                 return -1;
             }
     
             int pos = 9;
             for (int i = 0; i < n; i++) {
                 // aaa
-                Integer atomIndex = readInteger(line, pos, 4);
-                if (atomIndex == null || atomIndex < 1 || atomIndex > ric.getAtoms().size()) {
+                int atomIndex = readInteger(pos, 4);
+                if (atomIndex < 1 || atomIndex > ric.getAtoms().size()) {
                     errors.add("M CHG molecule property Line (M  CHGnn8 aaa vvv ...) " + curLineNum
-                            + " : incorrect atom index for (aaa vvv) pair #" + (i + 1) + " in line: " + line);
+                            + " : incorrect atom index for (aaa vvv) pair #" + (i + 1) + " in line: " + scanner.lineToString());
                     return -2;
                 }
                 pos += 4;
                 // vvv
-                Integer charge = readInteger(line, pos, 4);
-                if (charge == null || charge < -15 || charge > 15) {
+                int charge = readInteger(pos, 4);
+                if (isMissingOrInvalid(charge) || charge < -15 || charge > 15) {
                     errors.add("M CHG molecule property Line (M  ISOnn8 aaa vvv ...) " + curLineNum
-                            + " : incorrect charge for (aaa vvv) pair #" + (i + 1) + " in line: " + line);
+                            + " : incorrect charge for (aaa vvv) pair #" + (i + 1) + " in line: " + scanner.lineToString());
                     return -3;
                 }
                 pos += 4;
@@ -634,32 +627,32 @@ public class MdlReactionReader {
             return 0;
         }
     
-        private int readRadicalPropertyLine(String line, RinchiInputComponent ric) {
+        private int readRadicalPropertyLine(RinchiInputComponent ric) {
             //MDL format for radical line:
             //M  RADnn8 aaa vvv ...
     
-            Integer n = readInteger(line, 6, 3); //atom count
-            if (n == null || n < 1 || n > 8) {
+            int n = readInteger(6, 3); //atom count
+            if (n < 1 || n > 8) {
                 errors.add("M RAD molecule property Line (M  RADnn8 aaa vvv ...) " + curLineNum
-                        + " : incorrect number of atoms (nn8 part): " + line);
+                        + " : incorrect number of atoms (nn8 part): " + scanner.lineToString());
                 return -1;
             }
     
             int pos = 9;
             for (int i = 0; i < n; i++) {
                 // aaa
-                Integer atomIndex = readInteger(line, pos, 4);
-                if (atomIndex == null || atomIndex < 1 || atomIndex > ric.getAtoms().size()) {
+                int atomIndex = readInteger(pos, 4);
+                if (atomIndex < 1 || atomIndex > ric.getAtoms().size()) {
                     errors.add("M RAD molecule property Line (M  RADnn8 aaa vvv ...) " + curLineNum
-                            + " : incorrect atom index for (aaa vvv) pair #" + (i + 1) + " in line: " + line);
+                            + " : incorrect atom index for (aaa vvv) pair #" + (i + 1) + " in line: " + scanner.lineToString());
                     return -2;
                 }
                 pos += 4;
                 // vvv
-                Integer radCode = readInteger(line, pos, 4);
-                if (radCode == null || radCode < 0 || radCode > 3) {
+                int radCode = readInteger(pos, 4);
+                if (radCode < 0 || radCode > 3) {
                     errors.add("M RAD molecule property Line (M  RADnn8 aaa vvv ...) " + curLineNum
-                            + " : incorrect radical value for (aaa vvv) pair #" + (i + 1) + " in line: " + line);
+                            + " : incorrect radical value for (aaa vvv) pair #" + (i + 1) + " in line: " + scanner.lineToString());
                     return -3;
                 }
                 pos += 4;
@@ -690,36 +683,41 @@ public class MdlReactionReader {
             return ric;
         }
     
-        private Integer readInteger(String line, int startPos, int length) {
-            int endPos = startPos + length;
-            if (startPos > line.length() || endPos > line.length())
-                return null;
-            String s = line.substring(startPos, endPos).trim();
-            try {
-                return Integer.parseInt(s);
-            } catch (Exception x) {
-                errors.add(errorPrefix() + "Error on parsing integer: " + s);
-                return null;
-            }
+        /**
+         * Reads an integer from a fixed-column field of the current line.
+         *
+         * @return the value or a negative sentinel ({@link MdlLineScanner#MISSING_INT}, {@link MdlLineScanner#INVALID_INT})
+         */
+        private int readInteger(int startPos, int length) {
+            int value = scanner.getInt(startPos, length);
+            if (value == MdlLineScanner.INVALID_INT)
+                errors.add(errorPrefix() + "Error on parsing integer: " + scanner.fieldToString(startPos, length));
+            return value;
         }
-    
-        private Double readMdlCoordinate(String line, int startPos) {
+
+        private boolean isMissingOrInvalid(int value) {
+            return value == MdlLineScanner.MISSING_INT || value == MdlLineScanner.INVALID_INT;
+        }
+
+        /**
+         * Reads a coordinate from a fixed-column field of the current line.
+         *
+         * @return the value or NaN if there is an error
+         */
+        private double readMdlCoordinate(int startPos) {
             int endPos = startPos + MdlReactionUtils.MDL_FLOAT_SPACES;
-            if (startPos > line.length() || endPos > line.length())
-                return null;
-    
-            String s = line.substring(startPos, endPos).trim();
-            if (line.charAt(startPos + 5) != '.') {
-                errors.add(errorPrefix() + "Incorrect coordinate format: " + s);
-                return null;
-            }
-    
-            try {
-                return Double.parseDouble(s);
-            } catch (Exception x) {
-                errors.add(errorPrefix() + "Error on parsing float: " + s);
-                return null;
+            if (startPos > scanner.length() || endPos > scanner.length())
+                return Double.NaN;
+
+            if (scanner.charAt(startPos + 5) != '.') {
+                errors.add(errorPrefix() + "Incorrect coordinate format: " + scanner.fieldToString(startPos, MdlReactionUtils.MDL_FLOAT_SPACES));
+                return Double.NaN;
             }
+
+            double value = scanner.getDouble(startPos, MdlReactionUtils.MDL_FLOAT_SPACES);
+            if (Double.isNaN(value))
+                errors.add(errorPrefix() + "Error on parsing float: " + scanner.fieldToString(startPos, MdlReactionUtils.MDL_FLOAT_SPACES));
+            return value;
         }
     
         private int getChargeFromOldCtabCoding(int code) {
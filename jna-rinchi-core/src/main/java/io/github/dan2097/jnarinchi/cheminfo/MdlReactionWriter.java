@@ -17,6 +17,11 @@
  */
 package io.github.dan2097.jnarinchi.cheminfo;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -69,6 +74,12 @@ public class MdlReactionWriter {
     private static final DateTimeFormatter DATE_TIME_FORMATTER_RDFILE = DateTimeFormatter.ofPattern("MM/dd/yy HH:mm");
     private static final DateTimeFormatter DATE_TIME_FORMATTER_RXN = DateTimeFormatter.ofPattern("MMddyyyyHHmm");
     private static final DateTimeFormatter DATE_TIME_FORMATTER_MOLFILE = DateTimeFormatter.ofPattern("MMddyyHHmm");
+    private static final int BUFFER_SIZE = 2048;
+    //Coordinates up to this value are formatted without MDL_NUMBER_FORMAT, see addDouble
+    private static final double MAX_FAST_FORMAT_COORDINATE = 9999.0;
+    private static final double HALF_WAY_TOLERANCE = 1e-6;
+    //All date fields have a resolution of minutes, so the formatted dates are shared for one minute
+    private static volatile DateStamps dateStamps = new DateStamps(Long.MIN_VALUE);
     
     private final ReactionFileFormat format;
     // currently, only RXN and RDFile V2000 is supported
@@ -107,7 +118,52 @@ public class MdlReactionWriter {
      * @return reaction file text
      */
     public String rinchiInputToFileText(RinchiInput rInp) {
-      return new MdlReactionWriterInstance(rInp).write();
+        StringBuilder sb = new StringBuilder();
+        try {
+            new MdlReactionWriterInstance(rInp, sb, null).write();
+        } catch (IOException e) {
+            //not thrown by StringBuilder
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes a reaction represented as RinchiInput object in MDL RXN/RDFile format to a character stream,
+     * e.g. a {@link Writer} or a {@link StringBuilder}, without creating the file text as a string.
+     * <br>
+     * Several reactions may be written one after the other to the same {@link Writer}.
+     * The output is written in chunks, so a buffered writer is not required.
+     *
+     * @param rInp input RinchiInput object
+     * @param out the destination of the reaction file text
+     * @throws IOException if writing to the destination fails
+     */
+    public void rinchiInputToFileText(RinchiInput rInp, Appendable out) throws IOException {
+        if (out == null)
+            throw new IllegalArgumentException("The argument 'out' must not be null.");
+        new MdlReactionWriterInstance(rInp, out, null).write();
+    }
+
+    /**
+     * Writes a reaction represented as RinchiInput object in MDL RXN/RDFile format to a byte buffer
+     * as US-ASCII text, starting at the buffer's current position.
+     * Characters outside US-ASCII, which could only come from element names, are written as '?'.
+     *
+     * @param rInp input RinchiInput object
+     * @param out the destination of the reaction file text
+     * @throws java.nio.BufferOverflowException if the remaining space of the buffer is insufficient,
+     * the buffer position is then undefined
+     */
+    public void rinchiInputToFileText(RinchiInput rInp, ByteBuffer out) {
+        if (out == null)
+            throw new IllegalArgumentException("The argument 'out' must not be null.");
+        try {
+            new MdlReactionWriterInstance(rInp, null, out).write();
+        } catch (IOException e) {
+            //not thrown for a ByteBuffer
+            throw new UncheckedIOException(e);
+        }
     }
     
     /**
@@ -131,19 +187,25 @@ public class MdlReactionWriter {
     private class MdlReactionWriterInstance {
 
         private final RinchiInput rInput;
-        private final StringBuilder stringBuilder = new StringBuilder();
+        private final Appendable out;
+        private final ByteBuffer byteBuffer;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int count = 0;
+        private final DateStamps dates = getDateStamps();
         private final List<RinchiInputComponent> reagents = new ArrayList<>();
         private final List<RinchiInputComponent> products = new ArrayList<>();
         private final List<RinchiInputComponent> agents = new ArrayList<>();
         
-        MdlReactionWriterInstance(RinchiInput rInput) {
+        MdlReactionWriterInstance(RinchiInput rInput, Appendable out, ByteBuffer byteBuffer) {
             if (rInput == null) {
                 throw new IllegalArgumentException("RinchiInput is null!");
             }
             this.rInput = rInput;
+            this.out = out;
+            this.byteBuffer = byteBuffer;
         }
 
-        String write() {
+        void write() throws IOException {
             analyzeComponents();
 
             if (format == ReactionFileFormat.RD || format == ReactionFileFormat.AUTO)
@@ -154,110 +216,115 @@ public class MdlReactionWriter {
             //Add RXN count line: rrrppp
             addInteger(reagents.size(), 3); //rrr
             addInteger(products.size(), 3); //ppp
-            stringBuilder.append(LINE_SEPARATOR);
+            append(LINE_SEPARATOR);
 
             //Add reagents
             for (int i = 0; i < reagents.size(); i++)
-                addRinchiInputComponent(reagents.get(i), "Reagent " + (i + 1));
+                addRinchiInputComponent(reagents.get(i), "Reagent ", i + 1);
             //Add products
             for (int i = 0; i < products.size(); i++)
-                addRinchiInputComponent(products.get(i), "Product " + (i + 1));
+                addRinchiInputComponent(products.get(i), "Product ", i + 1);
 
             //Add agents for RDFile
             if (format == ReactionFileFormat.RD || format == ReactionFileFormat.AUTO) {
                 for (int i = 0; i < agents.size(); i++)
-                    addRinchiInputComponentAsAgent(agents.get(i), i, "Agent " + (i + 1));
+                    addRinchiInputComponentAsAgent(agents.get(i), i);
             }
 
-            return stringBuilder.toString();
+            flush();
         }
 
-        private void addRinchiInputComponent(RinchiInputComponent ric, String moleculeName) {
-            addMolHeader(moleculeName);
+        private void addRinchiInputComponent(RinchiInputComponent ric, String moleculeName, int moleculeNumber) throws IOException {
+            addMolHeader(moleculeName, moleculeNumber);
             addCtabBlockV2000(ric);
             addPropertyBlock(ric);
-            stringBuilder.append(MOLFILE_M_END);
-            stringBuilder.append(LINE_SEPARATOR);
+            append(MOLFILE_M_END);
+            append(LINE_SEPARATOR);
         }
 
-        private void addRinchiInputComponentAsAgent(RinchiInputComponent ric, int agentIndex, String moleculeName) {
-            stringBuilder.append("$DTYPE RXN:VARIATION(1):AGENT(").append(agentIndex + 1).append("):MOL(1):MOLSTRUCTURE");
-            stringBuilder.append(LINE_SEPARATOR);
-            stringBuilder.append("$DATUM $MFMT");
-            stringBuilder.append(LINE_SEPARATOR);
+        private void addRinchiInputComponentAsAgent(RinchiInputComponent ric, int agentIndex) throws IOException {
+            append("$DTYPE RXN:VARIATION(1):AGENT(");
+            addInteger(agentIndex + 1);
+            append("):MOL(1):MOLSTRUCTURE");
+            append(LINE_SEPARATOR);
+            append("$DATUM $MFMT");
+            append(LINE_SEPARATOR);
 
             //Molecule header
-            stringBuilder.append(moleculeName);
-            stringBuilder.append(LINE_SEPARATOR);
-            stringBuilder.append(MOLFILE_HEADER_LINE_2_PROGRAM);
-            stringBuilder.append(LocalDateTime.now().format(DATE_TIME_FORMATTER_MOLFILE));
-            stringBuilder.append(LINE_SEPARATOR);
-            stringBuilder.append(MOLFILE_HEADER_LINE_3_COMMENT);
-            stringBuilder.append(LINE_SEPARATOR);
+            append("Agent ");
+            addInteger(agentIndex + 1);
+            append(LINE_SEPARATOR);
+            append(MOLFILE_HEADER_LINE_2_PROGRAM);
+            append(dates.molfile);
+            append(LINE_SEPARATOR);
+            append(MOLFILE_HEADER_LINE_3_COMMENT);
+            append(LINE_SEPARATOR);
 
             addCtabBlockV2000(ric);
             addPropertyBlock(ric);
-            stringBuilder.append(MOLFILE_M_END);
-            stringBuilder.append(LINE_SEPARATOR);
-        }
-
-        private void addMolHeader(String moleculeName) {
-            stringBuilder.append(MOLFILE_MOL);
-            stringBuilder.append(LINE_SEPARATOR);
-            stringBuilder.append(moleculeName);
-            stringBuilder.append(LINE_SEPARATOR);
-            stringBuilder.append(MOLFILE_HEADER_LINE_2_PROGRAM);
-            stringBuilder.append(LocalDateTime.now().format(DATE_TIME_FORMATTER_MOLFILE));
-            stringBuilder.append(LINE_SEPARATOR);
-            stringBuilder.append(MOLFILE_HEADER_LINE_3_COMMENT);
-            stringBuilder.append(LINE_SEPARATOR);
-        }
-
-        private void addRdFileHeader() {
-            stringBuilder.append(RDFILE_LINE_1_RDFILE);
-            stringBuilder.append(LINE_SEPARATOR);
-            stringBuilder.append(RDFILE_LINE_2_DATM);
-            stringBuilder.append("    ");
-            stringBuilder.append(LocalDateTime.now().format(DATE_TIME_FORMATTER_RDFILE));
-            stringBuilder.append(LINE_SEPARATOR);
-            stringBuilder.append(RDFILE_LINE_3_RFMT);
-            stringBuilder.append(LINE_SEPARATOR);
-        }
-
-        private void addRxnHeader() {
-            stringBuilder.append(RXN_HEADER_LINE_1_RXN);
-            stringBuilder.append(LINE_SEPARATOR);
-            stringBuilder.append(RXN_HEADER_LINE_2_REACTION_NAME);
-            stringBuilder.append(LINE_SEPARATOR);
-            stringBuilder.append(RXN_HEADER_LINE_3_PROGRAM);
-            stringBuilder.append(LocalDateTime.now().format(DATE_TIME_FORMATTER_RXN));
-            stringBuilder.append(LINE_SEPARATOR);
-            stringBuilder.append(RXN_HEADER_LINE_4_COMMENT);
-            stringBuilder.append(LINE_SEPARATOR);
-        }
-
-        private void addCtabBlockV2000(RinchiInputComponent ric) {
+            append(MOLFILE_M_END);
+            append(LINE_SEPARATOR);
+        }
+
+        private void addMolHeader(String moleculeName, int moleculeNumber) throws IOException {
+            append(MOLFILE_MOL);
+            append(LINE_SEPARATOR);
+            append(moleculeName);
+            addInteger(moleculeNumber);
+            append(LINE_SEPARATOR);
+            append(MOLFILE_HEADER_LINE_2_PROGRAM);
+            append(dates.molfile);
+            append(LINE_SEPARATOR);
+            append(MOLFILE_HEADER_LINE_3_COMMENT);
+            append(LINE_SEPARATOR);
+        }
+
+        private void addRdFileHeader() throws IOException {
+            append(RDFILE_LINE_1_RDFILE);
+            append(LINE_SEPARATOR);
+            append(RDFILE_LINE_2_DATM);
+            append("    ");
+            append(dates.rdfile);
+            append(LINE_SEPARATOR);
+            append(RDFILE_LINE_3_RFMT);
+            append(LINE_SEPARATOR);
+        }
+
+        private void addRxnHeader() throws IOException {
+            append(RXN_HEADER_LINE_1_RXN);
+            append(LINE_SEPARATOR);
+            append(RXN_HEADER_LINE_2_REACTION_NAME);
+            append(LINE_SEPARATOR);
+            append(RXN_HEADER_LINE_3_PROGRAM);
+            append(dates.rxn);
+            append(LINE_SEPARATOR);
+            append(RXN_HEADER_LINE_4_COMMENT);
+            append(LINE_SEPARATOR);
+        }
+
+        private void addCtabBlockV2000(RinchiInputComponent ric) throws IOException {
             //Counts line: aaabbblllfffcccsssxxxrrrpppiiimmmvvvvvv
             addInteger(ric.getAtoms().size(), 3); //aaa
             addInteger(ric.getBonds().size(), 3); //bbb
-            stringBuilder.append("  0"); //lll
-            stringBuilder.append("  0"); //fff
+            append("  0"); //lll
+            append("  0"); //fff
 
             Map<InchiAtom, InchiStereoParity> parities = StereoUtils.getAtomParities(ric, checkParityAccordingAtomNumbering);
             //ccc
             if (parities.isEmpty())
-                stringBuilder.append("  0");
+                append("  0");
             else
-                stringBuilder.append("  1");
-            stringBuilder.append("  0"); //sss
-            stringBuilder.append("  0"); //xxx
-            stringBuilder.append("  0"); //rrr
-            stringBuilder.append("  0"); //ppp
-            stringBuilder.append("  0"); //iii
-            stringBuilder.append(MdlReactionUtils.CTAB_LINE_COUNT); //mmm
+                append("  1");
+            append("  0"); //sss
+            append("  0"); //xxx
+            append("  0"); //rrr
+            append("  0"); //ppp
+            append("  0"); //iii
+            append(MdlReactionUtils.CTAB_LINE_COUNT); //mmm
             // at the moment, only RXN and RDF V2000 is supported
-            stringBuilder.append(" ").append(CtabVersion.V2000); //vvvvvv
-            stringBuilder.append(LINE_SEPARATOR);
+            append(" ");
+            append(CtabVersion.V2000.getVersionString()); //vvvvvv
+            append(LINE_SEPARATOR);
 
             //Add Atom block
             for (int i = 0; i < ric.getAtoms().size(); i++) {
@@ -272,7 +339,7 @@ public class MdlReactionWriter {
                 addBondLine(ric.getBond(i), ric);
         }
 
-        private void addAtomLine(InchiAtom atom, InchiStereoParity parity) {
+        private void addAtomLine(InchiAtom atom, InchiStereoParity parity) throws IOException {
             //MDL atom line specification
             //xxxxx.xxxxyyyyy.yyyyzzzzz.zzzz aaaddcccssshhhbbbvvvHHHrrriiimmmnnneee
 
@@ -280,52 +347,52 @@ public class MdlReactionWriter {
             addDouble(atom.getX());
             addDouble(atom.getY());
             addDouble(atom.getZ());
-            stringBuilder.append(" ");
+            append(" ");
             //aaa
             addString(atom.getElName());
             //dd not specified yet
-            stringBuilder.append(" 0");
+            append(" 0");
             //ccc
             if (atom.getRadical() == InchiRadical.DOUBLET)
-                stringBuilder.append("  4"); //MDL code for doublet radical
+                append("  4"); //MDL code for doublet radical
             else
                 addInteger(getOldCtabChargeCoding(atom.getCharge()), 3);
             //sss stereo parity
             if (parity != null) {
                 switch (parity) {
                     case ODD:
-                        stringBuilder.append("  1");
+                        append("  1");
                         break;
                     case EVEN:
-                        stringBuilder.append("  2");
+                        append("  2");
                         break;
                     case UNKNOWN:
-                        stringBuilder.append("  3");
+                        append("  3");
                         break;
                     default:
-                        stringBuilder.append("  0");
+                        append("  0");
                 }
             }
             //hhh: implicit H atoms: used for query
             //addInteger(getImplicitHAtomCoding(atom),3);
-            stringBuilder.append("  0");
+            append("  0");
             //bbb stereo box care: used for queries
-            stringBuilder.append("  0");
+            append("  0");
             //vvv valence
-            stringBuilder.append("  0");
+            append("  0");
             //HHH not specified
-            stringBuilder.append("  0");
+            append("  0");
 
             //rrriiimmmnnneee are not specified
-            stringBuilder.append(LINE_SEPARATOR);
+            append(LINE_SEPARATOR);
         }
 
-        private void addBondLine(InchiBond bond, RinchiInputComponent ric) {
+        private void addBondLine(InchiBond bond, RinchiInputComponent ric) throws IOException {
             //MDL bond line specification
             //111222tttsssxxxrrrccc
 
-            int firstAt = ric.getAtoms().indexOf(bond.getStart()) + 1; //1-based atom numbering
-            int secondAt = ric.getAtoms().indexOf(bond.getEnd()) + 1; //1-based atom numbering
+            int firstAt = ric.getAtomIndex(bond.getStart()) + 1; //1-based atom numbering
+            int secondAt = ric.getAtomIndex(bond.getEnd()) + 1; //1-based atom numbering
 
             //Writing 111222 portion
             if (isWedgeEndAtSecondAtom(bond.getStereo())) {
@@ -345,15 +412,15 @@ public class MdlReactionWriter {
             //sss bond stereo
             addInteger(getBondMdlStereoCode(bond), 3);
             //xxx = not used
-            stringBuilder.append("  0");
+            append("  0");
             //rrr (bond topology, used only for SSS)
-            stringBuilder.append("  0");
+            append("  0");
             //ccc (reacting center status): 0 - unmarked
-            stringBuilder.append("  0");
-            stringBuilder.append(LINE_SEPARATOR);
+            append("  0");
+            append(LINE_SEPARATOR);
         }
 
-        private void addPropertyBlock(RinchiInputComponent ric) {
+        private void addPropertyBlock(RinchiInputComponent ric) throws IOException {
             List<Integer> atomList;
 
             //Add charges
@@ -362,24 +429,24 @@ public class MdlReactionWriter {
                 //Atom charges are added in sets of 8 atoms (M  CHGnn8 aaa vvv ...)
                 int numSets = atomList.size() / 8;
                 for (int curSet = 0; curSet < numSets; curSet++) {
-                    stringBuilder.append("M  CHG  8");
+                    append("M  CHG  8");
                     for (int i = 0; i < 8; i++) {
                         int atIndex = atomList.get(curSet * 8 + i);
                         addInteger(atIndex + 1, 4);
                         addInteger(ric.getAtom(atIndex).getCharge(), 4);
                     }
-                    stringBuilder.append(LINE_SEPARATOR);
+                    append(LINE_SEPARATOR);
                 }
                 //One additional set of k charged atoms (atomList.size() = 8 * numSets + k)
                 int k = atomList.size() % 8;
-                stringBuilder.append("M  CHG");
+                append("M  CHG");
                 addInteger(k, 3);
                 for (int i = 0; i < k; i++) {
                     int atIndex = atomList.get(numSets * 8 + i);
                     addInteger(atIndex + 1, 4);
                     addInteger(ric.getAtom(atIndex).getCharge(), 4);
                 }
-                stringBuilder.append(LINE_SEPARATOR);
+                append(LINE_SEPARATOR);
             }
 
             //Add isotope masses
@@ -388,24 +455,24 @@ public class MdlReactionWriter {
                 //Atom isotope masses are added in sets of 8 atoms (M  ISOnn8 aaa vvv ...)
                 int numSets = atomList.size() / 8;
                 for (int curSet = 0; curSet < numSets; curSet++) {
-                    stringBuilder.append("M  ISO  8");
+                    append("M  ISO  8");
                     for (int i = 0; i < 8; i++) {
                         int atIndex = atomList.get(curSet * 8 + i);
                         addInteger(atIndex + 1, 4);
                         addInteger(ric.getAtom(atIndex).getIsotopicMass(), 4);
                     }
-                    stringBuilder.append(LINE_SEPARATOR);
+                    append(LINE_SEPARATOR);
                 }
                 //One additional set of k isotope masses (atomList.size() = 8 * numSets + k)
                 int k = atomList.size() % 8;
-                stringBuilder.append("M  ISO");
+                append("M  ISO");
                 addInteger(k, 3);
                 for (int i = 0; i < k; i++) {
                     int atIndex = atomList.get(numSets * 8 + i);
                     addInteger(atIndex + 1, 4);
                     addInteger(ric.getAtom(atIndex).getIsotopicMass(), 4);
                 }
-                stringBuilder.append(LINE_SEPARATOR);
+                append(LINE_SEPARATOR);
             }
 
             //Add radicals
@@ -414,18 +481,18 @@ public class MdlReactionWriter {
                 //Atom radicals are added in sets of 8 atoms (M  RADnn8 aaa vvv ...)
                 int numSets = atomList.size() / 8;
                 for (int curSet = 0; curSet < numSets; curSet++) {
-                    stringBuilder.append("M  RAD  8");
+                    append("M  RAD  8");
                     for (int i = 0; i < 8; i++) {
                         int atIndex = atomList.get(curSet * 8 + i);
                         addInteger(atIndex + 1, 4);
                         int radCode = getRadicalMdlCode(ric.getAtom(atIndex).getRadical());
                         addInteger(radCode, 4);
                     }
-                    stringBuilder.append(LINE_SEPARATOR);
+                    append(LINE_SEPARATOR);
                 }
                 //One additional set of k charged atoms (atomList.size() = 8 * numSets + k)
                 int k = atomList.size() % 8;
-                stringBuilder.append("M  RAD");
+                append("M  RAD");
                 addInteger(k, 3);
                 for (int i = 0; i < k; i++) {
                     int atIndex = atomList.get(numSets * 8 + i);
@@ -433,7 +500,7 @@ public class MdlReactionWriter {
                     int radCode = getRadicalMdlCode(ric.getAtom(atIndex).getRadical());
                     addInteger(radCode, 4);
                 }
-                stringBuilder.append(LINE_SEPARATOR);
+                append(LINE_SEPARATOR);
             }
         }
 
@@ -536,42 +603,154 @@ public class MdlReactionWriter {
             }
         }
 
-        private void addString(String vStr) {
+        private void addString(String vStr) throws IOException {
             //Adding empty spaces and value
             final int fixedSpace = 3;
             int nEmptySpaces = fixedSpace - vStr.length();
             if (nEmptySpaces < 0)
-                stringBuilder.append(vStr.substring(fixedSpace));
+                append(vStr, fixedSpace, vStr.length());
             else {
-                stringBuilder.append(vStr);
-                for (int i = 0; i < nEmptySpaces; i++)
-                    stringBuilder.append(" ");
+                append(vStr);
+                addSpaces(nEmptySpaces);
+            }
+        }
+
+        /**
+         * Adds an integer without padding.
+         */
+        private void addInteger(int value) throws IOException {
+            addInteger(value, numberOfCharacters(value));
+        }
+
+        private void addInteger(int value, int fixedSpace) throws IOException {
+            int length = numberOfCharacters(value);
+            if (length > fixedSpace) {
+                addNumber("0", fixedSpace);
+                return;
+            }
+            addSpaces(fixedSpace - length);
+            ensureCapacity(length);
+            int end = count + length;
+            long v = Math.abs((long) value);
+            for (int i = end - 1; i >= count; i--) {
+                buffer[i] = (char) ('0' + v % 10);
+                v /= 10;
             }
+            if (value < 0)
+                buffer[count] = '-';
+            count = end;
         }
 
-        private void addInteger(int value, int fixedSpace) {
-            addNumber(Integer.toString(value), fixedSpace);
+        private int numberOfCharacters(int value) {
+            int length = value < 0 ? 2 : 1;
+            long v = Math.abs((long) value);
+            while (v >= 10) {
+                v /= 10;
+                length++;
+            }
+            return length;
         }
 
-        private void addDouble(Double value) {
+        private void addDouble(double value) throws IOException {
             if (Double.isNaN(value) || Double.isInfinite(value)) {
-                addNumber(MdlReactionUtils.MDL_NUMBER_FORMAT.format(0.0), MdlReactionUtils.MDL_FLOAT_SPACES);
-            } else {
-                addNumber(MdlReactionUtils.MDL_NUMBER_FORMAT.format(value), MdlReactionUtils.MDL_FLOAT_SPACES);
+                addDouble(0.0);
+                return;
+            }
+            //Formats with four fraction digits, identical to MDL_NUMBER_FORMAT (HALF_EVEN rounding of the exact value).
+            //Values close to half way between two results, as well as large values that
+            //MDL_NUMBER_FORMAT truncates to four integer digits, are left to MDL_NUMBER_FORMAT
+            double abs = Math.abs(value);
+            if (abs <= MAX_FAST_FORMAT_COORDINATE) {
+                double scaled = abs * 10000;
+                long n = (long) scaled;
+                double fraction = scaled - n;
+                if (Math.abs(fraction - 0.5) > HALF_WAY_TOLERANCE) {
+                    if (fraction > 0.5)
+                        n++;
+                    //MDL_NUMBER_FORMAT keeps the sign of negative numbers rounded to zero
+                    boolean negative = value < 0 || (value == 0 && 1 / value < 0);
+                    int intLength = numberOfCharacters((int) (n / 10000)) + (negative ? 1 : 0);
+                    addSpaces(MdlReactionUtils.MDL_FLOAT_SPACES - intLength - 5);
+                    if (negative)
+                        append('-');
+                    addInteger((int) (n / 10000));
+                    append('.');
+                    ensureCapacity(4);
+                    int fractionDigits = (int) (n % 10000);
+                    for (int i = count + 3; i >= count; i--) {
+                        buffer[i] = (char) ('0' + fractionDigits % 10);
+                        fractionDigits /= 10;
+                    }
+                    count += 4;
+                    return;
+                }
+            }
+            String formatted;
+            //NumberFormat is not thread-safe
+            synchronized (MdlReactionUtils.MDL_NUMBER_FORMAT) {
+                formatted = MdlReactionUtils.MDL_NUMBER_FORMAT.format(value);
             }
+            addNumber(formatted, MdlReactionUtils.MDL_FLOAT_SPACES);
         }
 
-        private void addNumber(String numberAsString, int fixedSpace) {
+        private void addNumber(String numberAsString, int fixedSpace) throws IOException {
             if (numberAsString.length() > fixedSpace) {
                 numberAsString = "0";
             }
 
             //Adding empty spaces and value
-            int nEmptySpaces = fixedSpace - numberAsString.length();
-            for (int i = 0; i < nEmptySpaces; i++) {
-                stringBuilder.append(" ");
+            addSpaces(fixedSpace - numberAsString.length());
+            append(numberAsString);
+        }
+
+        private void addSpaces(int n) throws IOException {
+            for (int i = 0; i < n; i++)
+                append(' ');
+        }
+
+        private void append(String s) throws IOException {
+            append(s, 0, s.length());
+        }
+
+        private void append(String s, int start, int end) throws IOException {
+            while (start < end) {
+                if (count == buffer.length)
+                    flush();
+                int n = Math.min(end - start, buffer.length - count);
+                s.getChars(start, start + n, buffer, count);
+                count += n;
+                start += n;
             }
-            stringBuilder.append(numberAsString);
+        }
+
+        private void append(char c) throws IOException {
+            if (count == buffer.length)
+                flush();
+            buffer[count++] = c;
+        }
+
+        private void ensureCapacity(int n) throws IOException {
+            if (count + n > buffer.length)
+                flush();
+        }
+
+        /**
+         * Passes the buffered characters on to the destination.
+         */
+        private void flush() throws IOException {
+            if (byteBuffer != null) {
+                for (int i = 0; i < count; i++) {
+                    char c = buffer[i];
+                    byteBuffer.put(c < 128 ? (byte) c : (byte) '?');
+                }
+            } else if (out instanceof Writer) {
+                ((Writer) out).write(buffer, 0, count);
+            } else if (out instanceof StringBuilder) {
+                ((StringBuilder) out).append(buffer, 0, count);
+            } else {
+                out.append(CharBuffer.wrap(buffer, 0, count));
+            }
+            count = 0;
         }
 
         private int getOldCtabChargeCoding(int charge) {
@@ -597,4 +776,32 @@ public class MdlReactionWriter {
         }
 
     }
+
+    private static DateStamps getDateStamps() {
+        long minute = System.currentTimeMillis() / 60000;
+        DateStamps stamps = dateStamps;
+        if (stamps.minute != minute) {
+            stamps = new DateStamps(minute);
+            dateStamps = stamps;
+        }
+        return stamps;
+    }
+
+    /**
+     * Formatted dates of the header lines for one minute.
+     */
+    private static class DateStamps {
+        final long minute;
+        final String rdfile;
+        final String rxn;
+        final String molfile;
+
+        DateStamps(long minute) {
+            this.minute = minute;
+            LocalDateTime now = LocalDateTime.now();
+            this.rdfile = now.format(DATE_TIME_FORMATTER_RDFILE);
+            this.rxn = now.format(DATE_TIME_FORMATTER_RXN);
+            this.molfile = now.format(DATE_TIME_FORMATTER_MOLFILE);
+        }
+    }
 }
@@ -45,10 +45,15 @@ public class PeriodicTable {
 
     private static final Map<String, Integer> elementSymbolAtomicNumberMap = new HashMap<>();
 
+    // element symbols indexed by their one or two (ASCII) characters
+    private static final String[] elementSymbolLookup = new String[128 * 128];
+
     // initialize the map with (element symbol, atomic symbol) pairs
     static {
         for (int i = 0; i < mElementSymbol.length; i++) {
             elementSymbolAtomicNumberMap.put(mElementSymbol[i], i);
+            String symbol = mElementSymbol[i];
+            elementSymbolLookup[symbol.charAt(0) << 7 | (symbol.length() == 2 ? symbol.charAt(1) : 0)] = symbol;
         }
     }
 
@@ -171,6 +176,25 @@ public class PeriodicTable {
                     285  //Fl 114  using min value of: 285 286 287 288 289  (Uuq)
             };
 
+    /**
+     * Returns the element symbol given by the characters <code>chars[start]</code> to <code>chars[end - 1]</code>.
+     *
+     * @param chars character array
+     * @param start index of the first character of the symbol
+     * @param end index after the last character of the symbol
+     * @return the element symbol as a constant string, <code>null</code> if the characters are not a valid element symbol
+     */
+    static String getElementSymbol(char[] chars, int start, int end) {
+        int len = end - start;
+        if (len < 1 || len > 2)
+            return null;
+        char c1 = chars[start];
+        char c2 = len == 2 ? chars[start + 1] : 0;
+        if (c1 >= 128 || c2 >= 128)
+            return null;
+        return elementSymbolLookup[c1 << 7 | c2];
+    }
+
     /**
      * Returns the atomic number for a provided element symbol.
      *
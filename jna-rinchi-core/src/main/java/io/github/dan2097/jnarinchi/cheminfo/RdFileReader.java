@@ -0,0 +1,283 @@
+/**
+ * JNA-RInChI - Library for calling RInChI from Java
+ * Copyright © 2022 Nikolay Kochev
+ * <p>
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnarinchi.cheminfo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import io.github.dan2097.jnarinchi.ReactionFileFormat;
+import io.github.dan2097.jnarinchi.RinchiInput;
+
+/**
+ * Reads the reactions of an RDFile with any number of <code>$RFMT</code> records one at a time.
+ * <p>
+ * Each record is returned as the text of a stand-alone RDFile, i.e. the file header (<code>$RDFILE</code> and
+ * <code>$DATM</code> lines) followed by the lines of the record, which can be passed to
+ * {@link io.github.dan2097.jnarinchi.JnaRinchi#fileTextToRinchi(String)} or to {@link MdlReactionReader}.
+ * Alternatively {@link #nextRinchiInput()} parses each record into a RinchiInput object.
+ * Input that contains no <code>$RFMT</code> line, e.g. an RXN file, is returned as a single record.
+ * </p>
+ * <p>
+ * Only the current record is held in memory. Records are split by looking at the start of each line only,
+ * so splitting is much cheaper than parsing and the records can be handed to several threads,
+ * e.g. with <code>reader.records().parallel()</code>.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class RdFileReader implements Closeable {
+
+    private static final String RECORD_START = "$RFMT";
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int pos = 0;
+    private int limit = 0;
+    private boolean eof = false;
+
+    private String header = null;
+    private final StringBuilder record = new StringBuilder();
+    private long recordCount = 0;
+    private MdlReactionReader mdlReader = null;
+
+    /**
+     * Creates a reader for RDFile text from a character stream.
+     *
+     * @param reader the character stream
+     */
+    public RdFileReader(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a reader for an RDFile from a byte stream in UTF-8 encoding.
+     *
+     * @param inputStream the byte stream
+     */
+    public RdFileReader(InputStream inputStream) {
+        this(inputStream, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates a reader for an RDFile from a byte stream in the given encoding.
+     *
+     * @param inputStream the byte stream
+     * @param charset the encoding of the file
+     */
+    public RdFileReader(InputStream inputStream, Charset charset) {
+        this(new InputStreamReader(inputStream, charset));
+    }
+
+    /**
+     * Creates a reader for an RDFile in UTF-8 encoding.
+     *
+     * @param path the file
+     * @throws IOException if the file cannot be opened
+     */
+    public RdFileReader(Path path) throws IOException {
+        this(Files.newInputStream(path));
+    }
+
+    RdFileReader(Reader reader, int bufferSize) {
+        if (reader == null)
+            throw new IllegalArgumentException("The argument 'reader' must not be null.");
+        this.reader = reader;
+        //A full record start marker must fit into the buffer
+        this.buffer = new char[Math.max(bufferSize, RECORD_START.length())];
+    }
+
+    /**
+     * Returns the text of the next reaction record as a stand-alone RDFile.
+     *
+     * @return the record text or <code>null</code> if there are no more records
+     * @throws IOException if reading from the underlying stream fails
+     */
+    public String nextRecordText() throws IOException {
+        if (header == null) {
+            header = readHeader();
+            if (atEndOfInput()) {
+                //No records, the whole input is one reaction (e.g. RXN format)
+                String text = header;
+                header = "";
+                if (text.isEmpty())
+                    return null;
+                recordCount++;
+                return text;
+            }
+        }
+
+        record.setLength(0);
+        if (atEndOfInput())
+            return null;
+
+        record.append(header);
+        //The first line is the record start
+        appendLine(record);
+        while (!atEndOfInput() && !atRecordStart())
+            appendLine(record);
+        recordCount++;
+        return record.toString();
+    }
+
+    /**
+     * Reads and parses the next reaction record.
+     *
+     * @return the reaction or <code>null</code> if there are no more records
+     * @throws IOException if reading from the underlying stream fails
+     * @throws MdlReactionReaderException if the record cannot be parsed
+     */
+    public RinchiInput nextRinchiInput() throws IOException, MdlReactionReaderException {
+        String recordText = nextRecordText();
+        if (recordText == null)
+            return null;
+        if (mdlReader == null)
+            mdlReader = new MdlReactionReader(header.isEmpty() ? ReactionFileFormat.AUTO : ReactionFileFormat.RD, false);
+        return mdlReader.fileTextToRinchiInput(recordText);
+    }
+
+    /**
+     * Returns the number of records read so far.
+     *
+     * @return number of records
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns a sequential stream of the remaining record texts, see {@link #nextRecordText()}.
+     * The stream may be made parallel, in which case the records are read in batches by one thread at a time.
+     * IOExceptions are rethrown as UncheckedIOException.
+     *
+     * @return stream of record texts
+     */
+    public Stream<String> records() {
+        Iterator<String> iterator = new Iterator<String>() {
+            private String next = null;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = nextRecordText();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                String text = next;
+                next = null;
+                return text;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Reads the lines preceding the first record, which are repeated at the start of each record text.
+     */
+    private String readHeader() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (!atEndOfInput() && !atRecordStart())
+            appendLine(sb);
+        return sb.toString();
+    }
+
+    private boolean atEndOfInput() throws IOException {
+        return pos == limit && fill() < 0;
+    }
+
+    private boolean atRecordStart() throws IOException {
+        if (limit - pos < RECORD_START.length() && !eof)
+            fill();
+        if (limit - pos < RECORD_START.length())
+            return false;
+        for (int i = 0; i < RECORD_START.length(); i++)
+            if (buffer[pos + i] != RECORD_START.charAt(i))
+                return false;
+        return true;
+    }
+
+    /**
+     * Appends the next line including its line terminator.
+     */
+    private void appendLine(StringBuilder sb) throws IOException {
+        while (true) {
+            for (int i = pos; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    sb.append(buffer, pos, i + 1 - pos);
+                    pos = i + 1;
+                    return;
+                }
+            }
+            sb.append(buffer, pos, limit - pos);
+            pos = limit;
+            if (fill() < 0)
+                return;
+        }
+    }
+
+    /**
+     * Moves the unread characters to the start of the buffer and reads more input after them.
+     *
+     * @return number of characters read or -1 at the end of input
+     */
+    private int fill() throws IOException {
+        if (eof)
+            return -1;
+        int remaining = limit - pos;
+        System.arraycopy(buffer, pos, buffer, 0, remaining);
+        pos = 0;
+        limit = remaining;
+        int n = reader.read(buffer, limit, buffer.length - limit);
+        if (n < 0) {
+            eof = true;
+            return -1;
+        }
+        limit += n;
+        return n;
+    }
+}
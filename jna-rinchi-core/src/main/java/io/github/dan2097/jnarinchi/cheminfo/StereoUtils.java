@@ -151,11 +151,20 @@ public class StereoUtils {
             return null;
 
         List<InchiAtom> sortedList = new ArrayList<>(atoms);
-        sortedList.sort(Comparator.comparingInt(atom -> inchiInput.getAtoms().indexOf(atom)));
+        sortedList.sort(Comparator.comparingInt(atom -> getAtomIndex(inchiInput, atom)));
 
         return sortedList.toArray(new InchiAtom[sortedList.size()]);
     }
 
+    /**
+     * Returns the index of an atom, in constant time for a {@link RinchiInputComponent}.
+     */
+    private static int getAtomIndex(InchiInput inchiInput, InchiAtom atom) {
+        if (inchiInput instanceof RinchiInputComponent)
+            return ((RinchiInputComponent) inchiInput).getAtomIndex(atom);
+        return inchiInput.getAtoms().indexOf(atom);
+    }
+
     /**
      * Creates a new tetrahedral stereo element with ligants sorted according to atom indices.
      * Stereo element parity is updated/inverted to the new atom order
@@ -188,7 +197,7 @@ public class StereoUtils {
         int k = n - numImplH;
         for (int i = k - 1; i >= 0; i--)
             for (int j = 0; j < i; j++)
-                if (inchiInput.getAtoms().indexOf(ligands[i]) > inchiInput.getAtoms().indexOf(ligands[j])) {
+                if (getAtomIndex(inchiInput, ligands[i]) > getAtomIndex(inchiInput, ligands[j])) {
                     swap(i, j, ligands);
                     numOfSwaps++;
                 }
@@ -211,7 +220,7 @@ public class StereoUtils {
      * @param ric target RinchiInputComponent object
      */
     public static void guessUndefinedTetrahedralStereosBasedOnBondInfo(RinchiInputComponent ric, Set<InchiAtom> knownCenters) {
-        List<InchiAtom> newCenters = new ArrayList<>();
+        Set<InchiAtom> newCenters = new HashSet<>();
         for (int i = 0; i < ric.getBonds().size(); i++) {
             InchiBond bo = ric.getBonds().get(i);
             if (bo.getType() != InchiBondType.SINGLE)
@@ -143,6 +143,16 @@ class JnaRinchiTest {
             assertEquals(rfi.getRinchiKeyWeb(), rinchiKeyOut.getRinchiKey(), "Web-RinchiKey for " + reactionFile
                     + " generated from RInChI");
         }
+
+        //Generate RInChI, RAuxInfo and all RInChIKeys at once
+        RinchiFullOutput fullOut = JnaRinchi.fileTextToRinchiFull(reactText);
+        assertEquals(Status.SUCCESS, fullOut.getStatus(), "Full RInChI output status for " + reactionFile);
+        assertEquals(rinchiOut.getRinchi(), fullOut.getRinchi(), "Rinchi (full output) for " + reactionFile);
+        assertEquals(rinchiOut.getAuxInfo(), fullOut.getAuxInfo(), "RAuxInfo (full output) for " + reactionFile);
+        for (RinchiKeyType keyType : RinchiKeyType.values()) {
+            assertEquals(JnaRinchi.fileTextToRinchiKey(reactText, keyType).getRinchiKey(), fullOut.getRinchiKey(keyType),
+                    keyType + " RinchiKey (full output) for " + reactionFile);
+        }
     }
 
     /**
@@ -995,10 +1005,32 @@ class JnaRinchiTest {
         Assertions.assertEquals("The argument 'fileFormat' must not be null.", exception.getMessage());
     }
 
+    @Test
+    public void testFileTextToRinchiFull_invalidText() {
+        RinchiFullOutput fullOut = JnaRinchi.fileTextToRinchiFull("not a reaction");
+        assertEquals(Status.ERROR, fullOut.getStatus());
+        assertEquals(JnaRinchi.fileTextToRinchi("not a reaction").getErrorMessage(), fullOut.getErrorMessage());
+        assertEquals("", fullOut.getLongRinchiKey());
+        assertTrue(fullOut.getRinchiKeys().isEmpty());
+    }
+
+    @Test
+    public void testToRinchiFull() throws IOException {
+        String reactText = TestUtils.readTextFromResourceAsString("examples/Esterification_01.rdf");
+        RinchiFullInfo rfi = readRinchiFullInfoFromResourceFile("examples/Esterification_01.txt");
+        RinchiInputFromRinchiOutput input = JnaRinchi.getRinchiInputFromRinchi(rfi.getRinchi(), rfi.getAuxInfo());
+        RinchiFullOutput fullOut = JnaRinchi.toRinchiFull(input.getRinchiInput(), RinchiOptions.DEFAULT_OPTIONS);
+        assertEquals(Status.SUCCESS, fullOut.getStatus());
+        assertEquals(JnaRinchi.fileTextToRinchi(reactText).getRinchi(), fullOut.getRinchi());
+        assertEquals(rfi.getRinchiKeyLong(), fullOut.getLongRinchiKey());
+        assertEquals(rfi.getRinchiKeyShort(), fullOut.getShortRinchiKey());
+        assertEquals(rfi.getRinchiKeyWeb(), fullOut.getWebRinchiKey());
+    }
+
     /**
      * Mutable data class for results that are generated when calculating a RInChI (rinchi, auxinfo, rinchiKeyLong, rinchiKeyShort, rinchiKeyWeb).
      */
-    private static class RinchiFullInfo {
+    static class RinchiFullInfo {
         private String rinchi = null;
         private String auxInfo = null;
         private String rinchiKeyLong = null;
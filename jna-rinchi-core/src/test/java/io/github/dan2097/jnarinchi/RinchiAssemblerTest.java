@@ -0,0 +1,234 @@
+/**
+ * JNA-RInChI - Library for calling RInChI from Java
+ * Copyright © 2022 Nikolay Kochev
+ * <p>
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnarinchi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.dan2097.jnainchi.InchiAtom;
+import io.github.dan2097.jnainchi.InchiBond;
+import io.github.dan2097.jnainchi.InchiBondStereo;
+import io.github.dan2097.jnainchi.InchiBondType;
+import io.github.dan2097.jnainchi.InchiRadical;
+import io.github.dan2097.jnarinchi.cheminfo.MdlReactionReader;
+import io.github.dan2097.jnarinchi.cheminfo.MdlReactionReaderException;
+import io.github.dan2097.jnarinchi.cheminfo.MdlReactionUtils;
+import io.github.dan2097.jnarinchi.cheminfo.MdlReactionWriter;
+
+/**
+ * Testing that the direct RInChI generation gives the same result as the RDFile route.
+ */
+public class RinchiAssemblerTest {
+
+    private static final String[] EXAMPLES = {
+            "examples/1_reactant_-_A.rxn", "examples/1_reactant_-_no_product.rxn",
+            "examples/1_reactant_-_no_structure.rxn", "examples/1_reactant_-_R.rxn",
+            "examples/1_reactant_-_X.rxn", "examples/Esterification_01_flat.rdf",
+            "examples/Esterification_01.rdf", "examples/Esterification_02.rdf",
+            "examples/Esterification_03.rdf", "examples/Inverted_stereochemistry.rxn",
+            "examples/No_Structure_0-02.rdf", "examples/No_reactant_-_1_product.rxn",
+            "examples/No_reactant_-_1_product_02.rxn", "examples/No_reactant_-_no_product.rdf",
+            "examples/R-_-A.rxn", "examples/R005a.rxn", "examples/R005a_with_agents.rxn",
+            "examples/RingOpening01.rxn", "examples/Styrene_-_Polystyrene_as_no-struct.rxn",
+            "examples/Tautomerization_01.rxn", "examples/X_-_1_product.rxn"
+    };
+
+    private static final RinchiOptions FORCE_EQUILIBRIUM =
+            RinchiOptions.builder().withFlag(RinchiFlag.ForceEquilibrium).build();
+
+    /**
+     * Generates RInChI and RAuxInfo the way it was done before the direct route existed.
+     */
+    private static RinchiOutput toRinchiViaFileText(RinchiInput rinchiInput, RinchiOptions options) {
+        String fileText = new MdlReactionWriter(ReactionFileFormat.RD).rinchiInputToFileText(rinchiInput);
+        return JnaRinchi.fileTextToRinchi(fileText, options);
+    }
+
+    private static void assertSameAsFileTextRoute(RinchiInput rinchiInput, RinchiOptions options, String info) {
+        RinchiOutput expected = toRinchiViaFileText(rinchiInput, options);
+        RinchiOutput direct = new RinchiAssembler().assemble(rinchiInput, options);
+        if (direct != null) {
+            assertSame(Status.SUCCESS, expected.getStatus(), "RDFile route status for " + info);
+            assertEquals(expected.getRinchi(), direct.getRinchi(), "RInChI for " + info);
+            assertEquals(expected.getAuxInfo(), direct.getAuxInfo(), "RAuxInfo for " + info);
+        }
+        RinchiOutput output = JnaRinchi.toRinchi(rinchiInput, options);
+        assertSame(expected.getStatus(), output.getStatus(), "Status for " + info);
+        assertEquals(expected.getRinchi(), output.getRinchi(), "RInChI for " + info);
+        assertEquals(expected.getAuxInfo(), output.getAuxInfo(), "RAuxInfo for " + info);
+    }
+
+    @Test
+    public void testExamples() throws Exception {
+        for (String example : EXAMPLES) {
+            String fileText = TestUtils.readTextFromResourceAsString(example);
+            RinchiInput rinchiInput;
+            try {
+                rinchiInput = new MdlReactionReader().fileTextToRinchiInput(fileText);
+            } catch (MdlReactionReaderException e) {
+                //e.g. R-groups are not supported by the reader
+                continue;
+            }
+            assertSameAsFileTextRoute(rinchiInput, RinchiOptions.DEFAULT_OPTIONS, example);
+            assertSameAsFileTextRoute(rinchiInput, FORCE_EQUILIBRIUM, example + " (equilibrium)");
+        }
+    }
+
+    @Test
+    public void testExamplesWith0DStereo() throws Exception {
+        //RinchiInput objects obtained from RInChI carry stereo elements instead of wedge bonds
+        for (String example : EXAMPLES) {
+            String fileText = TestUtils.readTextFromResourceAsString(example);
+            RinchiOutput rinchiOutput = JnaRinchi.fileTextToRinchi(fileText);
+            if (rinchiOutput.getStatus() != Status.SUCCESS)
+                continue;
+            RinchiInputFromRinchiOutput input = JnaRinchi.getRinchiInputFromRinchi(rinchiOutput.getRinchi(), rinchiOutput.getAuxInfo());
+            assertSame(Status.SUCCESS, input.getStatus(), "RInChI to RinchiInput status for " + example);
+            assertSameAsFileTextRoute(input.getRinchiInput(), RinchiOptions.DEFAULT_OPTIONS, example + " (0D)");
+        }
+    }
+
+    static RinchiInput createRandomReaction(Random random) {
+        String[] elements = {"C", "C", "C", "N", "O", "S", "P", "Cl", "H", "Na", "Fe", "B"};
+        RinchiInput rinchiInput = new RinchiInput();
+        int nComponents = 1 + random.nextInt(4);
+        for (int k = 0; k < nComponents; k++) {
+            RinchiInputComponent ric = new RinchiInputComponent();
+            ric.setRole(ReactionComponentRole.values()[random.nextInt(3)]);
+            int nAtoms = random.nextInt(8) == 0 ? 0 : 1 + random.nextInt(6);
+            List<InchiAtom> atoms = new ArrayList<>();
+            for (int j = 0; j < nAtoms; j++) {
+                String elName = elements[random.nextInt(elements.length)];
+                InchiAtom atom = random.nextInt(3) == 0 ? new InchiAtom(elName)
+                        : new InchiAtom(elName, random.nextGaussian() * 3, random.nextGaussian() * 3, 0.0);
+                if (random.nextInt(6) == 0)
+                    atom.setCharge(random.nextInt(5) - 2);
+                if (random.nextInt(8) == 0)
+                    atom.setRadical(InchiRadical.values()[random.nextInt(InchiRadical.values().length)]);
+                if (random.nextInt(8) == 0 && "C".equals(elName))
+                    atom.setIsotopicMass(13);
+                if (random.nextInt(5) == 0)
+                    atom.setImplicitHydrogen(random.nextInt(3));
+                ric.addAtom(atom);
+                atoms.add(atom);
+            }
+            for (int j = 1; j < nAtoms; j++) {
+                InchiBondType type = InchiBondType.values()[random.nextInt(InchiBondType.values().length)];
+                InchiBondStereo stereo = random.nextInt(4) == 0
+                        ? InchiBondStereo.values()[random.nextInt(InchiBondStereo.values().length)]
+                        : InchiBondStereo.NONE;
+                ric.addBond(new InchiBond(atoms.get(random.nextInt(j)), atoms.get(j), type, stereo));
+            }
+            rinchiInput.addComponent(ric);
+        }
+        return rinchiInput;
+    }
+
+    @Test
+    public void testRandomReactions() {
+        Random random = new Random(31);
+        for (int i = 0; i < 300; i++) {
+            RinchiInput rinchiInput = createRandomReaction(random);
+            assertSameAsFileTextRoute(rinchiInput, random.nextBoolean() ? RinchiOptions.DEFAULT_OPTIONS : FORCE_EQUILIBRIUM,
+                    "random reaction " + i);
+        }
+    }
+
+    @Test
+    public void testComponentCache() {
+        //Reactions put together from a small pool of components, as in a reaction database
+        Random random = new Random(17);
+        List<RinchiInputComponent> pool = new ArrayList<>();
+        while (pool.size() < 20)
+            pool.addAll(createRandomReaction(random).getComponents());
+
+        RinchiAssembler assembler = new RinchiAssembler(1000);
+        for (int i = 0; i < 200; i++) {
+            RinchiInput rinchiInput = new RinchiInput();
+            int nComponents = 1 + random.nextInt(4);
+            for (int k = 0; k < nComponents; k++)
+                rinchiInput.addComponent(pool.get(random.nextInt(pool.size())));
+            RinchiOutput expected = toRinchiViaFileText(rinchiInput, RinchiOptions.DEFAULT_OPTIONS);
+            RinchiOutput output = assembler.toRinchi(rinchiInput);
+            assertSame(expected.getStatus(), output.getStatus(), "Status for reaction " + i);
+            assertEquals(expected.getRinchi(), output.getRinchi(), "RInChI for reaction " + i);
+            assertEquals(expected.getAuxInfo(), output.getAuxInfo(), "RAuxInfo for reaction " + i);
+        }
+        assertTrue(assembler.getCacheMisses() <= pool.size(), "Each component is generated once");
+        assertTrue(assembler.getCacheHits() > assembler.getCacheMisses(), "Cache hits");
+        assertEquals(assembler.getCacheMisses(), assembler.getCacheSize());
+
+        assembler.clearCache();
+        assertEquals(0, assembler.getCacheSize());
+    }
+
+    @Test
+    public void testComponentCacheSizeLimit() {
+        RinchiAssembler assembler = new RinchiAssembler(2);
+        for (String elName : new String[]{"C", "N", "O", "S"}) {
+            RinchiInput rinchiInput = new RinchiInput();
+            RinchiInputComponent ric = new RinchiInputComponent();
+            ric.addAtom(new InchiAtom(elName));
+            rinchiInput.addComponent(ric);
+            assertSame(Status.SUCCESS, assembler.toRinchi(rinchiInput).getStatus());
+        }
+        assertEquals(2, assembler.getCacheSize());
+        assertEquals(4, assembler.getCacheMisses());
+        assertThrows(IllegalArgumentException.class, () -> new RinchiAssembler(-1));
+    }
+
+    @Test
+    public void testUnsupportedComponent() {
+        RinchiInput rinchiInput = new RinchiInput();
+        RinchiInputComponent ric = new RinchiInputComponent();
+        ric.addAtom(new InchiAtom("D"));
+        rinchiInput.addComponent(ric);
+        assertNull(new RinchiAssembler().assemble(rinchiInput, RinchiOptions.DEFAULT_OPTIONS));
+        //Falls back to the RDFile route
+        assertSameAsFileTextRoute(rinchiInput, RinchiOptions.DEFAULT_OPTIONS, "deuterium");
+    }
+
+    @Test
+    public void testRoundCoordinate() {
+        double[] values = {0.0, -0.0, 1.23455, 1.23465, -1.23455, 0.00005, -0.00005, 2.5, 1234.56789,
+                9998.99995, 9999.99995, -9999.12345, 12345.678912, -12345.678912, 123456.7, Double.NaN,
+                Double.POSITIVE_INFINITY, 1e-9, -3.14159265};
+        for (double value : values) {
+            String formatted = Double.isNaN(value) || Double.isInfinite(value)
+                    ? MdlReactionUtils.MDL_NUMBER_FORMAT.format(0.0)
+                    : MdlReactionUtils.MDL_NUMBER_FORMAT.format(value);
+            double expected = formatted.length() > MdlReactionUtils.MDL_FLOAT_SPACES ? 0.0 : Double.parseDouble(formatted);
+            assertEquals(expected, RinchiAssembler.roundCoordinate(value), 0.0, "Rounding of " + value);
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            double value = (random.nextDouble() - 0.5) * 200;
+            double expected = Double.parseDouble(MdlReactionUtils.MDL_NUMBER_FORMAT.format(value));
+            assertEquals(expected, RinchiAssembler.roundCoordinate(value), 0.0, "Rounding of " + value);
+        }
+    }
+}
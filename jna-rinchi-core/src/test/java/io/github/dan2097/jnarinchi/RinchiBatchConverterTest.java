@@ -0,0 +1,142 @@
+/**
+ * JNA-RInChI - Library for calling RInChI from Java
+ * Copyright © 2022 Nikolay Kochev
+ * <p>
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnarinchi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.dan2097.jnarinchi.RinchiBatchConverter.OutputFormat;
+import io.github.dan2097.jnarinchi.cheminfo.RdFileReader;
+
+public class RinchiBatchConverterTest {
+
+    private static final String HEADER = "$RDFILE 1\n$DATM 1/23/2016 0:50:11\n";
+    private static final String[] EXAMPLES = {
+            "examples/Esterification_01.rdf", "examples/Esterification_02.rdf", "examples/Example_04_simple.rdf",
+            "examples/5_variations_1_step_each.rdf", "examples/No_Structure_0-02.rdf",
+            "examples/1_variation_4_steps.rdf", "examples/err__star_reactant-product.rdf",
+            "examples/ok__star_star-nostruct.rdf"
+    };
+    private static final String[] RXN_EXAMPLES = {
+            "examples/R005a.rxn", "examples/RingOpening01.rxn", "examples/Inverted_stereochemistry.rxn",
+            "examples/Tautomerization_01.rxn"
+    };
+
+    /**
+     * Concatenates the records of the example files, repeated <code>copies</code> times, into one RDFile.
+     */
+    private static String createMultiRecordFile(int copies) throws IOException {
+        StringBuilder sb = new StringBuilder(HEADER);
+        for (int i = 0; i < copies; i++) {
+            for (String example : EXAMPLES) {
+                String text = TestUtils.readTextFromResourceAsString(example);
+                sb.append(text.substring(text.indexOf("$RFMT")));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String expectedLine(long recordNumber, String source, RinchiFullOutput output, OutputFormat format) {
+        Object[] values = {recordNumber, source, output.getStatus(), output.getRinchi(), output.getAuxInfo(),
+                output.getLongRinchiKey(), output.getShortRinchiKey(), output.getWebRinchiKey(),
+                output.getErrorCode(), output.getErrorMessage()};
+        StringBuilder sb = new StringBuilder();
+        if (format == OutputFormat.TSV)
+            RinchiBatchConverter.appendTsv(sb, values);
+        else
+            RinchiBatchConverter.appendJson(sb, values);
+        return sb.toString();
+    }
+
+    private static List<String> expectedLines(String fileText, OutputFormat format) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (format == OutputFormat.TSV)
+            lines.add(String.join("\t", RinchiBatchConverter.COLUMNS));
+        try (RdFileReader reader = new RdFileReader(new StringReader(fileText))) {
+            String record;
+            while ((record = reader.nextRecordText()) != null)
+                lines.add(expectedLine(reader.getRecordCount(), "", JnaRinchi.fileTextToRinchiFull(record), format));
+        }
+        return lines;
+    }
+
+    @Test
+    public void testRdFileInInputOrder() throws IOException {
+        String fileText = createMultiRecordFile(20);
+        for (OutputFormat format : OutputFormat.values()) {
+            List<String> expected = expectedLines(fileText, format);
+            List<long[]> progress = new ArrayList<>();
+            RinchiBatchConverter converter = RinchiBatchConverter.builder().withOutputFormat(format)
+                    .withThreads(4).withQueueCapacity(7)
+                    .withProgressListener((records, errors) -> progress.add(new long[] {records, errors}), 50)
+                    .build();
+            StringWriter out = new StringWriter();
+            RinchiBatchConverter.Summary summary = converter.convertRdFile(new StringReader(fileText), out);
+
+            assertEquals(expected, Arrays.asList(out.toString().split("\n")), format.toString());
+            long numRecords = expected.size() - (format == OutputFormat.TSV ? 1 : 0);
+            assertEquals(numRecords, summary.getRecordCount());
+            assertEquals(20, summary.getErrorCount(), "one failing record per copy");
+            assertEquals(numRecords / 50 + 1, progress.size());
+            assertEquals(numRecords, progress.get(progress.size() - 1)[0]);
+            assertEquals(20, progress.get(progress.size() - 1)[1]);
+        }
+    }
+
+    @Test
+    public void testDirectory(@TempDir Path directory) throws IOException {
+        List<String> expected = new ArrayList<>();
+        expected.add(String.join("\t", RinchiBatchConverter.COLUMNS));
+        for (int i = 0; i < RXN_EXAMPLES.length; i++) {
+            String fileText = TestUtils.readTextFromResourceAsString(RXN_EXAMPLES[i]);
+            String fileName = "reaction" + i + ".rxn";
+            Files.write(directory.resolve(fileName), fileText.getBytes(StandardCharsets.UTF_8));
+            expected.add(expectedLine(i + 1, fileName, JnaRinchi.fileTextToRinchiFull(fileText), OutputFormat.TSV));
+        }
+        Files.write(directory.resolve("notes.txt"), "not a reaction".getBytes(StandardCharsets.UTF_8));
+
+        StringWriter out = new StringWriter();
+        RinchiBatchConverter.Summary summary = RinchiBatchConverter.builder().withThreads(2).build()
+                .convertDirectory(directory, out);
+        assertEquals(expected, Arrays.asList(out.toString().split("\n")));
+        assertEquals(RXN_EXAMPLES.length, summary.getRecordCount());
+    }
+
+    @Test
+    public void testEscaping() {
+        StringBuilder sb = new StringBuilder();
+        RinchiBatchConverter.appendTsv(sb, new Object[] {1L, "a\tb", "c\nd\\"});
+        assertEquals("1\ta\\tb\tc\\nd\\\\", sb.toString());
+
+        sb.setLength(0);
+        RinchiBatchConverter.appendJson(sb, new Object[] {1L, "x\"y", Status.ERROR, "\u0001"});
+        assertEquals("{\"record\":1,\"source\":\"x\\\"y\",\"status\":\"ERROR\",\"rinchi\":\"\\u0001\"}", sb.toString());
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * JNA-RInChI - Library for calling RInChI from Java
+ * Copyright © 2022 Nikolay Kochev
+ * <p>
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnarinchi;
+
+import java.util.Collections;
+import java.util.Random;
+
+import io.github.dan2097.jnainchi.InchiAtom;
+import io.github.dan2097.jnainchi.InchiBond;
+import io.github.dan2097.jnainchi.InchiBondStereo;
+import io.github.dan2097.jnainchi.InchiBondType;
+import io.github.dan2097.jnarinchi.cheminfo.MdlReactionWriter;
+import io.github.dan2097.jnarinchi.cheminfo.StereoUtils;
+
+/**
+ * Measures stereo guessing from wedge bonds and RDFile writing on large reaction components,
+ * i.e. polymer-like chains with a wedged substituent on every second carbon atom.
+ * Run with java, passing the numbers of backbone atoms as arguments (default 1000 4000 16000).
+ */
+public class RinchiInputComponentBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        String[] sizes = args.length > 0 ? args : new String[] {"1000", "4000", "16000"};
+        for (String size : sizes) {
+            int numAtoms = Integer.parseInt(size);
+            for (int round = 0; round < ROUNDS; round++) {
+                RinchiInputComponent ric = createChain(numAtoms, new Random(40));
+                long start = System.nanoTime();
+                StereoUtils.guessUndefinedTetrahedralStereosBasedOnBondInfo(ric, Collections.emptySet());
+                long stereoTime = System.nanoTime() - start;
+
+                RinchiInput rinchiInput = new RinchiInput();
+                rinchiInput.addComponent(ric);
+                start = System.nanoTime();
+                String fileText = new MdlReactionWriter(ReactionFileFormat.RD).rinchiInputToFileText(rinchiInput);
+                long writeTime = System.nanoTime() - start;
+                System.out.printf("%d backbone atoms, round %d: %d stereo centres in %.2f ms, RDFile of %d chars in %.2f ms%n",
+                        numAtoms, round + 1, ric.getStereos().size(), stereoTime / 1e6, fileText.length(), writeTime / 1e6);
+            }
+        }
+    }
+
+    private static RinchiInputComponent createChain(int numAtoms, Random random) {
+        RinchiInputComponent ric = new RinchiInputComponent();
+        ric.setRole(ReactionComponentRole.PRODUCT);
+        InchiAtom previous = null;
+        for (int i = 0; i < numAtoms; i++) {
+            InchiAtom atom = new InchiAtom("C", i * 1.5, (i % 2) * 0.8, 0.0);
+            ric.addAtom(atom);
+            if (previous != null)
+                ric.addBond(new InchiBond(previous, atom, InchiBondType.SINGLE));
+            if (i % 2 == 1) {
+                InchiAtom substituent = new InchiAtom(random.nextBoolean() ? "Cl" : "O", i * 1.5, 2.0, 0.0);
+                ric.addAtom(substituent);
+                ric.addBond(new InchiBond(atom, substituent, InchiBondType.SINGLE,
+                        random.nextBoolean() ? InchiBondStereo.SINGLE_1UP : InchiBondStereo.SINGLE_1DOWN));
+                atom.setImplicitHydrogen(1);
+            }
+            previous = atom;
+        }
+        return ric;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * JNA-RInChI - Library for calling RInChI from Java
+ * Copyright © 2022 Nikolay Kochev
+ * <p>
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnarinchi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.dan2097.jnainchi.InchiAtom;
+import io.github.dan2097.jnainchi.InchiBond;
+import io.github.dan2097.jnainchi.InchiBondType;
+import io.github.dan2097.jnainchi.InchiStereo;
+
+public class RinchiInputComponentTest {
+
+    private static List<InchiAtom> connectedAtomsByScan(RinchiInputComponent ric, InchiAtom atom) {
+        List<InchiAtom> list = new ArrayList<>();
+        for (InchiBond bond : ric.getBonds()) {
+            if (bond.getStart() == atom)
+                list.add(bond.getEnd());
+            else if (bond.getEnd() == atom)
+                list.add(bond.getStart());
+        }
+        return list;
+    }
+
+    private static InchiBond bondByScan(RinchiInputComponent ric, InchiAtom atom1, InchiAtom atom2) {
+        for (InchiBond bond : ric.getBonds()) {
+            if ((bond.getStart() == atom1 && bond.getEnd() == atom2) || (bond.getStart() == atom2 && bond.getEnd() == atom1))
+                return bond;
+        }
+        return null;
+    }
+
+    private static void assertSameAsScan(RinchiInputComponent ric, List<InchiAtom> atoms) {
+        for (InchiAtom atom : atoms) {
+            assertEquals(ric.getAtoms().indexOf(atom), ric.getAtomIndex(atom));
+            assertEquals(connectedAtomsByScan(ric, atom), ric.getConnectedAtomList(atom));
+            for (InchiAtom other : atoms)
+                assertSame(bondByScan(ric, atom, other), ric.getBond(atom, other));
+        }
+    }
+
+    @Test
+    public void testSameAsScanningBonds() {
+        Random random = new Random(40);
+        for (int n = 0; n < 50; n++) {
+            RinchiInputComponent ric = new RinchiInputComponent();
+            List<InchiAtom> atoms = new ArrayList<>();
+            int nAtoms = 1 + random.nextInt(12);
+            for (int i = 0; i < nAtoms; i++) {
+                InchiAtom atom = new InchiAtom("C");
+                atoms.add(atom);
+                ric.addAtom(atom);
+            }
+            //An atom that is only referenced by bonds
+            atoms.add(new InchiAtom("O"));
+            assertSameAsScan(ric, atoms);
+
+            int nBonds = random.nextInt(20);
+            for (int i = 0; i < nBonds; i++) {
+                InchiAtom start = atoms.get(random.nextInt(atoms.size()));
+                InchiAtom end = atoms.get(random.nextInt(atoms.size()));
+                if (start != end)
+                    ric.addBond(new InchiBond(start, end, InchiBondType.SINGLE));
+                //The index is rebuilt after each change
+                assertSameAsScan(ric, atoms);
+            }
+        }
+    }
+
+    @Test
+    public void testMissingAtoms() {
+        RinchiInputComponent ric = new RinchiInputComponent();
+        InchiAtom atom = new InchiAtom("C");
+        ric.addAtom(atom);
+        assertNull(ric.getConnectedAtomList(null));
+        assertEquals(0, ric.getConnectedAtomList(atom).size());
+        assertNull(ric.getBond(atom, null));
+        assertEquals(-1, ric.getAtomIndex(new InchiAtom("C")));
+        assertEquals(-1, ric.getAtomIndex(InchiStereo.STEREO_IMPLICIT_H));
+
+        //The first occurrence of an atom that was added twice
+        ric.addAtom(atom);
+        assertEquals(0, ric.getAtomIndex(atom));
+    }
+}
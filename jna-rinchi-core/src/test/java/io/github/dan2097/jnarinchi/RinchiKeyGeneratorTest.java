@@ -0,0 +1,189 @@
+/**
+ * JNA-RInChI - Library for calling RInChI from Java
+ * Copyright © 2022 Nikolay Kochev
+ * <p>
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnarinchi;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing that the Java RInChIKeys are identical to those of the native library.
+ */
+public class RinchiKeyGeneratorTest {
+
+    private static final String[] EXAMPLES = {
+            "examples/1_reactant_-_A.txt", "examples/1_reactant_-_R.txt", "examples/1_reactant_-_X.txt",
+            "examples/1_reactant_-_no_product.txt", "examples/1_reactant_-_no_structure.txt",
+            "examples/Esterification_01.txt", "examples/Esterification_01_flat.txt", "examples/Esterification_02.txt",
+            "examples/Esterification_03.txt", "examples/Inverted_stereochemistry.txt", "examples/Multiplesteps.txt",
+            "examples/No_Structure_0-02.txt", "examples/No_reactant_-_1_product.txt",
+            "examples/No_reactant_-_1_product_02.txt", "examples/No_reactant_-_no_product.txt", "examples/R-_-A.txt",
+            "examples/RingOpening01.txt", "examples/Styrene_-_Polystyrene_as_no-struct.txt",
+            "examples/Tautomerization_01.txt", "examples/X_-_1_product.txt", "examples/no_structure_-_1_product.txt",
+            "examples/nostruct_-_X.txt", "examples/star_star_-_nostruct.txt"
+    };
+
+    private static void assertSameAsNative(String rinchi) {
+        for (RinchiKeyType keyType : RinchiKeyType.values()) {
+            RinchiKeyOutput expected = JnaRinchi.rinchiToRinchiKeyNative(keyType, rinchi);
+            RinchiKeyOutput output = RinchiKeyGenerator.toRinchiKey(keyType, rinchi);
+            assertSame(expected.getStatus(), output.getStatus(), keyType + " status for " + rinchi);
+            assertEquals(expected.getRinchiKey(), output.getRinchiKey(), keyType + " for " + rinchi);
+            assertSame(keyType, output.getRinchiKeyType());
+        }
+    }
+
+    @Test
+    public void testExamples() throws Exception {
+        for (String example : EXAMPLES) {
+            JnaRinchiTest.RinchiFullInfo rfi = JnaRinchiTest.readRinchiFullInfoFromResourceFile(example);
+            assertEquals(rfi.getRinchiKeyLong(),
+                    RinchiKeyGenerator.toRinchiKey(RinchiKeyType.LONG, rfi.getRinchi()).getRinchiKey(), example);
+            assertEquals(rfi.getRinchiKeyShort(),
+                    RinchiKeyGenerator.toRinchiKey(RinchiKeyType.SHORT, rfi.getRinchi()).getRinchiKey(), example);
+            assertEquals(rfi.getRinchiKeyWeb(),
+                    RinchiKeyGenerator.toRinchiKey(RinchiKeyType.WEB, rfi.getRinchi()).getRinchiKey(), example);
+            assertSameAsNative(rfi.getRinchi());
+        }
+    }
+
+    @Test
+    public void testRandomReactions() {
+        Random random = new Random(34);
+        for (int i = 0; i < 300; i++) {
+            RinchiOutput rinchiOutput = JnaRinchi.toRinchi(RinchiAssemblerTest.createRandomReaction(random));
+            if (rinchiOutput.getStatus() == Status.ERROR)
+                continue;
+            assertSameAsNative(rinchiOutput.getRinchi());
+        }
+    }
+
+    @Test
+    public void testNonCanonicalRinchi() {
+        //The native library sorts components and groups before generating the key
+        Random random = new Random(35);
+        String[] inchis = {"CH4/h1H4", "CH4/h1H4/i1+1", "C6H6/c1-2-4-6-5-3-1/h1-6H", "H2O/h1H2", "H2O/h1H2/p+1",
+                "C2H4O2/c1-2(3)4/h1H3,(H,3,4)/p-1", "C4H10O/c1-3-4(2)5/h4-5H,3H2,1-2H3/t4-/m0/s1",
+                "C4H10O/c1-3-4(2)5/h4-5H,3H2,1-2H3/t4-/m1/s1", "Na/q+1", "ClH/h1H/p+12", "p+1", "C2H4/c1-2/h1-2H2/p+1"};
+        String[] directions = {"", "/d+", "/d-", "/d="};
+        for (int i = 0; i < 300; i++) {
+            StringBuilder sb = new StringBuilder(RinchiAssembler.RINCHI_STD_HEADER);
+            int nGroups = 1 + random.nextInt(3);
+            for (int g = 0; g < nGroups; g++) {
+                if (g > 0)
+                    sb.append(RinchiAssembler.GROUP_DELIMITER);
+                List<String> group = new ArrayList<>();
+                int nComponents = random.nextInt(4);
+                for (int k = 0; k < nComponents; k++)
+                    group.add(inchis[random.nextInt(inchis.length)]);
+                Collections.shuffle(group, random);
+                sb.append(String.join("!", group));
+            }
+            String direction = directions[random.nextInt(directions.length)];
+            String noStructures = random.nextBoolean() ? ""
+                    : "/u" + random.nextInt(3) + "-" + random.nextInt(30) + "-" + random.nextInt(2);
+            if (random.nextBoolean())
+                sb.append(direction).append(noStructures);
+            else
+                sb.append(noStructures).append(direction);
+            assertSameAsNative(sb.toString());
+        }
+    }
+
+    @Test
+    public void testInvalidRinchi() {
+        String[] invalid = {"", "InChI=1S/CH4/h1H4", "RInChI=1.00.1/CH4/h1H4/d+", "RInChI=1.00.1S/CH4/h1H4/d+/ux",
+                "RInChI=1.00.1S/CH4/h1H4/d+/u1-2", "RInChI=1.00.1S/CH4/h1H4!!CH4/d+", "RInChI=1.00.1S/ch4/d+",
+                "RInChI=1.00.1S/CH4/h1H4<>CH4/h1H4<>CH4/h1H4<>CH4/d+"};
+        for (String rinchi : invalid) {
+            RinchiKeyOutput output = RinchiKeyGenerator.toRinchiKey(RinchiKeyType.LONG, rinchi);
+            assertSame(Status.ERROR, output.getStatus(), rinchi);
+            assertEquals("", output.getRinchiKey(), rinchi);
+            //Rejected RInChIs are passed to the native library for its error message
+            RinchiKeyOutput nativeOutput = JnaRinchi.rinchiToRinchiKeyNative(RinchiKeyType.LONG, rinchi);
+            RinchiKeyOutput jnaOutput = JnaRinchi.rinchiToRinchiKey(RinchiKeyType.LONG, rinchi);
+            assertSame(nativeOutput.getStatus(), jnaOutput.getStatus(), rinchi);
+            assertEquals(nativeOutput.getErrorMessage(), jnaOutput.getErrorMessage(), rinchi);
+        }
+        assertThrows(IllegalArgumentException.class, () -> RinchiKeyGenerator.toRinchiKey(null, "RInChI=1.00.1S/"));
+        assertThrows(IllegalArgumentException.class, () -> RinchiKeyGenerator.toRinchiKey(RinchiKeyType.LONG, null));
+    }
+
+    @Test
+    public void testProtonationOverflow() {
+        String[] rinchis = {"RInChI=1.00.1S/CH4/h1H4/p+99999999999", "RInChI=1.00.1S/CH4/h1H4/p-99999999999<>p+1",
+                "RInChI=1.00.1S/p+1<>p+99999999999/d-"};
+        for (String rinchi : rinchis) {
+            //The native library rejects these for Short and Web keys, but not for Long keys
+            RinchiKeyOutput nativeOutput = JnaRinchi.rinchiToRinchiKeyNative(RinchiKeyType.SHORT, rinchi);
+            for (RinchiKeyType keyType : RinchiKeyType.values()) {
+                RinchiKeyOutput output = RinchiKeyGenerator.toRinchiKey(keyType, rinchi);
+                assertSame(Status.ERROR, output.getStatus(), keyType + " for " + rinchi);
+                assertEquals("", output.getRinchiKey(), keyType + " for " + rinchi);
+                RinchiKeyOutput jnaOutput = JnaRinchi.rinchiToRinchiKey(keyType, rinchi);
+                assertSame(Status.ERROR, jnaOutput.getStatus(), keyType + " for " + rinchi);
+                if (nativeOutput.getStatus() == Status.ERROR)
+                    assertEquals(nativeOutput.getErrorMessage(), jnaOutput.getErrorMessage(), keyType + " for " + rinchi);
+            }
+        }
+        assertSame(Status.ERROR, JnaRinchi.rinchiToRinchiKeyNative(RinchiKeyType.SHORT, rinchis[0]).getStatus());
+        assertSame(Status.ERROR, JnaRinchi.rinchiToRinchiKeyNative(RinchiKeyType.WEB, rinchis[0]).getStatus());
+        //Values that fit in an integer give a key
+        assertSameAsNative("RInChI=1.00.1S/CH4/h1H4/p+999999999");
+        assertSameAsNative("RInChI=1.00.1S/CH4/h1H4/p+2147483647");
+    }
+
+    @Test
+    public void testInchiKey() {
+        assertEquals("MOSFIJXAXDLOML-UHFFFAOYSA-N", RinchiKeyGenerator.toInchiKey("/"));
+        assertEquals("VNWKTOKETHGBQD-UHFFFAOYSA-N", RinchiKeyGenerator.toInchiKey("CH4/h1H4"));
+        assertEquals("VNWKTOKETHGBQD-OUBTZVSYSA-N", RinchiKeyGenerator.toInchiKey("CH4/h1H4/i1+1"));
+        assertEquals("XLYOFNOQVPJJNP-UHFFFAOYSA-O", RinchiKeyGenerator.toInchiKey("H2O/h1H2/p+1"));
+    }
+
+    @Test
+    public void testSha256() throws Exception {
+        Random random = new Random(36);
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        for (int length = 0; length < 300; length++) {
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++)
+                chars[i] = (char) (32 + random.nextInt(95));
+            String s = new String(chars);
+            assertArrayEquals(sha256.digest(s.getBytes(StandardCharsets.US_ASCII)), RinchiKeyGenerator.sha256(s), s);
+        }
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        JnaRinchiTest.RinchiFullInfo rfi = JnaRinchiTest.readRinchiFullInfoFromResourceFile("examples/Esterification_01.txt");
+        IntStream.range(0, 1000).parallel().forEach(i -> assertEquals(rfi.getRinchiKeyWeb(),
+                RinchiKeyGenerator.toRinchiKey(RinchiKeyType.WEB, rfi.getRinchi()).getRinchiKey()));
+    }
+}
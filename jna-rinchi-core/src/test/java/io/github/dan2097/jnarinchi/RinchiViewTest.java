@@ -0,0 +1,172 @@
+/**
+ * JNA-RInChI - Library for calling RInChI from Java
+ * Copyright © 2022 Nikolay Kochev
+ * <p>
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnarinchi;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing that the Java decomposition of RInChIs is identical to that of the native library.
+ */
+public class RinchiViewTest {
+
+    private static final String[] EXAMPLES = {
+            "examples/1_reactant_-_A.txt", "examples/1_reactant_-_R.txt", "examples/1_reactant_-_X.txt",
+            "examples/1_reactant_-_no_product.txt", "examples/1_reactant_-_no_structure.txt",
+            "examples/Esterification_01.txt", "examples/Esterification_01_flat.txt", "examples/Esterification_02.txt",
+            "examples/Esterification_03.txt", "examples/Inverted_stereochemistry.txt", "examples/Multiplesteps.txt",
+            "examples/No_Structure_0-02.txt", "examples/No_reactant_-_1_product.txt",
+            "examples/No_reactant_-_1_product_02.txt", "examples/No_reactant_-_no_product.txt", "examples/R-_-A.txt",
+            "examples/RingOpening01.txt", "examples/Styrene_-_Polystyrene_as_no-struct.txt",
+            "examples/Tautomerization_01.txt", "examples/X_-_1_product.txt", "examples/no_structure_-_1_product.txt",
+            "examples/nostruct_-_X.txt", "examples/star_star_-_nostruct.txt"
+    };
+
+    private static void assertSameAsNative(String rinchi, String auxInfo) {
+        RinchiDecompositionOutput expected = JnaRinchi.decomposeRinchiNative(rinchi, auxInfo);
+        assertSame(Status.SUCCESS, expected.getStatus(), rinchi);
+        RinchiDecompositionOutput output = RinchiView.parse(rinchi, auxInfo).toDecompositionOutput();
+        assertSame(Status.SUCCESS, output.getStatus(), rinchi);
+        assertSame(expected.getDirection(), output.getDirection(), rinchi);
+        assertArrayEquals(expected.getInchis(), output.getInchis(), rinchi);
+        assertArrayEquals(expected.getAuxInfos(), output.getAuxInfos(), rinchi);
+        assertArrayEquals(expected.getRoles(), output.getRoles(), rinchi);
+    }
+
+    @Test
+    public void testExamples() throws Exception {
+        for (String example : EXAMPLES) {
+            JnaRinchiTest.RinchiFullInfo rfi = JnaRinchiTest.readRinchiFullInfoFromResourceFile(example);
+            assertSameAsNative(rfi.getRinchi(), rfi.getAuxInfo());
+            assertSameAsNative(rfi.getRinchi(), "");
+        }
+    }
+
+    @Test
+    public void testRandomReactions() {
+        Random random = new Random(38);
+        for (int i = 0; i < 300; i++) {
+            RinchiOutput rinchiOutput = JnaRinchi.toRinchi(RinchiAssemblerTest.createRandomReaction(random));
+            if (rinchiOutput.getStatus() == Status.ERROR)
+                continue;
+            assertSameAsNative(rinchiOutput.getRinchi(), rinchiOutput.getAuxInfo());
+        }
+    }
+
+    @Test
+    public void testDirectionsAndNoStructures() {
+        String[] groups = {"", "CH4/h1H4", "H2O/h1H2!CH4/h1H4", "p+1", "Na/q+1!H2O/h1H2/p+1"};
+        String[] directions = {"", "/d+", "/d-", "/d="};
+        Random random = new Random(39);
+        for (int i = 0; i < 200; i++) {
+            StringBuilder sb = new StringBuilder(RinchiAssembler.RINCHI_STD_HEADER);
+            int nGroups = 1 + random.nextInt(3);
+            for (int g = 0; g < nGroups; g++) {
+                if (g > 0)
+                    sb.append(RinchiAssembler.GROUP_DELIMITER);
+                sb.append(groups[random.nextInt(groups.length)]);
+            }
+            String direction = directions[random.nextInt(directions.length)];
+            String noStructures = random.nextBoolean() ? ""
+                    : "/u" + random.nextInt(3) + "-" + random.nextInt(3) + "-" + random.nextInt(3);
+            if (random.nextBoolean())
+                sb.append(direction).append(noStructures);
+            else
+                sb.append(noStructures).append(direction);
+            assertSameAsNative(sb.toString(), "");
+        }
+    }
+
+    @Test
+    public void testInvalid() {
+        String[] invalidRinchis = {"", "InChI=1S/CH4/h1H4", "RInChI=1.00.1/CH4/h1H4/d+", "RInChI=1.00.1S/CH4/h1H4/d+/ux",
+                "RInChI=1.00.1S/CH4/h1H4/d+/u1-2", "RInChI=1.00.1S/CH4/h1H4!!CH4/d+", "RInChI=1.00.1S/ch4/d+",
+                "RInChI=1.00.1S/CH4/h1H4<>CH4/h1H4<>CH4/h1H4<>CH4/d+", "RInChI=1.00.1S/CH4/h1H4/d?",
+                "RInChI=1.00.1S/CH4/h1H4/d+/d+", "RInChI=1.00.1S/CH4/h1H4/u0-0-0/u1-0-0",
+                "RInChI=1.00.1S/CH4/h1H4/d-/u0-0-1/d+", "RInChI=1.00.1S/ZZZ", "RInChI=1.00.1S/Zz",
+                "RInChI=1.00.1S/CH4/p1/h1H4", "RInChI=1.00.1S/CH4/h1H4 ", "RInChI=1.00.1S/CH4/h1H4 <>H2O/h1H2",
+                "RInChI=1.00.1S/CH4/h1H4/p1", "RInChI=1.00.1S/p1", "RInChI=1.00.1S/CH4/h1H4/q1",
+                "RInChI=1.00.1S/C2H6O/h3H,2H2,1H3/c1-2-3", "RInChI=1.00.1S/CH4/x1", "RInChI=1.00.1S/CH4/h1H9",
+                "RInChI=1.00.1S/C/h1H4", "RInChI=1.00.1S/CH4/hfoo", "RInChI=1.00.1S/CH4/h1H4/b1-2",
+                "RInChI=1.00.1S/CH4/h1H4/p+99999999999"};
+        for (String rinchi : invalidRinchis) {
+            assertThrows(IllegalArgumentException.class, () -> RinchiView.parse(rinchi), rinchi);
+            //Rejected RInChIs are passed to the native library
+            RinchiDecompositionOutput nativeOutput = JnaRinchi.decomposeRinchiNative(rinchi, "");
+            RinchiDecompositionOutput jnaOutput = JnaRinchi.decomposeRinchi(rinchi, "");
+            assertSame(nativeOutput.getStatus(), jnaOutput.getStatus(), rinchi);
+            assertEquals(nativeOutput.getErrorMessage(), jnaOutput.getErrorMessage(), rinchi);
+            assertArrayEquals(nativeOutput.getInchis(), jnaOutput.getInchis(), rinchi);
+        }
+
+        String rinchi = "RInChI=1.00.1S/CH4/h1H4<>H2O/h1H2/d+";
+        String[] invalidAuxInfos = {"AuxInfo=1/0/N:1", "RAuxInfo=1.00.1/0/N:1/rA:1C/rB:/rC:;",
+                "RAuxInfo=1.00.1/0/N:1/rA:1C/rB:/rC:;<>0/N:1/rA:1O/rB:/rC:;!0/N:1/rA:1O/rB:/rC:;"};
+        for (String auxInfo : invalidAuxInfos)
+            assertThrows(IllegalArgumentException.class, () -> RinchiView.parse(rinchi, auxInfo), auxInfo);
+        assertThrows(IllegalArgumentException.class, () -> RinchiView.parse(null));
+        assertThrows(IllegalArgumentException.class, () -> RinchiView.parse(rinchi, null));
+    }
+
+    @Test
+    public void testComponentViews() {
+        String rinchi = "RInChI=1.00.1S/CH4/h1H4<>H2O/h1H2/d-/u1-0-0";
+        String auxInfo = "RAuxInfo=1.00.1/0/N:1/rA:1C/rB:/rC:;<>0/N:1/rA:1O/rB:/rC:;";
+        RinchiView view = RinchiView.parse(rinchi, auxInfo);
+        assertSame(rinchi, view.getRinchi());
+        assertSame(ReactionDirection.BACKWARD, view.getDirection());
+        assertEquals(3, view.getNumberOfComponents());
+
+        assertSame(ReactionComponentRole.REAGENT, view.getRole(0));
+        assertFalse(view.isNoStructure(0));
+        CharSequence inchi = view.getInchi(0);
+        assertEquals("InChI=1S/H2O/h1H2", inchi.toString());
+        assertEquals("InChI=1S/H2O/h1H2".length(), inchi.length());
+        assertEquals('H', inchi.charAt(9));
+        assertEquals("H2O", inchi.subSequence(9, 12).toString());
+        assertEquals("1S/H", inchi.subSequence(6, 10).toString());
+        assertEquals("AuxInfo=1/0/N:1/rA:1O/rB:/rC:;", view.getAuxInfo(0).toString());
+        assertThrows(IndexOutOfBoundsException.class, () -> inchi.charAt(inchi.length()));
+
+        assertSame(ReactionComponentRole.PRODUCT, view.getRole(1));
+        assertEquals("InChI=1S/CH4/h1H4", view.getInchi(1).toString());
+        assertSame(ReactionComponentRole.PRODUCT, view.getRole(2));
+        assertTrue(view.isNoStructure(2));
+        assertEquals("InChI=1S//", view.getInchi(2).toString());
+        assertEquals("AuxInfo=1//", view.getAuxInfo(2).toString());
+
+        assertEquals("", RinchiView.parse(rinchi).getAuxInfo(0).toString());
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        JnaRinchiTest.RinchiFullInfo rfi = JnaRinchiTest.readRinchiFullInfoFromResourceFile("examples/Multiplesteps.txt");
+        RinchiDecompositionOutput expected = JnaRinchi.decomposeRinchiNative(rfi.getRinchi(), rfi.getAuxInfo());
+        IntStream.range(0, 1000).parallel().forEach(i -> assertArrayEquals(expected.getAuxInfos(),
+                JnaRinchi.decomposeRinchi(rfi.getRinchi(), rfi.getAuxInfo()).getAuxInfos()));
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.dan2097.jnarinchi.cheminfo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class MdlLineScannerTest {
+
+    private static MdlLineScanner scannerAt(String line) throws IOException {
+        MdlLineScanner scanner = new MdlLineScanner(new StringReader(line));
+        scanner.nextLine();
+        return scanner;
+    }
+
+    @Test
+    void testLinesSameAsBufferedReader() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        Random random = new Random(36);
+        String[] terminators = {"\n", "\r", "\r\n", "\n\n", "\r\r\n"};
+        for (int i = 0; i < 3000; i++) {
+            int length = random.nextInt(i % 100 == 0 ? 20000 : 90);
+            for (int k = 0; k < length; k++)
+                sb.append((char) (32 + random.nextInt(95)));
+            sb.append(terminators[random.nextInt(terminators.length)]);
+        }
+        sb.append("no terminator");
+        BufferedReader expected = new BufferedReader(new StringReader(sb.toString()));
+        MdlLineScanner scanner = new MdlLineScanner(new StringReader(sb.toString()));
+        String line;
+        while ((line = expected.readLine()) != null) {
+            assertTrue(scanner.nextLine());
+            assertEquals(line, scanner.lineToString());
+        }
+        assertFalse(scanner.nextLine());
+    }
+
+    @Test
+    void testGetIntSameAsParseInt() throws IOException {
+        Random random = new Random(37);
+        String chars = "0123456789  -+x";
+        for (int i = 0; i < 20000; i++) {
+            char[] field = new char[1 + random.nextInt(6)];
+            for (int k = 0; k < field.length; k++)
+                field[k] = chars.charAt(random.nextInt(chars.length()));
+            String s = new String(field);
+            int expected;
+            try {
+                expected = Integer.parseInt(s.trim());
+            } catch (NumberFormatException x) {
+                expected = MdlLineScanner.INVALID_INT;
+            }
+            assertEquals(expected, scannerAt("ab" + s + "cd").getInt(2, s.length()), s);
+        }
+        assertEquals(MdlLineScanner.MISSING_INT, scannerAt("  1").getInt(0, 4));
+        assertEquals(MdlLineScanner.MISSING_INT, scannerAt("  1").getInt(5, 1));
+        assertEquals(-12, scannerAt("M  CHG  1   1 -12").getInt(13, 4));
+    }
+
+    @Test
+    void testGetDoubleSameAsParseDouble() throws IOException {
+        Random random = new Random(38);
+        for (int i = 0; i < 20000; i++) {
+            double d = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(9));
+            String s = String.format(Locale.ROOT, "%10." + random.nextInt(6) + "f", d);
+            assertEquals(Double.parseDouble(s.trim()), scannerAt(s).getDouble(0, s.length()), s);
+        }
+        assertEquals(1.0e5, scannerAt("  1.0e5").getDouble(0, 7));
+        assertEquals(Double.parseDouble("12345678901234567.5"), scannerAt("12345678901234567.5").getDouble(0, 19));
+        assertTrue(Double.isNaN(scannerAt("    1.2.3").getDouble(0, 9)));
+        assertTrue(Double.isNaN(scannerAt("     -    ").getDouble(0, 10)));
+    }
+
+    @Test
+    void testGetElementSymbol() throws IOException {
+        MdlLineScanner scanner = scannerAt(" C  " + "Cl  " + "Fl  " + "Xx  " + " *  ");
+        assertSame("C", scanner.getElementSymbol(0, 4));
+        assertSame("Cl", scanner.getElementSymbol(4, 4));
+        assertSame("Fl", scanner.getElementSymbol(8, 4));
+        assertNull(scanner.getElementSymbol(12, 4));
+        assertSame("*", scanner.getElementSymbol(16, 4));
+        assertNull(scannerAt("    ").getElementSymbol(0, 4));
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * JNA-RInChI - Library for calling RInChI from Java
+ * Copyright © 2022 Nikolay Kochev
+ * <p>
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.dan2097.jnarinchi.cheminfo;
+
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.dan2097.jnarinchi.ReactionFileFormat;
+import io.github.dan2097.jnarinchi.RinchiInput;
+import io.github.dan2097.jnarinchi.TestUtils;
+
+/**
+ * Measures the throughput and allocation of MdlReactionReader on the example RD and RXN files,
+ * repeated to give a large RDFile with many records, and of MdlReactionWriter writing these records to a Writer.
+ * Run with java, passing the number of records as the first argument (default 100000).
+ */
+public class MdlReactionReaderBenchmark {
+
+    private static final String[] EXAMPLES = {
+            "examples/Esterification_01.rdf", "examples/Esterification_02.rdf", "examples/Esterification_03.rdf",
+            "examples/Example_04_simple.rdf", "examples/5_variations_1_step_each.rdf",
+            "examples/1_variation_4_steps.rdf", "examples/R005a.rxn", "examples/R005a_with_agents.rxn",
+            "examples/RingOpening01.rxn", "examples/Inverted_stereochemistry.rxn"
+    };
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int numRecords = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        List<String> records = readExampleRecords();
+        StringBuilder sb = new StringBuilder("$RDFILE 1\n$DATM 1/23/2016 0:50:11\n");
+        for (int i = 0; i < numRecords; i++)
+            sb.append(records.get(i % records.size()));
+        String fileText = sb.toString();
+        System.out.printf("%d records, %.1f MB%n", numRecords, fileText.length() / 1e6);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            int atoms = 0;
+            try (RdFileReader reader = new RdFileReader(new StringReader(fileText))) {
+                RinchiInput input;
+                while ((input = reader.nextRinchiInput()) != null)
+                    atoms += input.getComponents().stream().mapToInt(c -> c.getAtoms().size()).sum();
+            }
+            long time = System.nanoTime() - start;
+            long bytes = allocatedBytes() - bytesBefore;
+            System.out.printf("round %d: %.0f records/s, %.1f MB/s, %s bytes allocated/record (%d atoms)%n", round + 1,
+                    numRecords / (time / 1e9), fileText.length() / (time / 1e3),
+                    bytesBefore < 0 ? "n/a" : String.valueOf(bytes / numRecords), atoms);
+        }
+
+        List<RinchiInput> inputs = new ArrayList<>();
+        MdlReactionReader mdlReader = new MdlReactionReader();
+        for (String record : records)
+            inputs.add(mdlReader.fileTextToRinchiInput("$RDFILE 1\n$DATM 1/23/2016 0:50:11\n" + record));
+        MdlReactionWriter mdlWriter = new MdlReactionWriter(ReactionFileFormat.RD);
+        for (int round = 0; round < ROUNDS; round++) {
+            CountingWriter out = new CountingWriter();
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < numRecords; i++)
+                mdlWriter.rinchiInputToFileText(inputs.get(i % inputs.size()), out);
+            long time = System.nanoTime() - start;
+            long bytes = allocatedBytes() - bytesBefore;
+            System.out.printf("write round %d: %.0f records/s, %.1f MB/s, %s bytes allocated/record%n", round + 1,
+                    numRecords / (time / 1e9), out.count / (time / 1e3),
+                    bytesBefore < 0 ? "n/a" : String.valueOf(bytes / numRecords));
+        }
+    }
+
+    /**
+     * Returns the example reactions as RDFile records, RXN files are converted into records.
+     */
+    private static List<String> readExampleRecords() throws Exception {
+        List<String> records = new ArrayList<>();
+        for (String example : EXAMPLES) {
+            String text = TestUtils.readTextFromResourceAsString(example);
+            if (example.endsWith(".rxn")) {
+                RinchiInput input = new MdlReactionReader(ReactionFileFormat.RXN, false).fileTextToRinchiInput(text);
+                text = new MdlReactionWriter(ReactionFileFormat.RD).rinchiInputToFileText(input);
+            }
+            try (RdFileReader reader = new RdFileReader(new StringReader(text))) {
+                String record;
+                while ((record = reader.nextRecordText()) != null)
+                    records.add(record.substring(record.indexOf("$RFMT")));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Discards the text written to it, so that only the cost of producing the text is measured.
+     */
+    private static class CountingWriter extends Writer {
+        private long count = 0;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+}
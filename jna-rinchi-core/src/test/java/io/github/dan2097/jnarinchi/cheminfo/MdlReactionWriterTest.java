@@ -9,7 +9,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Random;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -318,4 +323,59 @@ class MdlReactionWriterTest {
                     ": expected='" + expectedLines.get(index) + "'; actual='" + actualLines[index] +"'");
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void test_ReactionTwo_sameTextForAllOutputs() throws IOException {
+        for (ReactionFileFormat format : new ReactionFileFormat[]{ReactionFileFormat.RD, ReactionFileFormat.RXN}) {
+            MdlReactionWriter writer = new MdlReactionWriter(format);
+            String reactionText = writer.rinchiInputToFileText(rinchiInputReactionTwoWithAgents);
+
+            StringWriter stringWriter = new StringWriter();
+            writer.rinchiInputToFileText(rinchiInputReactionTwoWithAgents, stringWriter);
+            writer.rinchiInputToFileText(rinchiInputReactionTwoWithAgents, stringWriter);
+            Assertions.assertEquals(reactionText + reactionText, stringWriter.toString());
+
+            CharBuffer charBuffer = CharBuffer.allocate(reactionText.length());
+            writer.rinchiInputToFileText(rinchiInputReactionTwoWithAgents, charBuffer);
+            Assertions.assertEquals(reactionText, charBuffer.flip().toString());
+
+            ByteBuffer byteBuffer = ByteBuffer.allocate(reactionText.length());
+            writer.rinchiInputToFileText(rinchiInputReactionTwoWithAgents, byteBuffer);
+            Assertions.assertEquals(reactionText, new String(byteBuffer.array(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void test_coordinatesSameAsNumberFormat() {
+        Random random = new Random(37);
+        RinchiInputComponent ric = new RinchiInputComponent();
+        ric.setRole(ReactionComponentRole.REAGENT);
+        double[] specialValues = {0.0, -0.0, -0.00001, 0.00005, 0.00015, 1.00005, -2.50005, 9999.99996, -9999.99994,
+                12345.6, -123456.78901, 1e20, Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE};
+        for (int i = 0; i < 900; i++) {
+            double x = i < specialValues.length ? specialValues[i]
+                    : (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(7));
+            double y = Math.round(random.nextGaussian() * 1e6) / 1e4 + 0.00005; //near half way
+            double z = Math.round(random.nextGaussian() * 1e6) / 1e4;
+            ric.addAtom(new InchiAtom("C", x, y, z));
+        }
+        RinchiInput rinchiInput = new RinchiInput();
+        rinchiInput.addComponent(ric);
+
+        String[] lines = new MdlReactionWriter(ReactionFileFormat.RXN).rinchiInputToFileText(rinchiInput).split("\n");
+        for (int i = 0; i < ric.getAtoms().size(); i++) {
+            InchiAtom atom = ric.getAtom(i);
+            String line = lines[10 + i];
+            Assertions.assertEquals(formatCoordinate(atom.getX()), line.substring(0, 10), "x of atom " + i);
+            Assertions.assertEquals(formatCoordinate(atom.getY()), line.substring(10, 20), "y of atom " + i);
+            Assertions.assertEquals(formatCoordinate(atom.getZ()), line.substring(20, 30), "z of atom " + i);
+        }
+    }
+
+    private static String formatCoordinate(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            value = 0.0;
+        String s = MdlReactionUtils.MDL_NUMBER_FORMAT.format(value);
+        return String.format("%10s", s.length() > 10 ? "0" : s);
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.dan2097.jnarinchi.cheminfo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.dan2097.jnarinchi.JnaRinchi;
+import io.github.dan2097.jnarinchi.RinchiInput;
+import io.github.dan2097.jnarinchi.RinchiOutput;
+import io.github.dan2097.jnarinchi.Status;
+import io.github.dan2097.jnarinchi.TestUtils;
+
+class RdFileReaderTest {
+    private static final String HEADER = "$RDFILE 1\n$DATM 1/23/2016 0:50:11\n";
+    private static final String[] EXAMPLES = {
+            "examples/Esterification_01.rdf", "examples/Esterification_02.rdf",
+            "examples/Example_04_simple.rdf", "examples/5_variations_1_step_each.rdf",
+            "examples/No_Structure_0-02.rdf", "examples/1_variation_4_steps.rdf",
+            "examples/Esterification_03.rdf"
+    };
+
+    /**
+     * Concatenates the records of the example files into one RDFile and collects the expected record texts.
+     */
+    private static String createMultiRecordFile(List<String> expectedRecords) throws IOException {
+        StringBuilder sb = new StringBuilder(HEADER);
+        for (String example : EXAMPLES) {
+            String text = TestUtils.readTextFromResourceAsString(example);
+            String records = text.substring(text.indexOf("$RFMT"));
+            int start = 0;
+            int next;
+            while ((next = records.indexOf("\n$RFMT", start)) >= 0) {
+                expectedRecords.add(HEADER + records.substring(start, next + 1));
+                start = next + 1;
+            }
+            expectedRecords.add(HEADER + records.substring(start));
+            sb.append(records);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void testRecordTexts() throws IOException {
+        List<String> expected = new ArrayList<>();
+        String fileText = createMultiRecordFile(expected);
+        assertEquals(EXAMPLES.length + 1, expected.size());
+
+        for (int bufferSize : new int[]{1, 5, 7, 64, 1 << 16}) {
+            try (RdFileReader reader = new RdFileReader(new StringReader(fileText), bufferSize)) {
+                for (int i = 0; i < expected.size(); i++)
+                    assertEquals(expected.get(i), reader.nextRecordText(), "Record " + i + ", buffer size " + bufferSize);
+                assertNull(reader.nextRecordText());
+                assertNull(reader.nextRecordText());
+                assertEquals(expected.size(), reader.getRecordCount());
+            }
+        }
+    }
+
+    @Test
+    void testRecordsGiveSameRinchiAsFiles() throws IOException {
+        List<String> expected = new ArrayList<>();
+        String fileText = createMultiRecordFile(expected);
+        byte[] bytes = fileText.replace("\n", "\r\n").getBytes(StandardCharsets.UTF_8);
+
+        List<String> rinchis;
+        try (RdFileReader reader = new RdFileReader(new ByteArrayInputStream(bytes))) {
+            rinchis = reader.records().parallel()
+                    .map(recordText -> JnaRinchi.fileTextToRinchi(recordText).getRinchi())
+                    .collect(Collectors.toList());
+        }
+        assertEquals(expected.size(), rinchis.size());
+        for (int i = 0; i < expected.size(); i++) {
+            RinchiOutput output = JnaRinchi.fileTextToRinchi(expected.get(i));
+            assertSame(Status.SUCCESS, output.getStatus(), "Record " + i);
+            assertEquals(output.getRinchi(), rinchis.get(i), "Record " + i);
+        }
+    }
+
+    @Test
+    void testNextRinchiInput(@TempDir Path tempDir) throws Exception {
+        List<String> expected = new ArrayList<>();
+        Path file = tempDir.resolve("reactions.rdf");
+        Files.write(file, createMultiRecordFile(expected).getBytes(StandardCharsets.UTF_8));
+
+        try (RdFileReader reader = new RdFileReader(file)) {
+            for (int i = 0; i < expected.size(); i++) {
+                RinchiInput rinchiInput = reader.nextRinchiInput();
+                assertNotNull(rinchiInput, "Record " + i);
+                RinchiInput expectedInput = new MdlReactionReader().fileTextToRinchiInput(expected.get(i));
+                assertEquals(expectedInput.getComponents().size(), rinchiInput.getComponents().size(), "Record " + i);
+                assertEquals(JnaRinchi.toRinchi(expectedInput).getRinchi(), JnaRinchi.toRinchi(rinchiInput).getRinchi(),
+                        "Record " + i);
+            }
+            assertNull(reader.nextRinchiInput());
+        }
+    }
+
+    @Test
+    void testInputWithoutRecords() throws Exception {
+        String rxnText = TestUtils.readTextFromResourceAsString("examples/R005a.rxn");
+        try (RdFileReader reader = new RdFileReader(new StringReader(rxnText), 16)) {
+            assertEquals(rxnText, reader.nextRecordText());
+            assertNull(reader.nextRecordText());
+        }
+        try (RdFileReader reader = new RdFileReader(new StringReader(rxnText))) {
+            assertEquals(JnaRinchi.toRinchi(new MdlReactionReader().fileTextToRinchiInput(rxnText)).getRinchi(),
+                    JnaRinchi.toRinchi(reader.nextRinchiInput()).getRinchi());
+            assertNull(reader.nextRinchiInput());
+        }
+        try (RdFileReader reader = new RdFileReader(new StringReader(""))) {
+            assertNull(reader.nextRecordText());
+            assertEquals(0, reader.getRecordCount());
+        }
+    }
+}